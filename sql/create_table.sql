@@ -84,5 +84,9 @@ create table chat_history_original
     isDelete    tinyint  default 0                 not null comment '是否删除',
     INDEX idx_appId (appId),                       -- 提升基于应用的查询性能
     INDEX idx_createTime (createTime),             -- 提升基于时间的查询性能
-    INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
+    INDEX idx_appId_createTime (appId, createTime), -- 游标查询核心索引
+    INDEX idx_appId_isDelete_id (appId, isDelete, id) -- 加载对话记忆：按 id 倒序取最近窗口
 ) comment '对话历史' collate = utf8mb4_unicode_ci;
+
+-- 已有库补充加载对话记忆的窗口查询索引
+# alter table chat_history_original add index idx_appId_isDelete_id (appId, isDelete, id);
@@ -3,15 +3,20 @@ package com.jamin.codecube.ai;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.jamin.codecube.ai.guardrail.PromptSafetyInputGuardrail;
+import com.jamin.codecube.ai.memory.ChatMemoryHydrator;
+import com.jamin.codecube.ai.memory.CompactingChatMemory;
+import com.jamin.codecube.ai.memory.RedisListChatMemoryStore;
 import com.jamin.codecube.ai.tools.*;
+import com.jamin.codecube.config.ChatMemoryCompactionConfig;
 import com.jamin.codecube.exception.BusinessException;
 import com.jamin.codecube.exception.ErrorCode;
 import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.monitor.AiModelMetricsCollector;
 import com.jamin.codecube.service.ChatHistoryOriginalService;
 import com.jamin.codecube.service.ChatHistoryService;
 import com.jamin.codecube.utils.SpringContextUtil;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
@@ -36,13 +41,19 @@ public class AiCodeGeneratorServiceFactory {
     @Qualifier("openAiChatModel")
     private ChatModel chatModel;
     @Autowired
-    private RedisChatMemoryStore redisChatMemoryStore;
+    private RedisListChatMemoryStore redisListChatMemoryStore;
     @Autowired
     private ChatHistoryService chatHistoryService;
     @Autowired
     private ChatHistoryOriginalService chatHistoryOriginalService;
     @Autowired
     private ToolManager toolManager;
+    @Autowired
+    private ChatMemoryHydrator chatMemoryHydrator;
+    @Autowired
+    private ChatMemoryCompactionConfig chatMemoryCompactionConfig;
+    @Autowired
+    private AiModelMetricsCollector aiModelMetricsCollector;
     @Value("${langchain4j.openai.max-messages}")
     private int maxMessages;
 
@@ -102,15 +113,16 @@ public class AiCodeGeneratorServiceFactory {
         // 根据 appId 构建独立的会话记忆
         MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
                 .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
+                .chatMemoryStore(redisListChatMemoryStore)
                 .maxMessages(maxMessages)
                 .build();
 
         switch (codeGenType) {
             // 对于 HTML 和多文件代码生成，使用通用的 AiCodeGeneratorService
             case HTML, MULTI_FILE:{
-                // 从数据库中加载对话记录
-                chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+                // Redis 中没有可复用的会话记忆时，从数据库中加载对话记录
+                chatMemoryHydrator.hydrate(appId, codeGenType, 20,
+                        () -> chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20));
 
                 // 使用多例模式的StreamChatModel，确保每次调用都是新的实例，解决并发问题
                 StreamingChatModel openAiStreamingChatModel = SpringContextUtil.getBean("streamingChatModelPrototype", StreamingChatModel.class);
@@ -124,13 +136,17 @@ public class AiCodeGeneratorServiceFactory {
             // 对于 Vue 项目代码生成，使用推理模型和工具调用
             case VUE_PROJECT:{
                 // 从数据库加载历史对话到缓存中，由于多了工具调用相关信息，加载的最大数量稍微多一些
-                chatHistoryOriginalService.loadOriginalChatHistoryToMemory(appId, chatMemory, 60);
+                chatMemoryHydrator.hydrate(appId, codeGenType, 60,
+                        () -> chatHistoryOriginalService.loadOriginalChatHistoryToMemory(appId, chatMemory, 60));
+
+                // 较早轮次的工具调用内容压缩为引用，减少每轮重复发送的输入 token
+                ChatMemory compactingChatMemory = new CompactingChatMemory(chatMemory, chatMemoryCompactionConfig, aiModelMetricsCollector);
 
                 // 使用多例模式的 StreamingChatModel 解决并发问题
                 StreamingChatModel reasoningStreamingChatModel = SpringContextUtil.getBean("reasoningStreamingChatModelPrototype", StreamingChatModel.class);
                 return AiServices.builder(AiCodeGeneratorService.class)
                         .streamingChatModel(reasoningStreamingChatModel)
-                        .chatMemoryProvider(memoryId -> chatMemory)
+                        .chatMemoryProvider(memoryId -> compactingChatMemory)
                         .tools(toolManager.getAllTools())
                         .hallucinatedToolNameStrategy(toolExecutionRequest ->
                             ToolExecutionResultMessage.from(toolExecutionRequest,
@@ -0,0 +1,125 @@
+package com.jamin.codecube.ai.hedging;
+
+import com.jamin.codecube.config.AiHedgingConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 模型端点首 token 时间统计
+ * 模型实例按应用多例创建，延迟统计需要在所有实例间共享，因此由单例组件维护：
+ *     1. 每个端点的首 token 时间 EWMA，用于选择首选端点
+ *     2. 最近的首 token 时间样本，用于计算对冲等待时间（分位数）
+ * 计时线程只负责到点触发，对冲请求在虚拟线程上发起，慢端点建连等耗时操作不会拖住其他调用的计时。
+ */
+@Component
+@Slf4j
+public class EndpointLatencyTracker {
+
+    @Autowired
+    private AiHedgingConfig aiHedgingConfig;
+
+    private final ConcurrentMap<String, Double> ewmaMillis = new ConcurrentHashMap<>();
+
+    private long[] samples;
+
+    private int sampleCount;
+
+    private int sampleIndex;
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService launcher;
+
+    @PostConstruct
+    public void init() {
+        samples = new long[Math.max(1, aiHedgingConfig.getSampleWindow())];
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-hedging-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        launcher = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-hedging-launch-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        launcher.shutdownNow();
+    }
+
+    /**
+     * 记录胜出请求的首 token 时间
+     */
+    public void recordFirstToken(String endpoint, long millis) {
+        updateEwma(endpoint, millis);
+        synchronized (this) {
+            samples[sampleIndex] = millis;
+            sampleIndex = (sampleIndex + 1) % samples.length;
+            sampleCount = Math.min(sampleCount + 1, samples.length);
+        }
+    }
+
+    /**
+     * 记录被取消的请求，已等待的时间是首 token 时间的下限
+     */
+    public void recordLoss(String endpoint, long elapsedMillis) {
+        updateEwma(endpoint, Math.max(elapsedMillis, aiHedgingConfig.getMinDelayMillis()));
+    }
+
+    /**
+     * 记录失败的请求，按最大对冲等待时间计入，使故障端点排到后面
+     */
+    public void recordFailure(String endpoint) {
+        updateEwma(endpoint, aiHedgingConfig.getMaxDelayMillis());
+    }
+
+    /**
+     * 端点的首 token 时间 EWMA，没有样本的端点返回 0，使其优先被探测
+     */
+    public double score(String endpoint) {
+        return ewmaMillis.getOrDefault(endpoint, 0D);
+    }
+
+    /**
+     * 对冲等待时间：近期首 token 时间的分位数，限制在 [min, max] 之间；样本不足时使用默认值
+     */
+    public long hedgeDelayMillis() {
+        long[] snapshot;
+        synchronized (this) {
+            if (sampleCount < aiHedgingConfig.getMinSamples()) {
+                return aiHedgingConfig.getDefaultDelayMillis();
+            }
+            snapshot = Arrays.copyOf(samples, sampleCount);
+        }
+        Arrays.sort(snapshot);
+        int index = (int) Math.ceil(aiHedgingConfig.getPercentile() * snapshot.length) - 1;
+        long delay = snapshot[Math.min(Math.max(index, 0), snapshot.length - 1)];
+        return Math.min(Math.max(delay, aiHedgingConfig.getMinDelayMillis()), aiHedgingConfig.getMaxDelayMillis());
+    }
+
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 发起对冲请求的执行器
+     */
+    ExecutorService launcher() {
+        return launcher;
+    }
+
+    private void updateEwma(String endpoint, long millis) {
+        double alpha = aiHedgingConfig.getEwmaAlpha();
+        ewmaMillis.merge(endpoint, (double) millis, (previous, sample) -> previous + alpha * (sample - previous));
+    }
+}
@@ -0,0 +1,284 @@
+package com.jamin.codecube.ai.hedging;
+
+import com.jamin.codecube.monitor.MonitorContext;
+import com.jamin.codecube.monitor.MonitorContextHolder;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.internal.StreamingCancellation;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多端点对冲流式模型
+ * 持有多个 OpenAI 兼容端点（各自是完整的 StreamingChatModel，监听器照常记录每次请求）：
+ *     1. 按首 token 时间 EWMA 从小到大排序，先请求最快的端点
+ *     2. 对冲等待时间内没有收到首个 token（文本或工具调用），向下一个端点发起相同的请求
+ *     3. 第一个产出 token 的请求胜出，其余请求通过各自的 StreamingCancellation 取消，连接随之关闭
+ *     4. 请求失败且还没有胜出者时立即切换到下一个端点；全部失败才把错误交给调用方
+ * 调用方（AiServiceTokenStream）的取消令牌被取消时，所有进行中的请求一起取消。
+ */
+@Slf4j
+public class HedgingStreamingChatModel implements StreamingChatModel {
+
+    private final List<Endpoint> endpoints;
+
+    private final EndpointLatencyTracker latencyTracker;
+
+    public HedgingStreamingChatModel(List<Endpoint> endpoints, EndpointLatencyTracker latencyTracker) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            throw new IllegalArgumentException("endpoints cannot be empty");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.latencyTracker = latencyTracker;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        List<Endpoint> ranked = endpoints.stream()
+                .sorted(Comparator.comparingDouble(endpoint -> latencyTracker.score(endpoint.name())))
+                .toList();
+        new HedgedCall(ranked, chatRequest, handler).start(StreamingCancellation.current());
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return endpoints.getFirst().model().defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return endpoints.getFirst().model().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return endpoints.getFirst().model().supportedCapabilities();
+    }
+
+    /**
+     * 模型端点
+     *
+     * @param name  端点名称，用于延迟统计，如 modelName@baseUrl
+     * @param model 该端点的流式模型
+     */
+    public record Endpoint(String name, StreamingChatModel model) {
+    }
+
+    /**
+     * 一次对冲调用
+     */
+    private final class HedgedCall {
+
+        private final List<Endpoint> ranked;
+
+        private final ChatRequest chatRequest;
+
+        private final StreamingChatResponseHandler handler;
+
+        /**
+         * 对冲请求在其他线程上发起，需要带上调用方的监控上下文
+         */
+        private final MonitorContext monitorContext = MonitorContextHolder.getContext();
+
+        private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+
+        private final AtomicReference<Attempt> winner = new AtomicReference<>();
+
+        private final AtomicInteger nextEndpoint = new AtomicInteger();
+
+        private final AtomicInteger failedAttempts = new AtomicInteger();
+
+        private volatile ScheduledFuture<?> hedgeTimer;
+
+        private volatile boolean cancelled;
+
+        private HedgedCall(List<Endpoint> ranked, ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            this.ranked = ranked;
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+        }
+
+        private void start(StreamingCancellation outer) {
+            if (outer != null) {
+                outer.onCancel(this::cancelAll);
+            }
+            launchNext();
+        }
+
+        /**
+         * 向下一个端点发起请求，并安排再下一个端点的对冲
+         * 首个请求在调用方线程上发起，之后的对冲和切换请求交给执行器，计时线程和出错的回调线程都不会被阻塞
+         *
+         * @return 是否发起了请求
+         */
+        private boolean launchNext() {
+            if (cancelled || winner.get() != null) {
+                return false;
+            }
+            int index = nextEndpoint.getAndIncrement();
+            if (index >= ranked.size()) {
+                return false;
+            }
+            Attempt attempt = new Attempt(ranked.get(index));
+            attempts.add(attempt);
+            if (index + 1 < ranked.size()) {
+                long delayMillis = latencyTracker.hedgeDelayMillis();
+                hedgeTimer = latencyTracker.scheduler().schedule(() -> {
+                    if (winner.get() == null && !cancelled) {
+                        log.info("首个 token 超过 {} ms 未到达，发起对冲请求", delayMillis);
+                        launchNext();
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            }
+            if (index == 0) {
+                attempt.start();
+                return true;
+            }
+            try {
+                latencyTracker.launcher().execute(attempt::start);
+            } catch (RejectedExecutionException e) {
+                attempt.onError(e);
+            }
+            return true;
+        }
+
+        private void onWin(Attempt attempt) {
+            cancelHedgeTimer();
+            latencyTracker.recordFirstToken(attempt.endpoint.name(), attempt.elapsedMillis());
+            for (Attempt other : attempts) {
+                if (other != attempt) {
+                    other.cancellation.cancel();
+                    latencyTracker.recordLoss(other.endpoint.name(), other.elapsedMillis());
+                }
+            }
+            if (attempts.size() > 1) {
+                log.info("对冲请求结束，胜出端点: {}", attempt.endpoint.name());
+            }
+        }
+
+        private void onAttemptFailed(Attempt attempt, Throwable error) {
+            latencyTracker.recordFailure(attempt.endpoint.name());
+            int failed = failedAttempts.incrementAndGet();
+            log.warn("模型端点请求失败，端点: {}, error: {}", attempt.endpoint.name(), error.getMessage());
+            // 立即切换到下一个端点，不必等对冲计时
+            cancelHedgeTimer();
+            if (launchNext()) {
+                return;
+            }
+            // 没有更多端点且所有请求都失败了，才把错误交给调用方
+            if (failed >= attempts.size() && winner.compareAndSet(null, attempt)) {
+                handler.onError(error);
+            }
+        }
+
+        private void cancelAll() {
+            cancelled = true;
+            cancelHedgeTimer();
+            attempts.forEach(attempt -> attempt.cancellation.cancel());
+        }
+
+        private void cancelHedgeTimer() {
+            ScheduledFuture<?> timer = hedgeTimer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+
+        /**
+         * 向单个端点的一次请求
+         */
+        private final class Attempt implements StreamingChatResponseHandler {
+
+            private final Endpoint endpoint;
+
+            private final StreamingCancellation cancellation = new StreamingCancellation();
+
+            private final long startNanos = System.nanoTime();
+
+            private Attempt(Endpoint endpoint) {
+                this.endpoint = endpoint;
+            }
+
+            private void start() {
+                try {
+                    StreamingCancellation.runWith(cancellation, () -> MonitorContextHolder.runWith(monitorContext,
+                            () -> endpoint.model().chat(chatRequest, this)));
+                } catch (Exception e) {
+                    onError(e);
+                }
+            }
+
+            private long elapsedMillis() {
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            }
+
+            /**
+             * 第一个产出内容的请求成为胜出者，之后只转发胜出者的事件
+             */
+            private boolean claim() {
+                Attempt current = winner.get();
+                if (current == this) {
+                    return true;
+                }
+                if (current == null && !cancelled && winner.compareAndSet(null, this)) {
+                    onWin(this);
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (claim()) {
+                    handler.onPartialResponse(partialResponse);
+                }
+            }
+
+            @Override
+            public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+                if (claim()) {
+                    handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+                }
+            }
+
+            @Override
+            public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+                if (claim()) {
+                    handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                if (claim()) {
+                    handler.onCompleteResponse(completeResponse);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                Attempt current = winner.get();
+                if (current == this) {
+                    handler.onError(error);
+                } else if (current == null && !cancelled) {
+                    onAttemptFailed(this, error);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.jamin.codecube.ai.http;
+
+import com.jamin.codecube.config.AiHttpClientConfig;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.internal.StreamingCancellation;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AI 模型共享 HTTP 客户端池
+ * 每个 AI 服务实例仍然拥有独立的模型对象（请求参数、监听器互不影响），但底层连接池按超时配置共享：
+ * 同一组超时只创建一个 JDK HttpClient，HTTP/2 多路复用、keep-alive 连接和 TLS 会话在所有应用之间复用。
+ * HTTP/2 只用于 https 地址；http 地址（本地或内网模型服务）固定使用 HTTP/1.1，避免 JDK 发起 h2c 升级请求。
+ */
+@Slf4j
+@Component
+public class AiHttpClientPool {
+
+    @Resource
+    private AiHttpClientConfig aiHttpClientConfig;
+
+    /**
+     * 按 (连接超时, 读取超时) 缓存的客户端
+     */
+    private final ConcurrentMap<TimeoutKey, HttpClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * 每个服务地址的并发名额
+     */
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * HTTP 回调与 SSE 解析在虚拟线程上执行，长时间的流式响应不占用平台线程
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private record TimeoutKey(Duration connectTimeout, Duration readTimeout) {
+    }
+
+    /**
+     * 创建新的客户端构建器，每个模型使用独立的构建器实例，build() 时返回共享的客户端
+     */
+    public HttpClientBuilder newBuilder() {
+        return new SharedHttpClientBuilder();
+    }
+
+    /**
+     * 已创建的共享客户端数量
+     */
+    public int size() {
+        return clients.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private HttpClient getClient(Duration connectTimeout, Duration readTimeout) {
+        return clients.computeIfAbsent(new TimeoutKey(connectTimeout, readTimeout), key -> {
+            HttpClient http1 = createJdkClient(key, java.net.http.HttpClient.Version.HTTP_1_1);
+            HttpClient client = aiHttpClientConfig.isHttp2()
+                    ? new SchemeRoutingHttpClient(createJdkClient(key, java.net.http.HttpClient.Version.HTTP_2), http1)
+                    : http1;
+            log.info("创建共享 AI HTTP 客户端，连接超时: {}，读取超时: {}", key.connectTimeout(), key.readTimeout());
+            int maxConcurrent = aiHttpClientConfig.getMaxConcurrentRequestsPerHost();
+            return maxConcurrent > 0 ? new HostLimitedHttpClient(client) : client;
+        });
+    }
+
+    private HttpClient createJdkClient(TimeoutKey key, java.net.http.HttpClient.Version version) {
+        java.net.http.HttpClient.Builder jdkBuilder = java.net.http.HttpClient.newBuilder()
+                .version(version)
+                .executor(executor);
+        return JdkHttpClient.builder()
+                .httpClientBuilder(jdkBuilder)
+                .connectTimeout(key.connectTimeout())
+                .readTimeout(key.readTimeout())
+                .build();
+    }
+
+    /**
+     * 轻量构建器：只记录超时配置，build() 时从池中取共享客户端
+     */
+    private class SharedHttpClientBuilder implements HttpClientBuilder {
+
+        private Duration connectTimeout;
+
+        private Duration readTimeout;
+
+        @Override
+        public Duration connectTimeout() {
+            return connectTimeout;
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            this.connectTimeout = timeout;
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return readTimeout;
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            this.readTimeout = timeout;
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return getClient(connectTimeout, readTimeout);
+        }
+    }
+
+    /**
+     * 按协议选择客户端：https 使用 HTTP/2（协商失败时自动回退），http 使用 HTTP/1.1
+     */
+    private static class SchemeRoutingHttpClient implements HttpClient {
+
+        private final HttpClient tls;
+
+        private final HttpClient cleartext;
+
+        private SchemeRoutingHttpClient(HttpClient tls, HttpClient cleartext) {
+            this.tls = tls;
+            this.cleartext = cleartext;
+        }
+
+        @Override
+        public SuccessfulHttpResponse execute(HttpRequest request) throws HttpException, RuntimeException {
+            return select(request).execute(request);
+        }
+
+        @Override
+        public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+            select(request).execute(request, parser, listener);
+        }
+
+        private HttpClient select(HttpRequest request) {
+            return "https".equalsIgnoreCase(URI.create(request.url()).getScheme()) ? tls : cleartext;
+        }
+    }
+
+    /**
+     * 限制单个服务地址并发请求数的客户端，流式请求在连接关闭或出错时归还名额
+     */
+    private class HostLimitedHttpClient implements HttpClient {
+
+        private final HttpClient delegate;
+
+        private HostLimitedHttpClient(HttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public SuccessfulHttpResponse execute(HttpRequest request) throws HttpException, RuntimeException {
+            Semaphore permits = acquire(request);
+            try {
+                return delegate.execute(request);
+            } finally {
+                permits.release();
+            }
+        }
+
+        /**
+         * 流式请求：有空闲名额时直接发送；否则在虚拟线程上等待名额，不阻塞调用方线程
+         */
+        @Override
+        public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+            Semaphore permits = permitsFor(request);
+            // 无参 tryAcquire 会插队，hasQueuedThreads 保证已在等待的请求优先
+            if (!permits.hasQueuedThreads() && permits.tryAcquire()) {
+                executeWithPermit(permits, request, parser, listener);
+                return;
+            }
+            StreamingCancellation cancellation = StreamingCancellation.current();
+            executor.execute(() -> {
+                try {
+                    awaitPermit(permits, request);
+                } catch (RuntimeException e) {
+                    listener.onError(e);
+                    return;
+                }
+                if (cancellation != null && cancellation.isCancelled()) {
+                    // 等待名额期间已取消，不再发送请求
+                    permits.release();
+                    return;
+                }
+                try {
+                    executeWithPermit(permits, request, parser, listener);
+                } catch (RuntimeException e) {
+                    listener.onError(e);
+                }
+            });
+        }
+
+        private void executeWithPermit(Semaphore permits, HttpRequest request, ServerSentEventParser parser,
+                                       ServerSentEventListener listener) {
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            };
+            try {
+                delegate.execute(request, parser, new ServerSentEventListener() {
+                    @Override
+                    public void onOpen(SuccessfulHttpResponse response) {
+                        listener.onOpen(response);
+                    }
+
+                    @Override
+                    public void onEvent(ServerSentEvent event) {
+                        listener.onEvent(event);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        release.run();
+                        listener.onError(throwable);
+                    }
+
+                    @Override
+                    public void onClose() {
+                        release.run();
+                        listener.onClose();
+                    }
+                });
+            } catch (RuntimeException e) {
+                release.run();
+                throw e;
+            }
+        }
+
+        private Semaphore acquire(HttpRequest request) {
+            Semaphore permits = permitsFor(request);
+            awaitPermit(permits, request);
+            return permits;
+        }
+
+        private Semaphore permitsFor(HttpRequest request) {
+            return hostPermits.computeIfAbsent(hostOf(request),
+                    key -> new Semaphore(aiHttpClientConfig.getMaxConcurrentRequestsPerHost(), true));
+        }
+
+        /**
+         * 最多等待 acquire-timeout-seconds 秒
+         */
+        private void awaitPermit(Semaphore permits, HttpRequest request) {
+            try {
+                if (!permits.tryAcquire(aiHttpClientConfig.getAcquireTimeoutSeconds(), TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("AI 服务并发请求已达上限: " + hostOf(request));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待 AI 服务并发名额时被中断: " + hostOf(request), e);
+            }
+        }
+
+        private String hostOf(HttpRequest request) {
+            URI uri = URI.create(request.url());
+            return uri.getHost() + ":" + uri.getPort();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.jamin.codecube.ai.limiter;
+
+import com.jamin.codecube.config.AiConcurrencyLimitConfig;
+import com.jamin.codecube.exception.BusinessException;
+import com.jamin.codecube.exception.ErrorCode;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RateLimitException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 单个模型的自适应并发限制器（AIMD）+ 熔断器
+ *     1. 在途请求数小于上限时直接放行；否则进入有界队列等待，队列满或等待超时则拒绝
+ *     2. 请求成功且在途请求数不低于上限的一半时：上限 += 1 / 上限（约每轮满并发成功后加 1），
+ *        负载很低时的成功说明不了模型能承受更高并发，不增长；遇到 429、超时或 5xx：上限 *= 收缩比例
+ *     3. 连续失败达到阈值后熔断，熔断期内直接拒绝；到期后只放行一个探测请求，由探测请求自身的结果决定恢复还是继续熔断，
+ *        熔断前已在途的请求结束时不影响熔断状态
+ * 排队不占用调用线程：许可释放时取出下一个等待者，交给分发执行器执行，不在释放许可的线程（模型回调线程）上发起请求。
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 请求结果
+     */
+    public enum Outcome {
+        /**
+         * 成功
+         */
+        SUCCESS,
+        /**
+         * 过载信号（429、超时、5xx），收缩上限并计入熔断
+         */
+        DROPPED,
+        /**
+         * 与负载无关的结束（参数错误、调用方取消），不调整上限
+         */
+        IGNORED
+    }
+
+    private enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+
+    private final AiConcurrencyLimitConfig config;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Executor dispatcher;
+
+    private final Consumer<String> rejectionRecorder;
+
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+
+    private double limit;
+
+    private int inFlight;
+
+    private int consecutiveFailures;
+
+    private CircuitState circuitState = CircuitState.CLOSED;
+
+    private long openedAtNanos;
+
+    /**
+     * 半开状态下放行的探测请求的许可
+     */
+    private Permit probe;
+
+    /**
+     * @param name              限制器名称（模型名）
+     * @param config            配置
+     * @param scheduler         排队超时计时
+     * @param dispatcher        释放许可后执行排队请求、通知被拒绝的排队请求
+     * @param rejectionRecorder 拒绝时回调，参数为拒绝原因
+     */
+    public AdaptiveConcurrencyLimiter(String name, AiConcurrencyLimitConfig config, ScheduledExecutorService scheduler,
+                                      Executor dispatcher, Consumer<String> rejectionRecorder) {
+        this.name = name;
+        this.config = config;
+        this.scheduler = scheduler;
+        this.dispatcher = dispatcher;
+        this.rejectionRecorder = rejectionRecorder;
+        this.limit = Math.min(Math.max(config.getInitialLimit(), config.getMinLimit()), config.getMaxLimit());
+    }
+
+    /**
+     * 提交请求，获得许可后执行 task，被拒绝时执行 onRejected
+     * task 拿到的许可在请求结束时必须调用 {@link Permit#release(Outcome)}，重复调用会被忽略
+     */
+    public void submit(Consumer<Permit> task, Consumer<BusinessException> onRejected) {
+        String rejectReason = null;
+        Waiter waiter = null;
+        Permit permit = null;
+        synchronized (this) {
+            refreshCircuit();
+            if (circuitState == CircuitState.OPEN || (circuitState == CircuitState.HALF_OPEN && probe != null)) {
+                rejectReason = "circuit_open";
+            } else if (circuitState == CircuitState.HALF_OPEN) {
+                // 熔断前在途的请求可能还没结束，探测请求不受上限约束
+                inFlight++;
+                permit = new Permit();
+                probe = permit;
+            } else if (inFlight < currentLimit() && queue.isEmpty()) {
+                inFlight++;
+                permit = new Permit();
+            } else if (queue.size() < config.getMaxQueueSize()) {
+                waiter = new Waiter(task, onRejected);
+                queue.addLast(waiter);
+            } else {
+                rejectReason = "queue_full";
+            }
+        }
+        if (rejectReason != null) {
+            reject(onRejected, rejectReason);
+            return;
+        }
+        if (permit != null) {
+            task.accept(permit);
+            return;
+        }
+        Waiter queued = waiter;
+        scheduler.schedule(() -> {
+            boolean removed;
+            synchronized (this) {
+                removed = queue.remove(queued);
+            }
+            if (removed) {
+                reject(queued.onRejected, "queue_timeout");
+            }
+        }, config.getQueueTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 释放许可并按结果调整上限和熔断状态，然后放行排队中的请求
+     */
+    private void release(Permit permit, Outcome outcome) {
+        List<Waiter> toReject = new ArrayList<>();
+        List<Runnable> toRun = new ArrayList<>();
+        synchronized (this) {
+            int inFlightBeforeRelease = inFlight--;
+            boolean isProbe = permit == probe;
+            if (isProbe) {
+                probe = null;
+            }
+            // 半开期间只有探测请求能改变熔断状态
+            boolean decidesCircuit = circuitState != CircuitState.HALF_OPEN || isProbe;
+            switch (outcome) {
+                case SUCCESS -> {
+                    if (decidesCircuit) {
+                        consecutiveFailures = 0;
+                    }
+                    if (isProbe && circuitState == CircuitState.HALF_OPEN) {
+                        circuitState = CircuitState.CLOSED;
+                        log.info("模型 {} 探测请求成功，熔断恢复", name);
+                    }
+                    if (circuitState == CircuitState.CLOSED && inFlightBeforeRelease >= limit / 2) {
+                        limit = Math.min(config.getMaxLimit(), limit + 1.0 / limit);
+                    }
+                }
+                case DROPPED -> {
+                    limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+                    if (decidesCircuit) {
+                        consecutiveFailures++;
+                        if (isProbe || consecutiveFailures >= config.getFailureThreshold()) {
+                            circuitState = CircuitState.OPEN;
+                            openedAtNanos = System.nanoTime();
+                            log.warn("模型 {} 连续失败 {} 次，熔断 {} 秒", name, consecutiveFailures, config.getOpenSeconds());
+                        }
+                    }
+                }
+                case IGNORED -> {
+                    if (isProbe && circuitState == CircuitState.HALF_OPEN) {
+                        // 探测请求没有给出结论，回到熔断状态等待下一次探测
+                        circuitState = CircuitState.OPEN;
+                    }
+                }
+            }
+            if (circuitState == CircuitState.OPEN) {
+                toReject.addAll(queue);
+                queue.clear();
+            } else if (circuitState == CircuitState.CLOSED) {
+                while (!queue.isEmpty() && inFlight < currentLimit()) {
+                    inFlight++;
+                    Waiter waiter = queue.pollFirst();
+                    Permit next = new Permit();
+                    toRun.add(() -> waiter.task.accept(next));
+                }
+            }
+        }
+        for (Waiter waiter : toReject) {
+            dispatch(() -> reject(waiter.onRejected, "circuit_open"));
+        }
+        toRun.forEach(this::dispatch);
+    }
+
+    public synchronized int getLimit() {
+        return currentLimit();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    public synchronized boolean isCircuitOpen() {
+        refreshCircuit();
+        return circuitState == CircuitState.OPEN;
+    }
+
+    /**
+     * 判断模型错误是否为过载信号：429、5xx 或超时
+     */
+    public static boolean isOverloadSignal(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof RateLimitException
+                    || current instanceof HttpTimeoutException
+                    || current instanceof SocketTimeoutException
+                    || current instanceof TimeoutException) {
+                return true;
+            }
+            if (current instanceof HttpException httpException) {
+                int statusCode = httpException.statusCode();
+                return statusCode == 429 || statusCode >= 500;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private int currentLimit() {
+        return circuitState == CircuitState.HALF_OPEN ? 1 : (int) limit;
+    }
+
+    /**
+     * 熔断到期后转为半开，放行一个探测请求
+     */
+    private void refreshCircuit() {
+        if (circuitState == CircuitState.OPEN
+                && System.nanoTime() - openedAtNanos >= TimeUnit.SECONDS.toNanos(config.getOpenSeconds())) {
+            circuitState = CircuitState.HALF_OPEN;
+        }
+    }
+
+    /**
+     * 交给分发执行器执行；执行器已关闭时在当前线程执行，排队的请求不能丢
+     */
+    private void dispatch(Runnable task) {
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private void reject(Consumer<BusinessException> onRejected, String reason) {
+        rejectionRecorder.accept(reason);
+        String message = "circuit_open".equals(reason) ? "AI 服务暂时不可用，请稍后重试" : "AI 服务繁忙，请稍后重试";
+        onRejected.accept(new BusinessException(ErrorCode.TOO_MANY_REQUEST, message));
+    }
+
+    private record Waiter(Consumer<Permit> task, Consumer<BusinessException> onRejected) {
+    }
+
+    /**
+     * 一次请求持有的许可
+     */
+    public final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        /**
+         * 请求结束时释放许可，并把结果反馈给限制器；只有第一次调用生效
+         */
+        public void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release(this, outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.jamin.codecube.ai.limiter;
+
+import com.jamin.codecube.monitor.MonitorContext;
+import com.jamin.codecube.monitor.MonitorContextHolder;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.internal.StreamingCancellation;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.Set;
+
+/**
+ * 受并发限制的流式模型
+ * 请求先向模型的 {@link AdaptiveConcurrencyLimiter} 申请许可，被拒绝时以 TOO_MANY_REQUEST 回调 onError，不会到达模型服务；
+ * 请求完成、失败或被调用方取消时释放许可，并把结果反馈给限制器。
+ */
+public class ConcurrencyLimitedStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedStreamingChatModel(StreamingChatModel delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        // 排队的请求由限制器的分发执行器发起，需要带上调用方的取消令牌和监控上下文
+        StreamingCancellation cancellation = StreamingCancellation.current();
+        MonitorContext monitorContext = MonitorContextHolder.getContext();
+        limiter.submit(permit -> dispatch(chatRequest, handler, permit, cancellation, monitorContext), handler::onError);
+    }
+
+    private void dispatch(ChatRequest chatRequest, StreamingChatResponseHandler handler,
+                          AdaptiveConcurrencyLimiter.Permit permit, StreamingCancellation cancellation,
+                          MonitorContext monitorContext) {
+        LimitedHandler limitedHandler = new LimitedHandler(handler, permit);
+        if (cancellation != null) {
+            // 取消后底层不再回调，只能在这里释放许可
+            cancellation.onCancel(() -> permit.release(AdaptiveConcurrencyLimiter.Outcome.IGNORED));
+            if (cancellation.isCancelled()) {
+                return;
+            }
+        }
+        try {
+            StreamingCancellation.runWith(cancellation, () -> MonitorContextHolder.runWith(monitorContext,
+                    () -> delegate.chat(chatRequest, limitedHandler)));
+        } catch (Exception e) {
+            limitedHandler.onError(e);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    /**
+     * 转发所有事件，结束时释放一次许可
+     */
+    private final class LimitedHandler implements StreamingChatResponseHandler {
+
+        private final StreamingChatResponseHandler handler;
+
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+
+        private LimitedHandler(StreamingChatResponseHandler handler, AdaptiveConcurrencyLimiter.Permit permit) {
+            this.handler = handler;
+            this.permit = permit;
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            handler.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+            handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+        }
+
+        @Override
+        public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+            handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            permit.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+            handler.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            permit.release(AdaptiveConcurrencyLimiter.isOverloadSignal(error)
+                    ? AdaptiveConcurrencyLimiter.Outcome.DROPPED
+                    : AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+            handler.onError(error);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.jamin.codecube.ai.limiter;
+
+import com.jamin.codecube.config.AiConcurrencyLimitConfig;
+import com.jamin.codecube.monitor.AiModelMetricsCollector;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 按模型名称维护并发限制器
+ * 模型实例按应用多例创建，同一模型的所有实例共享一个限制器，才能反映模型服务整体的负载
+ */
+@Component
+public class ModelConcurrencyLimiterRegistry {
+
+    @Autowired
+    private AiConcurrencyLimitConfig aiConcurrencyLimitConfig;
+
+    @Autowired
+    private AiModelMetricsCollector aiModelMetricsCollector;
+
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 放行排队请求的执行器，请求在虚拟线程上发起，不占用释放许可的模型回调线程
+     */
+    private ExecutorService dispatcher;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-limiter-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-limiter-dispatch-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        dispatcher.shutdown();
+    }
+
+    /**
+     * 为模型套上并发限制，未启用时原样返回
+     */
+    public StreamingChatModel wrap(String modelName, StreamingChatModel model) {
+        if (!aiConcurrencyLimitConfig.isEnabled()) {
+            return model;
+        }
+        return new ConcurrencyLimitedStreamingChatModel(model, getLimiter(modelName));
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter(String modelName) {
+        return limiters.computeIfAbsent(modelName, name -> {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(name, aiConcurrencyLimitConfig,
+                    scheduler, dispatcher, reason -> aiModelMetricsCollector.recordConcurrencyRejection(name, reason));
+            aiModelMetricsCollector.registerConcurrencyGauges(name, limiter);
+            return limiter;
+        });
+    }
+}
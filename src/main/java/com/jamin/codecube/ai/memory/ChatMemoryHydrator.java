@@ -0,0 +1,216 @@
+package com.jamin.codecube.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import com.jamin.codecube.config.RedisChatMemoryStoreConfig;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.monitor.ChatHistoryMetricsCollector;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RBucketAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntSupplier;
+
+/**
+ * 会话记忆懒加载
+ * 会话记忆存储本身带 TTL 持久化了对话窗口，AI 服务实例被 Caffeine 淘汰后无需每次都从 MySQL 重建。
+ * 从 MySQL 加载成功后写入一个版本戳，下次创建服务实例时如果版本戳匹配且记忆仍在 Redis 中，直接复用；
+ * 版本戳缺失、不匹配（代码生成类型或加载条数变化）或记忆已过期时才回源 MySQL。
+ * 每次写入、更新、删除对话记录都会递增应用的修订号，版本戳记录的是加载时的修订号，因此数据库在加载之后
+ * 发生的任何变化（取消、出错、删除、其他实例的写入）都会让版本戳失效；只有生成正常结束时，
+ * 记忆与数据库写入的内容一致，才把版本戳推进到最新修订号（见 {@link #resync(long)}）。
+ */
+@Component
+@Slf4j
+public class ChatMemoryHydrator {
+
+    private static final String STAMP_KEY_PREFIX = "chat_memory:stamp:";
+
+    private static final String REVISION_KEY_PREFIX = "chat_memory:revision:";
+
+    /**
+     * 版本戳格式版本，加载逻辑变化时递增使旧的窗口全部失效
+     */
+    private static final String STAMP_VERSION = "v2";
+
+    /**
+     * 版本戳与修订号的分隔符
+     */
+    private static final String REVISION_SEPARATOR = "@";
+
+    private static final String RESULT_HIT = "hit";
+
+    private static final String RESULT_MISS = "miss";
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private RedisChatMemoryStoreConfig redisChatMemoryStoreConfig;
+
+    @Autowired
+    private ChatHistoryMetricsCollector chatHistoryMetricsCollector;
+
+    /**
+     * 版本戳、修订号和记忆是否存在的一次读取结果
+     */
+    record StampState(String storedStamp, long revision, boolean memoryExists) {
+    }
+
+    /**
+     * 保证应用的会话记忆已加载
+     *
+     * @param appId       应用 ID（即会话记忆 ID）
+     * @param codeGenType 代码生成类型
+     * @param maxCount    从数据库加载的最大条数
+     * @param loader      从数据库加载到记忆的操作，返回加载条数
+     * @return 是否复用了 Redis 中已有的记忆
+     */
+    public boolean hydrate(long appId, CodeGenTypeEnum codeGenType, int maxCount, IntSupplier loader) {
+        String stamp = buildStamp(codeGenType, maxCount);
+        StampState state = readState(appId);
+        if (state != null && isFresh(stamp, state)) {
+            chatHistoryMetricsCollector.recordMemoryHydration(RESULT_HIT);
+            log.info("Redis 中已有会话记忆，跳过数据库加载，appId: {}", appId);
+            return true;
+        }
+        chatHistoryMetricsCollector.recordMemoryHydration(RESULT_MISS);
+        int loadedCount = loader.getAsInt();
+        if (loadedCount > 0 && state != null) {
+            // 使用加载前读到的修订号，加载期间有新的写入时版本戳自然不匹配，下次重新加载
+            writeStamp(appId, sealValue(stamp, state.revision()));
+        }
+        return false;
+    }
+
+    /**
+     * 对话记录发生写入、更新或删除后调用，递增修订号使已有的版本戳失效
+     *
+     * @param appId 应用 ID
+     */
+    public void markWritten(long appId) {
+        try {
+            RAtomicLong revision = redissonClient.getAtomicLong(buildRevisionKey(appId));
+            revision.incrementAndGet();
+            long ttl = redisChatMemoryStoreConfig.getTtl();
+            if (ttl > 0) {
+                revision.expire(Duration.ofSeconds(ttl));
+            }
+        } catch (Exception e) {
+            log.warn("递增对话记录修订号失败，删除版本戳，appId: {}, error: {}", appId, e.getMessage());
+            invalidate(appId);
+        }
+    }
+
+    /**
+     * 生成正常结束后调用：记忆已包含本轮写入的内容，把版本戳推进到最新修订号，下次创建服务实例时可直接复用
+     * 没有版本戳（从未加载或已失效）时不做处理
+     *
+     * @param appId 应用 ID
+     */
+    public void resync(long appId) {
+        try {
+            RBucket<String> stampBucket = redissonClient.getBucket(buildStampKey(appId), StringCodec.INSTANCE);
+            String storedStamp = stampBucket.get();
+            if (StrUtil.isBlank(storedStamp)) {
+                return;
+            }
+            RAtomicLong revision = redissonClient.getAtomicLong(buildRevisionKey(appId));
+            writeStamp(appId, sealValue(StrUtil.subBefore(storedStamp, REVISION_SEPARATOR, true), revision.get()));
+        } catch (Exception e) {
+            log.warn("推进会话记忆版本戳失败，appId: {}, error: {}", appId, e.getMessage());
+            invalidate(appId);
+        }
+    }
+
+    /**
+     * 使应用的版本戳失效，下次创建服务实例时从数据库重新加载
+     *
+     * @param appId 应用 ID
+     */
+    public void invalidate(long appId) {
+        try {
+            redissonClient.getBucket(buildStampKey(appId), StringCodec.INSTANCE).delete();
+        } catch (Exception e) {
+            log.warn("删除会话记忆版本戳失败，appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+
+    /**
+     * 版本戳与当前修订号一致，且记忆仍在 Redis 中
+     */
+    static boolean isFresh(String stamp, StampState state) {
+        return state.memoryExists() && Objects.equals(sealValue(stamp, state.revision()), state.storedStamp());
+    }
+
+    static String sealValue(String stamp, long revision) {
+        return stamp + REVISION_SEPARATOR + revision;
+    }
+
+    /**
+     * 一次往返同时读取版本戳（顺带续期）、修订号和记忆键是否存在，读取失败时返回 null
+     */
+    private StampState readState(long appId) {
+        try {
+            long ttl = redisChatMemoryStoreConfig.getTtl();
+            RBatch batch = redissonClient.createBatch();
+            RBucketAsync<String> stampBucket = batch.getBucket(buildStampKey(appId), StringCodec.INSTANCE);
+            if (ttl > 0) {
+                stampBucket.getAndExpireAsync(Duration.ofSeconds(ttl));
+            } else {
+                stampBucket.getAsync();
+            }
+            batch.getAtomicLong(buildRevisionKey(appId)).getAsync();
+            batch.getKeys().countExistsAsync(RedisListChatMemoryStore.buildKey(appId));
+            if (ttl > 0) {
+                // 修订号与版本戳一起续期，避免修订号先过期归零后与旧版本戳重新匹配
+                batch.getAtomicLong(buildRevisionKey(appId)).expireAsync(Duration.ofSeconds(ttl));
+            }
+            BatchResult<?> result = batch.execute();
+            List<?> responses = result.getResponses();
+            Object storedStamp = responses.get(0);
+            Object revision = responses.get(1);
+            Object memoryExists = responses.get(2);
+            return new StampState(storedStamp == null ? null : storedStamp.toString(),
+                    revision instanceof Number number ? number.longValue() : 0L,
+                    memoryExists instanceof Number number && number.longValue() > 0);
+        } catch (Exception e) {
+            log.warn("读取会话记忆版本戳失败，回源数据库加载，appId: {}, error: {}", appId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeStamp(long appId, String value) {
+        try {
+            long ttl = redisChatMemoryStoreConfig.getTtl();
+            if (ttl > 0) {
+                redissonClient.<String>getBucket(buildStampKey(appId), StringCodec.INSTANCE).set(value, Duration.ofSeconds(ttl));
+            } else {
+                redissonClient.<String>getBucket(buildStampKey(appId), StringCodec.INSTANCE).set(value);
+            }
+        } catch (Exception e) {
+            log.warn("写入会话记忆版本戳失败，appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+
+    private String buildStamp(CodeGenTypeEnum codeGenType, int maxCount) {
+        return StrUtil.format("{}:{}:{}", STAMP_VERSION, codeGenType.getValue(), maxCount);
+    }
+
+    private String buildStampKey(long appId) {
+        return STAMP_KEY_PREFIX + appId;
+    }
+
+    private String buildRevisionKey(long appId) {
+        return REVISION_KEY_PREFIX + appId;
+    }
+}
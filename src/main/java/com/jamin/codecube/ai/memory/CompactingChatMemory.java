@@ -0,0 +1,243 @@
+package com.jamin.codecube.ai.memory;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.jamin.codecube.config.ChatMemoryCompactionConfig;
+import com.jamin.codecube.monitor.AiModelMetricsCollector;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压缩较早轮次的会话记忆
+ * Vue 工程模式下记忆窗口里大部分是 writeFile 等工具调用携带的完整文件内容，每一轮工具调用都会作为输入 token 重新发送。
+ * 读取记忆时，最近 keepRecentTurns 轮保持原样，更早的轮次：
+ *     1. 工具调用参数中的长字符串替换为引用（路径 + 内容哈希 + 大小），参数仍是合法 JSON
+ *     2. 工具结果的长文本替换为引用，引用中带上对应工具调用的文件路径
+ *     3. 较长的 AI 回复截断为开头部分
+ * 工具调用请求的 id、名称以及工具结果的 id 保持不变，tool_request/tool_result 的配对关系不受影响。
+ * 底层存储中保存的仍是完整消息，压缩只影响发送给模型的内容。
+ */
+@Slf4j
+public class CompactingChatMemory implements ChatMemory {
+
+    private static final String PATH_ARGUMENT = "relativeFilePath";
+
+    private static final int HASH_LENGTH = 12;
+
+    private final ChatMemory delegate;
+
+    private final ChatMemoryCompactionConfig config;
+
+    private final AiModelMetricsCollector aiModelMetricsCollector;
+
+    public CompactingChatMemory(ChatMemory delegate, ChatMemoryCompactionConfig config,
+                                AiModelMetricsCollector aiModelMetricsCollector) {
+        this.delegate = delegate;
+        this.config = config;
+        this.aiModelMetricsCollector = aiModelMetricsCollector;
+    }
+
+    @Override
+    public Object id() {
+        return delegate.id();
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        delegate.add(message);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        List<ChatMessage> messages = delegate.messages();
+        if (!config.isEnabled()) {
+            return messages;
+        }
+        int boundary = findCompactionBoundary(messages, config.getKeepRecentTurns());
+        if (boundary <= 0) {
+            return messages;
+        }
+        Map<String, String> pathsByToolCallId = collectPaths(messages, boundary);
+        List<ChatMessage> compacted = new ArrayList<>(messages.size());
+        long savedTokens = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            if (i < boundary) {
+                ChatMessage compactedMessage = compact(message, pathsByToolCallId);
+                if (compactedMessage != message) {
+                    savedTokens += estimateTokens(message) - estimateTokens(compactedMessage);
+                }
+                message = compactedMessage;
+            }
+            compacted.add(message);
+        }
+        if (savedTokens > 0) {
+            aiModelMetricsCollector.recordCompactionSavings(savedTokens);
+            log.debug("会话记忆压缩，memoryId: {}, 压缩范围: {}/{}, 预计节省输入 token: {}", id(), boundary, messages.size(), savedTokens);
+        }
+        return compacted;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    /**
+     * 找到需要保持原样的起始位置：倒数第 keepRecentTurns 条用户消息
+     *
+     * @return 该位置之前的消息需要压缩；不足 keepRecentTurns 轮时返回 0
+     */
+    static int findCompactionBoundary(List<ChatMessage> messages, int keepRecentTurns) {
+        int turns = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage && ++turns >= keepRecentTurns) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 收集压缩范围内工具调用的文件路径，按工具调用 id 索引，用于工具结果的引用
+     */
+    static Map<String, String> collectPaths(List<ChatMessage> messages, int boundary) {
+        Map<String, String> paths = new HashMap<>();
+        for (int i = 0; i < boundary; i++) {
+            if (messages.get(i) instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    String path = extractPath(request.arguments());
+                    if (request.id() != null && path != null) {
+                        paths.put(request.id(), path);
+                    }
+                }
+            }
+        }
+        return paths;
+    }
+
+    ChatMessage compact(ChatMessage message, Map<String, String> pathsByToolCallId) {
+        if (message instanceof AiMessage aiMessage) {
+            return compactAiMessage(aiMessage);
+        }
+        if (message instanceof ToolExecutionResultMessage resultMessage) {
+            String text = resultMessage.text();
+            if (text != null && text.length() >= config.getMinPayloadChars()) {
+                return ToolExecutionResultMessage.from(resultMessage.id(), resultMessage.toolName(),
+                        buildReference(pathsByToolCallId.get(resultMessage.id()), text));
+            }
+        }
+        return message;
+    }
+
+    private ChatMessage compactAiMessage(AiMessage aiMessage) {
+        String text = aiMessage.text();
+        boolean changed = false;
+        if (text != null && text.length() > config.getMaxAiTextChars()) {
+            text = text.substring(0, config.getMaxAiTextChars())
+                    + "…[已省略 " + (text.length() - config.getMaxAiTextChars()) + " 字]";
+            changed = true;
+        }
+        if (!aiMessage.hasToolExecutionRequests()) {
+            return changed ? AiMessage.from(text) : aiMessage;
+        }
+        List<ToolExecutionRequest> requests = new ArrayList<>(aiMessage.toolExecutionRequests().size());
+        for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+            String arguments = compactArguments(request.arguments());
+            if (!arguments.equals(request.arguments())) {
+                changed = true;
+                request = ToolExecutionRequest.builder()
+                        .id(request.id())
+                        .name(request.name())
+                        .arguments(arguments)
+                        .build();
+            }
+            requests.add(request);
+        }
+        if (!changed) {
+            return aiMessage;
+        }
+        return text == null ? AiMessage.from(requests) : AiMessage.from(text, requests);
+    }
+
+    /**
+     * 把工具参数 JSON 中的长字符串替换为引用，参数不是 JSON 对象时原样返回
+     */
+    private String compactArguments(String arguments) {
+        if (arguments == null || arguments.length() < config.getMinPayloadChars() || !JSONUtil.isTypeJSONObject(arguments)) {
+            return arguments;
+        }
+        JSONObject json = JSONUtil.parseObj(arguments);
+        String path = json.getStr(PATH_ARGUMENT);
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : json.entrySet()) {
+            if (entry.getValue() instanceof String value && value.length() >= config.getMinPayloadChars()) {
+                entry.setValue(buildReference(path, value));
+                changed = true;
+            }
+        }
+        return changed ? json.toString() : arguments;
+    }
+
+    /**
+     * 工具参数中的文件路径，参数不是 JSON 对象或没有路径时返回 null
+     */
+    private static String extractPath(String arguments) {
+        if (arguments == null || !JSONUtil.isTypeJSONObject(arguments)) {
+            return null;
+        }
+        try {
+            return JSONUtil.parseObj(arguments).getStr(PATH_ARGUMENT);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String buildReference(String path, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String hash = DigestUtil.sha256Hex(bytes).substring(0, HASH_LENGTH);
+        if (path == null) {
+            return "[已压缩] sha256:" + hash + "，" + bytes.length + " 字节";
+        }
+        return "[已压缩] " + path + " sha256:" + hash + "，" + bytes.length + " 字节，如需查看请重新读取文件";
+    }
+
+    /**
+     * 粗略估算 token 数：ASCII 字符按 4 个一个 token，其余字符各算一个
+     */
+    static long estimateTokens(ChatMessage message) {
+        String text = switch (message) {
+            case AiMessage aiMessage -> {
+                StringBuilder builder = new StringBuilder(aiMessage.text() == null ? "" : aiMessage.text());
+                if (aiMessage.hasToolExecutionRequests()) {
+                    aiMessage.toolExecutionRequests().forEach(request -> builder.append(request.arguments()));
+                }
+                yield builder.toString();
+            }
+            case ToolExecutionResultMessage resultMessage -> resultMessage.text();
+            default -> "";
+        };
+        long ascii = 0;
+        long others = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                others++;
+            }
+        }
+        return (ascii + 3) / 4 + others;
+    }
+}
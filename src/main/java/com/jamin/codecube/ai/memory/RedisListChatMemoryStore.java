@@ -0,0 +1,318 @@
+package com.jamin.codecube.ai.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jamin.codecube.config.RedisChatMemoryStoreConfig;
+import com.jamin.codecube.monitor.ChatHistoryMetricsCollector;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RListAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 Redis List 的增量会话记忆存储
+ * MessageWindowChatMemory 每次 add 都会把完整的消息列表交给 updateMessages，
+ * RedisChatMemoryStore 因此每次都重写整个 JSON；Vue 工程模式一次生成几十次工具调用，每次都要重写包含完整文件内容的记忆。
+ * 这里每条消息是 List 中的一个元素，和上次读到的列表对比后只执行差量操作，并在一个批次中提交：
+ *     1. 窗口淘汰：头部淘汰用 LTRIM，系统消息之后的淘汰先 LSET 为删除标记再 LREM
+ *     2. 新消息：RPUSH 追加
+ * 无法识别为“删除一段 + 尾部追加”的变化（如清空重建）时退化为整体重写。写入批次以 MULTI/EXEC 原子执行，
+ * 不会留下只执行了一半的差量。
+ * MessageWindowChatMemory 每次 add 之前都会读取完整列表，本地已同步的列表只需一次 LLEN + LINDEX 校验
+ * 长度和末尾元素，一致时直接返回，不再每次 LRANGE 整个列表。
+ */
+@Component
+@Slf4j
+public class RedisListChatMemoryStore implements ChatMemoryStore {
+
+    private static final String KEY_PREFIX = "chat_memory:list:";
+
+    /**
+     * 删除中间元素时使用的占位标记
+     */
+    private static final String DELETED_MARKER = "__deleted__";
+
+    /**
+     * 系统消息之后最多逐条删除的条数，超过则整体重写更划算
+     */
+    private static final int MAX_MIDDLE_REMOVALS = 4;
+
+    private static final String WRITE_MODE_APPEND = "append";
+
+    private static final String WRITE_MODE_REWRITE = "rewrite";
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private RedisChatMemoryStoreConfig redisChatMemoryStoreConfig;
+
+    @Autowired
+    private ChatHistoryMetricsCollector chatHistoryMetricsCollector;
+
+    /**
+     * 每个记忆最近一次与 Redis 同步的消息列表，用于计算差量和免去重复读取
+     */
+    private final Cache<String, Synced> syncedMessages = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    /**
+     * 每个记忆自上次统计以来写入 Redis 的字节数
+     */
+    private final ConcurrentMap<String, LongAdder> pendingBytes = new ConcurrentHashMap<>();
+
+    /**
+     * 已同步的消息列表及其末尾元素的 JSON（列表为空时为空字符串）
+     */
+    private record Synced(List<ChatMessage> messages, String lastJson) {
+    }
+
+    /**
+     * 会话记忆在 Redis 中的键
+     *
+     * @param memoryId 记忆 ID
+     * @return Redis 键
+     */
+    public static String buildKey(Object memoryId) {
+        return KEY_PREFIX + memoryId;
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String key = buildKey(memoryId);
+        Synced synced = syncedMessages.getIfPresent(key);
+        if (synced != null && matchesRedis(key, synced)) {
+            return new ArrayList<>(synced.messages());
+        }
+        List<String> jsonList = redissonClient.<String>getList(key, StringCodec.INSTANCE).readAll();
+        List<ChatMessage> messages = new ArrayList<>(jsonList.size());
+        for (String json : jsonList) {
+            messages.add(ChatMessageDeserializer.messageFromJson(json));
+        }
+        syncedMessages.put(key, new Synced(List.copyOf(messages), jsonList.isEmpty() ? "" : jsonList.getLast()));
+        return messages;
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String key = buildKey(memoryId);
+        Synced previous = syncedMessages.getIfPresent(key);
+        try {
+            String lastJson = previous == null ? null : applyDelta(key, previous, messages);
+            if (lastJson == null) {
+                lastJson = rewrite(key, messages);
+            }
+            syncedMessages.put(key, new Synced(List.copyOf(messages), lastJson));
+        } catch (RuntimeException e) {
+            // 写入失败时 Redis 中的状态未知，下次读取或写入时以 Redis 为准重新同步
+            syncedMessages.invalidate(key);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String key = buildKey(memoryId);
+        redissonClient.getList(key, StringCodec.INSTANCE).delete();
+        syncedMessages.invalidate(key);
+    }
+
+    /**
+     * 统计一次生成期间写入的字节数，在生成结束时调用
+     *
+     * @param memoryId 记忆 ID
+     */
+    public void recordGenerationBytes(Object memoryId) {
+        LongAdder bytes = pendingBytes.remove(buildKey(memoryId));
+        if (bytes != null) {
+            chatHistoryMetricsCollector.recordMemoryGenerationBytes(bytes.sum());
+        }
+    }
+
+    /**
+     * 一次往返校验 Redis 中的列表与本地已同步的列表一致：长度相同且末尾元素相同
+     * 其他实例修改过同一记忆时通常会改变长度或末尾元素，此时回退到完整读取
+     */
+    private boolean matchesRedis(String key, Synced synced) {
+        try {
+            RBatch batch = redissonClient.createBatch();
+            RListAsync<String> list = batch.getList(key, StringCodec.INSTANCE);
+            list.sizeAsync();
+            int size = synced.messages().size();
+            if (size > 0) {
+                list.getAsync(size - 1);
+            }
+            List<?> responses = batch.execute().getResponses();
+            if (!(responses.getFirst() instanceof Number actualSize) || actualSize.longValue() != size) {
+                return false;
+            }
+            return size == 0 || Objects.equals(synced.lastJson(), responses.get(1));
+        } catch (Exception e) {
+            log.warn("校验会话记忆失败，完整读取，key: {}, error: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 把 previous → current 识别为“在 prefix 处删除 removed 条，尾部追加若干条”，并执行差量写入
+     *
+     * @return 写入后末尾元素的 JSON；无法识别、中间删除过多或 Redis 中的长度与预期不一致时返回 null
+     */
+    private String applyDelta(String key, Synced synced, List<ChatMessage> current) {
+        List<ChatMessage> previous = synced.messages();
+        int prefix = commonPrefixLength(previous, current);
+        int removed = findRemovedCount(previous, current, prefix);
+        if (removed < 0 || (prefix > 0 && removed > MAX_MIDDLE_REMOVALS)) {
+            return null;
+        }
+        int keptCount = previous.size() - removed;
+        List<ChatMessage> appended = current.subList(keptCount, current.size());
+        if (removed == 0 && appended.isEmpty()) {
+            return synced.lastJson();
+        }
+
+        RBatch batch = createAtomicBatch();
+        RListAsync<String> list = batch.getList(key, StringCodec.INSTANCE);
+        if (removed > 0) {
+            if (prefix == 0) {
+                list.trimAsync(removed, -1);
+            } else {
+                for (int i = prefix; i < prefix + removed; i++) {
+                    list.setAsync(i, DELETED_MARKER);
+                }
+                list.removeAsync(DELETED_MARKER, 0);
+            }
+        }
+        long bytes = 0;
+        List<String> appendedJson = new ArrayList<>(appended.size());
+        for (ChatMessage message : appended) {
+            String json = ChatMessageSerializer.messageToJson(message);
+            bytes += json.getBytes(StandardCharsets.UTF_8).length;
+            appendedJson.add(json);
+        }
+        if (!appendedJson.isEmpty()) {
+            list.addAllAsync(appendedJson);
+        }
+        expire(list);
+        list.sizeAsync();
+        BatchResult<?> result = batch.execute();
+
+        // 其他实例并发修改了同一记忆时，列表长度会与预期不一致，整体重写兜底；这次写入被覆盖，不计入字节数
+        Object actualSize = result.getResponses().getLast();
+        if (!(actualSize instanceof Number size) || size.longValue() != current.size()) {
+            log.warn("会话记忆增量写入后长度不一致，整体重写，key: {}, 预期: {}, 实际: {}", key, current.size(), actualSize);
+            return null;
+        }
+        recordBytes(key, WRITE_MODE_APPEND, bytes);
+        log.debug("会话记忆增量写入，key: {}, 删除: {}, 追加: {}", key, removed, appendedJson.size());
+        if (!appendedJson.isEmpty()) {
+            return appendedJson.getLast();
+        }
+        // 只有删除：中间删除不影响末尾，头部删到空时列表为空
+        return current.isEmpty() ? "" : synced.lastJson();
+    }
+
+    /**
+     * 两个列表相同前缀的长度
+     */
+    static int commonPrefixLength(List<ChatMessage> previous, List<ChatMessage> current) {
+        int prefix = 0;
+        int limit = Math.min(previous.size(), current.size());
+        while (prefix < limit && Objects.equals(previous.get(prefix), current.get(prefix))) {
+            prefix++;
+        }
+        return prefix;
+    }
+
+    /**
+     * 在 prefix 之后找到最少删除条数，使 previous 剩余部分与 current 对齐
+     *
+     * @return 删除条数；无法对齐时返回 -1
+     */
+    static int findRemovedCount(List<ChatMessage> previous, List<ChatMessage> current, int prefix) {
+        for (int removed = 0; prefix + removed <= previous.size(); removed++) {
+            int keptTail = previous.size() - prefix - removed;
+            if (prefix + keptTail > current.size()) {
+                continue;
+            }
+            boolean aligned = true;
+            for (int i = 0; i < keptTail; i++) {
+                if (!Objects.equals(previous.get(prefix + removed + i), current.get(prefix + i))) {
+                    aligned = false;
+                    break;
+                }
+            }
+            if (aligned) {
+                return removed;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 整体重写
+     *
+     * @return 末尾元素的 JSON，列表为空时为空字符串
+     */
+    private String rewrite(String key, List<ChatMessage> messages) {
+        RBatch batch = createAtomicBatch();
+        RListAsync<String> list = batch.getList(key, StringCodec.INSTANCE);
+        list.deleteAsync();
+        long bytes = 0;
+        List<String> jsonList = new ArrayList<>(messages.size());
+        if (!messages.isEmpty()) {
+            for (ChatMessage message : messages) {
+                String json = ChatMessageSerializer.messageToJson(message);
+                bytes += json.getBytes(StandardCharsets.UTF_8).length;
+                jsonList.add(json);
+            }
+            list.addAllAsync(jsonList);
+            expire(list);
+        }
+        batch.execute();
+        recordBytes(key, WRITE_MODE_REWRITE, bytes);
+        return jsonList.isEmpty() ? "" : jsonList.getLast();
+    }
+
+    /**
+     * 写入批次以 MULTI/EXEC 执行，失败时不会留下部分生效的差量
+     */
+    private RBatch createAtomicBatch() {
+        return redissonClient.createBatch(BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+    }
+
+    private void expire(RListAsync<String> list) {
+        long ttl = redisChatMemoryStoreConfig.getTtl();
+        if (ttl > 0) {
+            list.expireAsync(Duration.ofSeconds(ttl));
+        }
+    }
+
+    /**
+     * 只在写入确认成功后调用，失败或被覆盖的写入不计入
+     */
+    private void recordBytes(String key, String mode, long bytes) {
+        chatHistoryMetricsCollector.recordMemoryWriteBytes(mode, bytes);
+        pendingBytes.computeIfAbsent(key, k -> new LongAdder()).add(bytes);
+    }
+}
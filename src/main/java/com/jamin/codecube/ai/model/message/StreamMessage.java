@@ -6,11 +6,12 @@ import lombok.NoArgsConstructor;
 
 /**
  * 流式消息响应基类
+ * 密封类型，代码生成流在进程内直接传递具体的消息对象，只在持久化时才序列化为 JSON
  */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class StreamMessage {
+public sealed class StreamMessage permits AiResponseMessage, ToolRequestMessage, ToolExecutedMessage {
 
     /**
      * 消息类型
@@ -0,0 +1,130 @@
+package com.jamin.codecube.ai.routing;
+
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 基于关键词特征的代码生成类型分类器
+ * 按命中的关键词为每种类型累计权重，置信度为最高得分占总得分的比例，再按命中的特征个数折算：
+ * 只命中一个特征时最多 0.5，每多命中一个，剩余部分再补一半；
+ * 命中的总权重不足时视为无法判断，交给大模型。
+ * 英文关键词按整词匹配，避免 "spa" 命中 "space"、"admin" 命中 "administrator"。
+ */
+public class CodeGenTypeKeywordClassifier {
+
+    /**
+     * 至少需要的命中权重，避免单个弱特征就下结论
+     */
+    private static final int MIN_SCORE = 2;
+
+    private static final Map<CodeGenTypeEnum, List<Feature>> FEATURES = new EnumMap<>(Map.of(
+            CodeGenTypeEnum.HTML, List.of(
+                    new Feature("单个html", 3), new Feature("一个html", 3), new Feature("单文件", 3),
+                    new Feature("landing page", 2), new Feature("落地页", 2), new Feature("单页面", 2),
+                    new Feature("一个页面", 2), new Feature("个人主页", 2), new Feature("介绍页", 2),
+                    new Feature("展示页", 2), new Feature("静态页面", 2), new Feature("简历", 2),
+                    new Feature("作品集", 1), new Feature("海报", 2), new Feature("倒计时", 2),
+                    new Feature("时钟", 1), new Feature("简单", 1), new Feature("html", 1)),
+            CodeGenTypeEnum.MULTI_FILE, List.of(
+                    new Feature("多文件", 3), new Feature("multi file", 3), new Feature("multi-file", 3),
+                    new Feature("分离", 2), new Feature("css 文件", 2), new Feature("css文件", 2),
+                    new Feature("js 文件", 2), new Feature("js文件", 2), new Feature("多个页面", 2),
+                    new Feature("几个页面", 2), new Feature("官网", 1), new Feature("企业网站", 1)),
+            CodeGenTypeEnum.VUE_PROJECT, List.of(
+                    new Feature("vue", 3), new Feature("管理系统", 3), new Feature("后台", 2),
+                    new Feature("dashboard", 2), new Feature("admin", 2), new Feature("crud", 2),
+                    new Feature("登录", 2), new Feature("注册", 1), new Feature("购物车", 2),
+                    new Feature("商城", 2), new Feature("电商", 2), new Feature("路由", 2),
+                    new Feature("状态管理", 2), new Feature("组件", 1), new Feature("单页应用", 2),
+                    new Feature("spa", 1), new Feature("数据管理", 2), new Feature("用户管理", 2),
+                    new Feature("增删改查", 2), new Feature("博客系统", 2), new Feature("平台", 1))
+    ));
+
+    /**
+     * 对提示词分类
+     *
+     * @param normalizedPrompt 归一化（小写、合并空白）后的提示词
+     * @return 分类结果；没有命中足够特征时类型为 null、置信度为 0
+     */
+    public Classification classify(String normalizedPrompt) {
+        if (normalizedPrompt == null || normalizedPrompt.isEmpty()) {
+            return Classification.UNKNOWN;
+        }
+        Map<CodeGenTypeEnum, Integer> scores = new EnumMap<>(CodeGenTypeEnum.class);
+        Map<CodeGenTypeEnum, Integer> hits = new EnumMap<>(CodeGenTypeEnum.class);
+        int total = 0;
+        for (Map.Entry<CodeGenTypeEnum, List<Feature>> entry : FEATURES.entrySet()) {
+            int score = 0;
+            for (Feature feature : entry.getValue()) {
+                if (feature.matches(normalizedPrompt)) {
+                    score += feature.weight();
+                    hits.merge(entry.getKey(), 1, Integer::sum);
+                }
+            }
+            scores.put(entry.getKey(), score);
+            total += score;
+        }
+        CodeGenTypeEnum best = null;
+        int bestScore = 0;
+        for (Map.Entry<CodeGenTypeEnum, Integer> entry : scores.entrySet()) {
+            if (entry.getValue() > bestScore) {
+                best = entry.getKey();
+                bestScore = entry.getValue();
+            }
+        }
+        if (best == null || bestScore < MIN_SCORE) {
+            return Classification.UNKNOWN;
+        }
+        double share = (double) bestScore / total;
+        double evidence = 1 - Math.pow(0.5, hits.get(best));
+        return new Classification(best, share * evidence);
+    }
+
+    /**
+     * 关键词特征
+     *
+     * @param keyword 小写关键词
+     * @param weight  权重
+     * @param pattern 匹配规则：关键词首尾是英文字母或数字时，要求相邻字符不是字母或数字
+     */
+    private record Feature(String keyword, int weight, Pattern pattern) {
+
+        Feature(String keyword, int weight) {
+            this(keyword, weight, compile(keyword));
+        }
+
+        boolean matches(String normalizedPrompt) {
+            return pattern.matcher(normalizedPrompt).find();
+        }
+
+        private static Pattern compile(String keyword) {
+            String regex = Pattern.quote(keyword);
+            if (isWordChar(keyword.charAt(0))) {
+                regex = "(?<![a-z0-9])" + regex;
+            }
+            if (isWordChar(keyword.charAt(keyword.length() - 1))) {
+                regex = regex + "(?![a-z0-9])";
+            }
+            return Pattern.compile(regex);
+        }
+
+        private static boolean isWordChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+        }
+    }
+
+    /**
+     * 分类结果
+     *
+     * @param type       推荐的代码生成类型
+     * @param confidence 置信度（0~1）
+     */
+    public record Classification(CodeGenTypeEnum type, double confidence) {
+
+        static final Classification UNKNOWN = new Classification(null, 0);
+    }
+}
@@ -0,0 +1,122 @@
+package com.jamin.codecube.ai.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jamin.codecube.ai.AiCodeGenTypeRoutingService;
+import com.jamin.codecube.ai.AiCodeGenTypeRoutingServiceFactory;
+import com.jamin.codecube.config.CodeGenRoutingConfig;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.monitor.AiModelMetricsCollector;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 代码生成类型分级路由
+ * 创建应用时原本每次都同步调用一次大模型（输出不合法时还会重试），这里按代价从低到高依次尝试：
+ *     1. 归一化提示词缓存：相同需求直接复用上次的结果
+ *     2. 本地关键词分类：置信度达到阈值时直接采用
+ *     3. 大模型路由：只处理描述模糊的需求，结果写入缓存
+ */
+@Component
+@Slf4j
+public class CodeGenTypeRouter {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * 末尾的标点不影响需求含义，归一化时去掉
+     */
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\p{Punct}。！？，、；：…\\s]+$");
+
+    private static final String TIER_CACHE = "cache";
+
+    private static final String TIER_CLASSIFIER = "classifier";
+
+    private static final String TIER_LLM = "llm";
+
+    @Autowired
+    private CodeGenRoutingConfig codeGenRoutingConfig;
+
+    @Autowired
+    private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
+
+    @Autowired
+    private AiModelMetricsCollector aiModelMetricsCollector;
+
+    private final CodeGenTypeKeywordClassifier classifier = new CodeGenTypeKeywordClassifier();
+
+    private Cache<String, CodeGenTypeEnum> routeCache;
+
+    @PostConstruct
+    public void init() {
+        routeCache = Caffeine.newBuilder()
+                .maximumSize(codeGenRoutingConfig.getCacheMaximumSize())
+                .expireAfterWrite(Duration.ofMinutes(codeGenRoutingConfig.getCacheExpireMinutes()))
+                .build();
+    }
+
+    /**
+     * 根据用户需求选择代码生成类型
+     *
+     * @param userPrompt 用户输入的需求描述
+     * @return 代码生成类型
+     */
+    public CodeGenTypeEnum route(String userPrompt) {
+        long start = System.nanoTime();
+        String normalizedPrompt = normalize(userPrompt);
+
+        if (codeGenRoutingConfig.isCacheEnabled()) {
+            CodeGenTypeEnum cached = routeCache.getIfPresent(normalizedPrompt);
+            if (cached != null) {
+                recordDecision(TIER_CACHE, cached, start);
+                return cached;
+            }
+        }
+
+        if (codeGenRoutingConfig.isClassifierEnabled()) {
+            CodeGenTypeKeywordClassifier.Classification classification = classifier.classify(normalizedPrompt);
+            if (classification.type() != null && classification.confidence() >= codeGenRoutingConfig.getConfidenceThreshold()) {
+                cache(normalizedPrompt, classification.type());
+                recordDecision(TIER_CLASSIFIER, classification.type(), start);
+                return classification.type();
+            }
+            log.debug("本地分类置信度不足，交给大模型路由，结果: {}, 置信度: {}", classification.type(), classification.confidence());
+        }
+
+        // 使用多例的路由服务，支持并发
+        AiCodeGenTypeRoutingService routingService = aiCodeGenTypeRoutingServiceFactory.createAiCodeGenTypeRoutingService();
+        CodeGenTypeEnum codeGenType = routingService.routeCodeGenType(userPrompt);
+        cache(normalizedPrompt, codeGenType);
+        recordDecision(TIER_LLM, codeGenType, start);
+        return codeGenType;
+    }
+
+    /**
+     * 归一化提示词：小写、合并连续空白、去掉首尾空白和末尾标点（生成结果缓存也使用该规则）
+     */
+    public static String normalize(String userPrompt) {
+        if (userPrompt == null) {
+            return "";
+        }
+        String normalized = WHITESPACE.matcher(userPrompt.trim().toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    private void cache(String normalizedPrompt, CodeGenTypeEnum codeGenType) {
+        if (codeGenRoutingConfig.isCacheEnabled() && codeGenType != null) {
+            routeCache.put(normalizedPrompt, codeGenType);
+        }
+    }
+
+    private void recordDecision(String tier, CodeGenTypeEnum codeGenType, long startNanos) {
+        Duration duration = Duration.ofNanos(System.nanoTime() - startNanos);
+        aiModelMetricsCollector.recordRoutingDecision(tier, duration);
+        log.info("代码生成类型路由完成，层级: {}, 类型: {}, 耗时: {} ms", tier, codeGenType.getValue(), duration.toMillis());
+    }
+}
@@ -0,0 +1,61 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模型并发限制与熔断配置
+ * 并发上限按 AIMD 自适应调整：请求成功时缓慢上调，遇到 429、超时或 5xx 时按比例下调；
+ * 达到上限的请求短暂排队，队列满或等待超时直接拒绝；连续失败达到阈值后熔断一段时间
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.concurrency-limit")
+@Data
+public class AiConcurrencyLimitConfig {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 初始并发上限
+     */
+    private int initialLimit = 20;
+
+    /**
+     * 并发上限下界
+     */
+    private int minLimit = 2;
+
+    /**
+     * 并发上限上界
+     */
+    private int maxLimit = 100;
+
+    /**
+     * 遇到限流/超时信号时并发上限的收缩比例
+     */
+    private double backoffRatio = 0.7;
+
+    /**
+     * 最大排队请求数
+     */
+    private int maxQueueSize = 50;
+
+    /**
+     * 排队最长等待毫秒数，超时后拒绝
+     */
+    private long queueTimeoutMillis = 3000;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private int failureThreshold = 5;
+
+    /**
+     * 熔断持续秒数，之后放行一个探测请求
+     */
+    private long openSeconds = 30;
+}
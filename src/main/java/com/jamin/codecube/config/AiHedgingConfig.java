@@ -0,0 +1,55 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 多端点流式模型的对冲请求配置
+ * 优先选择近期首 token 时间（EWMA）最短的端点；首 token 超过近期分位数仍未到达时向下一个端点发起对冲请求，先出 token 的一方胜出，另一方被取消
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.hedging")
+@Data
+public class AiHedgingConfig {
+
+    /**
+     * 是否启用（模型配置了额外端点时才生效）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 对冲等待时间取近期首 token 时间的分位数
+     */
+    private double percentile = 0.9;
+
+    /**
+     * 样本不足时使用的对冲等待毫秒数
+     */
+    private long defaultDelayMillis = 3000;
+
+    /**
+     * 对冲等待的最小毫秒数
+     */
+    private long minDelayMillis = 500;
+
+    /**
+     * 对冲等待的最大毫秒数
+     */
+    private long maxDelayMillis = 10000;
+
+    /**
+     * 计算分位数所需的最少样本数
+     */
+    private int minSamples = 20;
+
+    /**
+     * 保留的首 token 时间样本数
+     */
+    private int sampleWindow = 200;
+
+    /**
+     * EWMA 平滑系数，越大越看重最近的样本
+     */
+    private double ewmaAlpha = 0.2;
+}
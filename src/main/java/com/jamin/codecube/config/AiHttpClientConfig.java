@@ -0,0 +1,29 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * AI 模型共享 HTTP 客户端配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.http-client")
+@Data
+public class AiHttpClientConfig {
+
+    /**
+     * 是否优先使用 HTTP/2（服务端不支持时自动回退到 HTTP/1.1）
+     */
+    private boolean http2 = true;
+
+    /**
+     * 单个模型服务地址（host:port）的最大并发请求数，0 表示不限制
+     */
+    private int maxConcurrentRequestsPerHost = 0;
+
+    /**
+     * 达到并发上限时等待空闲名额的最长秒数
+     */
+    private long acquireTimeoutSeconds = 30;
+}
@@ -0,0 +1,29 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 长时间生成过程中的对话记录检查点配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-history.checkpoint")
+@Data
+public class ChatHistoryCheckpointConfig {
+
+    /**
+     * 是否开启检查点
+     */
+    private boolean enabled = true;
+
+    /**
+     * 距上次检查点超过该秒数且有新内容时写入检查点
+     */
+    private long intervalSeconds = 10;
+
+    /**
+     * 距上次检查点新增的工具调用达到该数量时写入检查点
+     */
+    private int toolCallThreshold = 5;
+}
@@ -0,0 +1,39 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话历史异步批量入库（write-behind）配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-history.write-behind")
+@Data
+public class ChatHistoryWriteBehindConfig {
+
+    /**
+     * 是否启用异步批量入库，关闭后退化为调用线程同步入库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 队列容量，队列满时由调用线程同步入库
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 单条 INSERT 最多包含的行数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 队列未攒满一批时的最长等待时间（毫秒）
+     */
+    private long flushIntervalMillis = 50;
+
+    /**
+     * 应用关闭时等待队列排空的最长时间（秒）
+     */
+    private long shutdownTimeoutSeconds = 10;
+}
@@ -0,0 +1,35 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 会话记忆压缩配置（Vue 工程模式）
+ * 较早轮次中的大段工具参数和工具结果替换为引用（路径 + 内容哈希 + 大小），较长的 AI 回复截断为摘要
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.memory.compaction")
+@Data
+public class ChatMemoryCompactionConfig {
+
+    /**
+     * 是否启用压缩
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最近多少轮对话（以用户消息划分）保持原样
+     */
+    private int keepRecentTurns = 2;
+
+    /**
+     * 工具参数中的字符串、工具结果超过该字符数时替换为引用
+     */
+    private int minPayloadChars = 512;
+
+    /**
+     * 较早轮次的 AI 回复保留的最大字符数
+     */
+    private int maxAiTextChars = 800;
+}
@@ -0,0 +1,40 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 代码生成类型分级路由配置
+ * 依次尝试：提示词缓存 → 本地关键词分类 → 大模型路由
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.routing")
+@Data
+public class CodeGenRoutingConfig {
+
+    /**
+     * 是否缓存路由结果（按归一化后的提示词）
+     */
+    private boolean cacheEnabled = true;
+
+    /**
+     * 路由结果缓存的最大条数
+     */
+    private long cacheMaximumSize = 10000;
+
+    /**
+     * 路由结果缓存的过期分钟数
+     */
+    private long cacheExpireMinutes = 60;
+
+    /**
+     * 是否启用本地关键词分类
+     */
+    private boolean classifierEnabled = true;
+
+    /**
+     * 本地分类的置信度阈值，低于该值交给大模型
+     */
+    private double confidenceThreshold = 0.75;
+}
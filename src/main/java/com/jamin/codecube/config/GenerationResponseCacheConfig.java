@@ -0,0 +1,35 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成结果缓存配置（HTML / 多文件模式，仅首轮对话）
+ * 相同的系统提示词版本、归一化用户消息和生成类型直接回放已录制的输出，不再调用模型
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.response-cache")
+@Data
+public class GenerationResponseCacheConfig {
+
+    /**
+     * 是否启用，默认关闭
+     */
+    private boolean enabled = false;
+
+    /**
+     * 缓存文件目录
+     */
+    private String dir = System.getProperty("user.dir") + "/tmp/response_cache";
+
+    /**
+     * 缓存有效期（小时）
+     */
+    private long ttlHours = 24;
+
+    /**
+     * 缓存目录的最大总大小（MB），超出后按最近访问时间淘汰
+     */
+    private long maxSizeMb = 512;
+}
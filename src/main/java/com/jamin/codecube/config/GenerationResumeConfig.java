@@ -0,0 +1,45 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 可续传生成流配置
+ * 每次生成分配生成 ID 并保留有界的重放日志，断线重连时按 Last-Event-ID 续传
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.stream.resume")
+@Data
+public class GenerationResumeConfig {
+
+    /**
+     * 是否开启续传
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每次生成在内存中保留的最大帧数
+     */
+    private int replayLimit = 2000;
+
+    /**
+     * 生成结束后会话继续保留的秒数，供晚到的重连读取
+     */
+    private long retainSeconds = 120;
+
+    /**
+     * 所有订阅者断开后等待重连的秒数，超时仍无人订阅则取消生成；小于 0 表示不取消
+     */
+    private long cancelGraceSeconds = 15;
+
+    /**
+     * 是否同时把重放日志写入 Redis（实例重启后仍可读取已结束的生成）
+     */
+    private boolean redisEnabled = false;
+
+    /**
+     * Redis 重放日志的过期秒数
+     */
+    private long redisTtlSeconds = 600;
+}
@@ -0,0 +1,56 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 代码生成调度配置
+ * 全局并发生成数有上限，超出时按用户分队列排队，按加权公平队列（WFQ）决定放行顺序，
+ * 会员用户权重更高；单个用户同时运行的生成数另有上限，避免重度用户占满上游并发
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.scheduler")
+@Data
+public class GenerationSchedulerConfig {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 全局同时运行的生成数上限
+     */
+    private int maxConcurrent = 32;
+
+    /**
+     * 单个用户同时运行的生成数上限
+     */
+    private int maxRunningPerUser = 2;
+
+    /**
+     * 单个用户最多排队的生成数，超出直接拒绝
+     */
+    private int maxQueuedPerUser = 5;
+
+    /**
+     * 普通用户权重
+     */
+    private double defaultWeight = 1.0;
+
+    /**
+     * 会员（vipExpireTime 未过期）权重
+     */
+    private double vipWeight = 3.0;
+
+    /**
+     * Vue 工程模式单次生成的成本（工具调用多、耗时长），其他模式为 1
+     */
+    private double vueProjectCost = 3.0;
+
+    /**
+     * 排队状态推送间隔毫秒数
+     */
+    private long statusIntervalMillis = 2000;
+}
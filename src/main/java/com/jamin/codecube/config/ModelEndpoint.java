@@ -0,0 +1,16 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+
+/**
+ * 额外的 OpenAI 兼容模型端点，未配置的字段沿用所属模型配置的值
+ */
+@Data
+public class ModelEndpoint {
+
+    private String baseUrl;
+
+    private String apiKey;
+
+    private String modelName;
+}
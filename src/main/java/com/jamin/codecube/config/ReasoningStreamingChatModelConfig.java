@@ -1,5 +1,9 @@
 package com.jamin.codecube.config;
 
+import com.jamin.codecube.ai.hedging.EndpointLatencyTracker;
+import com.jamin.codecube.ai.hedging.HedgingStreamingChatModel;
+import com.jamin.codecube.ai.http.AiHttpClientPool;
+import com.jamin.codecube.ai.limiter.ModelConcurrencyLimiterRegistry;
 import com.jamin.codecube.monitor.AiModelMonitorListener;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
@@ -11,6 +15,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 @Configuration
@@ -25,9 +30,26 @@ public class ReasoningStreamingChatModelConfig {
     private boolean logRequests; // 是否记录请求
     private boolean logResponses; // 是否记录响应
 
+    /**
+     * 额外的 OpenAI 兼容端点，配置后与主端点组成多端点池并启用对冲请求
+     */
+    private List<ModelEndpoint> extraEndpoints = new ArrayList<>();
+
     @Autowired
     private AiModelMonitorListener aiModelMonitorListener;
 
+    @Autowired
+    private AiHttpClientPool aiHttpClientPool;
+
+    @Autowired
+    private AiHedgingConfig aiHedgingConfig;
+
+    @Autowired
+    private EndpointLatencyTracker endpointLatencyTracker;
+
+    @Autowired
+    private ModelConcurrencyLimiterRegistry modelConcurrencyLimiterRegistry;
+
     /**
      * 推理流式聊天模型配置
      * @return
@@ -36,16 +58,38 @@ public class ReasoningStreamingChatModelConfig {
     @Scope("prototype") // 每次注入都会创建一个新的实例
     public StreamingChatModel reasoningStreamingChatModelPrototype() {
 
-        return OpenAiStreamingChatModel.builder()
-                .baseUrl(baseUrl)
-                .apiKey(apiKey)
-                .modelName(modelName)
+        if (!aiHedgingConfig.isEnabled() || extraEndpoints.isEmpty()) {
+            return buildModel(baseUrl, apiKey, modelName);
+        }
+        List<HedgingStreamingChatModel.Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(new HedgingStreamingChatModel.Endpoint(modelName + "@" + baseUrl, buildModel(baseUrl, apiKey, modelName)));
+        for (ModelEndpoint extra : extraEndpoints) {
+            String endpointBaseUrl = extra.getBaseUrl() != null ? extra.getBaseUrl() : baseUrl;
+            String endpointApiKey = extra.getApiKey() != null ? extra.getApiKey() : apiKey;
+            String endpointModelName = extra.getModelName() != null ? extra.getModelName() : modelName;
+            endpoints.add(new HedgingStreamingChatModel.Endpoint(endpointModelName + "@" + endpointBaseUrl,
+                    buildModel(endpointBaseUrl, endpointApiKey, endpointModelName)));
+        }
+        return new HedgingStreamingChatModel(endpoints, endpointLatencyTracker);
+    }
+
+    /**
+     * 构建单个端点的流式模型，按模型名称共享并发限制
+     */
+    private StreamingChatModel buildModel(String endpointBaseUrl, String endpointApiKey, String endpointModelName) {
+        StreamingChatModel model = OpenAiStreamingChatModel.builder()
+                .baseUrl(endpointBaseUrl)
+                .apiKey(endpointApiKey)
+                .modelName(endpointModelName)
                 .maxTokens(maxTokens)
                 .temperature(temperature)
                 .logRequests(logRequests) // 是否记录请求
                 .logResponses(logResponses) // 是否记录响应
                 .timeout(Duration.ofMinutes(30))
                 .listeners(List.of(aiModelMonitorListener))
+                // 共享底层连接池，模型实例本身仍按应用隔离
+                .httpClientBuilder(aiHttpClientPool.newBuilder())
                 .build();
+        return modelConcurrencyLimiterRegistry.wrap(endpointModelName, model);
     }
 }
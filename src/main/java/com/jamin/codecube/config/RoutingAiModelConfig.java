@@ -1,8 +1,10 @@
 package com.jamin.codecube.config;
 
+import com.jamin.codecube.ai.http.AiHttpClientPool;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,6 +34,9 @@ public class RoutingAiModelConfig {
 
     private Integer maxRetries;
 
+    @Autowired
+    private AiHttpClientPool aiHttpClientPool;
+
     /**
      * 创建用于路由判断的ChatModel
      */
@@ -47,6 +52,8 @@ public class RoutingAiModelConfig {
                 .logRequests(logRequests)
                 .logResponses(logResponses)
                 .maxRetries(maxRetries)
+                // 共享底层连接池
+                .httpClientBuilder(aiHttpClientPool.newBuilder())
                 .build();
     }
 }
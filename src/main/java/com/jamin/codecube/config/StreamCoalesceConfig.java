@@ -0,0 +1,62 @@
+package com.jamin.codecube.config;
+
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * SSE 帧合并配置
+ * 将同一时间窗口内的 token 合并为一帧推送，按代码生成类型分别调整
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.stream.coalesce")
+@Data
+public class StreamCoalesceConfig {
+
+    /**
+     * 是否开启帧合并
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未单独配置的生成类型使用的默认窗口
+     */
+    private Window defaultWindow = new Window(100, 8 * 1024);
+
+    /**
+     * 按代码生成类型单独配置的窗口
+     */
+    private Map<CodeGenTypeEnum, Window> types = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 获取指定生成类型的合并窗口
+     *
+     * @param codeGenType 代码生成类型
+     * @return 合并窗口
+     */
+    public Window getWindow(CodeGenTypeEnum codeGenType) {
+        return types.getOrDefault(codeGenType, defaultWindow);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Window {
+
+        /**
+         * 一帧最多等待的毫秒数，小于等于 0 表示不合并
+         */
+        private long maxDelayMillis;
+
+        /**
+         * 一帧最多累积的字节数（UTF-8）
+         */
+        private int maxBytes;
+    }
+}
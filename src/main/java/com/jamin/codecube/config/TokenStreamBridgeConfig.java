@@ -0,0 +1,19 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * TokenStream 转 Flux 的桥接缓冲配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.stream.bridge")
+@Data
+public class TokenStreamBridgeConfig {
+
+    /**
+     * 每个流最多缓冲的消息数，超出后文本与同一工具调用的参数分片会合并，工具事件不会丢弃
+     */
+    private int bufferSize = 256;
+}
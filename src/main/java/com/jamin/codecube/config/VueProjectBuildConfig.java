@@ -0,0 +1,129 @@
+package com.jamin.codecube.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Vue 项目构建配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code-gen.build")
+@Data
+public class VueProjectBuildConfig {
+
+    /**
+     * npm 可执行文件，可指向离线测试用的桩脚本
+     */
+    private String npmCommand = "npm";
+
+    /**
+     * npm install 超时秒数
+     */
+    private int installTimeoutSeconds = 300;
+
+    /**
+     * npm run build 超时秒数
+     */
+    private int buildTimeoutSeconds = 180;
+
+    /**
+     * 每次构建保留的最近输出行数，构建失败时打印到日志
+     */
+    private int logBufferLines = 200;
+
+    /**
+     * 构建日志合并推送的时间窗口（毫秒），0 表示逐行推送
+     */
+    private long logFlushMillis = 100;
+
+    /**
+     * 构建并发数，0 表示按 CPU 核数和内存自动计算
+     */
+    private int workers = 0;
+
+    /**
+     * 自动计算并发数时每个构建预留的内存（MB），npm install 和 vite build 都是独立的 Node 进程
+     */
+    private int memoryPerBuildMb = 1024;
+
+    /**
+     * 最大排队构建数，超出后拒绝
+     */
+    private int maxQueueSize = 64;
+
+    /**
+     * 共享依赖仓库
+     */
+    private NodeModulesStore nodeModulesStore = new NodeModulesStore();
+
+    /**
+     * 常驻 Vite 构建进程池
+     */
+    private ViteDaemon viteDaemon = new ViteDaemon();
+
+    /**
+     * 按依赖集合哈希保存 node_modules 快照，相同依赖的项目通过硬链接直接复用，不再执行 npm install
+     */
+    @Data
+    public static class NodeModulesStore {
+
+        /**
+         * 是否启用
+         */
+        private boolean enabled = true;
+
+        /**
+         * 快照目录，与项目目录在同一文件系统时才能使用硬链接，否则退化为复制
+         */
+        private String dir = System.getProperty("user.dir") + "/tmp/node_modules_store";
+
+        /**
+         * 最多保留的快照数，超出后按最近使用时间淘汰
+         */
+        private int maxSnapshots = 20;
+    }
+
+    /**
+     * 常驻 Node 进程池，进程内直接调用 Vite 的 build()，省去每次构建的 Node 启动和 Vite 加载
+     * 仅用于 build 脚本为 "vite build" 的项目；进程池不可用或没有空闲进程时退回 npm run build
+     */
+    @Data
+    public static class ViteDaemon {
+
+        /**
+         * 是否启用
+         */
+        private boolean enabled = false;
+
+        /**
+         * node 可执行文件
+         */
+        private String nodeCommand = "node";
+
+        /**
+         * 常驻进程数
+         */
+        private int poolSize = 2;
+
+        /**
+         * 每个进程最多执行的构建数，达到后回收重启，避免插件状态和内存累积
+         */
+        private int maxBuildsPerWorker = 50;
+
+        /**
+         * 进程启动超时秒数
+         */
+        private int startupTimeoutSeconds = 30;
+
+        /**
+         * 空闲进程健康检查间隔秒数
+         */
+        private int healthCheckIntervalSeconds = 30;
+
+        /**
+         * 健康检查响应超时秒数
+         */
+        private int healthCheckTimeoutSeconds = 5;
+    }
+}
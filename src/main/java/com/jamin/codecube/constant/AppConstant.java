@@ -34,4 +34,14 @@ public interface AppConstant {
      * 应用部署域名
      */
     String CODE_DEPLOY_HOST = "http://static.localhost";
+
+    /**
+     * 生成被取消时追加在已输出内容之后的标记
+     */
+    String GENERATION_CANCELLED_MARKER = "\n\n（生成已取消）";
+
+    /**
+     * 生成过程中检查点内容的标记，生成正常结束时会被完整内容覆盖；服务中断时保留
+     */
+    String GENERATION_INTERRUPTED_MARKER = "\n\n（生成未完成，以上为已保存的部分内容）";
 }
\ No newline at end of file
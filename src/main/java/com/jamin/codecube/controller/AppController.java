@@ -8,6 +8,7 @@ import com.jamin.codecube.common.BaseResponse;
 import com.jamin.codecube.common.DeleteRequest;
 import com.jamin.codecube.common.ResultUtils;
 import com.jamin.codecube.constant.AppConstant;
+import com.jamin.codecube.core.generation.GenerationRegistry;
 import com.jamin.codecube.model.dto.app.*;
 import com.jamin.codecube.model.entity.App;
 import com.jamin.codecube.model.entity.User;
@@ -37,6 +38,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 import java.io.File;
 import java.time.LocalDateTime;
@@ -60,6 +62,8 @@ public class AppController {
     private ProjectDownloadService projectDownloadService;
     @Autowired
     private com.jamin.codecube.service.BuildStatusService buildStatusService;
+    @Autowired
+    private GenerationRegistry generationRegistry;
 
     /**
      * 创建应用
@@ -286,6 +290,7 @@ public class AppController {
 
     /**
      * 通过对话生成应用代码流
+     * 每次生成分配生成 ID，断线重连时浏览器携带 Last-Event-ID，从断点续传而不是重新生成
      * @param appId 应用 ID
      * @param message 对话消息
      * @param request 请求
@@ -298,25 +303,56 @@ public class AppController {
             @RequestParam("appId") Long appId,
             @RequestParam("message") String message,
             @RequestParam(required = false) boolean agent,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
             HttpServletRequest request) {
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
+        // 断线重连：续传进行中的生成
+        if (StrUtil.isNotBlank(lastEventId)) {
+            return generationRegistry.resume(lastEventId, appId, loginUser.getId());
+        }
+        // 同一应用正在处理相同消息时直接复用，不再重复调用模型
+        Flux<ServerSentEvent<String>> attached = generationRegistry.attach(appId, loginUser.getId(), message);
+        if (attached != null) {
+            return attached;
+        }
+        // 排队状态以 queue 事件推送，放行后不再有排队事件
+        Sinks.Many<ServerSentEvent<String>> queueEvents = Sinks.many().unicast().onBackpressureBuffer();
         // 调用服务生成代码流
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser, agent);
-        return contentFlux
+        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser, agent, status -> {
+            queueEvents.tryEmitNext(GenerationRegistry.queueEvent(status));
+            if (status.admitted()) {
+                queueEvents.tryEmitComplete();
+            }
+        });
+        Flux<ServerSentEvent<String>> contentFrames = contentFlux
                 .map(chunk -> {
                     Map<String, String> wrapper = Map.of("d", chunk);
                     String jsonStr = JSONUtil.toJsonStr(wrapper);
                     return ServerSentEvent.<String>builder()
                             .data(jsonStr)
                             .build();
-                })
-                .concatWith(Mono.just(
-                        ServerSentEvent.<String>builder()
-                                .event("done")
-                                .data("")
-                                .build()
-                ));
+                });
+        Flux<ServerSentEvent<String>> frames = Flux.merge(queueEvents.asFlux(), contentFrames)
+                .concatWith(Mono.just(GenerationRegistry.doneEvent()));
+        return generationRegistry.start(appId, loginUser.getId(), message, frames);
+    }
+
+    /**
+     * 观看应用正在进行的生成（如在另一个标签页打开），附加到同一个上游生成
+     * @param appId 应用 ID
+     * @param request 请求
+     * @return
+     */
+    @GetMapping(value = "/chat/gen/code/watch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> watchGenCode(@RequestParam("appId") Long appId, HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!app.getUserId().equals(loginUser.getId()) && !UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole()),
+                ErrorCode.NO_AUTH_ERROR, "没有权限查看该应用的生成过程");
+        return generationRegistry.watch(appId);
     }
 
     /**
@@ -1,29 +1,41 @@
 package com.jamin.codecube.core;
 
-import cn.hutool.json.JSONUtil;
 import com.jamin.codecube.ai.AiCodeGeneratorService;
 import com.jamin.codecube.ai.AiCodeGeneratorServiceFactory;
+import com.jamin.codecube.ai.memory.RedisListChatMemoryStore;
 import com.jamin.codecube.ai.model.HtmlCodeResult;
 import com.jamin.codecube.ai.model.MultiFileCodeResult;
 import com.jamin.codecube.ai.model.message.AiResponseMessage;
-import com.jamin.codecube.ai.model.message.ToolExecutedMessage;
-import com.jamin.codecube.ai.model.message.ToolRequestMessage;
+import com.jamin.codecube.ai.model.message.StreamMessage;
 import com.jamin.codecube.constant.AppConstant;
 import com.jamin.codecube.core.builder.VueProjectBuilder;
+import com.jamin.codecube.core.cache.GenerationResponseCache;
+import com.jamin.codecube.core.handler.TokenStreamBridge;
 import com.jamin.codecube.core.parse.CodeParserExecutor;
+import com.jamin.codecube.core.parse.StreamingCodeParser;
 import com.jamin.codecube.core.saver.CodeFileSaverExecutor;
 import com.jamin.codecube.model.enums.CodeGenTypeEnum;
 import com.jamin.codecube.exception.BusinessException;
 import com.jamin.codecube.exception.ErrorCode;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
 import dev.langchain4j.service.TokenStream;
-import dev.langchain4j.service.tool.ToolExecution;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * AI 代码生成器外观类
@@ -36,6 +48,12 @@ public class AiCodeGeneratorFacade {
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
     @Autowired
     private VueProjectBuilder vueProjectBuilder;
+    @Autowired
+    private TokenStreamBridge tokenStreamBridge;
+    @Autowired
+    private RedisListChatMemoryStore redisListChatMemoryStore;
+    @Autowired
+    private GenerationResponseCache generationResponseCache;
 
     /**
      * 生成并保存代码文件
@@ -93,89 +111,139 @@ public class AiCodeGeneratorFacade {
      * @param userMessage
      * @param codeGenTypeEnum
      * @param appId
-     * @return
+     * @return 类型化的流式消息
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
         if (codeGenTypeEnum == null) {
             throw new IllegalArgumentException("Code generation type cannot be null");
         }
         // 获取 AI 代码生成服务实例
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
         // 根据不同的代码生成类型调用不同的方法
+        Flux<StreamMessage> result;
         switch (codeGenTypeEnum) {
             case HTML:
-                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                return proccessCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
+                Flux<String> codeStream = generateTextStream(() -> aiCodeGeneratorService.generateHtmlCodeStream(userMessage),
+                        userMessage, CodeGenTypeEnum.HTML, appId);
+                result = proccessCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
+                break;
             case MULTI_FILE:
-                codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                return proccessCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                codeStream = generateTextStream(() -> aiCodeGeneratorService.generateMultiFileCodeStream(userMessage),
+                        userMessage, CodeGenTypeEnum.MULTI_FILE, appId);
+                result = proccessCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                break;
             case VUE_PROJECT:
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
-                return proccessTokenStream(tokenStream, appId);
+                result = proccessTokenStream(tokenStream, appId);
+                break;
             default:
                 String errorMsg = "Unsupported code generation type: " + codeGenTypeEnum;
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, errorMsg);
         }
+        // 生成结束时统计本次写入会话记忆的字节数
+        return result.doFinally(signalType -> redisListChatMemoryStore.recordGenerationBytes(appId));
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
+     * 经由有界缓冲桥接，慢客户端时合并文本而不是无限堆积
      * @param tokenStream
      * @return
      */
-    private Flux<String> proccessTokenStream(TokenStream tokenStream, Long appId) {
-        //  将 TokenStream 转换为 Flux<String>
-        return Flux.create(sink -> {
-            tokenStream.onPartialResponse((String partialResponse) -> {
-                        // 将响应转换为 AiResponseMessage
-                        AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        // 将消息转换为 JSON 字符串并发送到 Flux
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
-                    })
-                    .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
-                        ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
-                    })
-                    .onToolExecuted((ToolExecution toolExecution) -> {
-                        ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
-                    })
-                    .onCompleteResponse((ChatResponse response) -> {
-                        // 立即完成代码生成流
-                        sink.complete();
-                        
-                        // 异步构建 Vue 项目，不阻塞响应，并传递appId用于状态推送
-                        String projectDir = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
-                        vueProjectBuilder.buildProjectAsync(projectDir, appId);
-                        log.info("Vue 项目异步构建已启动: {}", projectDir);
-                    })
-                    .onError((Throwable error) -> {
-                        error.printStackTrace();
-                        sink.error(error);
-                    })
-                    .start();
+    private Flux<StreamMessage> proccessTokenStream(TokenStream tokenStream, Long appId) {
+        return tokenStreamBridge.toFlux(tokenStream, appId, (ChatResponse response) -> {
+            // 异步构建 Vue 项目，不阻塞响应，并传递appId用于状态推送
+            String projectDir = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
+            vueProjectBuilder.buildProjectAsync(projectDir, appId);
+            log.info("Vue 项目异步构建已启动: {}", projectDir);
         });
     }
 
+    /**
+     * 生成文本流，首轮对话优先回放生成结果缓存
+     * 命中时完全跳过模型，回放的分片同样经过代码解析和保存；未命中时录制完整输出，正常结束后写入缓存
+     * @param tokenStreamSupplier
+     * @param userMessage
+     * @param codeGenTypeEnum
+     * @param appId
+     * @return
+     */
+    private Flux<String> generateTextStream(Supplier<TokenStream> tokenStreamSupplier, String userMessage,
+                                            CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+        if (!generationResponseCache.supports(codeGenTypeEnum) || !isFirstTurn(appId)) {
+            return toTextFlux(tokenStreamSupplier.get(), appId, response -> { });
+        }
+        String cacheKey = generationResponseCache.buildKey(codeGenTypeEnum, userMessage);
+        List<String> cachedChunks = generationResponseCache.get(cacheKey, codeGenTypeEnum);
+        if (cachedChunks != null) {
+            // 命中时不经过 AI 服务，手动补齐会话记忆，后续对话才有上下文
+            redisListChatMemoryStore.updateMessages(appId,
+                    List.of(UserMessage.from(userMessage), AiMessage.from(String.join("", cachedChunks))));
+            return Flux.fromIterable(cachedChunks);
+        }
+        List<String> recordedChunks = new ArrayList<>();
+        AtomicReference<FinishReason> finishReason = new AtomicReference<>();
+        return toTextFlux(tokenStreamSupplier.get(), appId, response -> finishReason.set(response.finishReason()))
+                .doOnNext(recordedChunks::add)
+                .doOnComplete(() -> generationResponseCache.put(cacheKey, codeGenTypeEnum, recordedChunks, finishReason.get()));
+    }
+
+    /**
+     * 会话记忆中除系统消息外没有任何消息，即应用的首轮对话
+     * @param appId
+     * @return
+     */
+    private boolean isFirstTurn(Long appId) {
+        return redisListChatMemoryStore.getMessages(appId).stream().allMatch(SystemMessage.class::isInstance);
+    }
+
+    /**
+     * 将只包含文本的 TokenStream 转换为 Flux<String>
+     * 同样经由桥接，取消订阅时会中断模型请求
+     * @param tokenStream
+     * @param appId
+     * @param onComplete 模型响应完成时的回调
+     * @return
+     */
+    private Flux<String> toTextFlux(TokenStream tokenStream, Long appId, Consumer<ChatResponse> onComplete) {
+        return tokenStreamBridge.toFlux(tokenStream, appId, onComplete)
+                .filter(AiResponseMessage.class::isInstance)
+                .map(streamMessage -> ((AiResponseMessage) streamMessage).getData());
+    }
+
     /**
      * 处理代码流并保存
+     * 使用流式解析器逐块识别代码，代码块闭合后立即写入文件，无需等待整个流结束
      * @param codeStream
      * @param codeGenTypeEnum
      * @param appId
      * @return
      */
-    private Flux<String> proccessCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
-        // 由于是流式处理，使用StringBuilder累积结果
-        StringBuilder stringBuilder = new StringBuilder();
+    private Flux<StreamMessage> proccessCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+        StreamingCodeParser streamingCodeParser = new StreamingCodeParser();
+        // 已写入的文件名，同一文件只保留第一个代码块，与正则解析的语义一致
+        Set<String> savedFileNames = new HashSet<>();
+        // 兜底缓冲：在第一个代码块写入前保留原始内容，流结束仍未识别出代码块时回退到整体解析
+        StringBuilder fallbackBuilder = new StringBuilder();
         return codeStream
-                // 累积流式结果
                 .doOnNext(chunk -> {
-                    stringBuilder.append(chunk);
+                    if (savedFileNames.isEmpty()) {
+                        fallbackBuilder.append(chunk);
+                    }
+                    for (StreamingCodeParser.CodeBlock block : streamingCodeParser.feed(chunk)) {
+                        saveCodeBlock(block, codeGenTypeEnum, appId, savedFileNames);
+                    }
+                    if (!savedFileNames.isEmpty() && !fallbackBuilder.isEmpty()) {
+                        fallbackBuilder.setLength(0);
+                    }
                 })
-                // 流式处理完成后，进行解析和保存
                 .doOnComplete(() -> {
+                    if (!savedFileNames.isEmpty()) {
+                        log.info("流式保存完成，appId: {}, 文件: {}", appId, savedFileNames);
+                        return;
+                    }
                     try {
-                        String codeContent = stringBuilder.toString();
+                        String codeContent = fallbackBuilder.toString();
                         Object codeResult = CodeParserExecutor.executeParser(codeContent, codeGenTypeEnum);
                         File saveDir = CodeFileSaverExecutor.executeSaver(codeResult, codeGenTypeEnum, appId);
                         log.info("保存成功，路径为：{}", saveDir.getAbsolutePath());
@@ -183,7 +251,32 @@ public class AiCodeGeneratorFacade {
                     catch (Exception e) {
                         log.error("保存文件失败:{}", e.getMessage());
                     }
-                });
+                })
+                .<StreamMessage>map(AiResponseMessage::new);
+    }
+
+    /**
+     * 保存单个已闭合的代码块
+     * @param block
+     * @param codeGenTypeEnum
+     * @param appId
+     * @param savedFileNames
+     */
+    private void saveCodeBlock(StreamingCodeParser.CodeBlock block, CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                               Set<String> savedFileNames) {
+        String fileName = CodeFileSaverExecutor.resolveBlockFileName(block.language(), codeGenTypeEnum);
+        if (fileName == null || savedFileNames.contains(fileName)) {
+            return;
+        }
+        try {
+            File file = CodeFileSaverExecutor.executeBlockSaver(block.language(), block.content(), codeGenTypeEnum, appId);
+            if (file != null) {
+                savedFileNames.add(fileName);
+                log.info("代码块已保存：{}", file.getAbsolutePath());
+            }
+        } catch (Exception e) {
+            log.error("保存代码块失败:{}", e.getMessage());
+        }
     }
 
     /**
@@ -194,7 +287,7 @@ public class AiCodeGeneratorFacade {
     @Deprecated
     private Flux<String> generateAndSaveHtmlCodeStream(String userMessage) {
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(0L);
-        Flux<String> result = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
+        Flux<String> result = toTextFlux(aiCodeGeneratorService.generateHtmlCodeStream(userMessage), 0L, response -> { });
         // 由于是流式处理，使用StringBuilder累积结果
         StringBuilder stringBuilder = new StringBuilder();
         return result
@@ -225,7 +318,7 @@ public class AiCodeGeneratorFacade {
     @Deprecated
     private Flux<String> generateAndSaveMultiFileCodeStream(String userMessage){
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(0L);
-        Flux<String> result = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
+        Flux<String> result = toTextFlux(aiCodeGeneratorService.generateMultiFileCodeStream(userMessage), 0L, response -> { });
 
         StringBuilder stringBuilder = new StringBuilder();
         return result
@@ -0,0 +1,188 @@
+package com.jamin.codecube.core.builder;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 构建指纹，记录上一次成功构建时的输入与产物
+ *     1. dependencyHash：package.json 依赖字段规范化后的哈希，不变时跳过 npm install
+ *     2. sourceHash：除 node_modules、dist、锁文件、工具缓存和指纹文件外所有文件的内容哈希
+ *        （src/、index.html、vite.config、.env* 等）
+ *     3. distHash：构建产物的内容哈希，源码未变化且 dist 未被改动时跳过整个构建
+ * 保存在项目根目录的 .build-fingerprint 文件中
+ *
+ * @param dependencyHash 依赖哈希
+ * @param sourceHash     源码哈希
+ * @param distHash       dist 目录哈希，仅在构建成功后记录
+ */
+@Slf4j
+public record BuildFingerprint(String dependencyHash, String sourceHash, String distHash) {
+
+    static final String FINGERPRINT_FILE = ".build-fingerprint";
+
+    private static final String NODE_MODULES = "node_modules";
+
+    private static final String DIST = "dist";
+
+    /**
+     * 项目根目录下不参与源码哈希的文件：锁文件由 npm install 生成，内容已由依赖哈希覆盖；指纹文件由构建本身写入
+     */
+    private static final Set<String> EXCLUDED_FILES = Set.of("package-lock.json", FINGERPRINT_FILE, FINGERPRINT_FILE + ".tmp");
+
+    /**
+     * 任意层级下不参与源码哈希的目录：版本库和构建工具的缓存，内容变化不影响构建结果
+     * 其他以 . 开头的文件（.env、.env.production、.browserslistrc 等）会影响构建，照常计入
+     */
+    private static final Set<String> EXCLUDED_DIRS = Set.of(".git", ".vite", ".cache");
+
+    /**
+     * 任意层级下不参与源码哈希的文件：系统生成的元数据
+     */
+    private static final Set<String> IGNORED_FILES = Set.of(".DS_Store");
+
+    /**
+     * 计算项目当前的依赖哈希和源码哈希
+     *
+     * @param projectDir 项目根目录
+     * @return 不含 dist 哈希的指纹
+     */
+    public static BuildFingerprint compute(Path projectDir) throws IOException {
+        String dependencyHash = NodeModulesStore.dependencyKey(projectDir.resolve("package.json"));
+        return new BuildFingerprint(dependencyHash, hashSources(projectDir), null);
+    }
+
+    /**
+     * 读取上一次构建记录的指纹，不存在或无法解析时返回 null
+     */
+    public static BuildFingerprint read(Path projectDir) {
+        Path file = projectDir.resolve(FINGERPRINT_FILE);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            JSONObject json = JSONUtil.parseObj(Files.readString(file, StandardCharsets.UTF_8));
+            return new BuildFingerprint(json.getStr("dependencyHash"), json.getStr("sourceHash"), json.getStr("distHash"));
+        } catch (Exception e) {
+            log.warn("读取构建指纹失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 构建成功后记录指纹（附带当前 dist 哈希）
+     */
+    public void write(Path projectDir) throws IOException {
+        JSONObject json = new JSONObject()
+                .set("dependencyHash", dependencyHash)
+                .set("sourceHash", sourceHash)
+                .set("distHash", hashTree(projectDir.resolve(DIST)));
+        Path file = projectDir.resolve(FINGERPRINT_FILE);
+        Path tmp = projectDir.resolve(FINGERPRINT_FILE + ".tmp");
+        Files.writeString(tmp, json.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 删除记录的指纹，构建失败时调用，避免下次误判为可跳过
+     */
+    public static void clear(Path projectDir) {
+        try {
+            Files.deleteIfExists(projectDir.resolve(FINGERPRINT_FILE));
+        } catch (IOException e) {
+            log.warn("删除构建指纹失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 依赖是否与记录一致，且 node_modules 仍然存在
+     */
+    public boolean dependenciesUnchanged(BuildFingerprint current, Path projectDir) {
+        return dependencyHash != null && dependencyHash.equals(current.dependencyHash)
+                && Files.isDirectory(projectDir.resolve(NODE_MODULES));
+    }
+
+    /**
+     * 源码和依赖都与记录一致，且 dist 未被删除或改动
+     */
+    public boolean buildUpToDate(BuildFingerprint current, Path projectDir) throws IOException {
+        if (sourceHash == null || distHash == null
+                || !sourceHash.equals(current.sourceHash) || !dependenciesUnchanged(current, projectDir)) {
+            return false;
+        }
+        Path dist = projectDir.resolve(DIST);
+        return Files.isDirectory(dist) && distHash.equals(hashTree(dist));
+    }
+
+    /**
+     * 源码哈希：跳过 node_modules、dist、锁文件、指纹文件和工具缓存目录
+     */
+    static String hashSources(Path projectDir) throws IOException {
+        return hashFiles(projectDir, true);
+    }
+
+    /**
+     * 目录下全部文件的内容哈希
+     */
+    static String hashTree(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return null;
+        }
+        return hashFiles(root, false);
+    }
+
+    private static String hashFiles(Path root, boolean sourcesOnly) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (sourcesOnly && !dir.equals(root)) {
+                    String name = dir.getFileName().toString();
+                    if (EXCLUDED_DIRS.contains(name) || (dir.getParent().equals(root)
+                            && (NODE_MODULES.equals(name) || DIST.equals(name)))) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = file.getFileName().toString();
+                if (sourcesOnly && (IGNORED_FILES.contains(name)
+                        || (file.getParent().equals(root) && EXCLUDED_FILES.contains(name)))) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (attrs.isRegularFile()) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        // 按相对路径排序，哈希与遍历顺序无关
+        List<String> relativePaths = new ArrayList<>(files.size());
+        for (Path file : files) {
+            relativePaths.add(root.relativize(file).toString().replace('\\', '/'));
+        }
+        relativePaths.sort(String::compareTo);
+        StringBuilder manifest = new StringBuilder();
+        for (String relativePath : relativePaths) {
+            manifest.append(relativePath).append('\0')
+                    .append(DigestUtil.sha256Hex(Files.readAllBytes(root.resolve(relativePath)))).append('\n');
+        }
+        return DigestUtil.sha256Hex(manifest.toString());
+    }
+}
@@ -0,0 +1,88 @@
+package com.jamin.codecube.core.builder;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 构建日志合并推送
+ * npm install 和 vite build 一秒内可能输出上千行，逐行推送会产生同样多的 SSE 帧；
+ * 这里把一个时间窗口内的输出合并为一条（行之间以换行分隔），窗口从缓冲第一行时开始计时。
+ * 构建步骤结束时调用 {@link #flush()}，保证最后几行先于构建结果事件送达。
+ */
+@Slf4j
+public class BuildLogBatcher implements Consumer<String> {
+
+    private final Consumer<String> sink;
+
+    private final long intervalMillis;
+
+    /**
+     * 保证各批按顺序推送
+     */
+    private final Object sendLock = new Object();
+
+    private final List<String> pending = new ArrayList<>();
+
+    private boolean flushScheduled;
+
+    /**
+     * @param sink           接收合并后的日志
+     * @param intervalMillis 合并窗口毫秒数，不大于 0 时逐行推送
+     */
+    public BuildLogBatcher(Consumer<String> sink, long intervalMillis) {
+        this.sink = sink;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void accept(String line) {
+        if (intervalMillis <= 0) {
+            send(line);
+            return;
+        }
+        synchronized (this) {
+            pending.add(line);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        Thread.ofVirtual().name("vue-build-log-flush").start(() -> {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        });
+    }
+
+    /**
+     * 立即推送已缓冲的日志
+     */
+    public void flush() {
+        synchronized (sendLock) {
+            String batch;
+            synchronized (this) {
+                flushScheduled = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = String.join("\n", pending);
+                pending.clear();
+            }
+            send(batch);
+        }
+    }
+
+    private void send(String batch) {
+        try {
+            sink.accept(batch);
+        } catch (Exception e) {
+            log.debug("推送构建日志失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.jamin.codecube.core.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 构建日志环形缓冲区，只保留最近的若干行，用于构建失败时输出日志尾部
+ * 线程安全，stdout 和 stderr 的读取线程同时写入
+ */
+public class BuildLogBuffer {
+
+    private final String[] lines;
+
+    /**
+     * 下一行写入的位置
+     */
+    private int next = 0;
+
+    private int size = 0;
+
+    /**
+     * 累计写入的行数（含已被覆盖的）
+     */
+    private long total = 0;
+
+    public BuildLogBuffer(int capacity) {
+        this.lines = new String[Math.max(1, capacity)];
+    }
+
+    public synchronized void append(String line) {
+        lines[next] = line;
+        next = (next + 1) % lines.length;
+        size = Math.min(size + 1, lines.length);
+        total++;
+    }
+
+    /**
+     * 按写入顺序返回缓冲区中的日志
+     */
+    public synchronized List<String> tail() {
+        List<String> result = new ArrayList<>(size);
+        int start = (next - size + lines.length) % lines.length;
+        for (int i = 0; i < size; i++) {
+            result.add(lines[(start + i) % lines.length]);
+        }
+        return result;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+}
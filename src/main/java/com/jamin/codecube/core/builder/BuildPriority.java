@@ -0,0 +1,22 @@
+package com.jamin.codecube.core.builder;
+
+import lombok.Getter;
+
+/**
+ * 构建优先级，声明顺序即出队顺序
+ */
+@Getter
+public enum BuildPriority {
+
+    INTERACTIVE("interactive", "用户部署，调用方同步等待"),
+    WORKFLOW("workflow", "工作流构建节点"),
+    BACKGROUND("background", "生成完成后的后台预构建");
+
+    private final String value;
+    private final String text;
+
+    BuildPriority(String value, String text) {
+        this.value = value;
+        this.text = text;
+    }
+}
@@ -0,0 +1,391 @@
+package com.jamin.codecube.core.builder;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.jamin.codecube.config.VueProjectBuildConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * 按依赖集合寻址的 node_modules 共享仓库
+ * 生成的 Vue 项目几乎都使用同一套 Vite/Vue 依赖，没必要每个项目都完整执行一次 npm install：
+ *     1. 依赖哈希：有 package-lock.json 时取锁文件哈希，否则取 package.json 中各依赖字段规范化（按名称排序）后的哈希
+ *     2. 命中快照：把快照中的 node_modules 以硬链接的方式铺到项目目录（跨文件系统时退化为复制），符号链接原样重建
+ *     3. 未命中：执行真正的 npm install，成功后把结果硬链接进仓库作为新快照；之后 npm 生成的锁文件哈希也指向该快照
+ * 快照目录结构：{dir}/{key}/node_modules、{dir}/{key}/.complete（完成标记，修改时间即最近使用时间）、{dir}/{lockKey}.ref（锁文件哈希到快照的指向）
+ */
+@Slf4j
+@Component
+public class NodeModulesStore {
+
+    private static final String NODE_MODULES = "node_modules";
+
+    private static final String PACKAGE_JSON = "package.json";
+
+    private static final String PACKAGE_LOCK = "package-lock.json";
+
+    /**
+     * 快照完成标记
+     */
+    private static final String COMPLETE_MARKER = ".complete";
+
+    /**
+     * 写在项目 node_modules 中的来源标记，内容为依赖哈希
+     */
+    private static final String STORE_KEY_FILE = ".store-key";
+
+    private static final String REF_SUFFIX = ".ref";
+
+    private static final String TMP_MARKER = ".tmp-";
+
+    /**
+     * 构建过程中会写入的缓存目录，不进入快照，也不从快照链接
+     */
+    private static final Set<String> EXCLUDED_DIRS = Set.of(".vite", ".cache");
+
+    /**
+     * 参与哈希的 package.json 字段
+     */
+    private static final List<String> DEPENDENCY_FIELDS = List.of(
+            "dependencies", "devDependencies", "optionalDependencies", "peerDependencies", "overrides");
+
+    @Autowired
+    private VueProjectBuildConfig vueProjectBuildConfig;
+
+    private final ConcurrentMap<String, ReentrantLock> keyLocks = new ConcurrentHashMap<>();
+
+    /**
+     * 为项目准备 node_modules
+     *
+     * @param projectDir 项目目录
+     * @param npmInstall 真正的 npm install，未命中快照或复用失败时执行
+     * @return 是否成功
+     */
+    public boolean install(File projectDir, BooleanSupplier npmInstall) {
+        if (!vueProjectBuildConfig.getNodeModulesStore().isEnabled()) {
+            return npmInstall.getAsBoolean();
+        }
+        Path projectPath = projectDir.toPath();
+        Path projectModules = projectPath.resolve(NODE_MODULES);
+        String key;
+        try {
+            key = resolveKey(projectPath);
+        } catch (Exception e) {
+            log.warn("计算依赖哈希失败，直接执行 npm install：{}", e.getMessage());
+            return npmInstall.getAsBoolean();
+        }
+        ReentrantLock lock = keyLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (key.equals(readStoreKey(projectModules))) {
+                log.info("node_modules 已与依赖哈希一致，跳过安装：{}", key);
+                return true;
+            }
+            if (reuseSnapshot(key, projectModules)) {
+                return true;
+            }
+            return installAndPublish(projectPath, key, npmInstall);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 命中快照时铺到项目目录
+     *
+     * @return 是否已复用快照
+     */
+    private boolean reuseSnapshot(String key, Path projectModules) {
+        try {
+            Path snapshot = findSnapshot(key);
+            if (snapshot == null) {
+                return false;
+            }
+            long start = System.nanoTime();
+            materialize(snapshot.resolve(NODE_MODULES), projectModules, key);
+            Files.setLastModifiedTime(snapshot.resolve(COMPLETE_MARKER), FileTime.fromMillis(System.currentTimeMillis()));
+            log.info("命中 node_modules 快照 {}，铺设耗时 {} ms", snapshot.getFileName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } catch (IOException e) {
+            log.warn("复用 node_modules 快照失败，回退到 npm install：{}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 未命中快照：执行 npm install，成功后保存为快照
+     */
+    private boolean installAndPublish(Path projectPath, String key, BooleanSupplier npmInstall) {
+        Path projectModules = projectPath.resolve(NODE_MODULES);
+        if (readStoreKey(projectModules) != null) {
+            // 现有 node_modules 与快照共享文件，npm 原地修改会污染快照，先删除
+            try {
+                deleteTree(projectModules);
+            } catch (IOException e) {
+                log.warn("清理 node_modules 失败：{}", e.getMessage());
+            }
+        }
+        log.info("未找到依赖哈希 {} 的快照，执行 npm install", key);
+        if (!npmInstall.getAsBoolean()) {
+            return false;
+        }
+        try {
+            publish(projectPath, key);
+        } catch (IOException e) {
+            log.warn("保存 node_modules 快照失败：{}", e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * 计算项目的依赖哈希：优先锁文件，否则 package.json 依赖字段
+     */
+    String resolveKey(Path projectPath) throws IOException {
+        Path lockFile = projectPath.resolve(PACKAGE_LOCK);
+        if (Files.isRegularFile(lockFile)) {
+            return lockKey(lockFile);
+        }
+        return dependencyKey(projectPath.resolve(PACKAGE_JSON));
+    }
+
+    /**
+     * package.json 依赖字段规范化后的哈希，与字段顺序、name/version/scripts 等无关
+     */
+    static String dependencyKey(Path packageJson) throws IOException {
+        JSONObject json = JSONUtil.parseObj(Files.readString(packageJson, StandardCharsets.UTF_8));
+        StringBuilder canonical = new StringBuilder();
+        for (String field : DEPENDENCY_FIELDS) {
+            JSONObject dependencies = json.getJSONObject(field);
+            if (dependencies == null || dependencies.isEmpty()) {
+                continue;
+            }
+            canonical.append('[').append(field).append("]\n");
+            Map<String, Object> sorted = new TreeMap<>(dependencies);
+            sorted.forEach((name, version) -> canonical.append(name).append('@').append(version).append('\n'));
+        }
+        return "deps-" + DigestUtil.sha256Hex(canonical.toString());
+    }
+
+    private static String lockKey(Path lockFile) throws IOException {
+        return "lock-" + DigestUtil.sha256Hex(Files.readAllBytes(lockFile));
+    }
+
+    /**
+     * 查找可用快照，支持锁文件哈希的指向
+     */
+    private Path findSnapshot(String key) throws IOException {
+        Path storeDir = storeDir();
+        Path snapshot = storeDir.resolve(key);
+        if (Files.isRegularFile(snapshot.resolve(COMPLETE_MARKER))) {
+            return snapshot;
+        }
+        Path ref = storeDir.resolve(key + REF_SUFFIX);
+        if (Files.isRegularFile(ref)) {
+            Path target = storeDir.resolve(Files.readString(ref, StandardCharsets.UTF_8).trim());
+            if (Files.isRegularFile(target.resolve(COMPLETE_MARKER))) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把快照铺到项目目录：先铺到临时目录，完成后整体替换，中途失败不会留下半个 node_modules
+     */
+    private void materialize(Path source, Path target, String key) throws IOException {
+        Path staging = target.resolveSibling(NODE_MODULES + TMP_MARKER + UUID.randomUUID());
+        try {
+            linkTree(source, staging);
+            Files.writeString(staging.resolve(STORE_KEY_FILE), key, StandardCharsets.UTF_8);
+            if (Files.exists(target)) {
+                deleteTree(target);
+            }
+            Files.move(staging, target);
+        } catch (IOException e) {
+            deleteTree(staging);
+            throw e;
+        }
+    }
+
+    /**
+     * npm install 成功后把项目的 node_modules 保存为快照
+     */
+    private void publish(Path projectPath, String key) throws IOException {
+        Path storeDir = storeDir();
+        Files.createDirectories(storeDir);
+        Path projectModules = projectPath.resolve(NODE_MODULES);
+        Path lockFile = projectPath.resolve(PACKAGE_LOCK);
+        Path target = storeDir.resolve(key);
+        if (!Files.exists(target)) {
+            Path staging = storeDir.resolve(key + TMP_MARKER + UUID.randomUUID());
+            try {
+                linkTree(projectModules, staging.resolve(NODE_MODULES));
+                if (Files.isRegularFile(lockFile)) {
+                    Files.copy(lockFile, staging.resolve(PACKAGE_LOCK));
+                }
+                Files.writeString(staging.resolve(COMPLETE_MARKER), key, StandardCharsets.UTF_8);
+                Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+                log.info("已保存 node_modules 快照：{}", key);
+            } catch (IOException e) {
+                deleteTree(staging);
+                throw e;
+            }
+        }
+        // npm 生成了锁文件：之后该项目按锁文件哈希查找，同样指向这个快照
+        if (Files.isRegularFile(lockFile)) {
+            String lockKey = lockKey(lockFile);
+            if (!lockKey.equals(key)) {
+                Path ref = storeDir.resolve(lockKey + REF_SUFFIX);
+                Path staging = storeDir.resolve(lockKey + REF_SUFFIX + TMP_MARKER + UUID.randomUUID());
+                Files.writeString(staging, key, StandardCharsets.UTF_8);
+                Files.move(staging, ref, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.writeString(projectModules.resolve(STORE_KEY_FILE), key, StandardCharsets.UTF_8);
+        evict();
+    }
+
+    /**
+     * 快照数超过上限时按最近使用时间淘汰，已铺到项目中的硬链接不受影响
+     */
+    private void evict() throws IOException {
+        Path storeDir = storeDir();
+        List<Path> snapshots = new ArrayList<>();
+        List<Path> refs = new ArrayList<>();
+        try (Stream<Path> children = Files.list(storeDir)) {
+            children.forEach(child -> {
+                String name = child.getFileName().toString();
+                if (name.contains(TMP_MARKER)) {
+                    return;
+                }
+                if (name.endsWith(REF_SUFFIX)) {
+                    refs.add(child);
+                } else if (Files.isRegularFile(child.resolve(COMPLETE_MARKER))) {
+                    snapshots.add(child);
+                }
+            });
+        }
+        int overflow = snapshots.size() - Math.max(1, vueProjectBuildConfig.getNodeModulesStore().getMaxSnapshots());
+        if (overflow <= 0) {
+            return;
+        }
+        snapshots.sort(Comparator.comparingLong(snapshot -> snapshot.resolve(COMPLETE_MARKER).toFile().lastModified()));
+        for (Path snapshot : snapshots.subList(0, overflow)) {
+            String evictedKey = snapshot.getFileName().toString();
+            deleteTree(snapshot);
+            for (Path ref : refs) {
+                if (evictedKey.equals(Files.readString(ref, StandardCharsets.UTF_8).trim())) {
+                    Files.deleteIfExists(ref);
+                }
+            }
+            log.info("淘汰 node_modules 快照：{}", evictedKey);
+        }
+    }
+
+    /**
+     * 复制目录树：普通文件优先硬链接，失败（如跨文件系统）后改为复制；符号链接原样重建
+     */
+    private static void linkTree(Path source, Path target) throws IOException {
+        boolean[] hardLinks = {true};
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(source) && EXCLUDED_DIRS.contains(dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Files.createDirectories(target.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (file.getFileName().toString().equals(STORE_KEY_FILE)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path dest = target.resolve(source.relativize(file));
+                if (attrs.isSymbolicLink()) {
+                    Files.createSymbolicLink(dest, Files.readSymbolicLink(file));
+                    return FileVisitResult.CONTINUE;
+                }
+                if (hardLinks[0]) {
+                    try {
+                        Files.createLink(dest, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        hardLinks[0] = false;
+                        log.info("无法创建硬链接，改为复制文件：{}", e.getMessage());
+                    }
+                }
+                Files.copy(file, dest, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 删除目录树，不跟随符号链接
+     */
+    static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static String readStoreKey(Path projectModules) {
+        Path keyFile = projectModules.resolve(STORE_KEY_FILE);
+        try {
+            return Files.isRegularFile(keyFile) ? Files.readString(keyFile, StandardCharsets.UTF_8).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Path storeDir() {
+        return Paths.get(vueProjectBuildConfig.getNodeModulesStore().getDir());
+    }
+}
@@ -0,0 +1,232 @@
+package com.jamin.codecube.core.builder;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.jamin.codecube.config.VueProjectBuildConfig;
+import com.jamin.codecube.monitor.BuildMetricsCollector;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 常驻 Vite 构建进程池
+ *     1. 启动 pool-size 个 Node 进程（vite-build-worker.mjs），进程内直接调用 Vite 的 build()，
+ *        省去每次 npm run build 的 Node 启动、模块解析和 Vite 加载
+ *     2. 构建时取一个空闲进程，没有空闲进程或项目不适用时返回 UNAVAILABLE，由调用方退回 npm run build，不额外排队
+ *     3. 进程执行 max-builds-per-worker 次构建后回收重启；构建超时或进程退出时销毁并补充新进程
+ *     4. 定时对空闲进程做健康检查，并把进程数补足到 pool-size
+ */
+@Slf4j
+@Component
+public class ViteDaemonPool {
+
+    private static final String WORKER_SCRIPT = "vite-daemon/vite-build-worker.mjs";
+
+    /**
+     * 只有 build 脚本就是 vite build 的项目才能由进程池构建，其余（如 vue-tsc && vite build）仍走 npm
+     */
+    private static final String VITE_BUILD_SCRIPT = "vite build";
+
+    @Autowired
+    private VueProjectBuildConfig vueProjectBuildConfig;
+
+    @Autowired
+    private BuildMetricsCollector buildMetricsCollector;
+
+    private final LinkedBlockingQueue<ViteDaemonWorker> idle = new LinkedBlockingQueue<>();
+
+    /**
+     * 所有存活的进程（空闲和构建中）
+     */
+    private final ConcurrentHashMap.KeySetView<ViteDaemonWorker, Boolean> workers = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService scheduler;
+
+    private Path workerScript;
+
+    private volatile boolean stopped;
+
+    /**
+     * 进程池构建结果
+     */
+    public enum Result {
+        SUCCESS,
+        FAILURE,
+        /**
+         * 进程池未启用、项目不适用、没有空闲进程或进程异常退出，应退回 npm run build
+         */
+        UNAVAILABLE
+    }
+
+    @PostConstruct
+    public void init() {
+        VueProjectBuildConfig.ViteDaemon config = vueProjectBuildConfig.getViteDaemon();
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            Path dir = Files.createTempDirectory("vite-daemon");
+            workerScript = dir.resolve("vite-build-worker.mjs");
+            Files.writeString(workerScript, ResourceUtil.readUtf8Str(WORKER_SCRIPT), StandardCharsets.UTF_8);
+            workerScript.toFile().deleteOnExit();
+            dir.toFile().deleteOnExit();
+        } catch (IOException e) {
+            log.error("释放 Vite 构建脚本失败，进程池不启用: {}", e.getMessage());
+            return;
+        }
+        buildMetricsCollector.registerDaemonGauges(workers::size, idle::size);
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("vite-daemon-health").daemon(true).factory());
+        // 启动进程不阻塞应用启动，之后由健康检查补足
+        scheduler.execute(this::replenish);
+        scheduler.scheduleWithFixedDelay(this::healthCheck, config.getHealthCheckIntervalSeconds(),
+                config.getHealthCheckIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        workers.forEach(ViteDaemonWorker::destroy);
+        workers.clear();
+        idle.clear();
+    }
+
+    /**
+     * 用常驻进程构建项目
+     *
+     * @param projectDir     项目目录
+     * @param timeoutSeconds 构建超时秒数
+     * @param logBuffer      构建日志缓冲区
+     * @param logListener    逐行接收构建日志
+     * @return 构建结果，UNAVAILABLE 时调用方应退回 npm run build
+     */
+    public Result build(Path projectDir, int timeoutSeconds, BuildLogBuffer logBuffer, Consumer<String> logListener) {
+        if (scheduler == null || stopped || !supports(projectDir)) {
+            return Result.UNAVAILABLE;
+        }
+        ViteDaemonWorker worker = idle.poll();
+        if (worker == null) {
+            buildMetricsCollector.recordDaemonBuild(Result.UNAVAILABLE.name().toLowerCase());
+            return Result.UNAVAILABLE;
+        }
+        Result result;
+        boolean reusable = false;
+        try {
+            boolean success = worker.build(projectDir, timeoutSeconds, line -> {
+                logBuffer.append(line);
+                logListener.accept(line);
+            });
+            result = success ? Result.SUCCESS : Result.FAILURE;
+            reusable = true;
+        } catch (TimeoutException e) {
+            log.error("{} 构建超时（{}秒），销毁该进程", worker.getName(), timeoutSeconds);
+            result = Result.FAILURE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = Result.FAILURE;
+        } catch (IOException e) {
+            log.warn("{} 不可用，退回 npm run build: {}", worker.getName(), e.getMessage());
+            result = Result.UNAVAILABLE;
+        }
+        release(worker, reusable);
+        buildMetricsCollector.recordDaemonBuild(result.name().toLowerCase());
+        return result;
+    }
+
+    /**
+     * 项目是否可由进程池构建：build 脚本为 vite build，且已安装 vite
+     */
+    static boolean supports(Path projectDir) {
+        if (!Files.isRegularFile(projectDir.resolve("node_modules/vite/package.json"))) {
+            return false;
+        }
+        try {
+            JSONObject packageJson = JSONUtil.parseObj(Files.readString(projectDir.resolve("package.json"), StandardCharsets.UTF_8));
+            JSONObject scripts = packageJson.getJSONObject("scripts");
+            return scripts != null && VITE_BUILD_SCRIPT.equals(scripts.getStr("build", "").trim());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 构建结束后归还进程；达到构建次数上限、超时或已退出时销毁并补充
+     */
+    private void release(ViteDaemonWorker worker, boolean reusable) {
+        int maxBuilds = vueProjectBuildConfig.getViteDaemon().getMaxBuildsPerWorker();
+        if (!stopped && reusable && worker.isAlive() && worker.getBuildCount() < maxBuilds) {
+            idle.offer(worker);
+            return;
+        }
+        if (reusable && worker.getBuildCount() >= maxBuilds) {
+            log.info("{} 已执行 {} 次构建，回收重启", worker.getName(), worker.getBuildCount());
+        }
+        retire(worker);
+        if (!stopped) {
+            scheduler.execute(this::replenish);
+        }
+    }
+
+    private void retire(ViteDaemonWorker worker) {
+        workers.remove(worker);
+        idle.remove(worker);
+        worker.destroy();
+    }
+
+    /**
+     * 检查空闲进程，无响应的销毁，然后补足进程数
+     */
+    private void healthCheck() {
+        int timeout = vueProjectBuildConfig.getViteDaemon().getHealthCheckTimeoutSeconds();
+        List<ViteDaemonWorker> checking = new ArrayList<>();
+        idle.drainTo(checking);
+        for (ViteDaemonWorker worker : checking) {
+            if (worker.isAlive() && worker.ping(timeout)) {
+                idle.offer(worker);
+            } else {
+                log.warn("{} 健康检查未通过，销毁", worker.getName());
+                retire(worker);
+            }
+        }
+        // 构建中退出的进程也在这里清理
+        workers.removeIf(worker -> !worker.isAlive());
+        replenish();
+    }
+
+    /**
+     * 启动新进程直到数量达到 pool-size，失败时等下一次健康检查重试
+     */
+    private void replenish() {
+        VueProjectBuildConfig.ViteDaemon config = vueProjectBuildConfig.getViteDaemon();
+        while (!stopped && workers.size() < config.getPoolSize()) {
+            try {
+                ViteDaemonWorker worker = ViteDaemonWorker.start(config.getNodeCommand(), workerScript,
+                        config.getStartupTimeoutSeconds());
+                workers.add(worker);
+                idle.offer(worker);
+            } catch (IOException e) {
+                log.warn("启动 Vite 构建进程失败，{} 秒后重试: {}", config.getHealthCheckIntervalSeconds(), e.getMessage());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.jamin.codecube.core.builder;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 单个常驻 Vite 构建进程（vite-build-worker.mjs）
+ * stdin 写入一行 JSON 请求，stdout 中以 MARKER 开头的行是响应，其余 stdout/stderr 输出都是当前构建的日志
+ * 同一时刻只执行一个构建，由 ViteDaemonPool 保证
+ */
+@Slf4j
+class ViteDaemonWorker {
+
+    static final String MARKER = "\u0001vite-daemon ";
+
+    private static final AtomicInteger WORKER_SEQUENCE = new AtomicInteger();
+
+    private final String name = "vite-daemon-" + WORKER_SEQUENCE.incrementAndGet();
+
+    private final Process process;
+
+    private final Writer stdin;
+
+    private final AtomicLong requestSequence = new AtomicLong();
+
+    private final Map<Long, CompletableFuture<JSONObject>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 启动完成信号（id 为 0 的响应）
+     */
+    private final CompletableFuture<JSONObject> ready = new CompletableFuture<>();
+
+    /**
+     * 当前构建的日志接收方，空闲时为 null
+     */
+    private volatile Consumer<String> logListener;
+
+    private final AtomicInteger buildCount = new AtomicInteger();
+
+    private ViteDaemonWorker(Process process) {
+        this.process = process;
+        this.stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        pending.put(0L, ready);
+        Thread.ofVirtual().name(name + "-stdout").start(() -> readOutput(process.getInputStream(), true));
+        Thread.ofVirtual().name(name + "-stderr").start(() -> readOutput(process.getErrorStream(), false));
+        process.onExit().thenRun(() -> {
+            IOException exited = new IOException(name + " 已退出，退出码: " + process.exitValue());
+            pending.values().forEach(future -> future.completeExceptionally(exited));
+        });
+    }
+
+    /**
+     * 启动进程并等待就绪
+     *
+     * @param nodeCommand    node 可执行文件
+     * @param script         worker 脚本路径
+     * @param startupTimeout 启动超时秒数
+     */
+    static ViteDaemonWorker start(String nodeCommand, Path script, int startupTimeout) throws IOException {
+        Process process = new ProcessBuilder(List.of(nodeCommand, script.toString())).start();
+        ViteDaemonWorker worker = new ViteDaemonWorker(process);
+        try {
+            worker.ready.get(startupTimeout, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            worker.destroy();
+            throw new IOException("Vite 构建进程启动失败: " + e.getMessage(), e);
+        }
+        log.info("Vite 构建进程 {} 已就绪，pid: {}", worker.name, process.pid());
+        return worker;
+    }
+
+    /**
+     * 在进程中构建项目
+     *
+     * @param projectDir     项目目录
+     * @param timeoutSeconds 超时秒数
+     * @param logListener    构建日志接收方
+     * @return 是否构建成功
+     * @throws IOException      进程已退出或无法写入
+     * @throws TimeoutException 构建超时（进程状态未知，调用方应销毁该进程）
+     */
+    boolean build(Path projectDir, int timeoutSeconds, Consumer<String> logListener)
+            throws IOException, TimeoutException, InterruptedException {
+        buildCount.incrementAndGet();
+        this.logListener = logListener;
+        try {
+            JSONObject request = new JSONObject()
+                    .set("type", "build")
+                    .set("root", projectDir.toAbsolutePath().normalize().toString());
+            JSONObject response = await(send(request), timeoutSeconds);
+            if (!response.getBool("ok", false)) {
+                log.warn("{} 构建失败: {}", name, response.getStr("error"));
+                return false;
+            }
+            log.info("{} 构建完成，耗时 {} ms", name, response.getLong("durationMs"));
+            return true;
+        } finally {
+            this.logListener = null;
+        }
+    }
+
+    /**
+     * 健康检查
+     */
+    boolean ping(int timeoutSeconds) {
+        try {
+            return await(send(new JSONObject().set("type", "ping")), timeoutSeconds).getBool("ok", false);
+        } catch (Exception e) {
+            log.warn("{} 健康检查失败: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    int getBuildCount() {
+        return buildCount.get();
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void destroy() {
+        VueProjectBuilder.destroyProcessTree(process);
+    }
+
+    private CompletableFuture<JSONObject> send(JSONObject request) throws IOException {
+        if (!process.isAlive()) {
+            throw new IOException(name + " 已退出");
+        }
+        long id = requestSequence.incrementAndGet();
+        CompletableFuture<JSONObject> future = new CompletableFuture<>();
+        pending.put(id, future);
+        try {
+            synchronized (stdin) {
+                stdin.write(request.set("id", id).toString());
+                stdin.write('\n');
+                stdin.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            throw e;
+        }
+        return future;
+    }
+
+    private JSONObject await(CompletableFuture<JSONObject> future, int timeoutSeconds)
+            throws IOException, TimeoutException, InterruptedException {
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+        }
+    }
+
+    private void readOutput(InputStream inputStream, boolean protocol) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (protocol && line.startsWith(MARKER)) {
+                    handleResponse(line.substring(MARKER.length()));
+                } else {
+                    forwardLog(line);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("{} 输出读取结束: {}", name, e.getMessage());
+        }
+    }
+
+    private void handleResponse(String json) {
+        try {
+            JSONObject response = JSONUtil.parseObj(json);
+            CompletableFuture<JSONObject> future = pending.remove(response.getLong("id", -1L));
+            if (future != null) {
+                future.complete(response);
+            }
+        } catch (Exception e) {
+            log.warn("{} 响应解析失败: {}", name, json);
+        }
+    }
+
+    private void forwardLog(String line) {
+        Consumer<String> listener = logListener;
+        if (listener == null) {
+            log.debug("{}: {}", name, line);
+            return;
+        }
+        try {
+            listener.accept(line);
+        } catch (Exception e) {
+            log.debug("推送构建日志失败: {}", e.getMessage());
+        }
+    }
+}
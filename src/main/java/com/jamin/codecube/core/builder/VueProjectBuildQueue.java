@@ -0,0 +1,200 @@
+package com.jamin.codecube.core.builder;
+
+import com.jamin.codecube.config.VueProjectBuildConfig;
+import com.jamin.codecube.exception.BusinessException;
+import com.jamin.codecube.exception.ErrorCode;
+import com.jamin.codecube.monitor.BuildMetricsCollector;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Vue 项目构建队列
+ *     1. 固定数量的构建线程（按 CPU 核数和内存计算），避免突发请求同时拉起几十个 Node 进程
+ *     2. 同一项目目录在排队或构建中时，后来的请求直接等待同一个结果，不会并发构建同一目录
+ *     3. 按优先级出队，用户部署优先；合并到排队中的任务时按更高的优先级重新排队
+ */
+@Slf4j
+@Component
+public class VueProjectBuildQueue {
+
+    @Autowired
+    private VueProjectBuildConfig vueProjectBuildConfig;
+
+    @Autowired
+    private BuildMetricsCollector buildMetricsCollector;
+
+    private final PriorityBlockingQueue<BuildTask> queue = new PriorityBlockingQueue<>();
+
+    /**
+     * 排队或构建中的任务，按项目目录索引，受 this 锁保护
+     */
+    private final Map<String, BuildTask> inFlight = new HashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean stopped;
+
+    @PostConstruct
+    public void init() {
+        int workerCount = resolveWorkerCount();
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = Thread.ofPlatform().name("vue-build-worker-" + i).daemon(true).start(this::runWorker);
+            workers.add(worker);
+        }
+        for (BuildPriority priority : BuildPriority.values()) {
+            buildMetricsCollector.registerQueueDepthGauge(priority.getValue(), () -> queueDepth(priority));
+        }
+        buildMetricsCollector.registerRunningGauge(running::get);
+        log.info("Vue 项目构建队列已启动，构建线程数: {}", workerCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 提交构建
+     *
+     * @param projectPath 项目目录，同一目录的请求会合并
+     * @param priority    优先级
+     * @param build       实际的构建过程
+     * @return 构建结果；排队已满时以 TOO_MANY_REQUEST 异常结束
+     */
+    public CompletableFuture<Boolean> submit(String projectPath, BuildPriority priority, BooleanSupplier build) {
+        String key = new File(projectPath).getAbsoluteFile().toPath().normalize().toString();
+        synchronized (this) {
+            BuildTask existing = inFlight.get(key);
+            if (existing != null) {
+                buildMetricsCollector.recordCoalesced(priority.getValue());
+                // 仍在排队（未被取走）时按更高的优先级重新排队
+                if (priority.ordinal() < existing.priority.ordinal() && queue.remove(existing)) {
+                    existing.priority = priority;
+                    queue.add(existing);
+                }
+                log.info("项目 {} 已在构建队列中，等待同一个构建结果", key);
+                return existing.future;
+            }
+            if (queue.size() >= vueProjectBuildConfig.getMaxQueueSize()) {
+                return CompletableFuture.failedFuture(new BusinessException(ErrorCode.TOO_MANY_REQUEST, "构建任务过多，请稍后再试"));
+            }
+            BuildTask task = new BuildTask(key, priority, sequence.incrementAndGet(), build);
+            inFlight.put(key, task);
+            queue.add(task);
+            return task.future;
+        }
+    }
+
+    /**
+     * 某个优先级的排队构建数
+     */
+    public int queueDepth(BuildPriority priority) {
+        int depth = 0;
+        for (BuildTask task : queue) {
+            if (task.priority == priority) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    private void runWorker() {
+        while (!stopped) {
+            BuildTask task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            running.incrementAndGet();
+            long startNanos = System.nanoTime();
+            buildMetricsCollector.recordQueueWait(task.priority.getValue(), Duration.ofNanos(startNanos - task.enqueuedAtNanos));
+            boolean success = false;
+            try {
+                success = task.build.getAsBoolean();
+            } catch (Exception e) {
+                log.error("构建项目 {} 时发生异常: {}", task.key, e.getMessage(), e);
+            } finally {
+                running.decrementAndGet();
+                synchronized (this) {
+                    inFlight.remove(task.key, task);
+                }
+                buildMetricsCollector.recordBuildDuration(success ? "success" : "failure",
+                        Duration.ofNanos(System.nanoTime() - startNanos));
+                task.future.complete(success);
+            }
+        }
+    }
+
+    /**
+     * 构建线程数：配置值，或 min(CPU 核数 / 2, 物理内存 / 每个构建预留内存)
+     */
+    private int resolveWorkerCount() {
+        if (vueProjectBuildConfig.getWorkers() > 0) {
+            return vueProjectBuildConfig.getWorkers();
+        }
+        int byCores = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        int byMemory = byCores;
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean sunOsBean) {
+            long totalMemoryMb = sunOsBean.getTotalMemorySize() / (1024 * 1024);
+            byMemory = (int) Math.max(1, totalMemoryMb / Math.max(1, vueProjectBuildConfig.getMemoryPerBuildMb()));
+        }
+        return Math.min(byCores, byMemory);
+    }
+
+    private static final class BuildTask implements Comparable<BuildTask> {
+
+        private final String key;
+
+        private final long sequence;
+
+        private final BooleanSupplier build;
+
+        private final long enqueuedAtNanos = System.nanoTime();
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private BuildPriority priority;
+
+        private BuildTask(String key, BuildPriority priority, long sequence, BooleanSupplier build) {
+            this.key = key;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.build = build;
+        }
+
+        @Override
+        public int compareTo(BuildTask other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
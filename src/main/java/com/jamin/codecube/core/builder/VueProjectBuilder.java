@@ -1,13 +1,27 @@
 package com.jamin.codecube.core.builder;
 
 import cn.hutool.core.util.RuntimeUtil;
+import com.jamin.codecube.config.VueProjectBuildConfig;
+import com.jamin.codecube.exception.BusinessException;
+import com.jamin.codecube.monitor.BuildMetricsCollector;
 import com.jamin.codecube.service.BuildStatusService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
  * 构建 Vue 项目
@@ -16,35 +30,51 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class VueProjectBuilder {
 
+    /**
+     * 进程退出后等待输出读取完成的最长时间
+     */
+    private static final long DRAIN_TIMEOUT_MILLIS = 5000;
+
     @Autowired
     private BuildStatusService buildStatusService;
 
+    @Autowired
+    private VueProjectBuildConfig vueProjectBuildConfig;
+
+    @Autowired
+    private NodeModulesStore nodeModulesStore;
+
+    @Autowired
+    private VueProjectBuildQueue vueProjectBuildQueue;
+
+    @Autowired
+    private BuildMetricsCollector buildMetricsCollector;
+
+    @Autowired
+    private ViteDaemonPool viteDaemonPool;
+
     /**
-     * 异步构建 Vue 项目
+     * 异步构建 Vue 项目（后台优先级），构建状态通过 SSE 推送
      *
      * @param projectPath 项目路径
      * @param appId 应用ID，用于推送构建状态
      */
     public void buildProjectAsync(String projectPath, Long appId) {
-        Thread.ofVirtual().name("vue-builder-" + System.currentTimeMillis())
-                .start(() -> {
-                    try {
-                        // 推送构建开始事件
-                        buildStatusService.pushBuildStarted(appId);
-                        
-                        boolean success = buildProject(projectPath);
-                        
-                        if (success) {
-                            // 推送构建成功事件
-                            buildStatusService.pushBuildSuccess(appId);
-                        } else {
-                            // 推送构建失败事件
-                            buildStatusService.pushBuildFailure(appId, "构建过程中发生错误");
-                        }
-                    } catch (Exception e) {
-                        log.error("异步构建 Vue 项目时发生异常: {}", e.getMessage(), e);
+        // 推送构建开始事件
+        buildStatusService.pushBuildStarted(appId);
+        vueProjectBuildQueue.submit(projectPath, BuildPriority.BACKGROUND, () -> doBuildProject(projectPath, appId))
+                .whenComplete((success, throwable) -> {
+                    if (throwable != null) {
+                        Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                        log.error("异步构建 Vue 项目时发生异常: {}", cause.getMessage());
                         // 推送构建失败事件
-                        buildStatusService.pushBuildFailure(appId, e.getMessage());
+                        buildStatusService.pushBuildFailure(appId, cause.getMessage());
+                    } else if (Boolean.TRUE.equals(success)) {
+                        // 推送构建成功事件
+                        buildStatusService.pushBuildSuccess(appId);
+                    } else {
+                        // 推送构建失败事件
+                        buildStatusService.pushBuildFailure(appId, "构建过程中发生错误");
                     }
                 });
     }
@@ -67,25 +97,63 @@ public class VueProjectBuilder {
                 log.warn("无法从路径中解析appId: {}", projectPath);
             }
         }
-        
-        // 如果无法解析appId，使用原来的逻辑
-        Thread.ofVirtual().name("vue-builder-" + System.currentTimeMillis())
-                .start(() -> {
-                    try {
-                        buildProject(projectPath);
-                    } catch (Exception e) {
-                        log.error("异步构建 Vue 项目时发生异常: {}", e.getMessage(), e);
-                    }
-                });
+
+        // 如果无法解析appId，只提交构建，不推送状态
+        vueProjectBuildQueue.submit(projectPath, BuildPriority.BACKGROUND, () -> doBuildProject(projectPath, null));
     }
 
     /**
-     * 构建 Vue 项目
+     * 构建 Vue 项目（用户部署，最高优先级），同步等待结果
      *
      * @param projectPath 项目根目录路径
      * @return 是否构建成功
      */
     public boolean buildProject(String projectPath) {
+        return buildProject(projectPath, BuildPriority.INTERACTIVE);
+    }
+
+    /**
+     * 构建 Vue 项目，经由构建队列执行，同步等待结果
+     * 同一项目已在排队或构建中时直接等待同一个结果
+     *
+     * @param projectPath 项目根目录路径
+     * @param priority    构建优先级
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath, BuildPriority priority) {
+        return buildProject(projectPath, null, priority);
+    }
+
+    /**
+     * 构建 Vue 项目，经由构建队列执行，同步等待结果；跳过的步骤推送给应用的构建状态连接
+     *
+     * @param projectPath 项目根目录路径
+     * @param appId       应用ID，为空时不推送构建状态
+     * @param priority    构建优先级
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath, Long appId, BuildPriority priority) {
+        try {
+            return vueProjectBuildQueue.submit(projectPath, priority, () -> doBuildProject(projectPath, appId)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BusinessException businessException) {
+                throw businessException;
+            }
+            log.error("构建 Vue 项目失败：{}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 执行构建：npm install + npm run build
+     * 与上次成功构建的指纹比较：依赖未变化时跳过 npm install，源码也未变化且 dist 完整时跳过整个构建
+     * npm 输出按时间窗口合并后推送为 build-log 事件，各阶段耗时记录到监控指标
+     *
+     * @param projectPath 项目根目录路径
+     * @param appId       应用ID，用于推送跳过事件和构建日志，可为空
+     * @return 是否构建成功
+     */
+    private boolean doBuildProject(String projectPath, Long appId) {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在：{}", projectPath);
@@ -97,43 +165,135 @@ public class VueProjectBuilder {
             log.error("项目目录中没有 package.json 文件：{}", projectPath);
             return false;
         }
+        Path projectDirPath = projectDir.toPath();
+        BuildFingerprint previous = BuildFingerprint.read(projectDirPath);
+        BuildFingerprint current = null;
+        try {
+            current = BuildFingerprint.compute(projectDirPath);
+            if (previous != null && previous.buildUpToDate(current, projectDirPath)) {
+                log.info("源码与依赖均未变化且 dist 完整，跳过构建：{}", projectPath);
+                pushBuildSkipped(appId, "源码未变化，跳过构建");
+                return true;
+            }
+        } catch (IOException e) {
+            log.warn("计算构建指纹失败，执行完整构建：{}", e.getMessage());
+        }
+        // 指纹只描述成功的构建，重新构建期间先删除
+        BuildFingerprint.clear(projectDirPath);
         log.info("开始构建 Vue 项目：{}", projectPath);
-        // 执行 npm install
-        if (!executeNpmInstall(projectDir)) {
+        BuildLogBuffer logBuffer = new BuildLogBuffer(vueProjectBuildConfig.getLogBufferLines());
+        BuildLogBatcher logBatcher = appId == null ? null
+                : new BuildLogBatcher(lines -> buildStatusService.pushBuildLog(appId, lines), vueProjectBuildConfig.getLogFlushMillis());
+        try {
+            return runBuildSteps(projectDir, appId, previous, current, logBuffer, logBatcher == null ? line -> {
+            } : logBatcher);
+        } finally {
+            // 剩余日志先于构建结果事件送达
+            if (logBatcher != null) {
+                logBatcher.flush();
+            }
+        }
+    }
+
+    /**
+     * 依次执行 npm install（依赖未变化时跳过）、构建、产物校验，成功后记录指纹
+     */
+    private boolean runBuildSteps(File projectDir, Long appId, BuildFingerprint previous, BuildFingerprint current,
+                                  BuildLogBuffer logBuffer, Consumer<String> logListener) {
+        String projectPath = projectDir.getPath();
+        Path projectDirPath = projectDir.toPath();
+        if (current != null && previous != null && previous.dependenciesUnchanged(current, projectDirPath)) {
+            log.info("依赖未变化，跳过 npm install：{}", projectPath);
+            pushBuildSkipped(appId, "依赖未变化，跳过 npm install");
+        } else if (!timePhase("install", () -> executeNpmInstall(projectDir, logBuffer, logListener))) {
+            // 执行 npm install
             log.error("npm install 执行失败：{}", projectPath);
             return false;
         }
         // 执行 npm run build
-        if (!executeNpmBuild(projectDir)) {
+        if (!timePhase("build", () -> executeNpmBuild(projectDir, logBuffer, logListener))) {
             log.error("npm run build 执行失败：{}", projectPath);
             return false;
         }
-        // 验证 dist 目录是否生成
-        File distDir = new File(projectDir, "dist");
-        if (!distDir.exists() || !distDir.isDirectory()) {
-            log.error("构建完成但 dist 目录未生成：{}", projectPath);
+        boolean verified = timePhase("verify", () -> {
+            // 验证 dist 目录是否生成
+            File distDir = new File(projectDir, "dist");
+            if (!distDir.exists() || !distDir.isDirectory()) {
+                log.error("构建完成但 dist 目录未生成：{}", projectPath);
+                return false;
+            }
+            return true;
+        });
+        if (!verified) {
             return false;
         }
+        if (current != null) {
+            // 记录指纹需要哈希整个 dist，单独计时，不计入校验耗时；失败只影响下次能否跳过
+            timePhase("fingerprint", () -> {
+                try {
+                    current.write(projectDirPath);
+                    return true;
+                } catch (IOException e) {
+                    log.warn("保存构建指纹失败：{}", e.getMessage());
+                    return false;
+                }
+            });
+        }
         log.info("Vue 项目构建成功，dist 目录：{}", projectPath);
         return true;
     }
 
+    private void pushBuildSkipped(Long appId, String message) {
+        if (appId != null) {
+            buildStatusService.pushBuildSkipped(appId, message);
+        }
+    }
+
+    /**
+     * 执行一个构建阶段并记录耗时
+     */
+    private boolean timePhase(String phase, BooleanSupplier step) {
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        try {
+            success = step.getAsBoolean();
+            return success;
+        } finally {
+            buildMetricsCollector.recordPhaseDuration(phase, success ? "success" : "failure",
+                    Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+    }
+
     /**
-     * 执行 npm install 命令
+     * 准备 node_modules：优先从共享仓库按依赖哈希铺设，未命中时才执行 npm install
      */
-    private boolean executeNpmInstall(File projectDir) {
-        log.info("执行 npm install...");
-        String command = String.format("%s install", buildCommand("npm"));
-        return executeCommand(projectDir, command, 300); // 5分钟超时
+    private boolean executeNpmInstall(File projectDir, BuildLogBuffer logBuffer, Consumer<String> logListener) {
+        return nodeModulesStore.install(projectDir, () -> {
+            log.info("执行 npm install...");
+            String command = String.format("%s install", buildCommand(vueProjectBuildConfig.getNpmCommand()));
+            return executeCommand(projectDir, command, vueProjectBuildConfig.getInstallTimeoutSeconds(), logBuffer, logListener);
+        });
     }
 
     /**
-     * 执行 npm run build 命令
+     * 执行构建：优先交给常驻 Vite 进程池，进程池不可用或构建失败时执行 npm run build
      */
-    private boolean executeNpmBuild(File projectDir) {
+    private boolean executeNpmBuild(File projectDir, BuildLogBuffer logBuffer, Consumer<String> logListener) {
+        ViteDaemonPool.Result daemonResult = viteDaemonPool.build(projectDir.toPath(),
+                vueProjectBuildConfig.getBuildTimeoutSeconds(), logBuffer, logListener);
+        if (daemonResult == ViteDaemonPool.Result.SUCCESS) {
+            return true;
+        }
+        if (daemonResult == ViteDaemonPool.Result.FAILURE) {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            // 常驻进程内的失败也可能来自进程自身（模块缓存、加载 vite 出错等），用 npm run build 再确认一次
+            log.warn("常驻进程构建失败，使用 npm run build 重试：{}", projectDir.getPath());
+        }
         log.info("执行 npm run build...");
-        String command = String.format("%s run build", buildCommand("npm"));
-        return executeCommand(projectDir, command, 180); // 3分钟超时
+        String command = String.format("%s run build", buildCommand(vueProjectBuildConfig.getNpmCommand()));
+        return executeCommand(projectDir, command, vueProjectBuildConfig.getBuildTimeoutSeconds(), logBuffer, logListener);
     }
 
     /**
@@ -160,13 +320,17 @@ public class VueProjectBuilder {
 
     /**
      * 执行命令
+     * stdout 和 stderr 由两个虚拟线程持续读取，避免输出填满管道缓冲区后进程阻塞到超时
      *
      * @param workingDir     工作目录
      * @param command        命令字符串
      * @param timeoutSeconds 超时时间（秒）
+     * @param logBuffer      保存最近输出的环形缓冲区
+     * @param logListener    逐行接收输出
      * @return 是否执行成功
      */
-    private boolean executeCommand(File workingDir, String command, int timeoutSeconds) {
+    static boolean executeCommand(File workingDir, String command, int timeoutSeconds,
+                                  BuildLogBuffer logBuffer, Consumer<String> logListener) {
         try {
             log.info("在目录 {} 中执行命令: {}", workingDir.getAbsolutePath(), command);
             Process process = RuntimeUtil.exec(
@@ -174,25 +338,84 @@ public class VueProjectBuilder {
                     workingDir,
                     command.split("\\s+") // 命令分割为数组
             );
+            Thread stdoutDrainer = drain(process.getInputStream(), logBuffer, logListener);
+            Thread stderrDrainer = drain(process.getErrorStream(), logBuffer, logListener);
             // 等待进程完成，设置超时
             boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
             if (!finished) {
                 log.error("命令执行超时（{}秒），强制终止进程", timeoutSeconds);
-                process.destroyForcibly();
+                destroyProcessTree(process);
+                awaitDrainers(stdoutDrainer, stderrDrainer);
+                logOutputTail(command, logBuffer);
                 return false;
             }
+            awaitDrainers(stdoutDrainer, stderrDrainer);
             int exitCode = process.exitValue();
             if (exitCode == 0) {
                 log.info("命令执行成功: {}", command);
                 return true;
             } else {
                 log.error("命令:{} 执行失败，退出码: {}", command, exitCode);
+                logOutputTail(command, logBuffer);
                 return false;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("执行命令被中断: {}", command);
+            return false;
         } catch (Exception e) {
             log.error("执行命令失败: {}, 错误信息: {}", command, e.getMessage());
             return false;
         }
     }
 
+    /**
+     * 强制终止进程及其全部子孙进程
+     * npm 通过 sh 启动 node、node 又会启动 esbuild 等子进程，只终止 npm 时子进程被收养后继续运行并持有输出管道；
+     * 先取出子孙进程再终止，避免父进程退出后关系丢失
+     */
+    static void destroyProcessTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * 逐行读取进程输出直到流结束，监听方异常不影响继续读取
+     */
+    private static Thread drain(InputStream inputStream, BuildLogBuffer logBuffer, Consumer<String> logListener) {
+        return Thread.ofVirtual().name("vue-build-log").start(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    logBuffer.append(line);
+                    try {
+                        logListener.accept(line);
+                    } catch (Exception e) {
+                        log.debug("推送构建日志失败: {}", e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("读取构建输出结束: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 等待输出读取完成；npm 派生的子进程可能仍持有管道，最多等待 DRAIN_TIMEOUT_MILLIS
+     */
+    private static void awaitDrainers(Thread... drainers) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        for (Thread drainer : drainers) {
+            drainer.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+    }
+
+    private static void logOutputTail(String command, BuildLogBuffer logBuffer) {
+        List<String> tail = logBuffer.tail();
+        if (!tail.isEmpty()) {
+            log.error("命令:{} 最近 {} 行输出:\n{}", command, tail.size(), String.join("\n", tail));
+        }
+    }
+
 }
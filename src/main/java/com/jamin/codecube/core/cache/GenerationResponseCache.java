@@ -0,0 +1,220 @@
+package com.jamin.codecube.core.cache;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.jamin.codecube.ai.routing.CodeGenTypeRouter;
+import com.jamin.codecube.config.GenerationResponseCacheConfig;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.monitor.StreamMetricsCollector;
+import dev.langchain4j.model.output.FinishReason;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 生成结果磁盘缓存（内容寻址）
+ * 键为 (系统提示词版本, 归一化用户消息, 生成类型, 空历史) 的 SHA-256，值为模型输出的分片列表。
+ * 命中时按原分片回放，仍然经过正常的代码解析和保存流程；
+ * 文件的修改时间作为最近访问时间，目录超出大小上限时按最近访问时间淘汰（LRU），创建时间超过 TTL 的条目读取时删除。
+ */
+@Component
+@Slf4j
+public class GenerationResponseCache {
+
+    private static final String FILE_SUFFIX = ".json";
+
+    private static final String RESULT_HIT = "hit";
+
+    private static final String RESULT_MISS = "miss";
+
+    private static final String RESULT_STORE = "store";
+
+    /**
+     * 各生成类型使用的系统提示词，与 AiCodeGeneratorService 的 @SystemMessage 保持一致
+     */
+    private static final Map<CodeGenTypeEnum, String> SYSTEM_PROMPT_RESOURCES = Map.of(
+            CodeGenTypeEnum.HTML, "prompt/codegen-html-system-prompt.txt",
+            CodeGenTypeEnum.MULTI_FILE, "prompt/codegen-multi-file-system-prompt.txt");
+
+    @Autowired
+    private GenerationResponseCacheConfig generationResponseCacheConfig;
+
+    @Autowired
+    private StreamMetricsCollector streamMetricsCollector;
+
+    /**
+     * 系统提示词内容的哈希，提示词修改后旧缓存自然失效
+     */
+    private final Map<CodeGenTypeEnum, String> promptVersions = new EnumMap<>(CodeGenTypeEnum.class);
+
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    private Path cacheDir;
+
+    @PostConstruct
+    public void init() {
+        if (!generationResponseCacheConfig.isEnabled()) {
+            return;
+        }
+        SYSTEM_PROMPT_RESOURCES.forEach((type, resource) ->
+                promptVersions.put(type, DigestUtil.sha256Hex(ResourceUtil.readUtf8Str(resource))));
+        cacheDir = Paths.get(generationResponseCacheConfig.getDir());
+        try {
+            Files.createDirectories(cacheDir);
+        } catch (IOException e) {
+            log.error("创建生成结果缓存目录失败，缓存不可用: {}", cacheDir, e);
+            cacheDir = null;
+        }
+    }
+
+    /**
+     * 是否可以对该生成类型使用缓存
+     */
+    public boolean supports(CodeGenTypeEnum codeGenType) {
+        return generationResponseCacheConfig.isEnabled() && cacheDir != null && promptVersions.containsKey(codeGenType);
+    }
+
+    /**
+     * 构建缓存键
+     *
+     * @param codeGenType 生成类型
+     * @param userMessage 用户消息
+     * @return SHA-256 十六进制字符串
+     */
+    public String buildKey(CodeGenTypeEnum codeGenType, String userMessage) {
+        String material = String.join("\n",
+                promptVersions.get(codeGenType),
+                codeGenType.getValue(),
+                CodeGenTypeRouter.normalize(userMessage),
+                // 只缓存没有历史对话的首轮生成
+                "history:empty");
+        return DigestUtil.sha256Hex(material);
+    }
+
+    /**
+     * 读取缓存的输出分片，命中时刷新访问时间
+     *
+     * @return 分片列表；未命中或已过期时返回 null
+     */
+    public List<String> get(String key, CodeGenTypeEnum codeGenType) {
+        Path file = resolve(key);
+        try {
+            if (!Files.isRegularFile(file)) {
+                streamMetricsCollector.recordResponseCache(codeGenType.getValue(), RESULT_MISS);
+                return null;
+            }
+            JSONObject entry = JSONUtil.parseObj(Files.readString(file, StandardCharsets.UTF_8));
+            long createdAt = entry.getLong("createdAt", 0L);
+            if (System.currentTimeMillis() - createdAt > Duration.ofHours(generationResponseCacheConfig.getTtlHours()).toMillis()) {
+                Files.deleteIfExists(file);
+                streamMetricsCollector.recordResponseCache(codeGenType.getValue(), RESULT_MISS);
+                return null;
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            List<String> chunks = entry.getJSONArray("chunks").toList(String.class);
+            streamMetricsCollector.recordResponseCache(codeGenType.getValue(), RESULT_HIT);
+            log.info("生成结果缓存命中，key: {}, 分片数: {}", key, chunks.size());
+            return chunks;
+        } catch (Exception e) {
+            log.warn("读取生成结果缓存失败，key: {}, error: {}", key, e.getMessage());
+            streamMetricsCollector.recordResponseCache(codeGenType.getValue(), RESULT_MISS);
+            return null;
+        }
+    }
+
+    /**
+     * 写入一次完整生成的输出分片
+     * 只缓存模型正常结束（STOP）的输出，因长度截断、内容过滤等原因结束的半成品不回放给后续用户
+     *
+     * @param finishReason 模型响应的结束原因
+     */
+    public void put(String key, CodeGenTypeEnum codeGenType, List<String> chunks, FinishReason finishReason) {
+        if (chunks == null || chunks.isEmpty()) {
+            return;
+        }
+        if (finishReason != FinishReason.STOP) {
+            log.info("模型输出未正常结束，不写入生成结果缓存，key: {}, finishReason: {}", key, finishReason);
+            return;
+        }
+        Path file = resolve(key);
+        try {
+            JSONObject entry = JSONUtil.createObj()
+                    .set("createdAt", System.currentTimeMillis())
+                    .set("codeGenType", codeGenType.getValue())
+                    .set("chunks", new ArrayList<>(chunks));
+            // 先写临时文件再原子替换，避免并发读取到写了一半的文件
+            Path tempFile = Files.createTempFile(cacheDir, key, ".tmp");
+            Files.writeString(tempFile, entry.toString(), StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            streamMetricsCollector.recordResponseCache(codeGenType.getValue(), RESULT_STORE);
+            evictIfNeeded();
+        } catch (Exception e) {
+            log.warn("写入生成结果缓存失败，key: {}, error: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 目录总大小超过上限时，按最近访问时间从旧到新删除
+     */
+    private void evictIfNeeded() throws IOException {
+        if (!evictLock.tryLock()) {
+            // 其他线程正在淘汰
+            return;
+        }
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            List<Path> entries = files.filter(path -> path.toString().endsWith(FILE_SUFFIX)).toList();
+            long maxBytes = generationResponseCacheConfig.getMaxSizeMb() * 1024 * 1024;
+            long totalBytes = 0;
+            List<CacheFile> cacheFiles = new ArrayList<>(entries.size());
+            for (Path path : entries) {
+                try {
+                    long size = Files.size(path);
+                    cacheFiles.add(new CacheFile(path, size, Files.getLastModifiedTime(path).toMillis()));
+                    totalBytes += size;
+                } catch (IOException e) {
+                    // 文件可能已被并发删除
+                }
+            }
+            if (totalBytes <= maxBytes) {
+                return;
+            }
+            cacheFiles.sort(Comparator.comparingLong(CacheFile::lastAccess));
+            for (CacheFile cacheFile : cacheFiles) {
+                if (totalBytes <= maxBytes) {
+                    break;
+                }
+                Files.deleteIfExists(cacheFile.path());
+                totalBytes -= cacheFile.size();
+            }
+            log.info("生成结果缓存淘汰完成，当前大小: {} 字节", totalBytes);
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    private Path resolve(String key) {
+        return cacheDir.resolve(key + FILE_SUFFIX);
+    }
+
+    private record CacheFile(Path path, long size, long lastAccess) {
+    }
+}
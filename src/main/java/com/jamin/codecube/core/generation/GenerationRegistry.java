@@ -0,0 +1,293 @@
+package com.jamin.codecube.core.generation;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.jamin.codecube.config.GenerationResumeConfig;
+import com.jamin.codecube.core.schedule.GenerationQueueStatus;
+import com.jamin.codecube.exception.ErrorCode;
+import com.jamin.codecube.exception.ThrowUtils;
+import com.jamin.codecube.monitor.StreamMetricsCollector;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RList;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 代码生成会话注册表
+ * 管理进行中（以及刚结束）的生成会话，支持按 Last-Event-ID 断线续传；
+ * 同一应用进行中的生成按 appId 索引，新的订阅者直接附加到正在运行的生成上，不再重复调用模型
+ */
+@Slf4j
+@Component
+public class GenerationRegistry {
+
+    /**
+     * Redis 重放日志 key 前缀：code_gen:replay:{userId}:{appId}:{generationId}
+     */
+    private static final String REDIS_REPLAY_KEY_PREFIX = "code_gen:replay:";
+
+    /**
+     * 结束事件
+     */
+    public static final String DONE_EVENT = "done";
+
+    /**
+     * 排队状态事件
+     */
+    public static final String QUEUE_EVENT = "queue";
+
+    /**
+     * 重放窗口不足事件：请求的帧已被丢弃，客户端应重新加载对话和预览，而不是拼接不完整的输出
+     */
+    public static final String RESET_EVENT = "reset";
+
+    private static final String SUBSCRIBE_MODE_ORIGIN = "origin";
+
+    private static final String SUBSCRIBE_MODE_ATTACH = "attach";
+
+    private static final String SUBSCRIBE_MODE_WATCH = "watch";
+
+    private static final String SUBSCRIBE_MODE_RESUME = "resume";
+
+    private final ConcurrentMap<String, GenerationSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 每个应用进行中的生成
+     */
+    private final ConcurrentMap<Long, GenerationSession> activeSessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    private GenerationResumeConfig generationResumeConfig;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private StreamMetricsCollector streamMetricsCollector;
+
+    /**
+     * 开始一次新的生成，上游立即由会话订阅，返回从第一帧开始的流
+     *
+     * @param appId   应用 ID
+     * @param userId  用户 ID
+     * @param message 用户消息
+     * @param frames  上游 SSE 帧（包含结束事件）
+     * @return 带事件 ID 的 SSE 流
+     */
+    public Flux<ServerSentEvent<String>> start(Long appId, Long userId, String message, Flux<ServerSentEvent<String>> frames) {
+        if (!generationResumeConfig.isEnabled()) {
+            return frames;
+        }
+        String generationId = IdUtil.getSnowflakeNextIdStr();
+        GenerationSession session = new GenerationSession(generationId, appId, userId, message,
+                Math.max(1, generationResumeConfig.getReplayLimit()));
+        sessions.put(generationId, session);
+        activeSessions.put(appId, session);
+        streamMetricsCollector.recordGenerationStarted();
+        streamMetricsCollector.recordGenerationSubscriber(SUBSCRIBE_MODE_ORIGIN);
+        session.start(frames, buildFrameWatcher(session), () -> onSessionTerminated(session), () -> onSessionIdle(session));
+        log.info("生成会话已创建，generationId: {}, appId: {}", generationId, appId);
+        return session.stream(0);
+    }
+
+    /**
+     * 附加到应用正在进行的生成（相同用户、相同消息），从第一帧开始重放
+     *
+     * @param appId   应用 ID
+     * @param userId  用户 ID
+     * @param message 用户消息
+     * @return 共享的 SSE 流；没有可复用的生成时返回 null
+     */
+    public Flux<ServerSentEvent<String>> attach(Long appId, Long userId, String message) {
+        GenerationSession session = activeSessions.get(appId);
+        if (session == null || session.isTerminated()
+                || !Objects.equals(session.getUserId(), userId) || !Objects.equals(session.getMessage(), message)) {
+            return null;
+        }
+        streamMetricsCollector.recordGenerationSubscriber(SUBSCRIBE_MODE_ATTACH);
+        log.info("复用进行中的生成，generationId: {}, appId: {}", session.getGenerationId(), appId);
+        return session.stream(0);
+    }
+
+    /**
+     * 观看应用正在进行的生成，从第一帧开始重放
+     *
+     * @param appId 应用 ID
+     * @return 共享的 SSE 流；没有进行中的生成时只返回结束事件
+     */
+    public Flux<ServerSentEvent<String>> watch(Long appId) {
+        GenerationSession session = activeSessions.get(appId);
+        if (session == null || session.isTerminated()) {
+            return Flux.just(doneEvent());
+        }
+        streamMetricsCollector.recordGenerationSubscriber(SUBSCRIBE_MODE_WATCH);
+        return session.stream(0);
+    }
+
+    /**
+     * 按 Last-Event-ID 续传
+     *
+     * @param lastEventId 浏览器重连时携带的最后事件 ID
+     * @param appId       应用 ID
+     * @param userId      用户 ID
+     * @return 续传的流；会话已不存在时只返回结束事件，不会重新发起生成
+     */
+    public Flux<ServerSentEvent<String>> resume(String lastEventId, Long appId, Long userId) {
+        String generationId = GenerationSession.parseGenerationId(lastEventId);
+        long afterSequence = GenerationSession.parseSequence(lastEventId);
+        ThrowUtils.throwIf(generationId == null || afterSequence < 0, ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误");
+        GenerationSession session = sessions.get(generationId);
+        if (session != null) {
+            ThrowUtils.throwIf(!Objects.equals(session.getUserId(), userId) || !Objects.equals(session.getAppId(), appId),
+                    ErrorCode.NO_AUTH_ERROR, "无权访问该生成会话");
+            log.info("生成会话续传，generationId: {}, 起始序号: {}", generationId, afterSequence);
+            streamMetricsCollector.recordGenerationSubscriber(SUBSCRIBE_MODE_RESUME);
+            return session.stream(afterSequence);
+        }
+        if (generationResumeConfig.isRedisEnabled()) {
+            Flux<ServerSentEvent<String>> replay = replayFromRedis(generationId, appId, userId, afterSequence);
+            if (replay != null) {
+                return replay;
+            }
+        }
+        log.info("生成会话已过期，generationId: {}", generationId);
+        return Flux.just(doneEvent());
+    }
+
+    /**
+     * 构造结束事件
+     */
+    public static ServerSentEvent<String> doneEvent() {
+        return ServerSentEvent.<String>builder()
+                .event(DONE_EVENT)
+                .data("")
+                .build();
+    }
+
+    /**
+     * 构造重放窗口不足事件
+     *
+     * @param afterSequence  客户端请求的起点
+     * @param oldestSequence 当前能提供的最早序号
+     */
+    public static ServerSentEvent<String> resetEvent(long afterSequence, long oldestSequence) {
+        JSONObject json = new JSONObject()
+                .set("afterSequence", afterSequence)
+                .set("oldestSequence", oldestSequence);
+        return ServerSentEvent.<String>builder()
+                .event(RESET_EVENT)
+                .data(json.toString())
+                .build();
+    }
+
+    /**
+     * 构造排队状态事件
+     */
+    public static ServerSentEvent<String> queueEvent(GenerationQueueStatus status) {
+        JSONObject json = new JSONObject()
+                .set("state", status.state())
+                .set("position", status.position())
+                .set("queueSize", status.queueSize())
+                .set("waitedMillis", status.waitedMillis());
+        return ServerSentEvent.<String>builder()
+                .event(QUEUE_EVENT)
+                .data(json.toString())
+                .build();
+    }
+
+    /**
+     * 所有订阅者都已断开：等待一段时间供浏览器重连，仍无人订阅则取消上游生成，不再消耗 token
+     */
+    private void onSessionIdle(GenerationSession session) {
+        long graceSeconds = generationResumeConfig.getCancelGraceSeconds();
+        if (graceSeconds < 0) {
+            return;
+        }
+        Schedulers.parallel().schedule(() -> {
+            if (session.getActiveSubscriberCount() == 0 && !session.isTerminated()) {
+                log.info("生成会话已无订阅者，取消生成，generationId: {}, appId: {}", session.getGenerationId(), session.getAppId());
+                session.cancel();
+            }
+        }, graceSeconds, TimeUnit.SECONDS);
+    }
+
+    private void onSessionTerminated(GenerationSession session) {
+        activeSessions.remove(session.getAppId(), session);
+        Schedulers.parallel().schedule(() -> {
+            sessions.remove(session.getGenerationId(), session);
+            // 会话保留期结束后再统计扇出，包含生成结束后的重连
+            streamMetricsCollector.recordGenerationFanout(session.getSubscriberCount());
+        }, generationResumeConfig.getRetainSeconds(), TimeUnit.SECONDS);
+    }
+
+    private Consumer<ServerSentEvent<String>> buildFrameWatcher(GenerationSession session) {
+        if (!generationResumeConfig.isRedisEnabled()) {
+            return frame -> {
+            };
+        }
+        RList<String> replayList = redissonClient.getList(buildRedisKey(session.getUserId(), session.getAppId(),
+                session.getGenerationId()), StringCodec.INSTANCE);
+        AtomicBoolean expireSet = new AtomicBoolean(false);
+        Duration ttl = Duration.ofSeconds(generationResumeConfig.getRedisTtlSeconds());
+        return frame -> {
+            JSONObject json = new JSONObject()
+                    .set("id", frame.id())
+                    .set("event", frame.event())
+                    .set("data", frame.data());
+            // 异步写入，不阻塞生成流；读取时按序号排序
+            replayList.addAsync(json.toString());
+            if (expireSet.compareAndSet(false, true)) {
+                replayList.expireAsync(ttl);
+            }
+        };
+    }
+
+    private Flux<ServerSentEvent<String>> replayFromRedis(String generationId, Long appId, Long userId, long afterSequence) {
+        try {
+            RList<String> replayList = redissonClient.getList(buildRedisKey(userId, appId, generationId), StringCodec.INSTANCE);
+            List<String> entries = replayList.readAll();
+            if (entries.isEmpty()) {
+                return null;
+            }
+            List<ServerSentEvent<String>> frames = entries.stream()
+                    .map(JSONUtil::parseObj)
+                    .map(json -> ServerSentEvent.<String>builder()
+                            .id(json.getStr("id"))
+                            .event(json.getStr("event"))
+                            .data(json.getStr("data"))
+                            .build())
+                    .sorted(Comparator.comparingLong(frame -> GenerationSession.parseSequence(frame.id())))
+                    .toList();
+            boolean finished = DONE_EVENT.equals(frames.get(frames.size() - 1).event());
+            Flux<ServerSentEvent<String>> replay = Flux.fromIterable(frames)
+                    .filter(frame -> GenerationSession.parseSequence(frame.id()) > afterSequence);
+            log.info("从 Redis 重放生成会话，generationId: {}, 帧数: {}", generationId, frames.size());
+            // 其他实例上未结束的生成无法继续跟随，重放已有内容后结束
+            return finished ? replay : replay.concatWith(Flux.just(doneEvent()));
+        } catch (Exception e) {
+            log.error("读取 Redis 重放日志失败，generationId: {}", generationId, e);
+            return null;
+        }
+    }
+
+    private String buildRedisKey(Long userId, Long appId, String generationId) {
+        return StrUtil.format("{}{}:{}:{}", REDIS_REPLAY_KEY_PREFIX, userId, appId, generationId);
+    }
+}
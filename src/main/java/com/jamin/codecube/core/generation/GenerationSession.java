@@ -0,0 +1,284 @@
+package com.jamin.codecube.core.generation;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 一次代码生成的会话
+ * 上游生成流由会话独立订阅（热流），与 SSE 连接解耦；每一帧分配递增序号并写入有界重放日志，
+ * 连接断开后上游继续运行，重连时从 Last-Event-ID 之后的帧开始续传。
+ * 上游按最慢的在线订阅者的进度分批请求（最多领先 demandWindow 帧），保留 TokenStream 桥接的背压；
+ * 没有在线订阅者时不限速，生成照常进行以供续传。
+ * 请求的起点已滑出重放窗口时（续传太晚或观看者加入太晚）不会跳过缺失的帧，而是发送 reset 事件让客户端重新加载。
+ */
+@Slf4j
+public class GenerationSession {
+
+    /**
+     * SSE 事件 ID 中生成 ID 与序号的分隔符
+     */
+    public static final String EVENT_ID_SEPARATOR = ":";
+
+    /**
+     * 上游领先最慢订阅者的最大帧数
+     */
+    private static final int MAX_DEMAND_WINDOW = 64;
+
+    @Getter
+    private final String generationId;
+
+    @Getter
+    private final Long appId;
+
+    @Getter
+    private final Long userId;
+
+    /**
+     * 触发本次生成的用户消息，用于判断新的请求能否复用本次生成
+     */
+    @Getter
+    private final String message;
+
+    /**
+     * 累计订阅者数量（发起者 + 后续附加的观看者/重连）
+     */
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    /**
+     * 当前仍在连接的订阅者数量
+     */
+    private final AtomicInteger activeSubscriberCount = new AtomicInteger();
+
+    /**
+     * 最后一个订阅者断开时的回调
+     */
+    private volatile Runnable onIdle;
+
+    private final Sinks.Many<ServerSentEvent<String>> replaySink;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 上游最多领先最慢在线订阅者的帧数，不超过重放窗口，保证在线订阅者不会滑出窗口
+     */
+    private final long demandWindow;
+
+    /**
+     * 在线订阅者已收到的最后一帧序号，受 this 锁保护
+     */
+    private final Set<AtomicLong> cursors = new HashSet<>();
+
+    /**
+     * 已向上游请求到的帧序号，受 this 锁保护
+     */
+    private long requestedUpTo;
+
+    private volatile BaseSubscriber<ServerSentEvent<String>> upstream;
+
+    @Getter
+    private volatile boolean terminated;
+
+    GenerationSession(String generationId, Long appId, Long userId, String message, int replayLimit) {
+        this.generationId = generationId;
+        this.appId = appId;
+        this.userId = userId;
+        this.message = message;
+        this.replaySink = Sinks.many().replay().limit(replayLimit);
+        this.demandWindow = Math.max(1, Math.min(MAX_DEMAND_WINDOW, replayLimit / 2));
+    }
+
+    /**
+     * 订阅上游生成流
+     *
+     * @param frames       上游帧
+     * @param frameWatcher 每一帧（已编号）的回调，用于写入外部重放日志
+     * @param onTerminate  上游结束（完成、出错或取消）时的回调
+     * @param onIdle       生成未结束而最后一个订阅者断开时的回调
+     */
+    void start(Flux<ServerSentEvent<String>> frames, Consumer<ServerSentEvent<String>> frameWatcher,
+               Runnable onTerminate, Runnable onIdle) {
+        this.onIdle = onIdle;
+        BaseSubscriber<ServerSentEvent<String>> subscriber = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                requestMore();
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<String> frame) {
+                replaySink.emitNext(frame, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+                requestMore();
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                replaySink.emitError(throwable, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                replaySink.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            }
+        };
+        this.upstream = subscriber;
+        frames.map(this::assignId)
+                .doOnNext(frameWatcher)
+                .doFinally(signalType -> {
+                    terminated = true;
+                    onTerminate.run();
+                })
+                .subscribe(subscriber);
+    }
+
+    /**
+     * 按最慢在线订阅者的进度向上游补充请求
+     */
+    private void requestMore() {
+        BaseSubscriber<ServerSentEvent<String>> subscriber = this.upstream;
+        if (subscriber == null) {
+            return;
+        }
+        long toRequest;
+        synchronized (this) {
+            long slowest = sequence.get();
+            for (AtomicLong cursor : cursors) {
+                slowest = Math.min(slowest, cursor.get());
+            }
+            long allowed = slowest + demandWindow;
+            toRequest = allowed - requestedUpTo;
+            if (toRequest <= 0) {
+                return;
+            }
+            requestedUpTo = allowed;
+        }
+        subscriber.request(toRequest);
+    }
+
+    /**
+     * 获取指定序号之后的帧，之后继续跟随实时输出
+     * 第一帧与起点不连续（所需的帧已滑出重放窗口）时，只发送 reset 和结束事件，由客户端重新加载
+     *
+     * @param afterSequence 已收到的最后一帧序号，从头开始传 0
+     */
+    public Flux<ServerSentEvent<String>> stream(long afterSequence) {
+        return Flux.defer(() -> {
+            AtomicLong cursor = new AtomicLong(afterSequence);
+            AtomicBoolean first = new AtomicBoolean(true);
+            AtomicBoolean reset = new AtomicBoolean(false);
+            return replaySink.asFlux()
+                    .filter(frame -> parseSequence(frame.id()) > afterSequence)
+                    .concatMap(frame -> {
+                        long frameSequence = parseSequence(frame.id());
+                        if (first.getAndSet(false) && frameSequence > afterSequence + 1) {
+                            log.warn("请求的帧已滑出重放窗口，generationId: {}, 起始序号: {}, 最早可用序号: {}",
+                                    generationId, afterSequence, frameSequence);
+                            reset.set(true);
+                            return Flux.just(GenerationRegistry.resetEvent(afterSequence, frameSequence),
+                                    GenerationRegistry.doneEvent());
+                        }
+                        return Flux.just(frame);
+                    })
+                    // reset 之后的结束事件即为最后一帧，不再跟随实时输出
+                    .takeUntil(frame -> reset.get() && GenerationRegistry.DONE_EVENT.equals(frame.event()))
+                    .doOnNext(frame -> {
+                        long frameSequence = parseSequence(frame.id());
+                        if (frameSequence > 0) {
+                            cursor.set(frameSequence);
+                            requestMore();
+                        }
+                    })
+                    .doOnSubscribe(subscription -> {
+                        subscriberCount.incrementAndGet();
+                        activeSubscriberCount.incrementAndGet();
+                        synchronized (this) {
+                            cursors.add(cursor);
+                        }
+                    })
+                    .doFinally(signalType -> {
+                        synchronized (this) {
+                            cursors.remove(cursor);
+                        }
+                        // 最慢的订阅者离开后可能放开上游
+                        requestMore();
+                        Runnable idleCallback = onIdle;
+                        if (activeSubscriberCount.decrementAndGet() == 0 && !terminated && idleCallback != null) {
+                            idleCallback.run();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 当前仍在连接的订阅者数量
+     */
+    public int getActiveSubscriberCount() {
+        return activeSubscriberCount.get();
+    }
+
+    /**
+     * 累计订阅者数量
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * 取消上游生成，取消信号沿处理链传到模型请求；之后的续传只能读到已有帧和结束事件
+     */
+    void cancel() {
+        Disposable disposable = this.upstream;
+        if (disposable != null && !disposable.isDisposed()) {
+            disposable.dispose();
+            replaySink.tryEmitNext(assignId(GenerationRegistry.doneEvent()));
+            replaySink.tryEmitComplete();
+        }
+    }
+
+    private ServerSentEvent<String> assignId(ServerSentEvent<String> frame) {
+        return ServerSentEvent.<String>builder()
+                .id(generationId + EVENT_ID_SEPARATOR + sequence.incrementAndGet())
+                .event(frame.event())
+                .data(frame.data())
+                .build();
+    }
+
+    /**
+     * 解析事件 ID 中的序号，格式不正确时返回 -1
+     */
+    public static long parseSequence(String eventId) {
+        if (eventId == null) {
+            return -1;
+        }
+        int index = eventId.lastIndexOf(EVENT_ID_SEPARATOR);
+        try {
+            return Long.parseLong(eventId.substring(index + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析事件 ID 中的生成 ID，格式不正确时返回 null
+     */
+    public static String parseGenerationId(String eventId) {
+        if (eventId == null) {
+            return null;
+        }
+        int index = eventId.lastIndexOf(EVENT_ID_SEPARATOR);
+        return index > 0 ? eventId.substring(0, index) : null;
+    }
+}
@@ -6,6 +6,8 @@ import cn.hutool.json.JSONUtil;
 import com.jamin.codecube.ai.model.message.*;
 import com.jamin.codecube.ai.tools.BaseTool;
 import com.jamin.codecube.ai.tools.ToolManager;
+import com.jamin.codecube.config.ChatHistoryCheckpointConfig;
+import com.jamin.codecube.constant.AppConstant;
 import com.jamin.codecube.model.entity.ChatHistoryOriginal;
 import com.jamin.codecube.model.entity.User;
 import com.jamin.codecube.model.enums.ChatHistoryMessageTypeEnum;
@@ -31,9 +33,12 @@ public class JsonMessageStreamHandler {
     @Autowired
     private ToolManager toolManager;
 
+    @Autowired
+    private ChatHistoryCheckpointConfig chatHistoryCheckpointConfig;
+
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 处理类型化消息并重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
@@ -41,7 +46,7 @@ public class JsonMessageStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                ChatHistoryOriginalService chatHistoryOriginalService,
                                Long appId, User loginUser) {
@@ -53,108 +58,105 @@ public class JsonMessageStreamHandler {
         List<ChatHistoryOriginal> originalChatHistoryList = new ArrayList<>();
         // 跟踪已见过的工具ID，判断是否是第一次调用
         Set<String> seenToolId = new HashSet<>();
+        // 长时间生成过程中定期把已完成的内容写入对话记录
+        StreamCheckpoint checkpoint = new StreamCheckpoint(chatHistoryService, chatHistoryOriginalService,
+                chatHistoryCheckpointConfig, appId, loginUser.getId());
+        // 取消信号可能在另一个线程到达，与 map 中的拼接并发；处理消息和定稿都在 checkpoint 上加锁
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, aiResponseStringBuilder, originalChatHistoryList, seenToolId);
+                .map(streamMessage -> {
+                    synchronized (checkpoint) {
+                        // 处理每条类型化消息
+                        String output = handleStreamMessage(streamMessage, chatHistoryStringBuilder, aiResponseStringBuilder, originalChatHistoryList, seenToolId);
+                        if (streamMessage instanceof ToolExecutedMessage) {
+                            checkpoint.onToolExecuted();
+                        }
+                        checkpoint.maybeCheckpoint(chatHistoryStringBuilder, originalChatHistoryList);
+                        return output;
+                    }
                 })
                 .filter(StrUtil::isNotEmpty) // 过滤空字符串
                 //完成后存储AI消息到对话记录表
                 .doOnComplete(() -> {
-                    // 工具调用信息入库
-                    if (!originalChatHistoryList.isEmpty()) {
-                        // 完善 ChatHistoryOriginal 信息
-                        originalChatHistoryList.forEach(chatHistory -> {
-                            chatHistory.setAppId(appId);
-                            chatHistory.setUserId(loginUser.getId());
-                        });
-                        // 批量入库
-                        chatHistoryOriginalService.addOriginalChatMessageBatch(originalChatHistoryList);
+                    synchronized (checkpoint) {
+                        checkpoint.finish(chatHistoryStringBuilder.toString(),
+                                aiResponseStringBuilder.toString(), originalChatHistoryList);
+                    }
+                })
+                // 客户端断开导致取消时，保存已完成的工具调用和部分输出，并标记为已取消
+                .doOnCancel(() -> {
+                    synchronized (checkpoint) {
+                        checkpoint.finish(chatHistoryStringBuilder + AppConstant.GENERATION_CANCELLED_MARKER,
+                                aiResponseStringBuilder + AppConstant.GENERATION_CANCELLED_MARKER, originalChatHistoryList);
                     }
-                    // Ai response 入库(两种情况：1. 没有进行工具调用。2. 工具调用结束之后 AI 一般还会有一句返回)
-                    String aiResponseStr = aiResponseStringBuilder.toString();
-                    chatHistoryOriginalService.addOriginalChatMessage(appId, aiResponseStr, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-
-                    // 将收集到的聊天记录存储到对话记录表
-                    String aiResponse = chatHistoryStringBuilder.toString();
-                    chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 })
                 .doOnError(error -> {
                     // 错误记录也要存到对话记录表
                     String errorMessage = "AI回复出错：" + error.getMessage();
-                    chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-                    chatHistoryOriginalService.addOriginalChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    synchronized (checkpoint) {
+                        if (checkpoint.hasCheckpoint()) {
+                            // 已有检查点时保留已输出的内容，在其后追加错误信息；与取消一样保留最后一次工具调用之后的 AI 回复
+                            checkpoint.finish(chatHistoryStringBuilder + "\n\n" + errorMessage,
+                                    aiResponseStringBuilder.isEmpty() ? errorMessage : aiResponseStringBuilder + "\n\n" + errorMessage,
+                                    originalChatHistoryList);
+                        } else {
+                            chatHistoryService.addChatMessageAsync(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                            chatHistoryOriginalService.addOriginalChatMessageAsync(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                        }
+                    }
                 });
     }
 
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, StringBuilder aiResponseStringBuilder, List<ChatHistoryOriginal> originalChatHistoryList, Set<String> seenToolId) {
-        // 解析JSON，获取消息类型
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
+    private String handleStreamMessage(StreamMessage streamMessage, StringBuilder chatHistoryStringBuilder, StringBuilder aiResponseStringBuilder, List<ChatHistoryOriginal> originalChatHistoryList, Set<String> seenToolId) {
         // 根据消息类型选择不同的处理逻辑
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
+        return switch (streamMessage) {
+            case AiResponseMessage aiResponseMessage -> {
                 // AI 回复消息
-                AiResponseMessage aiResponseMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
                 String data = aiResponseMessage.getData();
                 // 直接拼接响应
                 chatHistoryStringBuilder.append(data);
                 // 对于 AI 响应内容，与展示数据处理逻辑相同
                 aiResponseStringBuilder.append(data);
-                return data;
+                yield data;
             }
-            case TOOL_REQUEST -> {
-                // 工具请求消息
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 // 检查工具 ID 是否重复
                 String toolId = toolRequestMessage.getId();
-                if (toolId != null && !seenToolId.contains(toolId)) {
-                    // 第一次调用这个工具，记录ID并返回信息
-                    seenToolId.add(toolId);
-                    // 获取工具名称与工具实例
-                    String toolName = toolRequestMessage.getName();
-                    BaseTool tool = toolManager.getTool(toolName);
-                    return tool.generateToolRequestResponse();
-                }
-                else {
-                    // 重复的工具请求，忽略
-                    return "";
+                if (toolId != null && seenToolId.add(toolId)) {
+                    // 第一次调用这个工具，获取工具名称与工具实例并返回信息
+                    BaseTool tool = toolManager.getTool(toolRequestMessage.getName());
+                    yield tool.generateToolRequestResponse();
                 }
+                // 重复的工具请求，忽略
+                yield "";
             }
-            case TOOL_EXECUTED -> {
+            case ToolExecutedMessage toolExecutedMessage -> {
                 // 处理工具调用信息
-                processToolExecutionMessage(aiResponseStringBuilder, chunk, originalChatHistoryList);
-
-                // 工具执行结果消息
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+                processToolExecutionMessage(aiResponseStringBuilder, toolExecutedMessage, originalChatHistoryList);
                 // 获取工具参数
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 // 获取工具
-                String toolName = toolExecutedMessage.getName();
-                BaseTool tool = toolManager.getTool(toolName);
+                BaseTool tool = toolManager.getTool(toolExecutedMessage.getName());
                 // 生成工具执行结果
                 String result = tool.generateToolExecutedResult(jsonObject);
                 // 将工具执行结果写入聊天记录并返回前端
                 String output = String.format("\n\n%s\n\n", result);
                 chatHistoryStringBuilder.append(output);
-                return output;
+                yield output;
             }
             default -> {
-                log.warn("未知的消息类型: {}", typeEnum);
-                return "";
+                log.warn("未知的消息类型: {}", streamMessage.getType());
+                yield "";
             }
-        }
+        };
     }
 
     /**
      * 解析处理工具调用相关信息
      * @param aiResponseStringBuilder
-     * @param chunk
+     * @param toolExecutedMessage
      * @param originalChatHistoryList
      */
-    private void processToolExecutionMessage(StringBuilder aiResponseStringBuilder, String chunk, List<ChatHistoryOriginal> originalChatHistoryList) {
-        // 解析 chunk
-        ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+    private void processToolExecutionMessage(StringBuilder aiResponseStringBuilder, ToolExecutedMessage toolExecutedMessage, List<ChatHistoryOriginal> originalChatHistoryList) {
         // 构造工具调用请求对象(工具调用结果的数据就是从调用请求里拿的，所以直接在这里处理调用请求信息)
         String aiResponseStr = aiResponseStringBuilder.toString();
         ToolRequestMessage toolRequestMessage = new ToolRequestMessage();
@@ -162,7 +164,7 @@ public class JsonMessageStreamHandler {
         toolRequestMessage.setName(toolExecutedMessage.getName());
         toolRequestMessage.setArguments(toolExecutedMessage.getArguments());
         toolRequestMessage.setText(aiResponseStr);
-        // 转换成 JSON
+        // 转换成 JSON（只在入库时序列化一次）
         String toolRequestJsonStr = JSONUtil.toJsonStr(toolRequestMessage);
         // 构造 ChatHistory 存入列表
         ChatHistoryOriginal toolRequestHistory = ChatHistoryOriginal.builder()
@@ -171,7 +173,7 @@ public class JsonMessageStreamHandler {
                 .build();
         originalChatHistoryList.add(toolRequestHistory);
         ChatHistoryOriginal toolResultHistory = ChatHistoryOriginal.builder()
-                .message(chunk)
+                .message(JSONUtil.toJsonStr(toolExecutedMessage))
                 .messageType(ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT.getValue())
                 .build();
         originalChatHistoryList.add(toolResultHistory);
@@ -1,6 +1,9 @@
 package com.jamin.codecube.core.handler;
 
 import cn.hutool.core.util.StrUtil;
+import com.jamin.codecube.ai.model.message.AiResponseMessage;
+import com.jamin.codecube.ai.model.message.StreamMessage;
+import com.jamin.codecube.constant.AppConstant;
 import com.jamin.codecube.model.entity.User;
 import com.jamin.codecube.model.enums.ChatHistoryMessageTypeEnum;
 import com.jamin.codecube.service.ChatHistoryService;
@@ -21,12 +24,15 @@ public class SimpleTextStreamHandler {
      * @param loginUser
      * @return
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                Long appId, User loginUser) {
         StringBuilder aiResponseBuilder = new StringBuilder();
         return originFlux
-                .map(chunk -> {
+                .map(streamMessage -> {
+                    // HTML 与 MULTI_FILE 模式只会产生 AI 响应消息
+                    String chunk = streamMessage instanceof AiResponseMessage aiResponseMessage
+                            ? aiResponseMessage.getData() : "";
                     aiResponseBuilder.append(chunk);
                     return chunk;
                 })
@@ -34,13 +40,18 @@ public class SimpleTextStreamHandler {
                 .doOnComplete(() -> {
                     String aiResponse = aiResponseBuilder.toString();
                     if (StrUtil.isNotBlank(aiResponse)) {
-                        chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                        chatHistoryService.addChatMessageAsync(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                     }
                 })
+                // 客户端断开导致取消时，保存已输出的部分内容并标记为已取消
+                .doOnCancel(() -> {
+                    String partialResponse = aiResponseBuilder + AppConstant.GENERATION_CANCELLED_MARKER;
+                    chatHistoryService.addChatMessageAsync(appId, partialResponse.strip(), ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                })
                 .doOnError(error -> {
                     // 错误记录也要存到对话记录表
                     String errorMesge = "AI回复出错：" + error.getMessage();
-                    chatHistoryService.addChatMessage(appId, errorMesge, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
+                    chatHistoryService.addChatMessageAsync(appId, errorMesge, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 });
     }
 }
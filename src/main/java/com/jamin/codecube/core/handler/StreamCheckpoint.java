@@ -0,0 +1,156 @@
+package com.jamin.codecube.core.handler;
+
+import cn.hutool.core.util.StrUtil;
+import com.jamin.codecube.config.ChatHistoryCheckpointConfig;
+import com.jamin.codecube.constant.AppConstant;
+import com.jamin.codecube.model.entity.ChatHistoryOriginal;
+import com.jamin.codecube.model.enums.ChatHistoryMessageTypeEnum;
+import com.jamin.codecube.service.ChatHistoryOriginalService;
+import com.jamin.codecube.service.ChatHistoryService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个生成流的对话记录检查点
+ * 每隔 N 秒或 N 次工具调用，把新完成的工具调用记录追加写入 chat_history_original，
+ * 并把展示内容写入一条 chat_history 记录（首次插入，之后按 ID 更新，结束时定稿），
+ * 服务重启或故障转移时最多丢失几秒的生成内容。非线程安全，调用方在本对象上加锁串行调用。
+ */
+@Slf4j
+class StreamCheckpoint {
+
+    private final ChatHistoryService chatHistoryService;
+
+    private final ChatHistoryOriginalService chatHistoryOriginalService;
+
+    private final ChatHistoryCheckpointConfig checkpointConfig;
+
+    private final Long appId;
+
+    private final Long userId;
+
+    /**
+     * 已写入的工具调用记录数（originalChatHistoryList 中的下标）
+     */
+    private int flushedOriginalCount = 0;
+
+    /**
+     * 上次检查点以来新增的工具调用次数
+     */
+    private int toolCallsSinceCheckpoint = 0;
+
+    /**
+     * 上次检查点时展示内容的长度，用于判断是否有新内容
+     */
+    private int checkpointedLength = 0;
+
+    private long lastCheckpointNanos = System.nanoTime();
+
+    /**
+     * 检查点写入的展示记录 ID，尚未写入时为 null
+     */
+    private Long chatHistoryId;
+
+    /**
+     * 是否已定稿，完成与取消先后到达时只保存一次
+     */
+    private boolean finished;
+
+    StreamCheckpoint(ChatHistoryService chatHistoryService, ChatHistoryOriginalService chatHistoryOriginalService,
+                     ChatHistoryCheckpointConfig checkpointConfig, Long appId, Long userId) {
+        this.chatHistoryService = chatHistoryService;
+        this.chatHistoryOriginalService = chatHistoryOriginalService;
+        this.checkpointConfig = checkpointConfig;
+        this.appId = appId;
+        this.userId = userId;
+    }
+
+    /**
+     * 记录一次完成的工具调用
+     */
+    void onToolExecuted() {
+        toolCallsSinceCheckpoint++;
+    }
+
+    /**
+     * 满足条件时写入检查点
+     *
+     * @param displayContent          当前的展示内容
+     * @param originalChatHistoryList 当前已完成的工具调用记录
+     */
+    void maybeCheckpoint(CharSequence displayContent, List<ChatHistoryOriginal> originalChatHistoryList) {
+        if (!checkpointConfig.isEnabled() || displayContent.length() == checkpointedLength) {
+            return;
+        }
+        long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lastCheckpointNanos);
+        boolean toolCallsReached = checkpointConfig.getToolCallThreshold() > 0
+                && toolCallsSinceCheckpoint >= checkpointConfig.getToolCallThreshold();
+        if (!toolCallsReached && elapsedSeconds < checkpointConfig.getIntervalSeconds()) {
+            return;
+        }
+        flushOriginals(originalChatHistoryList);
+        // 检查点内容带上未完成标记，生成正常结束时会被完整内容覆盖
+        saveDisplay(displayContent + AppConstant.GENERATION_INTERRUPTED_MARKER);
+        checkpointedLength = displayContent.length();
+        toolCallsSinceCheckpoint = 0;
+        lastCheckpointNanos = System.nanoTime();
+        log.debug("写入生成检查点，appId: {}, 已保存工具调用记录: {}", appId, flushedOriginalCount);
+    }
+
+    /**
+     * 生成结束（完成、取消或出错）时定稿：追加剩余的工具调用记录和最后一段 AI 回复，覆盖展示记录
+     *
+     * @param displayContent          最终的展示内容
+     * @param aiResponse              最后一次工具调用之后的 AI 回复
+     * @param originalChatHistoryList 全部工具调用记录
+     */
+    void finish(String displayContent, String aiResponse, List<ChatHistoryOriginal> originalChatHistoryList) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        flushOriginals(originalChatHistoryList);
+        // Ai response 入库(两种情况：1. 没有进行工具调用。2. 工具调用结束之后 AI 一般还会有一句返回)
+        if (StrUtil.isNotBlank(aiResponse)) {
+            chatHistoryOriginalService.addOriginalChatMessageAsync(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), userId);
+        }
+        saveDisplay(displayContent);
+    }
+
+    /**
+     * 是否已写入过检查点
+     */
+    boolean hasCheckpoint() {
+        return chatHistoryId != null;
+    }
+
+    /**
+     * 追加写入尚未入库的工具调用记录（只追加，不修改已写入的记录）
+     */
+    private void flushOriginals(List<ChatHistoryOriginal> originalChatHistoryList) {
+        if (flushedOriginalCount >= originalChatHistoryList.size()) {
+            return;
+        }
+        List<ChatHistoryOriginal> pending = new ArrayList<>(
+                originalChatHistoryList.subList(flushedOriginalCount, originalChatHistoryList.size()));
+        // 完善 ChatHistoryOriginal 信息
+        pending.forEach(chatHistory -> {
+            chatHistory.setAppId(appId);
+            chatHistory.setUserId(userId);
+        });
+        // 批量入队，异步入库
+        chatHistoryOriginalService.addOriginalChatMessageBatchAsync(pending);
+        flushedOriginalCount = originalChatHistoryList.size();
+    }
+
+    private void saveDisplay(String content) {
+        if (chatHistoryId == null) {
+            chatHistoryId = chatHistoryService.addChatMessageAsync(appId, content, ChatHistoryMessageTypeEnum.AI.getValue(), userId);
+        } else {
+            chatHistoryService.updateChatMessageAsync(appId, chatHistoryId, content);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.jamin.codecube.core.handler;
 
+import com.jamin.codecube.ai.memory.ChatMemoryHydrator;
+import com.jamin.codecube.ai.model.message.StreamMessage;
 import com.jamin.codecube.model.entity.User;
 import com.jamin.codecube.model.enums.CodeGenTypeEnum;
 import com.jamin.codecube.service.ChatHistoryOriginalService;
@@ -12,8 +14,8 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
- * 2. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 1. 纯文本消息流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
+ * 2. 包含工具调用的消息流（VUE_PROJECT） -> JsonMessageStreamHandler
  */
 @Slf4j
 @Component
@@ -22,6 +24,9 @@ public class StreamHandlerExecutor {
     @Autowired
     private JsonMessageStreamHandler jsonMessageStreamHandler;
 
+    @Autowired
+    private ChatMemoryHydrator chatMemoryHydrator;
+
     /**
      * 创建流处理器并处理聊天历史记录
      *
@@ -32,16 +37,22 @@ public class StreamHandlerExecutor {
      * @param codeGenType        代码生成类型
      * @return 处理后的流
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
+    public Flux<String> doExecute(Flux<StreamMessage> originFlux,
                                   ChatHistoryService chatHistoryService,
                                   ChatHistoryOriginalService chatHistoryOriginalService,
                                   long appId, User loginUser, CodeGenTypeEnum codeGenType) {
-        return switch (codeGenType) {
+        Flux<String> handled = switch (codeGenType) {
             case VUE_PROJECT -> // 使用注入的组件实例
                     jsonMessageStreamHandler.handle(originFlux, chatHistoryService, chatHistoryOriginalService, appId, loginUser);
             case HTML, MULTI_FILE -> // 简单文本处理器不需要依赖注入
                     new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser);
         };
+        // 正常结束时记忆与本轮写入的对话记录一致，推进版本戳；
+        // 取消和出错时记录中带有标记而记忆没有，删除版本戳，之后的 resync 不再生效，下次创建服务实例时从数据库重建
+        return handled
+                .doOnComplete(() -> chatMemoryHydrator.resync(appId))
+                .doOnCancel(() -> chatMemoryHydrator.invalidate(appId))
+                .doOnError(error -> chatMemoryHydrator.invalidate(appId));
     }
 }
 
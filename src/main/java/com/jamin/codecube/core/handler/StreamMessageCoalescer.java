@@ -0,0 +1,210 @@
+package com.jamin.codecube.core.handler;
+
+import com.jamin.codecube.ai.model.message.AiResponseMessage;
+import com.jamin.codecube.ai.model.message.StreamMessage;
+import com.jamin.codecube.config.StreamCoalesceConfig;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式消息合并器
+ * 将连续的 AI 文本分片按"N 毫秒或 M 字节，先到为准"合并为一条消息，减少 SSE 帧数；
+ * 工具消息和流结束时立即冲刷，保证工具调用的展示不被延迟。
+ * 只在下游有需求时才向上游继续请求，背压可以一直传递到模型流。
+ */
+@Slf4j
+@Component
+public class StreamMessageCoalescer {
+
+    /**
+     * 向上游预取的消息数量
+     */
+    private static final int PREFETCH = 32;
+
+    /**
+     * 消费达到该数量后再补充请求
+     */
+    private static final int REPLENISH_LIMIT = PREFETCH - (PREFETCH >> 2);
+
+    @Autowired
+    private StreamCoalesceConfig streamCoalesceConfig;
+
+    /**
+     * 按生成类型对应的窗口合并消息流
+     *
+     * @param source      原始消息流
+     * @param codeGenType 代码生成类型
+     * @return 合并后的消息流
+     */
+    public Flux<StreamMessage> coalesce(Flux<StreamMessage> source, CodeGenTypeEnum codeGenType) {
+        StreamCoalesceConfig.Window window = streamCoalesceConfig.getWindow(codeGenType);
+        if (!streamCoalesceConfig.isEnabled() || window == null || window.getMaxDelayMillis() <= 0) {
+            return source;
+        }
+        return Flux.create(sink -> {
+            CoalescingSubscriber subscriber = new CoalescingSubscriber(sink, window);
+            sink.onRequest(n -> subscriber.replenish());
+            sink.onDispose(subscriber::shutdown);
+            source.subscribe(subscriber);
+        });
+    }
+
+    /**
+     * 计算字符串的 UTF-8 字节数，避免为计数而分配字节数组
+     */
+    static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static class CoalescingSubscriber extends BaseSubscriber<StreamMessage> {
+
+        private final FluxSink<StreamMessage> sink;
+
+        private final StreamCoalesceConfig.Window window;
+
+        private final StringBuilder pending = new StringBuilder();
+
+        private int pendingBytes;
+
+        private Disposable flushTask;
+
+        /**
+         * 已消费但尚未向上游补充请求的数量
+         */
+        private int unrequested;
+
+        private boolean done;
+
+        CoalescingSubscriber(FluxSink<StreamMessage> sink, StreamCoalesceConfig.Window window) {
+            this.sink = sink;
+            this.window = window;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(PREFETCH);
+        }
+
+        @Override
+        protected void hookOnNext(StreamMessage message) {
+            synchronized (this) {
+                unrequested++;
+                if (message instanceof AiResponseMessage aiResponseMessage) {
+                    appendText(aiResponseMessage.getData());
+                } else {
+                    // 工具消息：先冲刷已累积的文本，保证顺序，再立即下发
+                    flushPending();
+                    sink.next(message);
+                }
+            }
+            replenish();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            synchronized (this) {
+                flushPending();
+                done = true;
+            }
+            sink.complete();
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            synchronized (this) {
+                flushPending();
+                done = true;
+            }
+            sink.error(throwable);
+        }
+
+        /**
+         * 下游有需求时补充向上游的请求
+         */
+        void replenish() {
+            int n;
+            synchronized (this) {
+                if (done || unrequested < REPLENISH_LIMIT || sink.requestedFromDownstream() <= 0) {
+                    return;
+                }
+                n = unrequested;
+                unrequested = 0;
+            }
+            request(n);
+        }
+
+        void shutdown() {
+            synchronized (this) {
+                done = true;
+                cancelFlushTask();
+            }
+            dispose();
+        }
+
+        private void appendText(String data) {
+            if (data == null || data.isEmpty()) {
+                return;
+            }
+            pending.append(data);
+            pendingBytes += utf8Length(data);
+            if (pendingBytes >= window.getMaxBytes()) {
+                flushPending();
+            } else if (flushTask == null) {
+                // 窗口内第一个分片，开始计时
+                flushTask = Schedulers.parallel().schedule(this::onWindowElapsed,
+                        window.getMaxDelayMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void onWindowElapsed() {
+            synchronized (this) {
+                flushTask = null;
+                if (!done) {
+                    flushPending();
+                }
+            }
+            replenish();
+        }
+
+        private void flushPending() {
+            cancelFlushTask();
+            if (pending.isEmpty()) {
+                return;
+            }
+            sink.next(new AiResponseMessage(pending.toString()));
+            pending.setLength(0);
+            pendingBytes = 0;
+        }
+
+        private void cancelFlushTask() {
+            if (flushTask != null) {
+                flushTask.dispose();
+                flushTask = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.jamin.codecube.core.handler;
+
+import com.jamin.codecube.ai.model.message.AiResponseMessage;
+import com.jamin.codecube.ai.model.message.StreamMessage;
+import com.jamin.codecube.ai.model.message.StreamMessageTypeEnum;
+import com.jamin.codecube.ai.model.message.ToolExecutedMessage;
+import com.jamin.codecube.ai.model.message.ToolRequestMessage;
+import com.jamin.codecube.config.TokenStreamBridgeConfig;
+import com.jamin.codecube.monitor.StreamMetricsCollector;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.TokenStream;
+import io.micrometer.core.instrument.Gauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * TokenStream 到 Flux 的有界桥接
+ * 模型回调写入每个流独立的有界缓冲区，只在下游有需求时才推送；
+ * 缓冲区满时把文本分片、同一工具调用的参数分片合并到队尾，工具事件永不丢弃，
+ * 慢客户端下堆内存占用与消息数量无关，只与实际内容大小相关。
+ */
+@Slf4j
+@Component
+public class TokenStreamBridge {
+
+    private final AtomicLong streamIdGenerator = new AtomicLong();
+
+    @Autowired
+    private TokenStreamBridgeConfig tokenStreamBridgeConfig;
+
+    @Autowired
+    private StreamMetricsCollector streamMetricsCollector;
+
+    /**
+     * 将 TokenStream 转换为 Flux<StreamMessage>
+     *
+     * @param tokenStream 模型流
+     * @param appId       应用 ID
+     * @param onComplete  模型响应完成时的回调，在下游收到完成信号之前调用
+     * @return 消息流
+     */
+    public Flux<StreamMessage> toFlux(TokenStream tokenStream, Long appId, Consumer<ChatResponse> onComplete) {
+        return Flux.create(sink -> {
+            String appIdStr = String.valueOf(appId);
+            BoundedMessageBuffer buffer = new BoundedMessageBuffer(sink, Math.max(1, tokenStreamBridgeConfig.getBufferSize()),
+                    messageType -> streamMetricsCollector.recordBufferCoalesced(appIdStr, messageType));
+            Gauge depthGauge = streamMetricsCollector.registerBufferDepthGauge(appIdStr,
+                    String.valueOf(streamIdGenerator.incrementAndGet()), buffer::size);
+            sink.onRequest(n -> buffer.drain());
+            sink.onDispose(() -> streamMetricsCollector.removeMeter(depthGauge));
+            // 下游取消（客户端断开）时中断模型请求，并跳过尚未执行的工具调用
+            sink.onCancel(() -> {
+                log.info("代码生成流已取消，中断模型请求，appId: {}", appId);
+                tokenStream.cancel();
+            });
+            tokenStream.onPartialResponse(partialResponse -> buffer.offer(new AiResponseMessage(partialResponse)))
+                    .onPartialToolExecutionRequest((index, toolExecutionRequest) ->
+                            buffer.offer(new ToolRequestMessage(toolExecutionRequest)))
+                    .onToolExecuted(toolExecution -> buffer.offer(new ToolExecutedMessage(toolExecution)))
+                    .onCompleteResponse(response -> {
+                        onComplete.accept(response);
+                        buffer.complete(null);
+                    })
+                    .onError(error -> {
+                        log.error("AI 流式响应出错，appId: {}", appId, error);
+                        buffer.complete(error);
+                    })
+                    .start();
+        });
+    }
+
+    /**
+     * 缓冲区满时合并到队尾的片段：AI 文本或同一工具调用的参数分片
+     */
+    private static final class MergedSegment {
+
+        private final String toolId;
+
+        private final String toolName;
+
+        private final StringBuilder content = new StringBuilder();
+
+        private MergedSegment(String toolId, String toolName, String content) {
+            this.toolId = toolId;
+            this.toolName = toolName;
+            this.content.append(content == null ? "" : content);
+        }
+
+        static MergedSegment of(StreamMessage message) {
+            if (message instanceof AiResponseMessage aiResponseMessage) {
+                return new MergedSegment(null, null, aiResponseMessage.getData());
+            }
+            if (message instanceof ToolRequestMessage toolRequestMessage && toolRequestMessage.getId() != null) {
+                return new MergedSegment(toolRequestMessage.getId(), toolRequestMessage.getName(), toolRequestMessage.getArguments());
+            }
+            return null;
+        }
+
+        boolean tryAppend(StreamMessage message) {
+            if (toolId == null && message instanceof AiResponseMessage aiResponseMessage) {
+                content.append(aiResponseMessage.getData() == null ? "" : aiResponseMessage.getData());
+                return true;
+            }
+            if (toolId != null && message instanceof ToolRequestMessage toolRequestMessage
+                    && Objects.equals(toolId, toolRequestMessage.getId())) {
+                content.append(toolRequestMessage.getArguments() == null ? "" : toolRequestMessage.getArguments());
+                return true;
+            }
+            return false;
+        }
+
+        StreamMessage toMessage() {
+            if (toolId == null) {
+                return new AiResponseMessage(content.toString());
+            }
+            return new ToolRequestMessage(ToolExecutionRequest.builder()
+                    .id(toolId)
+                    .name(toolName)
+                    .arguments(content.toString())
+                    .build());
+        }
+    }
+
+    /**
+     * 单个流的有界缓冲区
+     */
+    private static final class BoundedMessageBuffer {
+
+        private final FluxSink<StreamMessage> sink;
+
+        private final int capacity;
+
+        private final Consumer<String> coalescedRecorder;
+
+        /**
+         * 元素为 StreamMessage 或 MergedSegment
+         */
+        private final Deque<Object> queue = new ArrayDeque<>();
+
+        private boolean completed;
+
+        private Throwable error;
+
+        private boolean draining;
+
+        private boolean missed;
+
+        BoundedMessageBuffer(FluxSink<StreamMessage> sink, int capacity, Consumer<String> coalescedRecorder) {
+            this.sink = sink;
+            this.capacity = capacity;
+            this.coalescedRecorder = coalescedRecorder;
+        }
+
+        synchronized int size() {
+            return queue.size();
+        }
+
+        void offer(StreamMessage message) {
+            boolean coalesced = false;
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                if (queue.size() >= capacity) {
+                    coalesced = mergeIntoTail(message);
+                }
+                if (!coalesced) {
+                    queue.addLast(message);
+                }
+            }
+            if (coalesced) {
+                coalescedRecorder.accept(message.getType() == null
+                        ? StreamMessageTypeEnum.AI_RESPONSE.getValue() : message.getType());
+            }
+            drain();
+        }
+
+        void complete(Throwable throwable) {
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                completed = true;
+                error = throwable;
+            }
+            drain();
+        }
+
+        /**
+         * 队列满时尝试合并到队尾，无法合并（如工具执行结果）时返回 false，由调用方照常入队
+         */
+        private boolean mergeIntoTail(StreamMessage message) {
+            Object tail = queue.peekLast();
+            if (tail instanceof MergedSegment segment) {
+                return segment.tryAppend(message);
+            }
+            if (tail instanceof StreamMessage tailMessage) {
+                MergedSegment segment = MergedSegment.of(tailMessage);
+                if (segment != null && segment.tryAppend(message)) {
+                    queue.pollLast();
+                    queue.addLast(segment);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 按下游需求推送缓冲的消息，使用 draining/missed 标记避免重入
+         */
+        void drain() {
+            synchronized (this) {
+                if (draining) {
+                    missed = true;
+                    return;
+                }
+                draining = true;
+            }
+            for (;;) {
+                StreamMessage next = null;
+                boolean terminate = false;
+                Throwable terminalError = null;
+                synchronized (this) {
+                    if (sink.isCancelled()) {
+                        queue.clear();
+                        draining = false;
+                        return;
+                    }
+                    if (!queue.isEmpty() && sink.requestedFromDownstream() > 0) {
+                        Object head = queue.pollFirst();
+                        next = head instanceof MergedSegment segment ? segment.toMessage() : (StreamMessage) head;
+                    } else if (queue.isEmpty() && completed) {
+                        terminate = true;
+                        terminalError = error;
+                    } else if (missed) {
+                        missed = false;
+                        continue;
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                }
+                if (next != null) {
+                    sink.next(next);
+                } else if (terminate) {
+                    // 终止后保持 draining 状态，不再推送
+                    if (terminalError != null) {
+                        sink.error(terminalError);
+                    } else {
+                        sink.complete();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.jamin.codecube.core.parse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式代码块解析器（状态机）
+ * 随分片到达逐字符识别 ```lang 开始标记和 ``` 结束标记，代码块一闭合就返回，
+ * 不再需要等整个流结束后用正则重新扫描全部内容。
+ * 与 Markdown 一致，围栏只能出现在行首（最多 3 个空格缩进），行内的 ``` 按普通文本或代码内容处理。
+ * 非线程安全，每个流使用独立实例。
+ */
+public class StreamingCodeParser {
+
+    /**
+     * 代码围栏的反引号数量
+     */
+    private static final int FENCE_LENGTH = 3;
+
+    /**
+     * 信息串（语言标识）最大长度，超过则认为不是代码围栏
+     */
+    private static final int MAX_INFO_LENGTH = 32;
+
+    /**
+     * 围栏前允许的最大缩进空格数
+     */
+    private static final int MAX_FENCE_INDENT = 3;
+
+    private enum State {
+        /**
+         * 代码块之外的普通文本
+         */
+        TEXT,
+        /**
+         * 读取开始标记后的语言标识，直到换行
+         */
+        INFO,
+        /**
+         * 代码块内部
+         */
+        CODE
+    }
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续反引号计数
+     */
+    private int backtickCount = 0;
+
+    /**
+     * 当前字符之前是否只有行首缩进
+     */
+    private boolean atLineStart = true;
+
+    private int indent = 0;
+
+    private final StringBuilder infoBuilder = new StringBuilder();
+
+    private final StringBuilder codeBuilder = new StringBuilder();
+
+    private String language;
+
+    /**
+     * 输入一个分片
+     *
+     * @param chunk 流式分片
+     * @return 本次分片中闭合的代码块，没有则为空列表
+     */
+    public List<CodeBlock> feed(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return List.of();
+        }
+        List<CodeBlock> blocks = null;
+        for (int i = 0; i < chunk.length(); i++) {
+            CodeBlock block = accept(chunk.charAt(i));
+            if (block != null) {
+                if (blocks == null) {
+                    blocks = new ArrayList<>(2);
+                }
+                blocks.add(block);
+            }
+        }
+        return blocks == null ? List.of() : blocks;
+    }
+
+    /**
+     * 是否处于未闭合的代码块中
+     */
+    public boolean inCodeBlock() {
+        return state == State.CODE;
+    }
+
+    private CodeBlock accept(char c) {
+        boolean lineStart = atLineStart;
+        if (c == '\n') {
+            atLineStart = true;
+            indent = 0;
+        } else if (atLineStart && c == ' ' && indent < MAX_FENCE_INDENT) {
+            indent++;
+        } else {
+            atLineStart = false;
+        }
+        switch (state) {
+            case TEXT -> {
+                // 只有从行首开始的反引号才可能是开始围栏
+                if (c == '`' && (backtickCount > 0 || lineStart)) {
+                    if (++backtickCount == FENCE_LENGTH) {
+                        backtickCount = 0;
+                        infoBuilder.setLength(0);
+                        state = State.INFO;
+                    }
+                } else {
+                    backtickCount = 0;
+                }
+            }
+            case INFO -> {
+                if (c == '\n') {
+                    language = infoBuilder.toString().trim().toLowerCase();
+                    codeBuilder.setLength(0);
+                    state = State.CODE;
+                } else if (c == '`' || infoBuilder.length() >= MAX_INFO_LENGTH) {
+                    // 信息串中不能再有反引号（如 ```html``` 行内写法），过长也不是代码围栏，回到文本状态
+                    state = State.TEXT;
+                } else {
+                    infoBuilder.append(c);
+                }
+            }
+            case CODE -> {
+                // 结束围栏同样必须位于行首，行内的 ``` 属于代码内容
+                if (c == '`' && (backtickCount > 0 || lineStart)) {
+                    if (++backtickCount == FENCE_LENGTH) {
+                        backtickCount = 0;
+                        state = State.TEXT;
+                        CodeBlock block = new CodeBlock(language, codeBuilder.toString().trim());
+                        codeBuilder.setLength(0);
+                        return block;
+                    }
+                } else {
+                    // 不足三个的反引号属于代码内容
+                    for (; backtickCount > 0; backtickCount--) {
+                        codeBuilder.append('`');
+                    }
+                    codeBuilder.append(c);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 已闭合的代码块
+     *
+     * @param language 语言标识（小写），如 html、css、js
+     * @param content  去除首尾空白后的代码内容
+     */
+    public record CodeBlock(String language, String content) {
+    }
+}
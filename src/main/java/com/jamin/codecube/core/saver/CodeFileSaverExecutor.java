@@ -32,4 +32,35 @@ public class CodeFileSaverExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 获取代码块对应的文件名
+     *
+     * @param language    代码块语言标识
+     * @param codeGenType 代码生成类型
+     * @return 文件名，不支持的语言返回 null
+     */
+    public static String resolveBlockFileName(String language, CodeGenTypeEnum codeGenType) {
+        return getSaver(codeGenType).resolveFileName(language);
+    }
+
+    /**
+     * 执行单个代码块的保存
+     *
+     * @param language    代码块语言标识
+     * @param content     代码内容
+     * @param codeGenType 代码生成类型
+     * @return 写入的文件，语言不受支持时返回 null
+     */
+    public static File executeBlockSaver(String language, String content, CodeGenTypeEnum codeGenType, Long appId) {
+        return getSaver(codeGenType).saveCodeBlock(language, content, appId);
+    }
+
+    private static CodeFileSaverTemplate<?> getSaver(CodeGenTypeEnum codeGenType) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver;
+            case MULTI_FILE -> multiFileCodeFileSaver;
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
 }
@@ -39,6 +39,34 @@ public abstract class CodeFileSaverTemplate<T> {
         return new File(baseDirPath);
     }
 
+    /**
+     * 保存流式解析出的单个代码块
+     *
+     * @param language 代码块语言标识
+     * @param content  代码内容
+     * @param appId    应用 ID
+     * @return 写入的文件，语言不受支持或内容为空时返回 null
+     */
+    public final File saveCodeBlock(String language, String content, Long appId) {
+        String filename = resolveFileName(language);
+        if (filename == null || StrUtil.isBlank(content)) {
+            return null;
+        }
+        String baseDirPath = buildUniqueDir(appId);
+        writeToFile(baseDirPath, filename, content);
+        return new File(baseDirPath, filename);
+    }
+
+    /**
+     * 根据代码块语言获取要写入的文件名（可由子类覆盖）
+     *
+     * @param language 代码块语言标识
+     * @return 文件名，不支持的语言返回 null
+     */
+    public String resolveFileName(String language) {
+        return null;
+    }
+
     /**
      * 写入单个文件的工具方法
      *
@@ -21,6 +21,11 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
         writeToFile(baseDirPath, "index.html", result.getHtmlCode());
     }
 
+    @Override
+    public String resolveFileName(String language) {
+        return "html".equals(language) ? "index.html" : null;
+    }
+
     @Override
     protected void validateInput(HtmlCodeResult result) {
         super.validateInput(result);
@@ -0,0 +1,20 @@
+package com.jamin.codecube.core.schedule;
+
+/**
+ * 生成排队状态，推送给前端
+ *
+ * @param state        queued（排队中）/ admitted（已开始生成）
+ * @param position     在全局放行顺序中的位置，从 1 开始；已放行时为 0
+ * @param queueSize    当前排队总数
+ * @param waitedMillis 已等待的毫秒数
+ */
+public record GenerationQueueStatus(String state, int position, int queueSize, long waitedMillis) {
+
+    public static final String STATE_QUEUED = "queued";
+
+    public static final String STATE_ADMITTED = "admitted";
+
+    public boolean admitted() {
+        return STATE_ADMITTED.equals(state);
+    }
+}
@@ -0,0 +1,342 @@
+package com.jamin.codecube.core.schedule;
+
+import com.jamin.codecube.config.GenerationSchedulerConfig;
+import com.jamin.codecube.exception.BusinessException;
+import com.jamin.codecube.exception.ErrorCode;
+import com.jamin.codecube.model.entity.User;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.monitor.StreamMetricsCollector;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 代码生成调度器（加权公平队列）
+ * 位于应用对话入口和模型调用之间：
+ *     1. 全局运行数未满、且没有人排队时直接放行
+ *     2. 否则进入该用户自己的队列；每个任务按 开始标签 = max(虚拟时间, 该用户上一个任务的结束标签)、
+ *        结束标签 = 开始标签 + 成本 / 权重 打标签，放行时在各用户队首中选结束标签最小者
+ *     3. 单个用户同时运行的任务数另有上限，重度用户的任务再多也只能轮流占用少量并发
+ * 这样轻度用户的任务总能排在重度用户积压的任务之前，会员权重更高，Vue 工程模式成本更高。
+ * 排队位置、已等待时间和放行事件通过回调推送给调用方。
+ * 放行发生在释放名额的线程上（往往是其他用户生成流结束的回调线程），work 切到 boundedElastic 上执行，
+ * 其中的数据库、Redis 等阻塞操作不会占用该线程。
+ */
+@Slf4j
+@Component
+public class GenerationScheduler {
+
+    @Autowired
+    private GenerationSchedulerConfig generationSchedulerConfig;
+
+    @Autowired
+    private StreamMetricsCollector streamMetricsCollector;
+
+    /**
+     * 每个用户的队列，受 this 锁保护
+     */
+    private final Map<Long, UserQueue> userQueues = new HashMap<>();
+
+    private int runningCount;
+
+    private int queuedCount;
+
+    /**
+     * 虚拟时间：最近放行任务的开始标签
+     */
+    private double virtualTime;
+
+    private ScheduledExecutorService statusTicker;
+
+    /**
+     * 放行后执行 work 的调度器
+     */
+    private Scheduler workScheduler = Schedulers.boundedElastic();
+
+    @PostConstruct
+    public void init() {
+        statusTicker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "code-gen-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, generationSchedulerConfig.getStatusIntervalMillis());
+        statusTicker.scheduleWithFixedDelay(this::publishQueuePositions, interval, interval, TimeUnit.MILLISECONDS);
+        streamMetricsCollector.registerSchedulerGauges(this::getRunningCount, this::getQueuedCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        statusTicker.shutdownNow();
+    }
+
+    /**
+     * 调度一次生成
+     *
+     * @param user           发起用户
+     * @param codeGenType    代码生成类型，决定任务成本
+     * @param work           获得放行后在 boundedElastic 线程上执行，返回生成流
+     * @param statusListener 排队状态回调，放行时收到 admitted 状态后不再回调
+     * @return 放行后才开始的生成流；订阅取消时移出队列或释放运行名额
+     */
+    public <T> Flux<T> schedule(User user, CodeGenTypeEnum codeGenType, Supplier<Flux<T>> work,
+                                Consumer<GenerationQueueStatus> statusListener) {
+        if (!generationSchedulerConfig.isEnabled()) {
+            statusListener.accept(new GenerationQueueStatus(GenerationQueueStatus.STATE_ADMITTED, 0, 0, 0));
+            return work.get();
+        }
+        Ticket ticket = new Ticket(user.getId(), weightOf(user), costOf(codeGenType), statusListener);
+        return Flux.defer(() -> {
+                    enqueue(ticket);
+                    return ticket.admission.asMono()
+                            .publishOn(workScheduler)
+                            .flatMapMany(admitted -> work.get());
+                })
+                .doFinally(signalType -> finish(ticket));
+    }
+
+    public synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queuedCount;
+    }
+
+    private void enqueue(Ticket ticket) {
+        GenerationQueueStatus queuedStatus = null;
+        synchronized (this) {
+            UserQueue userQueue = userQueues.computeIfAbsent(ticket.userId, id -> new UserQueue());
+            if (userQueue.queue.size() >= generationSchedulerConfig.getMaxQueuedPerUser()) {
+                throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "排队中的生成任务过多，请稍后再试");
+            }
+            ticket.startTag = Math.max(virtualTime, userQueue.lastFinishTag);
+            ticket.finishTag = ticket.startTag + ticket.cost / ticket.weight;
+            userQueue.lastFinishTag = ticket.finishTag;
+            userQueue.queue.addLast(ticket);
+            ticket.state = TicketState.QUEUED;
+            queuedCount++;
+        }
+        drain();
+        synchronized (this) {
+            if (ticket.state == TicketState.QUEUED) {
+                queuedStatus = queuedStatus(ticket, positionOf(ticket));
+            }
+        }
+        if (queuedStatus != null) {
+            log.info("生成任务排队，userId: {}, 位置: {}", ticket.userId, queuedStatus.position());
+            ticket.publish(queuedStatus);
+        }
+    }
+
+    /**
+     * 生成结束、出错或被取消：移出队列或释放运行名额
+     */
+    private void finish(Ticket ticket) {
+        synchronized (this) {
+            UserQueue userQueue = userQueues.get(ticket.userId);
+            if (ticket.state == TicketState.QUEUED) {
+                if (userQueue != null && userQueue.queue.remove(ticket)) {
+                    queuedCount--;
+                }
+            } else if (ticket.state == TicketState.RUNNING) {
+                runningCount--;
+                if (userQueue != null) {
+                    userQueue.running--;
+                }
+            }
+            ticket.state = TicketState.FINISHED;
+            if (userQueue != null && userQueue.queue.isEmpty() && userQueue.running == 0
+                    && userQueue.lastFinishTag <= virtualTime) {
+                // 用户已没有积压，丢弃其标签，再来时从当前虚拟时间开始
+                userQueues.remove(ticket.userId);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * 在名额允许的范围内按结束标签放行
+     */
+    private void drain() {
+        List<Ticket> admitted = new ArrayList<>();
+        synchronized (this) {
+            while (runningCount < generationSchedulerConfig.getMaxConcurrent()) {
+                UserQueue next = null;
+                for (UserQueue userQueue : userQueues.values()) {
+                    Ticket head = userQueue.queue.peekFirst();
+                    if (head == null || userQueue.running >= generationSchedulerConfig.getMaxRunningPerUser()) {
+                        continue;
+                    }
+                    if (next == null || head.finishTag < next.queue.peekFirst().finishTag) {
+                        next = userQueue;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                Ticket ticket = next.queue.pollFirst();
+                queuedCount--;
+                runningCount++;
+                next.running++;
+                virtualTime = Math.max(virtualTime, ticket.startTag);
+                ticket.state = TicketState.RUNNING;
+                admitted.add(ticket);
+            }
+        }
+        for (Ticket ticket : admitted) {
+            long waitedMillis = ticket.waitedMillis();
+            streamMetricsCollector.recordQueueWait(ticket.weight > generationSchedulerConfig.getDefaultWeight() ? "vip" : "default",
+                    Duration.ofMillis(waitedMillis));
+            ticket.publish(new GenerationQueueStatus(GenerationQueueStatus.STATE_ADMITTED, 0, getQueuedCount(), waitedMillis));
+            ticket.admission.tryEmitValue(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 定时推送排队中任务的最新位置和已等待时间
+     */
+    private void publishQueuePositions() {
+        List<GenerationQueueStatus> statuses = new ArrayList<>();
+        List<Ticket> tickets;
+        synchronized (this) {
+            if (queuedCount == 0) {
+                return;
+            }
+            tickets = sortedQueuedTickets();
+            for (int i = 0; i < tickets.size(); i++) {
+                statuses.add(queuedStatus(tickets.get(i), i + 1));
+            }
+        }
+        for (int i = 0; i < tickets.size(); i++) {
+            tickets.get(i).publish(statuses.get(i));
+        }
+    }
+
+    private List<Ticket> sortedQueuedTickets() {
+        List<Ticket> tickets = new ArrayList<>(queuedCount);
+        userQueues.values().forEach(userQueue -> tickets.addAll(userQueue.queue));
+        tickets.sort(Comparator.comparingDouble(ticket -> ticket.finishTag));
+        return tickets;
+    }
+
+    /**
+     * 在全局放行顺序中的位置（按结束标签估算）
+     */
+    private int positionOf(Ticket ticket) {
+        int position = 1;
+        for (UserQueue userQueue : userQueues.values()) {
+            Iterator<Ticket> iterator = userQueue.queue.iterator();
+            while (iterator.hasNext()) {
+                Ticket other = iterator.next();
+                if (other != ticket && other.finishTag < ticket.finishTag) {
+                    position++;
+                }
+            }
+        }
+        return position;
+    }
+
+    private GenerationQueueStatus queuedStatus(Ticket ticket, int position) {
+        return new GenerationQueueStatus(GenerationQueueStatus.STATE_QUEUED, position, queuedCount, ticket.waitedMillis());
+    }
+
+    private double weightOf(User user) {
+        LocalDateTime vipExpireTime = user.getVipExpireTime();
+        if (vipExpireTime != null && vipExpireTime.isAfter(LocalDateTime.now())) {
+            return generationSchedulerConfig.getVipWeight();
+        }
+        return generationSchedulerConfig.getDefaultWeight();
+    }
+
+    private double costOf(CodeGenTypeEnum codeGenType) {
+        return codeGenType == CodeGenTypeEnum.VUE_PROJECT ? generationSchedulerConfig.getVueProjectCost() : 1.0;
+    }
+
+    private enum TicketState {
+        NEW, QUEUED, RUNNING, FINISHED
+    }
+
+    private static final class UserQueue {
+
+        private final Deque<Ticket> queue = new ArrayDeque<>();
+
+        private int running;
+
+        private double lastFinishTag;
+    }
+
+    private static final class Ticket {
+
+        private final Long userId;
+
+        private final double weight;
+
+        private final double cost;
+
+        private final Consumer<GenerationQueueStatus> statusListener;
+
+        private final long createdAtNanos = System.nanoTime();
+
+        private final Sinks.One<Boolean> admission = Sinks.one();
+
+        private double startTag;
+
+        private double finishTag;
+
+        private TicketState state = TicketState.NEW;
+
+        /**
+         * 已推送放行状态，之后的排队状态丢弃
+         */
+        private boolean admittedNotified;
+
+        private Ticket(Long userId, double weight, double cost, Consumer<GenerationQueueStatus> statusListener) {
+            this.userId = userId;
+            this.weight = weight;
+            this.cost = cost;
+            this.statusListener = statusListener;
+        }
+
+        private long waitedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdAtNanos);
+        }
+
+        /**
+         * 同一任务的状态串行推送，保证放行状态是最后一条
+         */
+        private synchronized void publish(GenerationQueueStatus status) {
+            if (admittedNotified || statusListener == null) {
+                return;
+            }
+            admittedNotified = status.admitted();
+            try {
+                statusListener.accept(status);
+            } catch (Exception e) {
+                log.warn("推送排队状态失败, userId: {}", userId, e);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.jamin.codecube.langgraph4j.node;
 
 import com.jamin.codecube.constant.AppConstant;
+import com.jamin.codecube.ai.model.message.StreamMessage;
 import com.jamin.codecube.core.AiCodeGeneratorFacade;
 import com.jamin.codecube.exception.BusinessException;
 import com.jamin.codecube.exception.ErrorCode;
@@ -37,7 +38,7 @@ public class CodeGeneratorNode {
             // 获取 appId
             Long appId = context.getAppId();
             // 调用流式代码生成
-            Flux<String> codeStream = codeGeneratorFacade.generateAndSaveCodeStream(userMessage, generationType, appId);
+            Flux<StreamMessage> codeStream = codeGeneratorFacade.generateAndSaveCodeStream(userMessage, generationType, appId);
             // 同步等待流式输出完成
             if (generationType.equals(CodeGenTypeEnum.HTML) || generationType.equals(CodeGenTypeEnum.MULTI_FILE)) {
                 codeStream.blockLast(Duration.ofMinutes(15)); // 最多等待 15 分钟
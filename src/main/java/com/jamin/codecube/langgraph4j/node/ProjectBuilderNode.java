@@ -1,5 +1,6 @@
 package com.jamin.codecube.langgraph4j.node;
 
+import com.jamin.codecube.core.builder.BuildPriority;
 import com.jamin.codecube.core.builder.VueProjectBuilder;
 import com.jamin.codecube.exception.BusinessException;
 import com.jamin.codecube.exception.ErrorCode;
@@ -32,7 +33,7 @@ public class ProjectBuilderNode {
             try {
                 VueProjectBuilder vueBuilder = SpringContextUtil.getBean(VueProjectBuilder.class);
                 // 执行 Vue 项目构建（npm install + npm run build）
-                boolean buildSuccess = vueBuilder.buildProject(generatedCodeDir);
+                boolean buildSuccess = vueBuilder.buildProject(generatedCodeDir, BuildPriority.WORKFLOW);
                 if (buildSuccess) {
                     // 构建成功，返回 dist 目录路径
                     buildResultDir = generatedCodeDir + File.separator + "dist";
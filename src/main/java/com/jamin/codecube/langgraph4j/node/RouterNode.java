@@ -1,6 +1,6 @@
 package com.jamin.codecube.langgraph4j.node;
 
-import com.jamin.codecube.ai.AiCodeGenTypeRoutingService;
+import com.jamin.codecube.ai.routing.CodeGenTypeRouter;
 import com.jamin.codecube.langgraph4j.state.WorkflowContext;
 import com.jamin.codecube.model.enums.CodeGenTypeEnum;
 import com.jamin.codecube.utils.SpringContextUtil;
@@ -22,11 +22,11 @@ public class RouterNode {
 
             CodeGenTypeEnum generationType;
             try {
-                // 获取AI路由服务
-                AiCodeGenTypeRoutingService routingService = SpringContextUtil.getBean(AiCodeGenTypeRoutingService.class);
+                // 获取分级路由（缓存 → 本地分类 → AI 路由）
+                CodeGenTypeRouter codeGenTypeRouter = SpringContextUtil.getBean(CodeGenTypeRouter.class);
                 // 根据原始提示词进行智能路由
-                generationType = routingService.routeCodeGenType(context.getOriginalPrompt());
-                log.info("AI智能路由完成，选择类型: {} ({})", generationType.getValue(), generationType.getText());
+                generationType = codeGenTypeRouter.route(context.getOriginalPrompt());
+                log.info("智能路由完成，选择类型: {} ({})", generationType.getValue(), generationType.getText());
             } catch (Exception e) {
                 log.error("AI智能路由失败，使用默认HTML类型: {}", e.getMessage());
                 generationType = CodeGenTypeEnum.HTML;
@@ -0,0 +1,283 @@
+package com.jamin.codecube.manager;
+
+import com.jamin.codecube.config.ChatHistoryWriteBehindConfig;
+import com.jamin.codecube.mapper.ChatHistoryMapper;
+import com.jamin.codecube.mapper.ChatHistoryOriginalMapper;
+import com.jamin.codecube.model.entity.ChatHistory;
+import com.jamin.codecube.model.entity.ChatHistoryOriginal;
+import com.jamin.codecube.monitor.ChatHistoryMetricsCollector;
+import com.mybatisflex.core.keygen.IKeyGenerator;
+import com.mybatisflex.core.keygen.KeyGeneratorFactory;
+import com.mybatisflex.core.keygen.KeyGenerators;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * 对话历史异步批量入库队列（write-behind）
+ * 各请求的对话记录先入队，由专用线程攒批后以多行 INSERT 写入 chat_history / chat_history_original，
+ * 入库耗时不再占用 Reactor 线程和首 token 前的请求路径。
+ * <p>
+ * 入队时即分配雪花 ID 和创建时间，落库顺序与调用顺序一致，不会因为攒批打乱 tool_request -> tool_result 的先后；
+ * 读取前调用 {@link #flush()} 可保证之前入队的记录全部落库。
+ */
+@Component
+@Slf4j
+public class ChatHistoryWriteBehindQueue {
+
+    private static final String TABLE_CHAT_HISTORY = "chat_history";
+
+    private static final String TABLE_CHAT_HISTORY_ORIGINAL = "chat_history_original";
+
+    @Resource
+    private ChatHistoryWriteBehindConfig writeBehindConfig;
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private ChatHistoryOriginalMapper chatHistoryOriginalMapper;
+
+    @Resource
+    private ChatHistoryMetricsCollector chatHistoryMetricsCollector;
+
+    private final IKeyGenerator idGenerator = KeyGeneratorFactory.getKeyGenerator(KeyGenerators.snowFlakeId);
+
+    /**
+     * 写入锁：同一时刻只有一个线程在出队并落库，保证先入队的记录先落库
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private BlockingQueue<PendingWrite> queue;
+
+    private Thread worker;
+
+    private volatile boolean running;
+
+    /**
+     * 待入库记录
+     *
+     * @param entity       ChatHistory 或 ChatHistoryOriginal
+     * @param enqueueNanos 入队时间
+     */
+    private record PendingWrite(Object entity, long enqueueNanos) {
+    }
+
+    /**
+     * 待执行的对话记录更新（按 ID 更新非空字段）
+     */
+    private record ChatHistoryUpdate(ChatHistory chatHistory) {
+    }
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(Math.max(1, writeBehindConfig.getQueueCapacity()));
+        chatHistoryMetricsCollector.registerQueueSizeGauge(queue::size);
+        if (!writeBehindConfig.isEnabled()) {
+            log.info("对话历史异步入库未启用，使用同步入库");
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("chat-history-writer")
+                .daemon(true)
+                .start(this::runWorker);
+    }
+
+    /**
+     * 关闭时排空队列，保证已入队的记录不丢失
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(writeBehindConfig.getShutdownTimeoutSeconds()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        log.info("对话历史入库队列已关闭");
+    }
+
+    /**
+     * 对话记录入队
+     */
+    public void enqueue(ChatHistory chatHistory) {
+        LocalDateTime now = LocalDateTime.now();
+        chatHistory.setId(nextId(chatHistory));
+        chatHistory.setCreateTime(now);
+        chatHistory.setUpdateTime(now);
+        chatHistory.setIsDelete(0);
+        offer(chatHistory);
+    }
+
+    /**
+     * 对话记录更新入队，按 ID 更新非空字段；必须在对应记录入队之后调用
+     */
+    public void enqueueUpdate(ChatHistory chatHistory) {
+        chatHistory.setUpdateTime(LocalDateTime.now());
+        offer(new ChatHistoryUpdate(chatHistory));
+    }
+
+    /**
+     * 原始对话记录按顺序入队
+     */
+    public void enqueueOriginal(List<ChatHistoryOriginal> chatHistoryOriginalList) {
+        LocalDateTime now = LocalDateTime.now();
+        for (ChatHistoryOriginal chatHistoryOriginal : chatHistoryOriginalList) {
+            chatHistoryOriginal.setId(nextId(chatHistoryOriginal));
+            chatHistoryOriginal.setCreateTime(now);
+            chatHistoryOriginal.setUpdateTime(now);
+            chatHistoryOriginal.setIsDelete(0);
+            offer(chatHistoryOriginal);
+        }
+    }
+
+    /**
+     * 同步写入当前已入队的全部记录，在读取对话历史前调用
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            List<PendingWrite> batch = new ArrayList<>();
+            while (queue.drainTo(batch, Math.max(1, writeBehindConfig.getBatchSize())) > 0) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 当前待入库的记录数
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    private void offer(Object entity) {
+        PendingWrite pendingWrite = new PendingWrite(entity, System.nanoTime());
+        if (!running) {
+            writeNow(pendingWrite);
+            return;
+        }
+        if (!queue.offer(pendingWrite)) {
+            // 队列已满：先排空队列再由调用线程同步入库，保持顺序并形成背压
+            log.warn("对话历史入库队列已满，调用线程同步入库，队列容量: {}", writeBehindConfig.getQueueCapacity());
+            writeLock.lock();
+            try {
+                flush();
+                writeNow(pendingWrite);
+            } finally {
+                writeLock.unlock();
+            }
+            return;
+        }
+        if (queue.size() >= writeBehindConfig.getBatchSize()) {
+            // 已攒满一批，提前唤醒写入线程
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void writeNow(PendingWrite pendingWrite) {
+        writeLock.lock();
+        try {
+            writeBatch(List.of(pendingWrite));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void runWorker() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, writeBehindConfig.getFlushIntervalMillis()));
+        while (running) {
+            LockSupport.parkNanos(this, intervalNanos);
+            try {
+                flush();
+            } catch (Exception e) {
+                log.error("对话历史批量入库失败", e);
+            }
+        }
+    }
+
+    /**
+     * 按表拆分后批量写入，同一张表内保持入队顺序；更新在插入之后执行，同一条记录只执行最后一次更新
+     */
+    private void writeBatch(List<PendingWrite> batch) {
+        List<ChatHistory> chatHistoryList = new ArrayList<>();
+        List<ChatHistoryOriginal> originalList = new ArrayList<>();
+        Map<Long, ChatHistory> updates = new LinkedHashMap<>();
+        long oldestNanos = Long.MAX_VALUE;
+        for (PendingWrite pendingWrite : batch) {
+            oldestNanos = Math.min(oldestNanos, pendingWrite.enqueueNanos());
+            if (pendingWrite.entity() instanceof ChatHistory chatHistory) {
+                chatHistoryList.add(chatHistory);
+            } else if (pendingWrite.entity() instanceof ChatHistoryOriginal chatHistoryOriginal) {
+                originalList.add(chatHistoryOriginal);
+            } else if (pendingWrite.entity() instanceof ChatHistoryUpdate update) {
+                updates.put(update.chatHistory().getId(), update.chatHistory());
+            }
+        }
+        if (!chatHistoryList.isEmpty()) {
+            insertBatch(TABLE_CHAT_HISTORY, chatHistoryList, chatHistoryMapper::insertBatch, chatHistoryMapper::insert);
+        }
+        if (!originalList.isEmpty()) {
+            insertBatch(TABLE_CHAT_HISTORY_ORIGINAL, originalList, chatHistoryOriginalMapper::insertBatch, chatHistoryOriginalMapper::insert);
+        }
+        for (ChatHistory chatHistory : updates.values()) {
+            try {
+                chatHistoryMapper.update(chatHistory);
+            } catch (Exception e) {
+                log.error("{} 更新失败，id: {}", TABLE_CHAT_HISTORY, chatHistory.getId(), e);
+            }
+        }
+        Duration lag = Duration.ofNanos(System.nanoTime() - oldestNanos);
+        if (!chatHistoryList.isEmpty() || !updates.isEmpty()) {
+            chatHistoryMetricsCollector.recordWriteLag(TABLE_CHAT_HISTORY, lag);
+        }
+        if (!originalList.isEmpty()) {
+            chatHistoryMetricsCollector.recordWriteLag(TABLE_CHAT_HISTORY_ORIGINAL, lag);
+        }
+    }
+
+    private <T> void insertBatch(String table, List<T> entities,
+                                 ToIntFunction<List<T>> batchInserter, ToIntFunction<T> singleInserter) {
+        try {
+            batchInserter.applyAsInt(entities);
+            chatHistoryMetricsCollector.recordBatchSize(table, entities.size());
+        } catch (Exception e) {
+            // 批量写入失败时逐条重试，避免一条坏数据拖累整批
+            log.error("{} 批量入库失败，改为逐条入库，条数: {}", table, entities.size(), e);
+            for (T entity : entities) {
+                try {
+                    singleInserter.applyAsInt(entity);
+                } catch (Exception ex) {
+                    log.error("{} 入库失败，已丢弃该条记录", table, ex);
+                }
+            }
+        }
+    }
+
+    private Long nextId(Object entity) {
+        return ((Number) idGenerator.generate(entity, "id")).longValue();
+    }
+}
@@ -1,6 +1,8 @@
 package com.jamin.codecube.monitor;
 
+import com.jamin.codecube.ai.limiter.AdaptiveConcurrencyLimiter;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
@@ -28,6 +30,9 @@ public class AiModelMetricsCollector {
     private final ConcurrentMap<String, Counter> errorCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Counter> tokenCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Timer> responseTimersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> firstTokenTimersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> routingTimersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> rejectionCountersCache = new ConcurrentHashMap<>();
 
     /**
      * 记录请求次数
@@ -96,4 +101,81 @@ public class AiModelMetricsCollector {
         );
         timer.record(duration);
     }
+
+    /**
+     * 记录首个 token 的等待时间（TTFT）
+     */
+    public void recordFirstTokenTime(String userId, String appId, String modelName, Duration duration) {
+        String key = String.format("%s_%s_%s", userId, appId, modelName);
+        Timer timer = firstTokenTimersCache.computeIfAbsent(key, k ->
+                Timer.builder("ai_model_first_token_duration_seconds")
+                        .description("AI模型首个Token等待时间")
+                        .tag("user_id", userId)
+                        .tag("app_id", appId)
+                        .tag("model_name", modelName)
+                        .register(meterRegistry)
+        );
+        timer.record(duration);
+    }
+
+    /**
+     * 记录会话记忆压缩节省的输入Token（估算值）
+     * 不按应用打标签，应用数量无上限，按应用区分会让时间序列无限增长；需要排查单个应用时看调试日志
+     */
+    public void recordCompactionSavings(long tokenCount) {
+        Counter.builder("ai_model_input_tokens_saved_total")
+                .description("会话记忆压缩节省的输入Token估算数")
+                .register(meterRegistry)
+                .increment(tokenCount);
+    }
+
+    /**
+     * 记录一次代码生成类型路由，tier 为做出决定的层级（cache/classifier/llm）
+     */
+    public void recordRoutingDecision(String tier, Duration duration) {
+        Timer timer = routingTimersCache.computeIfAbsent(tier, k ->
+                Timer.builder("ai_routing_duration_seconds")
+                        .description("代码生成类型路由耗时")
+                        .tag("tier", tier)
+                        .register(meterRegistry)
+        );
+        timer.record(duration);
+    }
+
+    /**
+     * 注册模型并发限制器的实时指标：当前并发上限、在途请求数、排队数、熔断状态
+     */
+    public void registerConcurrencyGauges(String modelName, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("ai_model_concurrency_limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("AI模型当前自适应并发上限")
+                .tag("model_name", modelName)
+                .register(meterRegistry);
+        Gauge.builder("ai_model_concurrency_in_flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("AI模型在途请求数")
+                .tag("model_name", modelName)
+                .register(meterRegistry);
+        Gauge.builder("ai_model_concurrency_queue_size", limiter, AdaptiveConcurrencyLimiter::getQueueSize)
+                .description("AI模型排队等待的请求数")
+                .tag("model_name", modelName)
+                .register(meterRegistry);
+        Gauge.builder("ai_model_circuit_open", limiter, l -> l.isCircuitOpen() ? 1 : 0)
+                .description("AI模型熔断状态（1为熔断中）")
+                .tag("model_name", modelName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录被并发限制器拒绝的请求，reason 为 queue_full/queue_timeout/circuit_open
+     */
+    public void recordConcurrencyRejection(String modelName, String reason) {
+        String key = String.format("%s_%s", modelName, reason);
+        Counter counter = rejectionCountersCache.computeIfAbsent(key, k ->
+                Counter.builder("ai_model_rejections_total")
+                        .description("AI模型被并发限制拒绝的请求次数")
+                        .tag("model_name", modelName)
+                        .tag("reason", reason)
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
 }
@@ -1,9 +1,11 @@
 package com.jamin.codecube.monitor;
 
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
 import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
 import dev.langchain4j.model.output.TokenUsage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,6 +55,8 @@ public class AiModelMonitorListener implements ChatModelListener {
         metricsCollector.recordRequest(userId, appId, modelName, "success");
         // 记录响应时间
         recordResponseTime(attributes, userId, appId, modelName);
+        // 记录首个 token 的等待时间
+        recordFirstTokenTime(attributes, userId, appId, modelName);
         // 记录使用的令牌数
         recordTokenUsage(responseContext, userId, appId, modelName);
     }
@@ -88,6 +92,21 @@ public class AiModelMonitorListener implements ChatModelListener {
     }
 
 
+    /**
+     * 记录首个 token 的等待时间（仅流式请求）
+     * @param attributes
+     * @param userId
+     * @param appId
+     * @param modelName
+     */
+    private void recordFirstTokenTime(Map<Object, Object> attributes, String userId, String appId, String modelName) {
+        Instant start = (Instant) attributes.get(REQUEST_START_TIME_KEY);
+        Instant firstToken = (Instant) attributes.get(StreamingChatModel.FIRST_TOKEN_TIME_ATTRIBUTE);
+        if (start != null && firstToken != null) {
+            metricsCollector.recordFirstTokenTime(userId, appId, modelName, Duration.between(start, firstToken));
+        }
+    }
+
     /**
      * 记录使用的令牌数
      * @param responseContext
@@ -101,6 +120,13 @@ public class AiModelMonitorListener implements ChatModelListener {
             metricsCollector.recordTokenUsage(userId, appId, modelName, "input", tokenUsage.inputTokenCount());
             metricsCollector.recordTokenUsage(userId, appId, modelName, "output", tokenUsage.outputTokenCount());
             metricsCollector.recordTokenUsage(userId, appId, modelName, "total", tokenUsage.totalTokenCount());
+            // 命中服务端提示词缓存的输入令牌数
+            if (tokenUsage instanceof OpenAiTokenUsage openAiTokenUsage
+                    && openAiTokenUsage.inputTokensDetails() != null
+                    && openAiTokenUsage.inputTokensDetails().cachedTokens() != null) {
+                metricsCollector.recordTokenUsage(userId, appId, modelName, "cached",
+                        openAiTokenUsage.inputTokensDetails().cachedTokens());
+            }
         }
     }
 }
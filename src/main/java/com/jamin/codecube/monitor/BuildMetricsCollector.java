@@ -0,0 +1,111 @@
+package com.jamin.codecube.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Vue 项目构建监控指标收集器
+ * 负责收集构建队列的积压、等待时间、合并次数、构建耗时与各阶段耗时
+ */
+@Component
+@Slf4j
+public class BuildMetricsCollector {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 注册某个优先级的排队构建数指标
+     */
+    public void registerQueueDepthGauge(String priority, Supplier<Number> depthSupplier) {
+        Gauge.builder("vue_build_queue_depth", depthSupplier)
+                .description("排队等待的 Vue 项目构建数")
+                .tag("priority", priority)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册正在执行的构建数指标
+     */
+    public void registerRunningGauge(Supplier<Number> runningSupplier) {
+        Gauge.builder("vue_build_running", runningSupplier)
+                .description("正在执行的 Vue 项目构建数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录构建从入队到开始执行的等待时间
+     */
+    public void recordQueueWait(String priority, Duration wait) {
+        Timer.builder("vue_build_queue_wait_seconds")
+                .description("Vue 项目构建排队等待时间")
+                .tag("priority", priority)
+                .register(meterRegistry)
+                .record(wait);
+    }
+
+    /**
+     * 记录合并到进行中构建的请求
+     */
+    public void recordCoalesced(String priority) {
+        Counter.builder("vue_build_coalesced_total")
+                .description("合并到同一项目进行中构建的请求数")
+                .tag("priority", priority)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录构建耗时，result 为 success/failure
+     */
+    public void recordBuildDuration(String result, Duration duration) {
+        Timer.builder("vue_build_duration_seconds")
+                .description("Vue 项目构建耗时")
+                .tag("result", result)
+                .register(meterRegistry)
+                .record(duration);
+    }
+
+    /**
+     * 记录构建阶段耗时，phase 为 install/build/verify/fingerprint，result 为 success/failure
+     */
+    public void recordPhaseDuration(String phase, String result, Duration duration) {
+        Timer.builder("vue_build_phase_duration_seconds")
+                .description("Vue 项目构建各阶段耗时")
+                .tag("phase", phase)
+                .tag("result", result)
+                .register(meterRegistry)
+                .record(duration);
+    }
+
+    /**
+     * 注册常驻 Vite 构建进程数指标
+     */
+    public void registerDaemonGauges(Supplier<Number> aliveSupplier, Supplier<Number> idleSupplier) {
+        Gauge.builder("vue_build_daemon_workers", aliveSupplier)
+                .description("存活的常驻 Vite 构建进程数")
+                .register(meterRegistry);
+        Gauge.builder("vue_build_daemon_idle_workers", idleSupplier)
+                .description("空闲的常驻 Vite 构建进程数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录常驻进程构建结果，result 为 success/failure/unavailable（unavailable 表示退回 npm run build）
+     */
+    public void recordDaemonBuild(String result) {
+        Counter.builder("vue_build_daemon_builds_total")
+                .description("常驻 Vite 进程执行的构建数")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
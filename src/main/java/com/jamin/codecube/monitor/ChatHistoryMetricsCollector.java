@@ -0,0 +1,90 @@
+package com.jamin.codecube.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * 对话历史入库监控指标收集器
+ * 负责收集异步批量入库队列的积压、延迟与批大小，以及会话记忆的加载命中与写入量
+ */
+@Component
+@Slf4j
+public class ChatHistoryMetricsCollector {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 注册待入库队列长度指标
+     */
+    public void registerQueueSizeGauge(Supplier<Number> sizeSupplier) {
+        Gauge.builder("chat_history_write_queue_size", sizeSupplier)
+                .description("对话历史待入库队列长度")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录消息从入队到落库的延迟
+     */
+    public void recordWriteLag(String table, Duration lag) {
+        Timer.builder("chat_history_write_lag")
+                .description("对话历史从入队到落库的延迟")
+                .tag("table", table)
+                .register(meterRegistry)
+                .record(lag);
+    }
+
+    /**
+     * 记录一次批量入库的行数
+     */
+    public void recordBatchSize(String table, int size) {
+        DistributionSummary.builder("chat_history_write_batch_size")
+                .description("对话历史单次批量入库的行数")
+                .tag("table", table)
+                .register(meterRegistry)
+                .record(size);
+    }
+
+    /**
+     * 记录一次会话记忆加载，hit 表示复用了 Redis 中的记忆，miss 表示回源数据库
+     */
+    public void recordMemoryHydration(String result) {
+        Counter.builder("chat_memory_hydration_total")
+                .description("会话记忆加载次数")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录一次会话记忆写入 Redis 的字节数，mode 为 append（增量）或 rewrite（整体重写）
+     */
+    public void recordMemoryWriteBytes(String mode, long bytes) {
+        DistributionSummary.builder("chat_memory_write_bytes")
+                .description("会话记忆单次写入 Redis 的字节数")
+                .baseUnit("bytes")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    /**
+     * 记录一次生成期间会话记忆写入 Redis 的总字节数
+     */
+    public void recordMemoryGenerationBytes(long bytes) {
+        DistributionSummary.builder("chat_memory_generation_bytes")
+                .description("单次生成期间会话记忆写入 Redis 的总字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(bytes);
+    }
+}
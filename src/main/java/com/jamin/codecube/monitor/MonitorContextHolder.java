@@ -1,6 +1,7 @@
 package com.jamin.codecube.monitor;
 
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 
 @Slf4j
 public class MonitorContextHolder {
@@ -27,4 +28,29 @@ public class MonitorContextHolder {
     public static void clearContext() {
         CONTEXT_HOLDER.remove();
     }
+
+    /**
+     * 在指定监控上下文下执行，用于把上下文带到发起模型请求的其他线程，执行完恢复原上下文
+     */
+    public static void runWith(MonitorContext context, Runnable action) {
+        MonitorContext previous = CONTEXT_HOLDER.get();
+        CONTEXT_HOLDER.set(context);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                CONTEXT_HOLDER.remove();
+            } else {
+                CONTEXT_HOLDER.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 订阅 source 期间带上指定的监控上下文
+     * 模型请求在订阅时发起，上下文只在发起请求的那段同步调用内可见，订阅结束即恢复，不会残留在线程池线程上
+     */
+    public static <T> Flux<T> withContext(MonitorContext context, Flux<T> source) {
+        return Flux.from(subscriber -> runWith(context, () -> source.subscribe(subscriber)));
+    }
 }
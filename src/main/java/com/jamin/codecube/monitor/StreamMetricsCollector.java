@@ -0,0 +1,143 @@
+package com.jamin.codecube.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 代码生成流监控指标收集器
+ * 负责收集流式输出链路（缓冲、合并等）相关的指标
+ */
+@Component
+@Slf4j
+public class StreamMetricsCollector {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Counter> coalescedCountersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> subscriberCountersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> queueWaitTimersCache = new ConcurrentHashMap<>();
+
+    /**
+     * 注册单个流的缓冲区深度指标，流结束时需调用 {@link #removeMeter(Meter)} 移除
+     */
+    public Gauge registerBufferDepthGauge(String appId, String streamId, Supplier<Number> depthSupplier) {
+        return Gauge.builder("ai_stream_buffer_depth", depthSupplier)
+                .description("代码生成流缓冲区中待推送的消息数")
+                .tag("app_id", appId)
+                .tag("stream_id", streamId)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录缓冲区已满时发生的消息合并
+     */
+    public void recordBufferCoalesced(String appId, String messageType) {
+        String key = String.format("%s_%s", appId, messageType);
+        Counter counter = coalescedCountersCache.computeIfAbsent(key, k ->
+                Counter.builder("ai_stream_buffer_coalesced_total")
+                        .description("缓冲区已满时合并的消息数")
+                        .tag("app_id", appId)
+                        .tag("message_type", messageType)
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+
+    /**
+     * 记录一次新发起的生成（一次上游模型调用）
+     */
+    public void recordGenerationStarted() {
+        Counter.builder("ai_generation_sessions_total")
+                .description("发起的生成会话数")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 记录生成流的订阅者，订阅者总数 / 会话数即扇出比
+     *
+     * @param mode origin（发起者）、attach（复用）、watch（观看）、resume（续传）
+     */
+    public void recordGenerationSubscriber(String mode) {
+        Counter counter = subscriberCountersCache.computeIfAbsent(mode, k ->
+                Counter.builder("ai_generation_subscribers_total")
+                        .description("生成流的订阅者数")
+                        .tag("mode", mode)
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+
+    /**
+     * 记录单个生成会话最终的订阅者数量
+     */
+    public void recordGenerationFanout(int subscriberCount) {
+        DistributionSummary.builder("ai_generation_fanout")
+                .description("单个生成会话的订阅者数量")
+                .register(meterRegistry)
+                .record(subscriberCount);
+    }
+
+    /**
+     * 记录生成结果缓存的命中情况，命中时不会调用模型
+     *
+     * @param codeGenType 生成类型
+     * @param result      hit（命中）、miss（未命中）、store（写入）
+     */
+    public void recordResponseCache(String codeGenType, String result) {
+        Counter.builder("ai_response_cache_total")
+                .description("生成结果缓存的命中、未命中与写入次数")
+                .tag("type", codeGenType)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 注册生成调度器的运行数和排队数指标
+     */
+    public void registerSchedulerGauges(Supplier<Number> runningSupplier, Supplier<Number> queuedSupplier) {
+        Gauge.builder("code_gen_scheduler_running", runningSupplier)
+                .description("调度器中正在运行的生成数")
+                .register(meterRegistry);
+        Gauge.builder("code_gen_scheduler_queued", queuedSupplier)
+                .description("调度器中排队等待的生成数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录生成任务的排队等待时间，tier 为 vip/default
+     */
+    public void recordQueueWait(String tier, Duration duration) {
+        Timer timer = queueWaitTimersCache.computeIfAbsent(tier, k ->
+                Timer.builder("code_gen_queue_wait_seconds")
+                        .description("生成任务排队等待时间")
+                        .tag("tier", tier)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+        );
+        timer.record(duration);
+    }
+
+    /**
+     * 移除指标
+     */
+    public void removeMeter(Meter meter) {
+        if (meter != null) {
+            meterRegistry.remove(meter);
+        }
+    }
+}
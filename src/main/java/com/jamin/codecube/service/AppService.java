@@ -1,6 +1,7 @@
 package com.jamin.codecube.service;
 
 import com.jamin.codecube.common.DeleteRequest;
+import com.jamin.codecube.core.schedule.GenerationQueueStatus;
 import com.jamin.codecube.model.dto.app.AppAddRequest;
 import com.jamin.codecube.model.dto.app.AppQueryRequest;
 import com.jamin.codecube.model.entity.App;
@@ -11,6 +12,7 @@ import com.mybatisflex.core.service.IService;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  *  服务层。
@@ -51,6 +53,19 @@ public interface AppService extends IService<App> {
      */
     Flux<String> chatToGenCode(Long appId, String message, User loginUser, boolean agent);
 
+    /**
+     * 通过对话生成应用代码，生成任务经过公平调度，排队状态通过回调推送
+     *
+     * @param appId
+     * @param message
+     * @param loginUser
+     * @param agent
+     * @param queueStatusListener 排队状态回调
+     * @return
+     */
+    Flux<String> chatToGenCode(Long appId, String message, User loginUser, boolean agent,
+                               Consumer<GenerationQueueStatus> queueStatusListener);
+
     /**
      * 部署应用
      * @param appId
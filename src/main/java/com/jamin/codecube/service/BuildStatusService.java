@@ -29,6 +29,22 @@ public interface BuildStatusService {
      */
     void pushBuildSuccess(Long appId);
     
+    /**
+     * 推送构建步骤跳过事件（源码或依赖与上次构建一致）
+     *
+     * @param appId   应用ID
+     * @param message 跳过的步骤说明
+     */
+    void pushBuildSkipped(Long appId, String message);
+    
+    /**
+     * 推送构建输出（npm install / npm run build 的 stdout 和 stderr），一个时间窗口内的多行以换行分隔合并推送
+     *
+     * @param appId 应用ID
+     * @param lines 输出行
+     */
+    void pushBuildLog(Long appId, String lines);
+    
     /**
      * 推送构建失败事件
      *
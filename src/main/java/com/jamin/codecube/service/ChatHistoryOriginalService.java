@@ -29,6 +29,21 @@ public interface ChatHistoryOriginalService extends IService<ChatHistoryOriginal
      */
     boolean addOriginalChatMessageBatch(List<ChatHistoryOriginal> chatHistoryOriginalList);
 
+    /**
+     * 异步添加对话历史，参数校验在调用线程完成，入库由 write-behind 队列批量执行
+     * @param appId
+     * @param message
+     * @param messageType
+     * @param userId
+     */
+    void addOriginalChatMessageAsync(Long appId, String message, String messageType, Long userId);
+
+    /**
+     * 异步批量添加对话历史，保持列表顺序入库
+     * @param chatHistoryOriginalList
+     */
+    void addOriginalChatMessageBatchAsync(List<ChatHistoryOriginal> chatHistoryOriginalList);
+
     /**
      * 根据 appId 关联删除对话历史记录
      * @param appId
@@ -27,6 +27,24 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      */
     boolean addChatMessage(Long appId, String message, String messageType, Long userId);
 
+    /**
+     * 异步添加聊天记录，参数校验在调用线程完成，入库由 write-behind 队列批量执行
+     * @param appId
+     * @param message
+     * @param messageType
+     * @param userId
+     * @return 入队时分配的记录 ID
+     */
+    Long addChatMessageAsync(Long appId, String message, String messageType, Long userId);
+
+    /**
+     * 异步更新聊天记录内容，用于长时间生成过程中的检查点
+     * @param appId 应用ID
+     * @param id 由 addChatMessageAsync 返回的记录 ID
+     * @param message
+     */
+    void updateChatMessageAsync(Long appId, Long id, String message);
+
     /**
      * 根据应用ID删除聊天记录
      * @param appId
@@ -5,14 +5,20 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
-import com.jamin.codecube.ai.AiCodeGenTypeRoutingService;
-import com.jamin.codecube.ai.AiCodeGenTypeRoutingServiceFactory;
+import com.jamin.codecube.ai.memory.ChatMemoryHydrator;
+import com.jamin.codecube.ai.routing.CodeGenTypeRouter;
+import com.jamin.codecube.ai.model.message.AiResponseMessage;
+import com.jamin.codecube.ai.model.message.StreamMessage;
 import com.jamin.codecube.common.DeleteRequest;
 import com.jamin.codecube.constant.AppConstant;
 import com.jamin.codecube.constant.UserConstant;
 import com.jamin.codecube.core.AiCodeGeneratorFacade;
+import com.jamin.codecube.core.builder.BuildPriority;
 import com.jamin.codecube.core.builder.VueProjectBuilder;
 import com.jamin.codecube.core.handler.StreamHandlerExecutor;
+import com.jamin.codecube.core.handler.StreamMessageCoalescer;
+import com.jamin.codecube.core.schedule.GenerationQueueStatus;
+import com.jamin.codecube.core.schedule.GenerationScheduler;
 import com.jamin.codecube.langgraph4j.service.CodeGenWorkflowService;
 import com.jamin.codecube.mapper.AppMapper;
 import com.jamin.codecube.model.dto.app.AppAddRequest;
@@ -41,6 +47,7 @@ import java.io.File;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -63,13 +70,19 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
     @Autowired
     private StreamHandlerExecutor streamHandlerExecutor;
     @Autowired
+    private StreamMessageCoalescer streamMessageCoalescer;
+    @Autowired
     private VueProjectBuilder vueProjectBuilder;
     @Autowired
     private ScreenshotService screenshotService;
     @Autowired
-    private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
+    private CodeGenTypeRouter codeGenTypeRouter;
     @Autowired
     private CodeGenWorkflowService codeGenWorkflowService;
+    @Autowired
+    private ChatMemoryHydrator chatMemoryHydrator;
+    @Autowired
+    private GenerationScheduler generationScheduler;
     @Value("${code.deploy-host:http://localhost}")
     private String deployHost;
 
@@ -163,6 +176,22 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
      */
     @Override
     public Flux<String> chatToGenCode(Long appId, String message, User loginUser, boolean agent) {
+        return chatToGenCode(appId, message, loginUser, agent, status -> { });
+    }
+
+    /**
+     * 通过对话生成应用代码，校验通过后交给调度器排队，放行后才写入对话记录并调用 AI
+     *
+     * @param appId
+     * @param message
+     * @param loginUser
+     * @param agent
+     * @param queueStatusListener 排队状态回调
+     * @return
+     */
+    @Override
+    public Flux<String> chatToGenCode(Long appId, String message, User loginUser, boolean agent,
+                                      Consumer<GenerationQueueStatus> queueStatusListener) {
         // 1.参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "消息不能为空");
@@ -174,31 +203,48 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
                 ErrorCode.FORBIDDEN_ERROR, "没有权限操作该应用");
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
         ThrowUtils.throwIf(codeGenTypeEnum == null, ErrorCode.PARAMS_ERROR, "不支持的代码生成类型");
-        // 4.在调用AI前，将用户消息存进对话记录表
-        chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        chatHistoryOriginalService.addOriginalChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        // 5.设置监控上下文
-        MonitorContextHolder.setContext(
-                MonitorContext.builder()
-                        .appId(String.valueOf(appId))
-                        .userId(String.valueOf(loginUser.getId()))
-                .build()
-        );
+        // 4.按用户加权公平排队，放行后再开始生成
+        return generationScheduler.schedule(loginUser, codeGenTypeEnum,
+                () -> generateCodeStream(appId, message, loginUser, agent, codeGenTypeEnum), queueStatusListener);
+    }
+
+    /**
+     * 开始生成：保存用户消息、带上监控上下文调用 AI
+     * 由调度器在放行后调用，执行线程不固定，监控上下文只在订阅生成流时设置，不写入当前线程
+     *
+     * @param appId
+     * @param message
+     * @param loginUser
+     * @param agent
+     * @param codeGenTypeEnum
+     * @return
+     */
+    private Flux<String> generateCodeStream(Long appId, String message, User loginUser, boolean agent,
+                                            CodeGenTypeEnum codeGenTypeEnum) {
+        // 4.在调用AI前，将用户消息存进对话记录表（异步批量入库，不阻塞首 token）
+        chatHistoryService.addChatMessageAsync(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
+        chatHistoryOriginalService.addOriginalChatMessageAsync(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
+        // 5.构建监控上下文
+        MonitorContext monitorContext = MonitorContext.builder()
+                .appId(String.valueOf(appId))
+                .userId(String.valueOf(loginUser.getId()))
+                .build();
         // 6. 根据 agent 参数选择生成方式
-        Flux<String> codeStream;
+        Flux<StreamMessage> codeStream;
         if (agent) {
-            // Agent 模式：使用工作流生成代码
-            codeStream = codeGenWorkflowService.executeWorkflowWithFlux(message, appId);
+            // Agent 模式：使用工作流生成代码，工作流输出按 AI 响应消息处理
+            codeStream = codeGenWorkflowService.executeWorkflowWithFlux(message, appId)
+                    .map(AiResponseMessage::new);
         } else {
             // 传统模式：调用 AI 生成代码（流式）
             codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
         }
-        // 7.收集AI响应的内容，并且在完成后保存记录到对话历史
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, chatHistoryOriginalService, appId, loginUser, codeGenTypeEnum)
-                .doFinally(signalType -> {
-                    // 流结束时清理监控上下文，无论成功还是失败
-                    MonitorContextHolder.clearContext();
-                });
+        // 订阅时发起模型请求，此时带上监控上下文
+        codeStream = MonitorContextHolder.withContext(monitorContext, codeStream);
+        // 7.按时间窗口合并文本分片，减少推送给前端的帧数
+        codeStream = streamMessageCoalescer.coalesce(codeStream, codeGenTypeEnum);
+        // 8.收集AI响应的内容，并且在完成后保存记录到对话历史
+        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, chatHistoryOriginalService, appId, loginUser, codeGenTypeEnum);
     }
 
     /**
@@ -237,7 +283,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
             // 执行构建
-            boolean builtSuccess = vueProjectBuilder.buildProject(sourceDirPath);
+            boolean builtSuccess = vueProjectBuilder.buildProject(sourceDirPath, appId, BuildPriority.INTERACTIVE);
             ThrowUtils.throwIf(!builtSuccess, ErrorCode.SYSTEM_ERROR, "Vue项目构建失败");
             // 检查 dist 目录是否存在
             File distDir = new File(sourceDirPath + File.separator + "dist");
@@ -348,6 +394,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         try {
             chatHistoryService.deleteByAppId(appId);
             chatHistoryOriginalService.deleteByAppId(appId);
+            chatMemoryHydrator.invalidate(appId);
         } catch (Exception e) {
             // 记录日志但不阻止应用删除
             log.error("删除应用关联对话历史失败: {}", e.getMessage());
@@ -374,9 +421,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App>  implements AppS
         app.setUserId(loginUser.getId());
         // 应用名称暂时为 initPrompt 前 12 位
         app.setAppName(initPrompt.substring(0, Math.min(initPrompt.length(), 12)));
-        // 使用 AI 智能选择代码生成类型（多例模式）
-        AiCodeGenTypeRoutingService routingService = aiCodeGenTypeRoutingServiceFactory.createAiCodeGenTypeRoutingService();
-        CodeGenTypeEnum codeGenTypeEnum = routingService.routeCodeGenType(initPrompt);
+        // 分级选择代码生成类型：缓存 → 本地分类 → AI 路由
+        CodeGenTypeEnum codeGenTypeEnum = codeGenTypeRouter.route(initPrompt);
         app.setCodeGenType(codeGenTypeEnum.getValue());
         // 插入数据库
         boolean result = this.save(app);
@@ -68,6 +68,16 @@ public class BuildStatusServiceImpl implements BuildStatusService {
         sendEvent(appId, "build-success", "Vue项目构建成功");
     }
     
+    @Override
+    public void pushBuildSkipped(Long appId, String message) {
+        sendEvent(appId, "build-skipped", message);
+    }
+    
+    @Override
+    public void pushBuildLog(Long appId, String lines) {
+        sendEvent(appId, "build-log", lines);
+    }
+    
     @Override
     public void pushBuildFailure(Long appId, String error) {
         sendEvent(appId, "build-failure", "Vue项目构建失败: " + error);
@@ -92,7 +102,12 @@ public class BuildStatusServiceImpl implements BuildStatusService {
                     .data(JSONUtil.toJsonStr(eventData));
                 
                 emitter.send(event);
-                log.info("推送构建状态事件: appId={}, event={}, message={}", appId, eventType, message);
+                if ("build-log".equals(eventType)) {
+                    // 构建日志按时间窗口合并为一批推送，批次多且内容长，只记录行数
+                    log.debug("推送构建日志: appId={}, lines={}", appId, message.lines().count());
+                } else {
+                    log.info("推送构建状态事件: appId={}, event={}, message={}", appId, eventType, message);
+                }
                 
                 // 如果是构建完成或失败，延迟关闭连接，让前端有时间处理事件
                 if ("build-success".equals(eventType) || "build-failure".equals(eventType)) {
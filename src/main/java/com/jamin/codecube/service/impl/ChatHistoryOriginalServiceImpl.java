@@ -5,8 +5,10 @@ import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.jamin.codecube.ai.model.message.ToolExecutedMessage;
 import com.jamin.codecube.ai.model.message.ToolRequestMessage;
+import com.jamin.codecube.ai.memory.ChatMemoryHydrator;
 import com.jamin.codecube.exception.ErrorCode;
 import com.jamin.codecube.exception.ThrowUtils;
+import com.jamin.codecube.manager.ChatHistoryWriteBehindQueue;
 import com.jamin.codecube.model.enums.ChatHistoryMessageTypeEnum;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
@@ -19,10 +21,12 @@ import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import static dev.langchain4j.data.message.ChatMessageType.TOOL_EXECUTION_RESULT;
@@ -36,8 +40,29 @@ import static dev.langchain4j.data.message.ChatMessageType.TOOL_EXECUTION_RESULT
 @Service
 @Slf4j
 public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOriginalMapper, ChatHistoryOriginal>  implements ChatHistoryOriginalService{
+    @Autowired
+    private ChatHistoryWriteBehindQueue chatHistoryWriteBehindQueue;
+
+    @Autowired
+    private ChatMemoryHydrator chatMemoryHydrator;
+
     @Override
     public boolean addOriginalChatMessage(Long appId, String message, String messageType, Long userId) {
+        boolean saved = this.save(buildOriginalChatMessage(appId, message, messageType, userId));
+        chatMemoryHydrator.markWritten(appId);
+        return saved;
+    }
+
+    @Override
+    public void addOriginalChatMessageAsync(Long appId, String message, String messageType, Long userId) {
+        chatHistoryWriteBehindQueue.enqueueOriginal(List.of(buildOriginalChatMessage(appId, message, messageType, userId)));
+        chatMemoryHydrator.markWritten(appId);
+    }
+
+    /**
+     * 校验参数并构造原始对话记录
+     */
+    private ChatHistoryOriginal buildOriginalChatMessage(Long appId, String message, String messageType, Long userId) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "消息内容不能为空");
@@ -46,24 +71,58 @@ public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOrigi
         // 验证消息类型是否有效
         ChatHistoryMessageTypeEnum messageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(messageType);
         ThrowUtils.throwIf(messageTypeEnum == null, ErrorCode.SYSTEM_ERROR, "不支持的消息类型: " + messageType);
-        // 对话消息入库
-        ChatHistoryOriginal chatHistoryOriginal = ChatHistoryOriginal.builder()
+        return ChatHistoryOriginal.builder()
                 .appId(appId)
                 .message(message)
                 .messageType(messageType)
                 .userId(userId)
                 .build();
-        return this.save(chatHistoryOriginal);
     }
 
     @Override
     public boolean addOriginalChatMessageBatch(List<ChatHistoryOriginal> chatHistoryOriginalList) {
+        List<ChatHistoryOriginal> validMessages = filterValidMessages(chatHistoryOriginalList);
+        // 如果没有有效消息，直接返回
+        if (validMessages.isEmpty()) {
+            return false;
+        }
+
+        // 批量入库
+        boolean saved = this.saveBatch(validMessages);
+        markWritten(validMessages);
+        return saved;
+    }
+
+    @Override
+    public void addOriginalChatMessageBatchAsync(List<ChatHistoryOriginal> chatHistoryOriginalList) {
+        List<ChatHistoryOriginal> validMessages = filterValidMessages(chatHistoryOriginalList);
+        if (!validMessages.isEmpty()) {
+            chatHistoryWriteBehindQueue.enqueueOriginal(validMessages);
+            markWritten(validMessages);
+        }
+    }
+
+    /**
+     * 递增涉及到的应用的对话记录修订号
+     */
+    private void markWritten(List<ChatHistoryOriginal> chatHistoryOriginalList) {
+        chatHistoryOriginalList.stream()
+                .map(ChatHistoryOriginal::getAppId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(chatMemoryHydrator::markWritten);
+    }
+
+    /**
+     * 校验消息列表，过滤掉无效类型的对话记录
+     */
+    private List<ChatHistoryOriginal> filterValidMessages(List<ChatHistoryOriginal> chatHistoryOriginalList) {
         // 参数校验
         ThrowUtils.throwIf(chatHistoryOriginalList == null || chatHistoryOriginalList.isEmpty(),
                 ErrorCode.PARAMS_ERROR, "消息列表不能为空");
 
         // 验证消息类型是否有效，无效类型的对话记录不进行入库
-        List<ChatHistoryOriginal> validMessages = chatHistoryOriginalList.stream()
+        return chatHistoryOriginalList.stream()
                 .filter(chatHistory -> {
                     ChatHistoryMessageTypeEnum messageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(chatHistory.getMessageType());
                     if (messageTypeEnum == null) {
@@ -73,30 +132,28 @@ public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOrigi
                     return true; // 保留有效消息
                 })
                 .collect(Collectors.toList());
-
-        // 如果没有有效消息，直接返回
-        if (validMessages.isEmpty()) {
-            return false;
-        }
-
-        // 批量入库
-        return this.saveBatch(validMessages);
     }
 
 
     @Override
     public boolean deleteByAppId(Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID不能为空");
+        // 先落库队列中的记录，避免删除后又被写入
+        chatHistoryWriteBehindQueue.flush();
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq("appId", appId);
-        return this.remove(queryWrapper);
+        boolean removed = this.remove(queryWrapper);
+        chatMemoryHydrator.markWritten(appId);
+        return removed;
     }
 
     @Override
     public int loadOriginalChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
         try{
+            // 0. 最新的对话记录可能还在入库队列中，先落库再查询
+            chatHistoryWriteBehindQueue.flush();
             // 1. 查询历史记录，考虑边缘记录类型
-            List<ChatHistoryOriginal> originalHistoryList = queryHistoryWithEdgeCheck(appId, maxCount);
+            List<ChatHistoryOriginal> originalHistoryList = queryHistoryWindow(appId, maxCount);
             if (CollUtil.isEmpty(originalHistoryList)) {
                 return 0;
             }
@@ -120,101 +177,56 @@ public class ChatHistoryOriginalServiceImpl extends ServiceImpl<ChatHistoryOrigi
     }
 
     /**
-     * 查询历史记录，考虑边缘记录类型
+     * 查询历史记录窗口，考虑边缘记录类型
      * 工具调用信息必须是成对并且有序的: tool_request -> tool_result，否则就会报错！
      * 错误信息：dev.langchain4j.exception.HttpException: {"error":{"message":"Messages with role 'tool' must be a response to a preceding message with 'tool_calls'","type":"invalid_request_error","param":null,"code":"invalid_request_error"}}
-     *     1. 边缘检查的意义在于当查询到的第 maxCount + 1 那条数据是 tool_result 时就丢失了一条 tool_request，导致报错
-     *     2. 这里改为了按 id 倒序查询，时间戳排序可能因为相近值而不稳定，当 tool_request 和 tool_result 的顺序加载错了会导致报错（MyBatis-flex的雪花算法生成的ID是严格递增的）
+     * 按 (appId, id) 倒序一次查出 maxCount + 2 条：第 1 条是最新的用户消息需要跳过，多出的 1 条用于在内存中补齐边缘的 tool_request，
+     * 不再需要 count、边缘记录、列表的多次往返（MyBatis-flex的雪花算法生成的ID是严格递增的）
      *
      * @param appId 应用ID
      * @param maxCount 最大记录数
-     * @return 历史记录列表
+     * @return 历史记录列表（id 倒序）
      */
-    private List<ChatHistoryOriginal> queryHistoryWithEdgeCheck(Long appId, int maxCount) {
-        // 1. 首先检查总记录数
-        QueryWrapper countQueryWrapper = QueryWrapper.create()
-                .eq(ChatHistoryOriginal::getAppId, appId);
-        long totalCount = this.count(countQueryWrapper);
-
-        // 2. 如果总记录数小于等于1，直接返回空列表（因为我们要跳过第1条记录）
-        if (totalCount <= 1) {
-            log.debug("总记录数 ({}) 小于等于1，没有足够的历史记录可加载", totalCount);
+    List<ChatHistoryOriginal> queryHistoryWindow(Long appId, int maxCount) {
+        if (maxCount <= 0) {
             return Collections.emptyList();
         }
-
-        // 3. 计算实际可查询的最大记录数（减去要跳过的第1条记录）
-        long availableCount = totalCount - 1;
-
-        // 4. 如果总记录数小于等于 maxCount+1，则不需要检查边缘记录
-        if (totalCount <= maxCount + 1) {
-            log.debug("总记录数 ({}) 小于等于 maxCount+1 ({}), 不需要检查边缘记录", totalCount, maxCount + 1);
-
-            // 直接查询所有可用记录（跳过最新的用户消息）
-            QueryWrapper queryWrapper = QueryWrapper.create()
-                    .eq(ChatHistoryOriginal::getAppId, appId)
-                    .orderBy(ChatHistoryOriginal::getId, false) // 使用ID倒序，确保顺序性
-                    .limit(1, availableCount);  // 查询从第2条开始的所有可用记录
-
-            return this.list(queryWrapper);
-        }
-
-        // 5. 如果总记录数大于 maxCount+1，则需要检查边缘记录
-        // 查询第 maxCount+1 条记录（边缘记录）
-        QueryWrapper edgeQueryWrapper = QueryWrapper.create()
-                .eq(ChatHistoryOriginal::getAppId, appId)
-                .orderBy(ChatHistoryOriginal::getId, false)
-                .limit(maxCount, 1);  // 查询第 maxCount+1 条记录
-
-        ChatHistoryOriginal edgeRecord = this.getOne(edgeQueryWrapper);
-
-        // 6. 如果边缘记录是 TOOL_EXECUTION_RESULT 类型，则需要额外查询其前一条 TOOL_EXECUTION_REQUEST 记录
-        boolean needExtraRequest = false;
-        if (edgeRecord != null) {
-            String edgeMessageType = edgeRecord.getMessageType();
-            ChatHistoryMessageTypeEnum edgeMessageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(edgeMessageType);
-            needExtraRequest = (edgeMessageTypeEnum == ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT);
-        }
-
-        // 7. 计算实际需要查询的记录数
-        long actualLimit = Math.min(needExtraRequest ? maxCount + 1 : maxCount, availableCount);
-
-        // 8. 查询历史记录
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq(ChatHistoryOriginal::getAppId, appId)
                 .orderBy(ChatHistoryOriginal::getId, false)
-                .limit(1, actualLimit);  // 查询从第2条开始的 actualLimit 条记录
+                .limit(maxCount + 2);
+        return trimToToolPairBoundary(this.list(queryWrapper), maxCount);
+    }
 
-        List<ChatHistoryOriginal> originalHistoryList = this.list(queryWrapper);
-        if (CollUtil.isEmpty(originalHistoryList)) {
+    /**
+     * 在内存中确定窗口边界
+     *     1. 跳过第 1 条（最新的用户消息）
+     *     2. 第 maxCount 条是 tool_result 时，多保留 1 条把对应的 tool_request 带上
+     *     3. 窗口最旧端如果仍是没有 tool_request 的 tool_result，则丢弃
+     *
+     * @param rows id 倒序的最多 maxCount + 2 条记录
+     * @param maxCount 最大记录数
+     * @return 历史记录列表（id 倒序）
+     */
+    static List<ChatHistoryOriginal> trimToToolPairBoundary(List<ChatHistoryOriginal> rows, int maxCount) {
+        if (CollUtil.isEmpty(rows) || rows.size() <= 1) {
             return Collections.emptyList();
         }
-
-        // 9. 检查是否需要调整 maxCount
-        if (needExtraRequest && originalHistoryList.size() <= maxCount) {
-            // 如果需要额外的 TOOL_EXECUTION_REQUEST 但没有获取到足够的记录
-            log.warn("边缘记录是 TOOL_EXECUTION_RESULT 类型，但未获取到足够的记录包含 TOOL_EXECUTION_REQUEST，将 maxCount 减 1");
-            maxCount = Math.max(0, maxCount - 1);  // 确保 maxCount 不小于 0
-
-            // 如果 maxCount 变为 0，则直接返回空列表
-            if (maxCount == 0) {
-                log.info("调整后 maxCount 为 0，不加载任何历史记录");
-                return Collections.emptyList();
-            }
-
-            // 重新查询，使用调整后的 maxCount
-            actualLimit = Math.min(maxCount, availableCount);
-            queryWrapper = QueryWrapper.create()
-                    .eq(ChatHistoryOriginal::getAppId, appId)
-                    .orderBy(ChatHistoryOriginal::getId, false)
-                    .limit(1, actualLimit);  // 查询从第2条开始的 actualLimit 条记录
-
-            originalHistoryList = this.list(queryWrapper);
-            if (CollUtil.isEmpty(originalHistoryList)) {
-                return Collections.emptyList();
-            }
+        List<ChatHistoryOriginal> candidates = rows.subList(1, rows.size());
+        int end = Math.min(maxCount, candidates.size());
+        if (candidates.size() > maxCount && isToolExecutionResult(candidates.get(maxCount - 1))) {
+            end = maxCount + 1;
+        }
+        // 边缘的 tool_result 找不到对应的 tool_request 时丢弃，避免请求模型时报错
+        while (end > 0 && isToolExecutionResult(candidates.get(end - 1))) {
+            log.warn("窗口最旧的记录是没有对应请求的 TOOL_EXECUTION_RESULT，丢弃该记录");
+            end--;
         }
+        return List.copyOf(candidates.subList(0, end));
+    }
 
-        return originalHistoryList;
+    private static boolean isToolExecutionResult(ChatHistoryOriginal history) {
+        return ChatHistoryMessageTypeEnum.getEnumByValue(history.getMessageType()) == ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT;
     }
 
     /**
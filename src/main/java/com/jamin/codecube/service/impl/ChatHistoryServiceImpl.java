@@ -2,6 +2,8 @@ package com.jamin.codecube.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
+import com.jamin.codecube.ai.memory.ChatMemoryHydrator;
+import com.jamin.codecube.manager.ChatHistoryWriteBehindQueue;
 import com.jamin.codecube.model.enums.ChatHistoryMessageTypeEnum;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
@@ -39,6 +41,12 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Autowired
     @Lazy
     private AppService appService;
+
+    @Autowired
+    private ChatHistoryWriteBehindQueue chatHistoryWriteBehindQueue;
+
+    @Autowired
+    private ChatMemoryHydrator chatMemoryHydrator;
     /**
      * 添加聊天记录
      *
@@ -50,6 +58,41 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
      */
     @Override
     public boolean addChatMessage(Long appId, String message, String messageType, Long userId) {
+        boolean saved = this.save(buildChatHistory(appId, message, messageType, userId));
+        chatMemoryHydrator.markWritten(appId);
+        return saved;
+    }
+
+    /**
+     * 异步添加聊天记录
+     */
+    @Override
+    public Long addChatMessageAsync(Long appId, String message, String messageType, Long userId) {
+        ChatHistory chatHistory = buildChatHistory(appId, message, messageType, userId);
+        chatHistoryWriteBehindQueue.enqueue(chatHistory);
+        chatMemoryHydrator.markWritten(appId);
+        return chatHistory.getId();
+    }
+
+    /**
+     * 异步更新聊天记录内容
+     */
+    @Override
+    public void updateChatMessageAsync(Long appId, Long id, String message) {
+        ThrowUtils.throwIf(id == null || id <= 0, ErrorCode.PARAMS_ERROR, "记录ID不能为空");
+        ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "消息内容不能为空");
+        ChatHistory chatHistory = ChatHistory.builder()
+                .id(id)
+                .message(message)
+                .build();
+        chatHistoryWriteBehindQueue.enqueueUpdate(chatHistory);
+        chatMemoryHydrator.markWritten(appId);
+    }
+
+    /**
+     * 校验参数并构造聊天记录
+     */
+    private ChatHistory buildChatHistory(Long appId, String message, String messageType, Long userId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "消息内容不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(messageType), ErrorCode.PARAMS_ERROR, "消息类型不能为空");
@@ -57,13 +100,12 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         // 验证消息类型是否有效
         ChatHistoryMessageTypeEnum messageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(messageType);
         ThrowUtils.throwIf(messageTypeEnum == null, ErrorCode.PARAMS_ERROR, "不支持的消息类型: " + messageType);
-        ChatHistory chatHistory = ChatHistory.builder()
+        return ChatHistory.builder()
                 .appId(appId)
                 .message(message)
                 .messageType(messageType)
                 .userId(userId)
                 .build();
-        return this.save(chatHistory);
     }
 
     /**
@@ -74,9 +116,13 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Override
     public boolean deleteByAppId(Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        // 先落库队列中的记录，避免删除后又被写入
+        chatHistoryWriteBehindQueue.flush();
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq("appId", appId);
-        return this.remove(queryWrapper);
+        boolean removed = this.remove(queryWrapper);
+        chatMemoryHydrator.markWritten(appId);
+        return removed;
     }
 
     @Override
@@ -97,6 +143,8 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         queryRequest.setAppId(appId);
         queryRequest.setLastCreateTime(lastCreateTime);
         QueryWrapper queryWrapper = this.getQueryWrapper(queryRequest);
+        // 保证刚入队的记录可见
+        chatHistoryWriteBehindQueue.flush();
         // 查询数据
         return this.page(Page.of(1, pageSize), queryWrapper);
     }
@@ -146,6 +194,8 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Override
     public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount){
         try {
+            // 最新的用户消息可能还在入库队列中，先落库再查询
+            chatHistoryWriteBehindQueue.flush();
             // 构造查询条件，起始点为1，而不是0，用于排除最新的用户消息
             QueryWrapper queryWrapper = QueryWrapper.create()
                     .eq(ChatHistory::getAppId, appId)
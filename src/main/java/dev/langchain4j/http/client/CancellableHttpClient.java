@@ -0,0 +1,143 @@
+package dev.langchain4j.http.client;
+
+import dev.langchain4j.Internal;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.internal.StreamingCancellation;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * {@link HttpClient} decorator that makes streaming (SSE) calls abortable.
+ * <p>
+ * If a {@link StreamingCancellation} is bound to the calling thread, cancelling it closes the response body,
+ * which releases the connection to the model provider, and suppresses all further listener callbacks.
+ * Non-streaming calls are passed through unchanged.
+ */
+@Internal
+public class CancellableHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+
+    public CancellableHttpClient(HttpClient delegate) {
+        this.delegate = ensureNotNull(delegate, "delegate");
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) throws HttpException, RuntimeException {
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        StreamingCancellation cancellation = StreamingCancellation.current();
+        if (cancellation == null) {
+            delegate.execute(request, parser, listener);
+            return;
+        }
+        if (cancellation.isCancelled()) {
+            // cancelled before the request was sent, e.g. between two calls of the tool loop
+            return;
+        }
+        ServerSentEventParser cancellableParser = (inputStream, parserListener) -> {
+            CancellableInputStream cancellableInputStream = new CancellableInputStream(inputStream, cancellation);
+            cancellation.onCancel(cancellableInputStream::closeQuietly);
+            parser.parse(cancellableInputStream, parserListener);
+        };
+        delegate.execute(request, cancellableParser, new CancellableListener(listener, cancellation));
+    }
+
+    /**
+     * Response body that fails fast once the stream is cancelled, even if closing the
+     * underlying stream does not interrupt a blocked read.
+     */
+    private static final class CancellableInputStream extends FilterInputStream {
+
+        private final StreamingCancellation cancellation;
+
+        private CancellableInputStream(InputStream in, StreamingCancellation cancellation) {
+            super(in);
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ensureNotCancelled();
+            int result = super.read();
+            ensureNotCancelled();
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ensureNotCancelled();
+            int result = super.read(b, off, len);
+            ensureNotCancelled();
+            return result;
+        }
+
+        private void ensureNotCancelled() throws IOException {
+            if (cancellation.isCancelled()) {
+                throw new IOException("Streaming request was cancelled");
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                close();
+            } catch (IOException ignored) {
+                // the connection is being abandoned anyway
+            }
+        }
+    }
+
+    /**
+     * Listener that drops all events once the stream is cancelled, so that neither the model
+     * nor the chat model listeners see the errors caused by closing the connection.
+     */
+    private static final class CancellableListener implements ServerSentEventListener {
+
+        private final ServerSentEventListener delegate;
+
+        private final StreamingCancellation cancellation;
+
+        private CancellableListener(ServerSentEventListener delegate, StreamingCancellation cancellation) {
+            this.delegate = delegate;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void onOpen(SuccessfulHttpResponse response) {
+            if (!cancellation.isCancelled()) {
+                delegate.onOpen(response);
+            }
+        }
+
+        @Override
+        public void onEvent(ServerSentEvent event) {
+            if (!cancellation.isCancelled()) {
+                delegate.onEvent(event);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!cancellation.isCancelled()) {
+                delegate.onError(throwable);
+            }
+        }
+
+        @Override
+        public void onClose() {
+            if (!cancellation.isCancelled()) {
+                delegate.onClose();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dev.langchain4j.internal;
+
+import dev.langchain4j.Internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cancellation token shared by all model calls of one streaming AI service invocation
+ * (the initial call and every follow-up call of the tool loop).
+ * <p>
+ * The token is bound to the calling thread while {@code StreamingChatModel.chat(...)} is invoked, so that
+ * the HTTP client can pick it up via {@link #current()} and abort the underlying connection on {@link #cancel()}.
+ */
+@Internal
+public class StreamingCancellation {
+
+    private static final ThreadLocal<StreamingCancellation> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Cancels the stream and runs all registered callbacks. Subsequent calls have no effect.
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            try {
+                callback.run();
+            } catch (Exception ignored) {
+                // best effort: a failing callback must not prevent the others from running
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a callback to be run on cancellation. Runs it immediately if the token is already cancelled.
+     */
+    public void onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * Returns the token bound to the current thread, or {@code null} if none.
+     */
+    public static StreamingCancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the action with the given token bound to the current thread.
+     */
+    public static void runWith(StreamingCancellation cancellation, Runnable action) {
+        callWith(cancellation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Calls the action with the given token bound to the current thread.
+     */
+    public static <T> T callWith(StreamingCancellation cancellation, Supplier<T> action) {
+        StreamingCancellation previous = CURRENT.get();
+        CURRENT.set(cancellation);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
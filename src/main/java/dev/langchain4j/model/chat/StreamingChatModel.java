@@ -14,6 +14,7 @@ import dev.langchain4j.model.chat.request.DefaultChatRequestParameters;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +31,11 @@ import static dev.langchain4j.model.chat.ChatModelListenerUtils.onResponse;
  */
 public interface StreamingChatModel {
 
+    /**
+     * Listener attribute holding the {@link Instant} at which the first token (text or tool call) arrived.
+     */
+    String FIRST_TOKEN_TIME_ATTRIBUTE = "first_token_time";
+
     /**
      * This is the main API to interact with the chat model.
      *
@@ -50,16 +56,19 @@ public interface StreamingChatModel {
 
             @Override
             public void onPartialResponse(String partialResponse) {
+                attributes.putIfAbsent(FIRST_TOKEN_TIME_ATTRIBUTE, Instant.now());
                 handler.onPartialResponse(partialResponse);
             }
 
             @Override
             public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+                attributes.putIfAbsent(FIRST_TOKEN_TIME_ATTRIBUTE, Instant.now());
                 handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
             }
 
             @Override
             public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+                attributes.putIfAbsent(FIRST_TOKEN_TIME_ATTRIBUTE, Instant.now());
                 handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
             }
 
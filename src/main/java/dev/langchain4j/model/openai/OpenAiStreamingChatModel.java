@@ -1,7 +1,12 @@
 package dev.langchain4j.model.openai;
 
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.http.client.CancellableHttpClientBuilder;
 import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilderLoader;
 import dev.langchain4j.internal.ExceptionMapper;
 import dev.langchain4j.internal.ToolExecutionRequestBuilder;
 import dev.langchain4j.model.ModelProvider;
@@ -19,6 +24,8 @@ import dev.langchain4j.model.openai.internal.shared.StreamOptions;
 import dev.langchain4j.model.openai.spi.OpenAiStreamingChatModelBuilderFactory;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -43,8 +50,11 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
     private final List<ChatModelListener> listeners;
 
     public OpenAiStreamingChatModel(OpenAiStreamingChatModelBuilder builder) {
+        // Streaming calls are made cancellable so that an abandoned stream releases its connection
+        HttpClientBuilder httpClientBuilder = new CancellableHttpClientBuilder(
+                getOrDefault(builder.httpClientBuilder, HttpClientBuilderLoader::loadHttpClientBuilder));
         this.client = OpenAiClient.builder()
-                .httpClientBuilder(builder.httpClientBuilder)
+                .httpClientBuilder(httpClientBuilder)
                 .baseUrl(getOrDefault(builder.baseUrl, DEFAULT_OPENAI_URL))
                 .apiKey(builder.apiKey)
                 .organizationId(builder.organizationId)
@@ -111,6 +121,12 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
         OpenAiChatRequestParameters parameters = (OpenAiChatRequestParameters) chatRequest.parameters();
         validate(parameters);
 
+        parameters = withSortedToolSpecifications(parameters);
+        chatRequest = ChatRequest.builder()
+                .messages(systemMessagesFirst(chatRequest.messages()))
+                .parameters(parameters)
+                .build();
+
         ChatCompletionRequest openAiRequest =
                 toOpenAiChatRequest(chatRequest, parameters, strictTools, strictJsonSchema)
                         .stream(true)
@@ -149,6 +165,53 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
                 .execute();
     }
 
+    /**
+     * Provider-side prompt caching only hits on an identical request prefix. Tool specifications
+     * come from reflection in no guaranteed order, so they are sent sorted by name.
+     */
+    private static OpenAiChatRequestParameters withSortedToolSpecifications(OpenAiChatRequestParameters parameters) {
+        List<ToolSpecification> toolSpecifications = parameters.toolSpecifications();
+        if (isNullOrEmpty(toolSpecifications) || toolSpecifications.size() == 1) {
+            return parameters;
+        }
+        List<ToolSpecification> sorted = toolSpecifications.stream()
+                .sorted(Comparator.comparing(ToolSpecification::name))
+                .toList();
+        if (sorted.equals(toolSpecifications)) {
+            return parameters;
+        }
+        return OpenAiChatRequestParameters.builder()
+                .overrideWith(parameters)
+                .toolSpecifications(sorted)
+                .build();
+    }
+
+    /**
+     * MessageWindowChatMemory appends a (changed) system message after the existing history, e.g. when
+     * history is reloaded from the database. Moving system messages to the front keeps the system prompt
+     * as the stable start of every request; the relative order of all other messages is preserved.
+     */
+    static List<ChatMessage> systemMessagesFirst(List<ChatMessage> messages) {
+        int firstNonSystem = -1;
+        boolean reorder = false;
+        for (int i = 0; i < messages.size(); i++) {
+            boolean system = messages.get(i) instanceof SystemMessage;
+            if (!system && firstNonSystem < 0) {
+                firstNonSystem = i;
+            } else if (system && firstNonSystem >= 0) {
+                reorder = true;
+                break;
+            }
+        }
+        if (!reorder) {
+            return messages;
+        }
+        List<ChatMessage> reordered = new ArrayList<>(messages.size());
+        messages.stream().filter(SystemMessage.class::isInstance).forEach(reordered::add);
+        messages.stream().filter(message -> !(message instanceof SystemMessage)).forEach(reordered::add);
+        return reordered;
+    }
+
     private static void handle(ChatCompletionResponse partialResponse,
                                ToolExecutionRequestBuilder toolBuilder,
                                StreamingChatResponseHandler handler) {
@@ -9,6 +9,7 @@ import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.guardrail.ChatExecutor;
 import dev.langchain4j.guardrail.GuardrailRequestParams;
 import dev.langchain4j.guardrail.OutputGuardrailRequest;
+import dev.langchain4j.internal.StreamingCancellation;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
@@ -36,6 +37,11 @@ import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
 class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler {
     private static final Logger LOG = LoggerFactory.getLogger(AiServiceStreamingResponseHandler.class);
 
+    /**
+     * Result recorded for tool calls skipped because the stream was cancelled.
+     */
+    static final String CANCELLED_TOOL_RESULT = "Tool execution was cancelled";
+
     private final ChatExecutor chatExecutor;
     private final AiServiceContext context;
     private final Object memoryId;
@@ -57,6 +63,7 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     private final Map<String, ToolExecutor> toolExecutors;
     private final List<String> responseBuffer = new ArrayList<>();
     private final boolean hasOutputGuardrails;
+    private final StreamingCancellation cancellation;
 
     AiServiceStreamingResponseHandler(
             ChatExecutor chatExecutor,
@@ -73,7 +80,8 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
             List<ToolSpecification> toolSpecifications,
             Map<String, ToolExecutor> toolExecutors,
             GuardrailRequestParams commonGuardrailParams,
-            Object methodKey) {
+            Object methodKey,
+            StreamingCancellation cancellation) {
         this.chatExecutor = ensureNotNull(chatExecutor, "chatExecutor");
         this.context = ensureNotNull(context, "context");
         this.memoryId = ensureNotNull(memoryId, "memoryId");
@@ -93,10 +101,14 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         this.toolSpecifications = copy(toolSpecifications);
         this.toolExecutors = copy(toolExecutors);
         this.hasOutputGuardrails = context.guardrailService().hasOutputGuardrails(methodKey);
+        this.cancellation = ensureNotNull(cancellation, "cancellation");
     }
 
     @Override
     public void onPartialResponse(String partialResponse) {
+        if (cancellation.isCancelled()) {
+            return;
+        }
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         if (hasOutputGuardrails) {
             responseBuffer.add(partialResponse);
@@ -107,23 +119,35 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+        if (cancellation.isCancelled()) {
+            return;
+        }
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         partialToolExecutionRequestHandler.accept(index, partialToolExecutionRequest);
     }
 
     @Override
     public void onCompleteResponse(ChatResponse completeResponse) {
+        if (cancellation.isCancelled()) {
+            LOG.debug("Stream was cancelled, skipping the rest of the tool loop");
+            return;
+        }
         AiMessage aiMessage = completeResponse.aiMessage();
-        addToMemory(aiMessage);
 
         if (aiMessage.hasToolExecutionRequests()) {
+            // The AI message and its tool results are committed to memory together, so that a cancellation
+            // in the middle of the loop never leaves tool calls without results (which the LLM API rejects)
+            List<ToolExecutionResultMessage> toolResults = new ArrayList<>();
             for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
+                if (cancellation.isCancelled()) {
+                    LOG.debug("Stream was cancelled, skipping pending tool executions");
+                    toolResults.add(ToolExecutionResultMessage.from(toolExecutionRequest, CANCELLED_TOOL_RESULT));
+                    continue;
+                }
                 String toolName = toolExecutionRequest.name();
                 ToolExecutor toolExecutor = toolExecutors.get(toolName);
                 String toolExecutionResult = toolExecutor.execute(toolExecutionRequest, memoryId);
-                ToolExecutionResultMessage toolExecutionResultMessage =
-                        ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult);
-                addToMemory(toolExecutionResultMessage);
+                toolResults.add(ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult));
 
                 if (toolExecutionHandler != null) {
                     ToolExecution toolExecution = ToolExecution.builder()
@@ -133,6 +157,11 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                     toolExecutionHandler.accept(toolExecution);
                 }
             }
+            addToMemory(aiMessage);
+            toolResults.forEach(this::addToMemory);
+            if (cancellation.isCancelled()) {
+                return;
+            }
 
             ChatRequest chatRequest = ChatRequest.builder()
                     .messages(messagesToSend(memoryId))
@@ -154,10 +183,15 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                     toolSpecifications,
                     toolExecutors,
                     commonGuardrailParams,
-                    methodKey);
+                    methodKey,
+                    cancellation);
 
-            context.streamingChatModel.chat(chatRequest, handler);
+            if (cancellation.isCancelled()) {
+                return;
+            }
+            StreamingCancellation.runWith(cancellation, () -> context.streamingChatModel.chat(chatRequest, handler));
         } else {
+            addToMemory(aiMessage);
             if (completeResponseHandler != null) {
                 ChatResponse finalChatResponse = ChatResponse.builder()
                         .aiMessage(aiMessage)
@@ -217,6 +251,10 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onError(Throwable error) {
+        if (cancellation.isCancelled()) {
+            LOG.debug("Ignored error after the stream was cancelled", error);
+            return;
+        }
         if (errorHandler != null) {
             try {
                 errorHandler.accept(error);
@@ -80,4 +80,13 @@ public interface TokenStream {
      * Will send a request to LLM and start response streaming.
      */
     void start();
+
+    /**
+     * Cancels the stream: aborts the in-flight request to the LLM, skips any pending tool executions
+     * and suppresses all further callbacks, including {@link #onError(Consumer)}.
+     * <p>
+     * Has no effect if the stream has not been started, has already finished or does not support cancellation.
+     */
+    default void cancel() {
+    }
 }
@@ -0,0 +1,89 @@
+// 常驻 Vite 构建进程，由 ViteDaemonPool 启动和管理
+// 协议：stdin 每行一个 JSON 请求，按顺序逐个处理
+//     {"id": 1, "type": "build", "root": "/abs/project"}  在 root 下执行 Vite 的 build()
+//     {"id": 2, "type": "ping"}                            健康检查
+// 响应写到 stdout，以 MARKER 开头：{"id": 1, "ok": true, "durationMs": 1234} 或 {"id": 1, "ok": false, "error": "..."}
+// 其余输出（Vite 日志、插件打印）都是构建日志；console 输出也写到 stdout，保证日志先于对应的响应到达
+import { createRequire } from 'node:module';
+import { existsSync, readFileSync } from 'node:fs';
+import path from 'node:path';
+import readline from 'node:readline';
+import { pathToFileURL } from 'node:url';
+import { format } from 'node:util';
+
+const MARKER = '\u0001vite-daemon ';
+
+process.env.NODE_ENV = 'production';
+
+const writeLog = (...args) => process.stdout.write(format(...args) + '\n');
+console.log = writeLog;
+console.info = writeLog;
+console.warn = writeLog;
+console.debug = writeLog;
+console.error = writeLog;
+
+const reply = (message) => process.stdout.write(MARKER + JSON.stringify(message) + '\n');
+
+// 按版本缓存已加载的 Vite，各项目的 node_modules 来自同一快照时只加载一次
+// Vite 会按需动态加载 chunk，缓存来源项目被删除后需要从当前项目重新加载
+const viteByVersion = new Map();
+
+async function loadVite(root) {
+  const require = createRequire(path.join(root, 'package.json'));
+  const packageJsonPath = require.resolve('vite/package.json');
+  const pkg = JSON.parse(readFileSync(packageJsonPath, 'utf8'));
+  const cached = viteByVersion.get(pkg.version);
+  if (cached && existsSync(cached.dir)) {
+    return cached.vite;
+  }
+  let entry = pkg.exports?.['.']?.import ?? pkg.module ?? pkg.main;
+  if (entry && typeof entry === 'object') {
+    entry = entry.default;
+  }
+  const dir = path.dirname(packageJsonPath);
+  const vite = await import(pathToFileURL(path.join(dir, entry)).href);
+  viteByVersion.set(pkg.version, { dir, vite });
+  return vite;
+}
+
+async function build(root) {
+  const vite = await loadVite(root);
+  const previousCwd = process.cwd();
+  // vite.config 中的相对路径以项目目录为基准
+  process.chdir(root);
+  try {
+    await vite.build({ root, mode: 'production', logLevel: 'info', clearScreen: false });
+  } finally {
+    process.chdir(previousCwd);
+  }
+}
+
+async function handle(line) {
+  let request;
+  try {
+    request = JSON.parse(line);
+  } catch {
+    return;
+  }
+  if (request.type === 'ping') {
+    reply({ id: request.id, ok: true });
+    return;
+  }
+  const start = Date.now();
+  try {
+    await build(path.resolve(request.root));
+    reply({ id: request.id, ok: true, durationMs: Date.now() - start });
+  } catch (e) {
+    writeLog(e?.stack ?? String(e));
+    reply({ id: request.id, ok: false, error: String(e?.message ?? e) });
+  }
+}
+
+let queue = Promise.resolve();
+readline.createInterface({ input: process.stdin })
+  .on('line', (line) => {
+    queue = queue.then(() => handle(line));
+  })
+  .on('close', () => queue.then(() => process.exit(0)));
+
+reply({ id: 0, ok: true, type: 'ready' });
@@ -33,7 +33,9 @@ class AiCodeGeneratorServiceTest {
     @Test
     void generateHtmlCodeStream() {
         aiCodeGeneratorService.generateHtmlCodeStream("生成一个最简网页Demo，要求有内容、互动按钮等")
-                .subscribe(System.out::print);
+                .onPartialResponse(System.out::print)
+                .onError(Throwable::printStackTrace)
+                .start();
     }
 
 
@@ -0,0 +1,232 @@
+package com.jamin.codecube.ai.hedging;
+
+import com.jamin.codecube.ai.http.AiHttpClientPool;
+import com.jamin.codecube.config.AiHedgingConfig;
+import com.jamin.codecube.config.AiHttpClientConfig;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多端点对冲请求测试
+ * 两个本地 SSE 服务模拟慢端点和快端点，验证对冲后快端点胜出、慢端点被取消，且之后优先选择快端点
+ */
+@Slf4j
+class HedgingStreamingChatModelTest {
+
+    private static final long SLOW_FIRST_TOKEN_MILLIS = 3000;
+
+    private static final long FAST_FIRST_TOKEN_MILLIS = 50;
+
+    private static final long HEDGE_DELAY_MILLIS = 200;
+
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger slowRequests = new AtomicInteger();
+
+    private final AtomicInteger fastRequests = new AtomicInteger();
+
+    private HttpServer slowServer;
+
+    private HttpServer fastServer;
+
+    private EndpointLatencyTracker tracker;
+
+    private AiHttpClientPool httpClientPool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        slowServer = startServer(SLOW_FIRST_TOKEN_MILLIS, "slow", slowRequests);
+        fastServer = startServer(FAST_FIRST_TOKEN_MILLIS, "fast", fastRequests);
+        AiHedgingConfig config = new AiHedgingConfig();
+        config.setDefaultDelayMillis(HEDGE_DELAY_MILLIS);
+        config.setMinDelayMillis(HEDGE_DELAY_MILLIS);
+        tracker = new EndpointLatencyTracker();
+        ReflectionTestUtils.setField(tracker, "aiHedgingConfig", config);
+        tracker.init();
+        // 与生产配置一致，显式指定 HTTP 客户端，不依赖类路径上只有一种实现
+        httpClientPool = new AiHttpClientPool();
+        ReflectionTestUtils.setField(httpClientPool, "aiHttpClientConfig", new AiHttpClientConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+        httpClientPool.shutdown();
+        slowServer.stop(0);
+        fastServer.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void hedgedRequestWinsOverSlowEndpoint() throws Exception {
+        HedgingStreamingChatModel model = new HedgingStreamingChatModel(List.of(
+                new HedgingStreamingChatModel.Endpoint("slow", buildModel(slowServer)),
+                new HedgingStreamingChatModel.Endpoint("fast", buildModel(fastServer))
+        ), tracker);
+
+        long start = System.nanoTime();
+        String text = chat(model);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("首次请求耗时 {} ms，响应: {}", elapsedMillis, text);
+        assertEquals("fast-1fast-2", text);
+        assertTrue(elapsedMillis < SLOW_FIRST_TOKEN_MILLIS, "对冲请求应在慢端点出 token 前完成");
+        assertEquals(1, slowRequests.get());
+        assertEquals(1, fastRequests.get());
+
+        // 快端点的 EWMA 更小，第二次请求直接命中快端点，不再发起对冲
+        start = System.nanoTime();
+        text = chat(model);
+        elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("第二次请求耗时 {} ms，响应: {}", elapsedMillis, text);
+        assertEquals("fast-1fast-2", text);
+        assertEquals(1, slowRequests.get());
+        assertEquals(2, fastRequests.get());
+        assertTrue(tracker.score("fast") < tracker.score("slow"));
+    }
+
+    @Test
+    void failedEndpointFailsOverToNext() throws Exception {
+        HttpServer brokenServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        brokenServer.createContext("/chat/completions", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        brokenServer.start();
+        try {
+            HedgingStreamingChatModel model = new HedgingStreamingChatModel(List.of(
+                    new HedgingStreamingChatModel.Endpoint("broken", buildModel(brokenServer)),
+                    new HedgingStreamingChatModel.Endpoint("fast", buildModel(fastServer))
+            ), tracker);
+            assertEquals("fast-1fast-2", chat(model));
+        } finally {
+            brokenServer.stop(0);
+        }
+    }
+
+    @Test
+    void hedgeIsLaunchedOffTheTimerThread() throws Exception {
+        // 首选端点一直不出 token；对冲端点发起请求时阻塞一段时间（模拟建连慢），随后返回
+        StreamingChatModel silent = new StreamingChatModel() {
+            @Override
+            public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            }
+        };
+        CompletableFuture<String> launchThread = new CompletableFuture<>();
+        StreamingChatModel blocking = new StreamingChatModel() {
+            @Override
+            public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                launchThread.complete(Thread.currentThread().getName());
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                handler.onPartialResponse("hedge");
+                handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("hedge")).build());
+            }
+        };
+        HedgingStreamingChatModel model = new HedgingStreamingChatModel(List.of(
+                new HedgingStreamingChatModel.Endpoint("silent", silent),
+                new HedgingStreamingChatModel.Endpoint("blocking", blocking)
+        ), tracker);
+
+        assertEquals("hedge", chat(model));
+        assertTrue(launchThread.get().startsWith("ai-hedging-launch-"), "对冲请求的发起线程: " + launchThread.get());
+    }
+
+    private String chat(StreamingChatModel model) throws Exception {
+        StringBuilder text = new StringBuilder();
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        ChatRequest request = ChatRequest.builder()
+                .messages(UserMessage.from("hello"))
+                .build();
+        model.chat(request, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                text.append(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        future.get(10, TimeUnit.SECONDS);
+        return text.toString();
+    }
+
+    private StreamingChatModel buildModel(HttpServer server) {
+        return OpenAiStreamingChatModel.builder()
+                .baseUrl("http://127.0.0.1:" + server.getAddress().getPort())
+                .apiKey("test")
+                .modelName("m")
+                .httpClientBuilder(httpClientPool.newBuilder())
+                .timeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    private HttpServer startServer(long firstTokenMillis, String content, AtomicInteger requests) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat/completions", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                Thread.sleep(firstTokenMillis);
+                writeEvent(outputStream, chunk(content + "-1"));
+                writeEvent(outputStream, chunk(content + "-2"));
+                writeEvent(outputStream, "[DONE]");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // 客户端取消后连接被关闭
+                log.info("端点 {} 的连接已被客户端关闭", content);
+            }
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+        return server;
+    }
+
+    private static String chunk(String content) {
+        return "{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"m\","
+                + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + content + "\"},\"finish_reason\":null}]}";
+    }
+
+    private static void writeEvent(OutputStream outputStream, String data) throws IOException {
+        outputStream.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        outputStream.flush();
+    }
+}
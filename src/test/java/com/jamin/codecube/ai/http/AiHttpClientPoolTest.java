@@ -0,0 +1,160 @@
+package com.jamin.codecube.ai.http;
+
+import com.jamin.codecube.config.AiHttpClientConfig;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpMethod;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 共享 HTTP 客户端连接复用基准测试
+ * 模拟多个应用各自持有模型实例并发请求同一个模型服务，统计服务端看到的 TCP 连接数
+ */
+@Slf4j
+class AiHttpClientPoolTest {
+
+    private static final int MODEL_COUNT = 50;
+
+    private static final int REQUESTS_PER_MODEL = 4;
+
+    private static final int CONCURRENCY = 8;
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(10);
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    /**
+     * 服务端看到的客户端端口，每个端口对应一条 TCP 连接
+     */
+    private final Set<Integer> remotePorts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 服务端收到的 Upgrade 请求头，HTTP/2 客户端访问 http 地址时会发起 h2c 升级
+     */
+    private final Set<String> upgradeHeaders = ConcurrentHashMap.newKeySet();
+
+    private String url;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/models", exchange -> {
+            remotePorts.add(exchange.getRemoteAddress().getPort());
+            String upgrade = exchange.getRequestHeaders().getFirst("Upgrade");
+            if (upgrade != null) {
+                upgradeHeaders.add(upgrade);
+            }
+            byte[] body = "{\"data\":[]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(CONCURRENCY * 2);
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/models";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void sharedPoolReusesConnectionsAcrossModels() throws Exception {
+        AiHttpClientPool pool = new AiHttpClientPool();
+        ReflectionTestUtils.setField(pool, "aiHttpClientConfig", new AiHttpClientConfig());
+        // 每个模型实例使用独立的构建器，与 OpenAiClient 的用法一致
+        List<HttpClient> sharedClients = IntStream.range(0, MODEL_COUNT)
+                .mapToObj(i -> pool.newBuilder().connectTimeout(CONNECT_TIMEOUT).readTimeout(READ_TIMEOUT).build())
+                .toList();
+        long sharedNanos = runRequests(sharedClients);
+        int sharedConnections = remotePorts.size();
+
+        remotePorts.clear();
+        // 对照组：每个模型实例各自创建客户端（原来的行为）
+        List<HttpClient> perModelClients = IntStream.range(0, MODEL_COUNT)
+                .mapToObj(i -> (HttpClient) JdkHttpClient.builder().connectTimeout(CONNECT_TIMEOUT).readTimeout(READ_TIMEOUT).build())
+                .toList();
+        long perModelNanos = runRequests(perModelClients);
+        int perModelConnections = remotePorts.size();
+        pool.shutdown();
+
+        log.info("共享连接池：{} 个请求，{} 条连接，耗时 {} ms", MODEL_COUNT * REQUESTS_PER_MODEL, sharedConnections, sharedNanos / 1_000_000);
+        log.info("每模型独立客户端：{} 个请求，{} 条连接，耗时 {} ms", MODEL_COUNT * REQUESTS_PER_MODEL, perModelConnections, perModelNanos / 1_000_000);
+        assertEquals(1, pool.size());
+        assertTrue(perModelConnections >= MODEL_COUNT);
+        // 共享池的连接数只与并发度有关，与模型实例数量无关
+        assertTrue(sharedConnections <= CONCURRENCY * 2,
+                "共享连接池不应为每个模型实例建立连接，实际连接数: " + sharedConnections);
+    }
+
+    @Test
+    void cleartextEndpointUsesHttp1WithoutUpgrade() {
+        AiHttpClientPool pool = new AiHttpClientPool();
+        AiHttpClientConfig config = new AiHttpClientConfig();
+        config.setHttp2(true);
+        ReflectionTestUtils.setField(pool, "aiHttpClientConfig", config);
+        HttpClient client = pool.newBuilder().connectTimeout(CONNECT_TIMEOUT).readTimeout(READ_TIMEOUT).build();
+        HttpRequest request = HttpRequest.builder()
+                .method(HttpMethod.GET)
+                .url(url)
+                .build();
+
+        assertEquals(200, client.execute(request).statusCode());
+        pool.shutdown();
+        assertTrue(upgradeHeaders.isEmpty(), "http 地址不应发起 h2c 升级: " + upgradeHeaders);
+    }
+
+    private long runRequests(List<HttpClient> clients) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            HttpRequest request = HttpRequest.builder()
+                    .method(HttpMethod.GET)
+                    .url(url)
+                    .build();
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int round = 0; round < REQUESTS_PER_MODEL; round++) {
+                for (HttpClient client : clients) {
+                    futures.add(executor.submit(() -> client.execute(request)));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
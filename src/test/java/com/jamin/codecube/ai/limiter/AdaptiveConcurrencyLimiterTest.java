@@ -0,0 +1,238 @@
+package com.jamin.codecube.ai.limiter;
+
+import com.jamin.codecube.config.AiConcurrencyLimitConfig;
+import com.jamin.codecube.exception.BusinessException;
+import com.jamin.codecube.exception.ErrorCode;
+import dev.langchain4j.exception.HttpException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpTimeoutException;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final List<String> rejections = new CopyOnWriteArrayList<>();
+
+    private final List<BusinessException> rejectedErrors = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger started = new AtomicInteger();
+
+    /**
+     * 已获得的许可，按获得顺序释放
+     */
+    private final Deque<AdaptiveConcurrencyLimiter.Permit> permits = new ConcurrentLinkedDeque<>();
+
+    private AiConcurrencyLimitConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new AiConcurrencyLimitConfig();
+        config.setInitialLimit(2);
+        config.setMinLimit(1);
+        config.setMaxLimit(4);
+        config.setBackoffRatio(0.5);
+        config.setMaxQueueSize(1);
+        config.setQueueTimeoutMillis(200);
+        config.setFailureThreshold(3);
+        config.setOpenSeconds(60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void queuesThenShedsWhenLimitReached() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        submit(limiter);
+        submit(limiter);
+        // 第三个排队，第四个超过队列容量被拒绝
+        submit(limiter);
+        submit(limiter);
+        assertEquals(2, started.get());
+        assertEquals(1, limiter.getQueueSize());
+        assertEquals(List.of("queue_full"), rejections);
+        assertEquals(ErrorCode.TOO_MANY_REQUEST.getCode(), rejectedErrors.getFirst().getCode());
+
+        // 释放一个许可，排队的请求被放行
+        release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        assertEquals(3, started.get());
+        assertEquals(0, limiter.getQueueSize());
+
+        // 再次排队后等待超时被拒绝
+        submit(limiter);
+        Thread.sleep(500);
+        assertEquals(List.of("queue_full", "queue_timeout"), rejections);
+        assertEquals(0, limiter.getQueueSize());
+    }
+
+    @Test
+    void limitGrowsAdditivelyAndShrinksMultiplicatively() {
+        config.setInitialLimit(3);
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        // 保持两个在途请求，达到上限的一半
+        submit(limiter);
+        for (int i = 0; i < 10; i++) {
+            submit(limiter);
+            release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+        release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        assertEquals(4, limiter.getLimit());
+
+        submit(limiter);
+        release(AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        assertEquals(2, limiter.getLimit());
+
+        // 与负载无关的错误不调整上限
+        submit(limiter);
+        release(AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void limitDoesNotGrowUnderLowLoad() {
+        config.setInitialLimit(3);
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        // 始终只有一个在途请求，成功再多也说明不了能承受更高并发
+        for (int i = 0; i < 20; i++) {
+            submit(limiter);
+            release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void permitIsReleasedOnlyOnce() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        submit(limiter);
+        AdaptiveConcurrencyLimiter.Permit permit = permits.poll();
+        permit.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        permit.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void circuitOpensOnConsecutiveFailuresAndRecoversAfterProbe() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        for (int i = 0; i < config.getFailureThreshold(); i++) {
+            submit(limiter);
+            release(AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        }
+        assertTrue(limiter.isCircuitOpen());
+        int startedBefore = started.get();
+        submit(limiter);
+        assertEquals(startedBefore, started.get());
+        assertEquals(List.of("circuit_open"), rejections);
+
+        // 熔断到期后只放行一个探测请求
+        config.setOpenSeconds(0);
+        submit(limiter);
+        submit(limiter);
+        assertEquals(startedBefore + 1, started.get());
+        assertEquals(List.of("circuit_open", "circuit_open"), rejections);
+        release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        assertFalse(limiter.isCircuitOpen());
+
+        submit(limiter);
+        assertEquals(startedBefore + 2, started.get());
+    }
+
+    @Test
+    void onlyTheProbeDecidesHalfOpenCircuit() {
+        config.setInitialLimit(4);
+        config.setFailureThreshold(2);
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        submit(limiter);
+        submit(limiter);
+        AdaptiveConcurrencyLimiter.Permit straggler = permits.pollFirst();
+        AdaptiveConcurrencyLimiter.Permit straggler2 = permits.pollFirst();
+        submit(limiter);
+        submit(limiter);
+        release(AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        release(AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        assertTrue(limiter.isCircuitOpen());
+
+        // 熔断到期，熔断前的请求仍在途，探测请求照样放行
+        config.setOpenSeconds(0);
+        int startedBefore = started.get();
+        submit(limiter);
+        assertEquals(startedBefore + 1, started.get());
+        AdaptiveConcurrencyLimiter.Permit probe = permits.pollFirst();
+
+        // 熔断前的请求成功不代表服务已恢复，失败也不应让熔断重新计时
+        straggler.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        straggler2.release(AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        submit(limiter);
+        assertEquals(startedBefore + 1, started.get());
+        assertEquals("circuit_open", rejections.getLast());
+
+        probe.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        assertFalse(limiter.isCircuitOpen());
+        submit(limiter);
+        assertEquals(startedBefore + 2, started.get());
+    }
+
+    @Test
+    void queuedRequestRunsOnDispatcherNotReleasingThread() throws Exception {
+        ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test-dispatcher"));
+        try {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test-model", config, scheduler,
+                    dispatcher, rejections::add);
+            submit(limiter);
+            submit(limiter);
+            CompletableFuture<String> queuedThread = new CompletableFuture<>();
+            limiter.submit(permit -> queuedThread.complete(Thread.currentThread().getName()), rejectedErrors::add);
+
+            release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+
+            assertEquals("test-dispatcher", queuedThread.get(1, TimeUnit.SECONDS));
+        } finally {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    @Test
+    void classifiesOverloadSignals() {
+        assertTrue(AdaptiveConcurrencyLimiter.isOverloadSignal(new HttpException(429, "rate limited")));
+        assertTrue(AdaptiveConcurrencyLimiter.isOverloadSignal(new HttpException(503, "unavailable")));
+        assertTrue(AdaptiveConcurrencyLimiter.isOverloadSignal(new RuntimeException(new HttpTimeoutException("timeout"))));
+        assertFalse(AdaptiveConcurrencyLimiter.isOverloadSignal(new HttpException(400, "bad request")));
+        assertFalse(AdaptiveConcurrencyLimiter.isOverloadSignal(new IllegalStateException("boom")));
+    }
+
+    /**
+     * 排队请求在当前线程放行，便于断言
+     */
+    private AdaptiveConcurrencyLimiter newLimiter() {
+        return new AdaptiveConcurrencyLimiter("test-model", config, scheduler, Runnable::run, rejections::add);
+    }
+
+    private void submit(AdaptiveConcurrencyLimiter limiter) {
+        limiter.submit(permit -> {
+            started.incrementAndGet();
+            permits.addLast(permit);
+        }, rejectedErrors::add);
+    }
+
+    private void release(AdaptiveConcurrencyLimiter.Outcome outcome) {
+        permits.pollFirst().release(outcome);
+    }
+}
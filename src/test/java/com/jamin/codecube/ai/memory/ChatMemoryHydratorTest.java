@@ -0,0 +1,37 @@
+package com.jamin.codecube.ai.memory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 会话记忆版本戳判定测试
+ */
+class ChatMemoryHydratorTest {
+
+    private static final String STAMP = "v2:vue_project:60";
+
+    @Test
+    void stampMatchesOnlyAtSealedRevision() {
+        String sealed = ChatMemoryHydrator.sealValue(STAMP, 3);
+
+        assertTrue(ChatMemoryHydrator.isFresh(STAMP, new ChatMemoryHydrator.StampState(sealed, 3, true)));
+        // 加载之后又写入过对话记录（包括取消、出错和删除），修订号前进，版本戳失效
+        assertFalse(ChatMemoryHydrator.isFresh(STAMP, new ChatMemoryHydrator.StampState(sealed, 4, true)));
+    }
+
+    @Test
+    void missingStampOrMemoryIsStale() {
+        assertFalse(ChatMemoryHydrator.isFresh(STAMP, new ChatMemoryHydrator.StampState(null, 0, true)));
+        // 记忆已过期
+        assertFalse(ChatMemoryHydrator.isFresh(STAMP,
+                new ChatMemoryHydrator.StampState(ChatMemoryHydrator.sealValue(STAMP, 0), 0, false)));
+    }
+
+    @Test
+    void loadParametersArePartOfStamp() {
+        String sealed = ChatMemoryHydrator.sealValue("v2:html:20", 1);
+        assertFalse(ChatMemoryHydrator.isFresh(STAMP, new ChatMemoryHydrator.StampState(sealed, 1, true)));
+    }
+}
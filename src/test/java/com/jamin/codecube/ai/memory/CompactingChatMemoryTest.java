@@ -0,0 +1,118 @@
+package com.jamin.codecube.ai.memory;
+
+import cn.hutool.json.JSONUtil;
+import com.jamin.codecube.config.ChatMemoryCompactionConfig;
+import com.jamin.codecube.monitor.AiModelMetricsCollector;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 会话记忆压缩测试
+ */
+class CompactingChatMemoryTest {
+
+    private static final String FILE_CONTENT = "<template><div>hello</div></template>\n".repeat(50);
+
+    private AiModelMetricsCollector metricsCollector;
+
+    private MessageWindowChatMemory windowMemory;
+
+    private CompactingChatMemory compactingChatMemory;
+
+    @BeforeEach
+    void setUp() {
+        metricsCollector = mock(AiModelMetricsCollector.class);
+        windowMemory = MessageWindowChatMemory.builder().id(1L).maxMessages(100).build();
+        compactingChatMemory = new CompactingChatMemory(windowMemory, new ChatMemoryCompactionConfig(), metricsCollector);
+
+        compactingChatMemory.add(SystemMessage.from("system"));
+        addToolTurn("第一轮", "call_1", "src/App.vue");
+        addToolTurn("第二轮", "call_2", "src/main.js");
+        addToolTurn("第三轮", "call_3", "src/router.js");
+    }
+
+    private void addToolTurn(String userText, String callId, String path) {
+        compactingChatMemory.add(UserMessage.from(userText));
+        String arguments = JSONUtil.createObj()
+                .set("relativeFilePath", path)
+                .set("content", FILE_CONTENT)
+                .toString();
+        compactingChatMemory.add(AiMessage.from(List.of(ToolExecutionRequest.builder()
+                .id(callId).name("writeFile").arguments(arguments).build())));
+        compactingChatMemory.add(ToolExecutionResultMessage.from(callId, "writeFile", "写入文件成功: " + path));
+        compactingChatMemory.add(AiMessage.from("完成"));
+    }
+
+    @Test
+    void compactsOlderTurnsAndKeepsRecentTurns() {
+        List<ChatMessage> messages = compactingChatMemory.messages();
+        assertEquals(windowMemory.messages().size(), messages.size());
+
+        // 第一轮（最早）被压缩，仍是合法 JSON，路径保留
+        AiMessage firstCall = (AiMessage) messages.get(2);
+        String compactedArguments = firstCall.toolExecutionRequests().getFirst().arguments();
+        assertTrue(JSONUtil.isTypeJSONObject(compactedArguments));
+        assertEquals("src/App.vue", JSONUtil.parseObj(compactedArguments).getStr("relativeFilePath"));
+        assertTrue(JSONUtil.parseObj(compactedArguments).getStr("content").startsWith("[已压缩] src/App.vue sha256:"));
+
+        // 最近两轮保持原样
+        AiMessage secondCall = (AiMessage) messages.get(6);
+        AiMessage thirdCall = (AiMessage) messages.get(10);
+        assertEquals(windowMemory.messages().get(6), secondCall);
+        assertEquals(windowMemory.messages().get(10), thirdCall);
+
+        verify(metricsCollector).recordCompactionSavings(anyLong());
+    }
+
+    @Test
+    void compactedToolResultKeepsFilePath() {
+        compactingChatMemory.add(UserMessage.from("第四轮"));
+        compactingChatMemory.add(AiMessage.from(List.of(ToolExecutionRequest.builder()
+                .id("call_4").name("readFile").arguments("{\"relativeFilePath\":\"src/Home.vue\"}").build())));
+        compactingChatMemory.add(ToolExecutionResultMessage.from("call_4", "readFile", FILE_CONTENT));
+        addToolTurn("第五轮", "call_5", "src/a.js");
+        addToolTurn("第六轮", "call_6", "src/b.js");
+
+        ToolExecutionResultMessage result = compactingChatMemory.messages().stream()
+                .filter(message -> message instanceof ToolExecutionResultMessage tool && "call_4".equals(tool.id()))
+                .map(ToolExecutionResultMessage.class::cast)
+                .findFirst()
+                .orElseThrow();
+        assertTrue(result.text().startsWith("[已压缩] src/Home.vue sha256:"), result.text());
+    }
+
+    @Test
+    void keepsToolRequestResultPairing() {
+        List<ChatMessage> messages = compactingChatMemory.messages();
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof ToolExecutionResultMessage result) {
+                AiMessage request = (AiMessage) messages.get(i - 1);
+                assertEquals(request.toolExecutionRequests().getFirst().id(), result.id());
+                assertEquals(request.toolExecutionRequests().getFirst().name(), result.toolName());
+            }
+        }
+    }
+
+    @Test
+    void storedMessagesAreNotModified() {
+        compactingChatMemory.messages();
+        AiMessage stored = (AiMessage) windowMemory.messages().get(2);
+        assertTrue(stored.toolExecutionRequests().getFirst().arguments().contains(FILE_CONTENT.trim().substring(0, 20)));
+        assertTrue(stored.toolExecutionRequests().getFirst().arguments().length() > FILE_CONTENT.length());
+    }
+}
@@ -0,0 +1,176 @@
+package com.jamin.codecube.ai.memory;
+
+import com.jamin.codecube.config.RedisChatMemoryStoreConfig;
+import com.jamin.codecube.monitor.ChatHistoryMetricsCollector;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RList;
+import org.redisson.api.RListAsync;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.Codec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 会话记忆差量计算与写入测试
+ */
+class RedisListChatMemoryStoreTest {
+
+    private static final SystemMessage SYSTEM = SystemMessage.from("system");
+
+    private final RedissonClient redissonClient = Mockito.mock(RedissonClient.class);
+
+    private final ChatHistoryMetricsCollector metricsCollector = Mockito.mock(ChatHistoryMetricsCollector.class);
+
+    private final RBatch batch = Mockito.mock(RBatch.class);
+
+    @SuppressWarnings("unchecked")
+    private final RListAsync<String> batchList = Mockito.mock(RListAsync.class);
+
+    @SuppressWarnings("unchecked")
+    private final RList<String> list = Mockito.mock(RList.class);
+
+    private final RedisListChatMemoryStore store = new RedisListChatMemoryStore();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(store, "redisChatMemoryStoreConfig", new RedisChatMemoryStoreConfig());
+        ReflectionTestUtils.setField(store, "chatHistoryMetricsCollector", metricsCollector);
+        Mockito.when(redissonClient.createBatch()).thenReturn(batch);
+        Mockito.when(redissonClient.createBatch(Mockito.any(BatchOptions.class))).thenReturn(batch);
+        Mockito.when(batch.<String>getList(Mockito.anyString(), Mockito.any(Codec.class))).thenReturn(batchList);
+        Mockito.when(redissonClient.<String>getList(Mockito.anyString(), Mockito.any(Codec.class))).thenReturn(list);
+    }
+
+    @Test
+    void appendOnly() {
+        List<ChatMessage> previous = List.of(SYSTEM, UserMessage.from("u1"), AiMessage.from("a1"));
+        List<ChatMessage> current = new ArrayList<>(previous);
+        current.add(UserMessage.from("u2"));
+
+        int prefix = RedisListChatMemoryStore.commonPrefixLength(previous, current);
+        assertEquals(3, prefix);
+        assertEquals(0, RedisListChatMemoryStore.findRemovedCount(previous, current, prefix));
+    }
+
+    @Test
+    void evictFromHeadWithoutSystemMessage() {
+        List<ChatMessage> previous = List.of(UserMessage.from("u1"), AiMessage.from("a1"), UserMessage.from("u2"));
+        List<ChatMessage> current = List.of(AiMessage.from("a1"), UserMessage.from("u2"), AiMessage.from("a2"));
+
+        int prefix = RedisListChatMemoryStore.commonPrefixLength(previous, current);
+        assertEquals(0, prefix);
+        assertEquals(1, RedisListChatMemoryStore.findRemovedCount(previous, current, prefix));
+    }
+
+    @Test
+    void evictAfterSystemMessage() {
+        // 窗口满时 MessageWindowChatMemory 保留系统消息，淘汰其后的最旧消息
+        List<ChatMessage> previous = List.of(SYSTEM, UserMessage.from("u1"), AiMessage.from("a1"), UserMessage.from("u2"));
+        List<ChatMessage> current = List.of(SYSTEM, AiMessage.from("a1"), UserMessage.from("u2"), AiMessage.from("a2"));
+
+        int prefix = RedisListChatMemoryStore.commonPrefixLength(previous, current);
+        assertEquals(1, prefix);
+        assertEquals(1, RedisListChatMemoryStore.findRemovedCount(previous, current, prefix));
+    }
+
+    @Test
+    void unrelatedListFallsBackToRewrite() {
+        List<ChatMessage> previous = List.of(UserMessage.from("u1"), AiMessage.from("a1"));
+        List<ChatMessage> current = List.of(UserMessage.from("x1"));
+
+        int prefix = RedisListChatMemoryStore.commonPrefixLength(previous, current);
+        assertEquals(0, prefix);
+        // 全部删除再追加也是一种对齐方式，只是退化为整体写入
+        assertEquals(2, RedisListChatMemoryStore.findRemovedCount(previous, current, prefix));
+    }
+
+    @Test
+    void addAppendsOnlyNewMessagesInAtomicBatch() {
+        List<ChatMessage> first = List.of(SYSTEM, UserMessage.from("u1"));
+        respond(List.of());
+        store.updateMessages(1L, first);
+
+        List<ChatMessage> second = List.of(SYSTEM, UserMessage.from("u1"), AiMessage.from("a1"));
+        respond(List.of(3L));
+        store.updateMessages(1L, second);
+
+        Mockito.verify(redissonClient, Mockito.times(2)).createBatch(Mockito.argThat((BatchOptions options) ->
+                options.getExecutionMode() == BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+        // 首次整体写入，之后只追加新消息
+        Mockito.verify(batchList, Mockito.times(1)).deleteAsync();
+        Mockito.verify(batchList).addAllAsync(List.of(ChatMessageSerializer.messageToJson(AiMessage.from("a1"))));
+    }
+
+    @Test
+    void getMessagesSkipsFullReadWhenTailMatches() {
+        List<ChatMessage> messages = List.of(SYSTEM, UserMessage.from("u1"));
+        respond(List.of());
+        store.updateMessages(1L, messages);
+
+        // LLEN 与 LINDEX 的结果与本地一致
+        respond(List.of(2L, ChatMessageSerializer.messageToJson(UserMessage.from("u1"))));
+        assertEquals(messages, store.getMessages(1L));
+        Mockito.verify(list, Mockito.never()).readAll();
+
+        // 其他实例追加过消息，长度不一致时完整读取
+        respond(List.of(3L, ChatMessageSerializer.messageToJson(UserMessage.from("u1"))));
+        Mockito.when(list.readAll()).thenReturn(List.of(
+                ChatMessageSerializer.messageToJson(SYSTEM),
+                ChatMessageSerializer.messageToJson(UserMessage.from("u1")),
+                ChatMessageSerializer.messageToJson(AiMessage.from("other"))));
+        assertEquals(3, store.getMessages(1L).size());
+        Mockito.verify(list).readAll();
+    }
+
+    @Test
+    void failedFlushIsNotCountedAndForcesRewrite() {
+        List<ChatMessage> first = List.of(UserMessage.from("u1"));
+        respond(List.of());
+        store.updateMessages(1L, first);
+
+        List<ChatMessage> second = List.of(UserMessage.from("u1"), AiMessage.from("a1"));
+        Mockito.when(batch.execute()).thenThrow(new RedisException("connection lost"));
+        assertThrows(RedisException.class, () -> store.updateMessages(1L, second));
+
+        // 失败后不再信任本地列表，下次整体重写
+        Mockito.reset(batch);
+        Mockito.when(batch.<String>getList(Mockito.anyString(), Mockito.any(Codec.class))).thenReturn(batchList);
+        respond(List.of());
+        store.updateMessages(1L, second);
+        Mockito.verify(batchList, Mockito.times(2)).deleteAsync();
+
+        store.recordGenerationBytes(1L);
+        long expectedBytes = bytes(first) + bytes(second);
+        Mockito.verify(metricsCollector).recordMemoryGenerationBytes(expectedBytes);
+    }
+
+    private void respond(List<?> responses) {
+        BatchResult<?> result = Mockito.mock(BatchResult.class);
+        Mockito.doReturn(responses).when(result).getResponses();
+        Mockito.doReturn(result).when(batch).execute();
+    }
+
+    private static long bytes(List<ChatMessage> messages) {
+        return messages.stream()
+                .mapToLong(message -> ChatMessageSerializer.messageToJson(message).getBytes(StandardCharsets.UTF_8).length)
+                .sum();
+    }
+}
@@ -0,0 +1,68 @@
+package com.jamin.codecube.ai.routing;
+
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地关键词分类测试
+ */
+class CodeGenTypeKeywordClassifierTest {
+
+    private static final double THRESHOLD = 0.75;
+
+    private final CodeGenTypeKeywordClassifier classifier = new CodeGenTypeKeywordClassifier();
+
+    @Test
+    void classifiesObviousPrompts() {
+        assertConfident("做一个简单的个人主页，单个html文件", CodeGenTypeEnum.HTML);
+        assertConfident("生成一个企业官网，html、css文件和js文件分离", CodeGenTypeEnum.MULTI_FILE);
+        assertConfident("用 vue 做一个带登录和用户管理的后台管理系统", CodeGenTypeEnum.VUE_PROJECT);
+    }
+
+    @Test
+    void leavesAmbiguousPromptsToModel() {
+        CodeGenTypeKeywordClassifier.Classification classification =
+                classifier.classify(CodeGenTypeRouter.normalize("帮我做个网站"));
+        assertNull(classification.type());
+        // 同时包含不同类型的特征时置信度不足
+        classification = classifier.classify(CodeGenTypeRouter.normalize("简单的单页面，但要有购物车和登录"));
+        assertTrue(classification.confidence() < THRESHOLD);
+    }
+
+    @Test
+    void englishKeywordsMatchWholeWordsOnly() {
+        // "space" 不是 "spa"，"administrator" 不是 "admin"，"vuex" 也不算 "vue"
+        assertNull(classifier.classify(CodeGenTypeRouter.normalize("a space for administrator notes with vuex")).type());
+        assertEquals(CodeGenTypeEnum.VUE_PROJECT,
+                classifier.classify(CodeGenTypeRouter.normalize("build an admin dashboard with vue")).type());
+    }
+
+    @Test
+    void singleStrongKeywordIsNotConfidentEnough() {
+        CodeGenTypeKeywordClassifier.Classification one = classifier.classify(CodeGenTypeRouter.normalize("用 vue 写一个小工具"));
+        assertEquals(CodeGenTypeEnum.VUE_PROJECT, one.type());
+        assertTrue(one.confidence() < THRESHOLD, "置信度: " + one.confidence());
+        // 命中的特征越多，置信度越高
+        CodeGenTypeKeywordClassifier.Classification two = classifier.classify(CodeGenTypeRouter.normalize("用 vue 写一个商城"));
+        CodeGenTypeKeywordClassifier.Classification three = classifier.classify(CodeGenTypeRouter.normalize("用 vue 写一个带购物车的商城"));
+        assertTrue(one.confidence() < two.confidence());
+        assertTrue(two.confidence() < three.confidence());
+        assertTrue(three.confidence() >= THRESHOLD);
+    }
+
+    @Test
+    void normalizeIgnoresCaseWhitespaceAndTrailingPunctuation() {
+        assertEquals("做一个 vue 商城", CodeGenTypeRouter.normalize("  做一个   VUE 商城！！ "));
+        assertEquals(CodeGenTypeRouter.normalize("Todo list app."), CodeGenTypeRouter.normalize("todo   list app"));
+    }
+
+    private void assertConfident(String prompt, CodeGenTypeEnum expected) {
+        CodeGenTypeKeywordClassifier.Classification classification = classifier.classify(CodeGenTypeRouter.normalize(prompt));
+        assertEquals(expected, classification.type(), prompt);
+        assertTrue(classification.confidence() >= THRESHOLD, prompt + " 置信度: " + classification.confidence());
+    }
+}
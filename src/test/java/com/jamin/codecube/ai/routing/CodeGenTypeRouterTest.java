@@ -0,0 +1,85 @@
+package com.jamin.codecube.ai.routing;
+
+import com.jamin.codecube.ai.AiCodeGenTypeRoutingService;
+import com.jamin.codecube.ai.AiCodeGenTypeRoutingServiceFactory;
+import com.jamin.codecube.config.CodeGenRoutingConfig;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.monitor.AiModelMetricsCollector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分级路由测试：缓存 → 本地分类 → 大模型
+ */
+class CodeGenTypeRouterTest {
+
+    private final CodeGenRoutingConfig config = new CodeGenRoutingConfig();
+
+    private final AiCodeGenTypeRoutingServiceFactory factory = mock(AiCodeGenTypeRoutingServiceFactory.class);
+
+    private final AiCodeGenTypeRoutingService routingService = mock(AiCodeGenTypeRoutingService.class);
+
+    private final AiModelMetricsCollector metricsCollector = mock(AiModelMetricsCollector.class);
+
+    private CodeGenTypeRouter router;
+
+    @BeforeEach
+    void setUp() {
+        when(factory.createAiCodeGenTypeRoutingService()).thenReturn(routingService);
+        when(routingService.routeCodeGenType(anyString())).thenReturn(CodeGenTypeEnum.MULTI_FILE);
+        router = new CodeGenTypeRouter();
+        ReflectionTestUtils.setField(router, "codeGenRoutingConfig", config);
+        ReflectionTestUtils.setField(router, "aiCodeGenTypeRoutingServiceFactory", factory);
+        ReflectionTestUtils.setField(router, "aiModelMetricsCollector", metricsCollector);
+        router.init();
+    }
+
+    @Test
+    void confidentPromptIsRoutedLocallyAndCached() {
+        String prompt = "用 vue 做一个带登录和用户管理的后台管理系统";
+
+        assertEquals(CodeGenTypeEnum.VUE_PROJECT, router.route(prompt));
+        // 大小写、空白和末尾标点不同也命中缓存
+        assertEquals(CodeGenTypeEnum.VUE_PROJECT, router.route("  用 VUE 做一个带登录和用户管理的后台管理系统！"));
+
+        verify(factory, never()).createAiCodeGenTypeRoutingService();
+        verify(metricsCollector).recordRoutingDecision(eq("classifier"), any());
+        verify(metricsCollector).recordRoutingDecision(eq("cache"), any());
+    }
+
+    @Test
+    void ambiguousPromptFallsBackToModelOnceThenHitsCache() {
+        String prompt = "帮我做个网站";
+
+        assertEquals(CodeGenTypeEnum.MULTI_FILE, router.route(prompt));
+        assertEquals(CodeGenTypeEnum.MULTI_FILE, router.route(prompt));
+
+        verify(routingService, times(1)).routeCodeGenType(prompt);
+        verify(metricsCollector).recordRoutingDecision(eq("llm"), any());
+        verify(metricsCollector).recordRoutingDecision(eq("cache"), any());
+    }
+
+    @Test
+    void disabledTiersAreSkipped() {
+        config.setCacheEnabled(false);
+        config.setClassifierEnabled(false);
+        String prompt = "用 vue 做一个带登录和用户管理的后台管理系统";
+
+        assertEquals(CodeGenTypeEnum.MULTI_FILE, router.route(prompt));
+        assertEquals(CodeGenTypeEnum.MULTI_FILE, router.route(prompt));
+
+        verify(routingService, times(2)).routeCodeGenType(prompt);
+        verify(metricsCollector, times(2)).recordRoutingDecision(eq("llm"), any());
+    }
+}
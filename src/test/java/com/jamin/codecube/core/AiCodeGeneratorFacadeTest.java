@@ -1,5 +1,7 @@
 package com.jamin.codecube.core;
 
+import com.jamin.codecube.ai.model.message.AiResponseMessage;
+import com.jamin.codecube.ai.model.message.StreamMessage;
 import com.jamin.codecube.model.enums.CodeGenTypeEnum;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -9,6 +11,7 @@ import reactor.core.publisher.Flux;
 
 import java.io.File;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @SpringBootTest
 class AiCodeGeneratorFacadeTest {
@@ -34,14 +37,16 @@ class AiCodeGeneratorFacadeTest {
      */
     @Test
     void generateAndSaveCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
                 "生成一个最简的日程表网站，要求有内容、增删改查等，不超过30行代码",
                 CodeGenTypeEnum.MULTI_FILE,
                 1L // 假设 appId 为 1
         );
-        List<String> result = codeStream.collectList().block();
+        List<StreamMessage> result = codeStream.collectList().block();
         Assertions.assertNotNull(result, "结果列表不应为 null");
-        String completeContent = String.join("", result);
+        String completeContent = result.stream()
+                .map(message -> ((AiResponseMessage) message).getData())
+                .collect(Collectors.joining());
         Assertions.assertNotNull(completeContent);
     }
 
@@ -50,15 +55,14 @@ class AiCodeGeneratorFacadeTest {
      */
     @Test
     void generateVueProjectCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
                 "简单的任务记录网站，总代码量不超过 200 行",
                 CodeGenTypeEnum.VUE_PROJECT, 1L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<StreamMessage> result = codeStream.collectList().block();
         // 验证结果
         Assertions.assertNotNull(result);
-        String completeContent = String.join("", result);
-        Assertions.assertNotNull(completeContent);
+        Assertions.assertFalse(result.isEmpty());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.jamin.codecube.core.builder;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 构建指纹测试
+ */
+class BuildFingerprintTest {
+
+    private static final String PACKAGE_JSON = """
+            {
+              "name": "vue-project-1",
+              "scripts": {"build": "vite build"},
+              "dependencies": {"vue": "^3.5.17"},
+              "devDependencies": {"vite": "^7.0.0"}
+            }
+            """;
+
+    @TempDir
+    Path project;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        write("package.json", PACKAGE_JSON);
+        write("index.html", "<div id=\"app\"></div>");
+        write("src/main.js", "import App from './App.vue'");
+        write("src/App.vue", "<template><h1>Hello</h1></template>");
+        write("node_modules/vue/index.js", "export default {}");
+        write("dist/index.html", "<h1>Hello</h1>");
+    }
+
+    @Test
+    void unchangedProjectIsUpToDate() throws Exception {
+        BuildFingerprint.compute(project).write(project);
+        BuildFingerprint previous = BuildFingerprint.read(project);
+        Assertions.assertNotNull(previous);
+
+        // npm 生成的锁文件、构建缓存和 node_modules 变化不影响源码哈希
+        write("package-lock.json", "{\"lockfileVersion\":3}");
+        write("node_modules/.vite/deps.json", "{}");
+        write("node_modules/vue/index.js", "export default { version: 2 }");
+        Assertions.assertTrue(previous.buildUpToDate(BuildFingerprint.compute(project), project));
+    }
+
+    @Test
+    void sourceChangeRebuildsButKeepsDependencies() throws Exception {
+        BuildFingerprint.compute(project).write(project);
+        write("src/App.vue", "<template><h1>Changed</h1></template>");
+
+        BuildFingerprint previous = BuildFingerprint.read(project);
+        BuildFingerprint current = BuildFingerprint.compute(project);
+        Assertions.assertFalse(previous.buildUpToDate(current, project));
+        Assertions.assertTrue(previous.dependenciesUnchanged(current, project));
+    }
+
+    @Test
+    void dependencyChangeRequiresInstall() throws Exception {
+        BuildFingerprint.compute(project).write(project);
+        write("package.json", PACKAGE_JSON.replace("\"vue\": \"^3.5.17\"", "\"vue\": \"^3.5.17\", \"pinia\": \"^3.0.3\""));
+
+        BuildFingerprint previous = BuildFingerprint.read(project);
+        BuildFingerprint current = BuildFingerprint.compute(project);
+        Assertions.assertFalse(previous.dependenciesUnchanged(current, project));
+        Assertions.assertFalse(previous.buildUpToDate(current, project));
+    }
+
+    @Test
+    void modifiedOrMissingDistIsRebuilt() throws Exception {
+        BuildFingerprint.compute(project).write(project);
+        BuildFingerprint previous = BuildFingerprint.read(project);
+
+        write("dist/index.html", "<h1>Tampered</h1>");
+        Assertions.assertFalse(previous.buildUpToDate(BuildFingerprint.compute(project), project));
+
+        NodeModulesStore.deleteTree(project.resolve("dist"));
+        Assertions.assertFalse(previous.buildUpToDate(BuildFingerprint.compute(project), project));
+    }
+
+    @Test
+    void envFilesAreSourcesButToolCachesAreNot() throws Exception {
+        write(".env", "VITE_API_BASE=/api");
+        BuildFingerprint.compute(project).write(project);
+        BuildFingerprint previous = BuildFingerprint.read(project);
+
+        // 构建工具缓存和指纹文件本身不影响源码哈希
+        write(".vite/deps/_metadata.json", "{}");
+        write("src/.DS_Store", "x");
+        Assertions.assertTrue(previous.buildUpToDate(BuildFingerprint.compute(project), project));
+
+        // Vite 会把 .env* 中的变量编译进产物，修改或新增都要重新构建
+        write(".env", "VITE_API_BASE=/v2/api");
+        Assertions.assertFalse(previous.buildUpToDate(BuildFingerprint.compute(project), project));
+        write(".env", "VITE_API_BASE=/api");
+        write(".env.production", "VITE_TITLE=prod");
+        Assertions.assertFalse(previous.buildUpToDate(BuildFingerprint.compute(project), project));
+    }
+
+    @Test
+    void clearedFingerprintIsNotRead() throws Exception {
+        BuildFingerprint.compute(project).write(project);
+        BuildFingerprint.clear(project);
+        Assertions.assertNull(BuildFingerprint.read(project));
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        Path file = project.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+}
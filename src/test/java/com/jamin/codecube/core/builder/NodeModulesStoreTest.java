@@ -0,0 +1,161 @@
+package com.jamin.codecube.core.builder;
+
+import com.jamin.codecube.config.VueProjectBuildConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * node_modules 共享仓库测试
+ * 使用桩 npm 脚本离线模拟 npm install：记录调用次数，生成依赖文件、.bin 符号链接和锁文件
+ */
+@Slf4j
+@DisabledOnOs(OS.WINDOWS)
+class NodeModulesStoreTest {
+
+    private static final String TEMPLATE_PACKAGE_JSON = """
+            {
+              "name": "vue-project-1",
+              "scripts": {"build": "vite build"},
+              "dependencies": {"vue": "^3.5.17", "vue-router": "^4.5.1"},
+              "devDependencies": {"vite": "^7.0.0", "@vitejs/plugin-vue": "^6.0.0"}
+            }
+            """;
+
+    /**
+     * 同一套依赖，字段顺序和项目名不同
+     */
+    private static final String SAME_DEPENDENCIES_PACKAGE_JSON = """
+            {
+              "devDependencies": {"@vitejs/plugin-vue": "^6.0.0", "vite": "^7.0.0"},
+              "name": "vue-project-2",
+              "dependencies": {"vue-router": "^4.5.1", "vue": "^3.5.17"}
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private final NodeModulesStore store = new NodeModulesStore();
+
+    private Path npmStub;
+
+    private Path npmCallLog;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        VueProjectBuildConfig config = new VueProjectBuildConfig();
+        config.getNodeModulesStore().setDir(tempDir.resolve("store").toString());
+        config.getNodeModulesStore().setMaxSnapshots(2);
+        ReflectionTestUtils.setField(store, "vueProjectBuildConfig", config);
+        npmCallLog = tempDir.resolve("npm-calls.log");
+        npmStub = tempDir.resolve("npm");
+        Files.writeString(npmStub, """
+                #!/bin/sh
+                echo "$PWD" >> "%s"
+                [ "$NPM_STUB_FAIL" = "1" ] && exit 1
+                mkdir -p node_modules/vue/dist node_modules/.bin node_modules/.vite
+                echo "export default {}" > node_modules/vue/dist/vue.js
+                echo "cache" > node_modules/.vite/deps.json
+                ln -s ../vue/dist/vue.js node_modules/.bin/vue
+                echo "{\\"lockfileVersion\\":3,\\"package\\":\\"$(cksum < package.json)\\"}" > package-lock.json
+                """.formatted(npmCallLog));
+        Assertions.assertTrue(npmStub.toFile().setExecutable(true));
+    }
+
+    @Test
+    void sameDependenciesAreLinkedFromSnapshot() throws Exception {
+        Path first = createProject("vue_project_1", TEMPLATE_PACKAGE_JSON);
+        Assertions.assertTrue(store.install(first.toFile(), () -> runNpm(first, false)));
+        Assertions.assertEquals(1, npmCalls());
+
+        Path second = createProject("vue_project_2", SAME_DEPENDENCIES_PACKAGE_JSON);
+        long start = System.nanoTime();
+        Assertions.assertTrue(store.install(second.toFile(), () -> runNpm(second, false)));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("命中快照铺设 node_modules 耗时 {} ms", elapsedMillis);
+
+        Assertions.assertEquals(1, npmCalls());
+        Assertions.assertTrue(elapsedMillis < 1000);
+        Path linked = second.resolve("node_modules/vue/dist/vue.js");
+        Assertions.assertTrue(Files.isSameFile(first.resolve("node_modules/vue/dist/vue.js"), linked), "应为硬链接");
+        Path bin = second.resolve("node_modules/.bin/vue");
+        Assertions.assertTrue(Files.isSymbolicLink(bin));
+        Assertions.assertEquals("export default {}", Files.readString(bin, StandardCharsets.UTF_8).trim());
+        // 构建缓存目录不进入快照
+        Assertions.assertFalse(Files.exists(second.resolve("node_modules/.vite")));
+
+        // 再次构建时依赖未变，直接跳过
+        Assertions.assertTrue(store.install(second.toFile(), () -> runNpm(second, false)));
+        Assertions.assertEquals(1, npmCalls());
+    }
+
+    @Test
+    void lockfileWrittenByNpmPointsToSnapshot() throws Exception {
+        Path project = createProject("vue_project_1", TEMPLATE_PACKAGE_JSON);
+        Assertions.assertTrue(store.install(project.toFile(), () -> runNpm(project, false)));
+        Assertions.assertTrue(Files.exists(project.resolve("package-lock.json")));
+
+        NodeModulesStore.deleteTree(project.resolve("node_modules"));
+        Assertions.assertTrue(store.install(project.toFile(), () -> runNpm(project, false)));
+        Assertions.assertEquals(1, npmCalls());
+        Assertions.assertTrue(Files.exists(project.resolve("node_modules/vue/dist/vue.js")));
+    }
+
+    @Test
+    void changedDependenciesFallBackToNpm() throws Exception {
+        Path first = createProject("vue_project_1", TEMPLATE_PACKAGE_JSON);
+        Assertions.assertTrue(store.install(first.toFile(), () -> runNpm(first, false)));
+        Path second = createProject("vue_project_2", TEMPLATE_PACKAGE_JSON.replace("\"vue\": \"^3.5.17\"",
+                "\"vue\": \"^3.5.17\", \"pinia\": \"^3.0.3\""));
+        Assertions.assertTrue(store.install(second.toFile(), () -> runNpm(second, false)));
+        Assertions.assertEquals(2, npmCalls());
+        Assertions.assertNotEquals(NodeModulesStore.dependencyKey(first.resolve("package.json")),
+                NodeModulesStore.dependencyKey(second.resolve("package.json")));
+    }
+
+    @Test
+    void failedInstallIsNotPublished() throws Exception {
+        Path first = createProject("vue_project_1", TEMPLATE_PACKAGE_JSON);
+        Assertions.assertFalse(store.install(first.toFile(), () -> runNpm(first, true)));
+        Path second = createProject("vue_project_2", TEMPLATE_PACKAGE_JSON);
+        Assertions.assertTrue(store.install(second.toFile(), () -> runNpm(second, false)));
+        Assertions.assertEquals(2, npmCalls());
+    }
+
+    private Path createProject(String name, String packageJson) throws IOException {
+        Path project = Files.createDirectories(tempDir.resolve("code_output").resolve(name));
+        Files.writeString(project.resolve("package.json"), packageJson, StandardCharsets.UTF_8);
+        return project;
+    }
+
+    private boolean runNpm(Path projectDir, boolean fail) {
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(npmStub.toString(), "install")
+                    .directory(projectDir.toFile())
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD);
+            processBuilder.environment().put("NPM_STUB_FAIL", fail ? "1" : "0");
+            return processBuilder.start().waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private long npmCalls() throws IOException {
+        File callLog = npmCallLog.toFile();
+        return callLog.exists() ? Files.readAllLines(npmCallLog).size() : 0;
+    }
+}
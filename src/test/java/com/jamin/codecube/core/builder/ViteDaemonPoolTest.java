@@ -0,0 +1,155 @@
+package com.jamin.codecube.core.builder;
+
+import com.jamin.codecube.config.VueProjectBuildConfig;
+import com.jamin.codecube.monitor.BuildMetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 常驻 Vite 构建进程池测试
+ * 使用桩 vite 包（导出 build()，写出 dist/index.html）离线运行，需要本机安装 node
+ */
+@DisabledOnOs(OS.WINDOWS)
+class ViteDaemonPoolTest {
+
+    private static final String STUB_VITE_PACKAGE_JSON = """
+            {"name": "vite", "version": "7.0.0", "type": "module",
+             "exports": {".": {"import": {"default": "./index.js"}}, "./package.json": "./package.json"}}
+            """;
+
+    private static final String STUB_VITE = """
+            import fs from 'node:fs';
+            export async function build(config) {
+              console.log('vite v7.0.0 building for production...');
+              if (fs.existsSync('src/broken.js')) {
+                throw new Error('Could not resolve ./broken.js');
+              }
+              fs.mkdirSync('dist', { recursive: true });
+              fs.writeFileSync('dist/index.html', '<h1>' + config.root + '</h1>');
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private final ViteDaemonPool pool = new ViteDaemonPool();
+
+    private final VueProjectBuildConfig config = new VueProjectBuildConfig();
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(nodeAvailable(), "未安装 node");
+        config.getViteDaemon().setEnabled(true);
+        config.getViteDaemon().setPoolSize(1);
+        config.getViteDaemon().setMaxBuildsPerWorker(2);
+        BuildMetricsCollector metricsCollector = new BuildMetricsCollector();
+        ReflectionTestUtils.setField(metricsCollector, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pool, "vueProjectBuildConfig", config);
+        ReflectionTestUtils.setField(pool, "buildMetricsCollector", metricsCollector);
+        pool.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void buildsInWarmWorkerAndForwardsLogs() throws Exception {
+        Path project = createProject("vue_project_1", "vite build");
+        awaitIdleWorker();
+        BuildLogBuffer logBuffer = new BuildLogBuffer(10);
+        List<String> lines = new CopyOnWriteArrayList<>();
+
+        Assertions.assertEquals(ViteDaemonPool.Result.SUCCESS, pool.build(project, 30, logBuffer, lines::add));
+        Assertions.assertTrue(Files.readString(project.resolve("dist/index.html")).contains(project.toString()));
+        Assertions.assertTrue(lines.contains("vite v7.0.0 building for production..."));
+        Assertions.assertEquals(1, logBuffer.getTotal());
+    }
+
+    @Test
+    void buildErrorIsFailureAndWorkerIsReused() throws Exception {
+        Path project = createProject("vue_project_1", "vite build");
+        Files.writeString(project.resolve("src/broken.js"), "import './missing.js'");
+        awaitIdleWorker();
+        BuildLogBuffer logBuffer = new BuildLogBuffer(20);
+
+        Assertions.assertEquals(ViteDaemonPool.Result.FAILURE, pool.build(project, 30, logBuffer, line -> {
+        }));
+        Assertions.assertTrue(logBuffer.tail().stream().anyMatch(line -> line.contains("Could not resolve ./broken.js")));
+        Assertions.assertEquals(1, idleWorkers().size());
+    }
+
+    @Test
+    void workerIsRecycledAfterMaxBuilds() throws Exception {
+        Path project = createProject("vue_project_1", "vite build");
+        awaitIdleWorker();
+        ViteDaemonWorker first = idleWorkers().peek();
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertEquals(ViteDaemonPool.Result.SUCCESS, pool.build(project, 30, new BuildLogBuffer(10), line -> {
+            }));
+        }
+        awaitIdleWorker();
+        Assertions.assertNotSame(first, idleWorkers().peek());
+        Assertions.assertEquals(1, ((Set<?>) ReflectionTestUtils.getField(pool, "workers")).size());
+    }
+
+    @Test
+    void unsupportedProjectFallsBackToNpm() throws Exception {
+        Path project = createProject("vue_project_1", "vue-tsc -b && vite build");
+        awaitIdleWorker();
+        Assertions.assertEquals(ViteDaemonPool.Result.UNAVAILABLE, pool.build(project, 30, new BuildLogBuffer(10), line -> {
+        }));
+        Assertions.assertFalse(Files.exists(project.resolve("dist")));
+    }
+
+    private Path createProject(String name, String buildScript) throws IOException {
+        Path project = Files.createDirectories(tempDir.resolve(name));
+        Files.createDirectories(project.resolve("src"));
+        Files.writeString(project.resolve("package.json"),
+                "{\"name\": \"" + name + "\", \"scripts\": {\"build\": \"" + buildScript + "\"}}", StandardCharsets.UTF_8);
+        Path vite = Files.createDirectories(project.resolve("node_modules/vite"));
+        Files.writeString(vite.resolve("package.json"), STUB_VITE_PACKAGE_JSON, StandardCharsets.UTF_8);
+        Files.writeString(vite.resolve("index.js"), STUB_VITE, StandardCharsets.UTF_8);
+        return project;
+    }
+
+    @SuppressWarnings("unchecked")
+    private LinkedBlockingQueue<ViteDaemonWorker> idleWorkers() {
+        return (LinkedBlockingQueue<ViteDaemonWorker>) ReflectionTestUtils.getField(pool, "idle");
+    }
+
+    private void awaitIdleWorker() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (idleWorkers().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        Assertions.assertFalse(idleWorkers().isEmpty(), "Vite 构建进程未就绪");
+    }
+
+    private static boolean nodeAvailable() {
+        try {
+            return new ProcessBuilder("node", "--version").start().waitFor(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
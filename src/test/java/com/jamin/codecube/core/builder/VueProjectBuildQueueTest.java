@@ -0,0 +1,137 @@
+package com.jamin.codecube.core.builder;
+
+import com.jamin.codecube.config.VueProjectBuildConfig;
+import com.jamin.codecube.exception.BusinessException;
+import com.jamin.codecube.monitor.BuildMetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class VueProjectBuildQueueTest {
+
+    private final VueProjectBuildQueue buildQueue = new VueProjectBuildQueue();
+
+    private final VueProjectBuildConfig config = new VueProjectBuildConfig();
+
+    private final List<String> executed = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch blockerStarted = new CountDownLatch(1);
+
+    private final CountDownLatch releaseBlocker = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        config.setWorkers(1);
+        config.setMaxQueueSize(3);
+        BuildMetricsCollector metricsCollector = new BuildMetricsCollector();
+        ReflectionTestUtils.setField(metricsCollector, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(buildQueue, "vueProjectBuildConfig", config);
+        ReflectionTestUtils.setField(buildQueue, "buildMetricsCollector", metricsCollector);
+        buildQueue.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseBlocker.countDown();
+        buildQueue.shutdown();
+    }
+
+    @Test
+    void duplicateRequestsShareOneBuild() throws Exception {
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> first = buildQueue.submit("tmp/code_output/vue_project_1", BuildPriority.BACKGROUND, () -> {
+            builds.incrementAndGet();
+            await(release);
+            return true;
+        });
+        CompletableFuture<Boolean> second = buildQueue.submit("tmp/code_output/../code_output/vue_project_1",
+                BuildPriority.INTERACTIVE, () -> {
+                    builds.incrementAndGet();
+                    return false;
+                });
+        Assertions.assertSame(first, second);
+        release.countDown();
+        Assertions.assertTrue(second.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, builds.get());
+
+        // 构建结束后同一项目可以再次构建
+        Assertions.assertTrue(buildQueue.submit("tmp/code_output/vue_project_1", BuildPriority.BACKGROUND, () -> {
+            builds.incrementAndGet();
+            return true;
+        }).get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, builds.get());
+    }
+
+    @Test
+    void interactiveBuildsJumpTheQueue() throws Exception {
+        blockWorker();
+        CompletableFuture<Boolean> a = submit("a", BuildPriority.BACKGROUND);
+        CompletableFuture<Boolean> b = submit("b", BuildPriority.WORKFLOW);
+        CompletableFuture<Boolean> c = submit("c", BuildPriority.INTERACTIVE);
+        Assertions.assertEquals(1, buildQueue.queueDepth(BuildPriority.BACKGROUND));
+        releaseBlocker.countDown();
+        CompletableFuture.allOf(a, b, c).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(List.of("blocker", "c", "b", "a"), executed);
+    }
+
+    @Test
+    void queuedBackgroundBuildIsPromotedByDeploy() throws Exception {
+        blockWorker();
+        CompletableFuture<Boolean> a = submit("a", BuildPriority.BACKGROUND);
+        CompletableFuture<Boolean> b = submit("b", BuildPriority.BACKGROUND);
+        CompletableFuture<Boolean> promoted = submit("b", BuildPriority.INTERACTIVE);
+        Assertions.assertSame(b, promoted);
+        Assertions.assertEquals(1, buildQueue.queueDepth(BuildPriority.INTERACTIVE));
+        releaseBlocker.countDown();
+        CompletableFuture.allOf(a, b).get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(List.of("blocker", "b", "a"), executed);
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        blockWorker();
+        for (int i = 0; i < config.getMaxQueueSize(); i++) {
+            submit("p" + i, BuildPriority.BACKGROUND);
+        }
+        CompletableFuture<Boolean> rejected = submit("overflow", BuildPriority.INTERACTIVE);
+        CompletionException exception = Assertions.assertThrows(CompletionException.class, rejected::join);
+        Assertions.assertInstanceOf(BusinessException.class, exception.getCause());
+    }
+
+    /**
+     * 占住唯一的构建线程，之后提交的任务都在队列中等待
+     */
+    private void blockWorker() throws InterruptedException {
+        buildQueue.submit("blocker", BuildPriority.BACKGROUND, () -> {
+            executed.add("blocker");
+            blockerStarted.countDown();
+            await(releaseBlocker);
+            return true;
+        });
+        Assertions.assertTrue(blockerStarted.await(5, TimeUnit.SECONDS));
+    }
+
+    private CompletableFuture<Boolean> submit(String name, BuildPriority priority) {
+        return buildQueue.submit(name, priority, () -> executed.add(name));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.jamin.codecube.core.builder;
+
+import com.jamin.codecube.config.VueProjectBuildConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 构建命令执行测试：输出读取、超时终止、常驻进程失败后的重试与构建日志缓冲、合并推送
+ */
+@DisabledOnOs(OS.WINDOWS)
+class VueProjectBuilderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void verboseOutputDoesNotBlockProcess() throws Exception {
+        // stdout 和 stderr 各输出约 1MB，远超管道缓冲区
+        Path script = writeScript("verbose.sh", """
+                #!/bin/sh
+                i=0
+                while [ $i -lt 20000 ]; do
+                  echo "stdout line $i ................................................"
+                  echo "stderr line $i ................................................" >&2
+                  i=$((i+1))
+                done
+                """);
+        BuildLogBuffer logBuffer = new BuildLogBuffer(100);
+        AtomicInteger received = new AtomicInteger();
+        long start = System.nanoTime();
+        boolean success = VueProjectBuilder.executeCommand(tempDir.toFile(), script.toString(), 30,
+                logBuffer, line -> received.incrementAndGet());
+
+        Assertions.assertTrue(success);
+        Assertions.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 30);
+        Assertions.assertEquals(40000, received.get());
+        Assertions.assertEquals(40000, logBuffer.getTotal());
+        Assertions.assertEquals(100, logBuffer.tail().size());
+    }
+
+    @Test
+    void failingCommandKeepsOutputTail() throws Exception {
+        Path script = writeScript("fail.sh", """
+                #!/bin/sh
+                echo "vite v7.0.0 building for production..."
+                echo "error: Could not resolve ./App.vue" >&2
+                exit 1
+                """);
+        BuildLogBuffer logBuffer = new BuildLogBuffer(10);
+        Assertions.assertFalse(VueProjectBuilder.executeCommand(tempDir.toFile(), script.toString(), 30,
+                logBuffer, line -> {
+                    throw new IllegalStateException("SSE 连接已关闭");
+                }));
+        Assertions.assertTrue(logBuffer.tail().contains("error: Could not resolve ./App.vue"));
+        Assertions.assertEquals(2, logBuffer.getTotal());
+    }
+
+    @Test
+    void timeoutKillsChildProcesses() throws Exception {
+        // 模拟 npm 派生的 node 子进程：子进程继承输出管道，只终止父进程时会一直运行
+        Path script = writeScript("hang.sh", """
+                #!/bin/sh
+                sleep 300 &
+                echo $! > child.pid
+                wait
+                """);
+        Assertions.assertFalse(VueProjectBuilder.executeCommand(tempDir.toFile(), script.toString(), 1,
+                new BuildLogBuffer(10), line -> {
+                }));
+
+        long childPid = Long.parseLong(Files.readString(tempDir.resolve("child.pid")).trim());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ProcessHandle.of(childPid).map(ProcessHandle::isAlive).orElse(false)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertFalse(ProcessHandle.of(childPid).map(ProcessHandle::isAlive).orElse(false));
+    }
+
+    @Test
+    void daemonFailureIsRetriedWithNpm() throws Exception {
+        // 桩 npm：记录参数并成功退出
+        Path npm = writeScript("npm.sh", """
+                #!/bin/sh
+                echo "$@" > npm.args
+                """);
+        VueProjectBuildConfig config = new VueProjectBuildConfig();
+        config.setNpmCommand(npm.toString());
+        ViteDaemonPool viteDaemonPool = mock(ViteDaemonPool.class);
+        when(viteDaemonPool.build(any(Path.class), anyInt(), any(BuildLogBuffer.class), any()))
+                .thenReturn(ViteDaemonPool.Result.FAILURE);
+        VueProjectBuilder builder = new VueProjectBuilder();
+        ReflectionTestUtils.setField(builder, "vueProjectBuildConfig", config);
+        ReflectionTestUtils.setField(builder, "viteDaemonPool", viteDaemonPool);
+
+        Consumer<String> logListener = line -> {
+        };
+        Boolean success = ReflectionTestUtils.invokeMethod(builder, "executeNpmBuild",
+                tempDir.toFile(), new BuildLogBuffer(10), logListener);
+
+        Assertions.assertEquals(Boolean.TRUE, success);
+        Assertions.assertEquals("run build", Files.readString(tempDir.resolve("npm.args")).trim());
+    }
+
+    @Test
+    void logBatcherMergesLinesWithinWindow() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        BuildLogBatcher batcher = new BuildLogBatcher(sent::add, 200);
+        batcher.accept("line 1");
+        batcher.accept("line 2");
+        batcher.accept("line 3");
+        Assertions.assertTrue(sent.isEmpty());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sent.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(List.of("line 1\nline 2\nline 3"), sent);
+
+        // 构建结束时立即推送剩余输出，不等窗口到期
+        batcher.accept("line 4");
+        batcher.flush();
+        Assertions.assertEquals(List.of("line 1\nline 2\nline 3", "line 4"), sent);
+    }
+
+    @Test
+    void logBatcherWithoutWindowSendsEachLine() {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        BuildLogBatcher batcher = new BuildLogBatcher(sent::add, 0);
+        batcher.accept("line 1");
+        batcher.accept("line 2");
+        Assertions.assertEquals(List.of("line 1", "line 2"), sent);
+    }
+
+    @Test
+    void logBufferKeepsMostRecentLinesInOrder() {
+        BuildLogBuffer logBuffer = new BuildLogBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            logBuffer.append("line " + i);
+        }
+        Assertions.assertEquals(List.of("line 3", "line 4", "line 5"), logBuffer.tail());
+        Assertions.assertEquals(5, logBuffer.getTotal());
+    }
+
+    private Path writeScript(String name, String content) throws Exception {
+        Path script = tempDir.resolve(name);
+        Files.writeString(script, content, StandardCharsets.UTF_8);
+        Assertions.assertTrue(script.toFile().setExecutable(true));
+        return script;
+    }
+}
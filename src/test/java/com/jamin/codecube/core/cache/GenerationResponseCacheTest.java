@@ -0,0 +1,108 @@
+package com.jamin.codecube.core.cache;
+
+import com.jamin.codecube.config.GenerationResponseCacheConfig;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.monitor.StreamMetricsCollector;
+import dev.langchain4j.model.output.FinishReason;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 生成结果磁盘缓存测试
+ */
+class GenerationResponseCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private GenerationResponseCacheConfig config;
+
+    private StreamMetricsCollector metricsCollector;
+
+    private GenerationResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        config = new GenerationResponseCacheConfig();
+        config.setEnabled(true);
+        config.setDir(cacheDir.toString());
+        metricsCollector = mock(StreamMetricsCollector.class);
+        cache = new GenerationResponseCache();
+        ReflectionTestUtils.setField(cache, "generationResponseCacheConfig", config);
+        ReflectionTestUtils.setField(cache, "streamMetricsCollector", metricsCollector);
+        cache.init();
+    }
+
+    @Test
+    void replaysRecordedChunks() {
+        assertTrue(cache.supports(CodeGenTypeEnum.HTML));
+        assertFalse(cache.supports(CodeGenTypeEnum.VUE_PROJECT));
+
+        String key = cache.buildKey(CodeGenTypeEnum.HTML, "做一个个人博客");
+        assertNull(cache.get(key, CodeGenTypeEnum.HTML));
+        List<String> chunks = List.of("```html\n", "<html></html>\n", "```");
+        cache.put(key, CodeGenTypeEnum.HTML, chunks, FinishReason.STOP);
+
+        // 归一化后相同的消息命中同一条缓存
+        String sameKey = cache.buildKey(CodeGenTypeEnum.HTML, "  做一个个人博客。 ");
+        assertEquals(key, sameKey);
+        assertEquals(chunks, cache.get(sameKey, CodeGenTypeEnum.HTML));
+        verify(metricsCollector).recordResponseCache("html", "hit");
+        // 不同生成类型不共享缓存
+        assertNotEquals(key, cache.buildKey(CodeGenTypeEnum.MULTI_FILE, "做一个个人博客"));
+    }
+
+    @Test
+    void truncatedOutputIsNotCached() {
+        String key = cache.buildKey(CodeGenTypeEnum.HTML, "做一个很长的页面");
+        cache.put(key, CodeGenTypeEnum.HTML, List.of("```html\n", "<html>"), FinishReason.LENGTH);
+        cache.put(key, CodeGenTypeEnum.HTML, List.of("```html\n", "<html>"), null);
+
+        assertFalse(Files.exists(cacheDir.resolve(key + ".json")));
+        assertNull(cache.get(key, CodeGenTypeEnum.HTML));
+    }
+
+    @Test
+    void expiredEntryIsRemoved() throws Exception {
+        config.setTtlHours(0);
+        String key = cache.buildKey(CodeGenTypeEnum.HTML, "todo app");
+        cache.put(key, CodeGenTypeEnum.HTML, List.of("chunk"), FinishReason.STOP);
+        Thread.sleep(5);
+        assertNull(cache.get(key, CodeGenTypeEnum.HTML));
+        assertFalse(Files.exists(cacheDir.resolve(key + ".json")));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() throws Exception {
+        config.setMaxSizeMb(1);
+        String payload = "x".repeat(400 * 1024);
+        String first = cache.buildKey(CodeGenTypeEnum.HTML, "first");
+        String second = cache.buildKey(CodeGenTypeEnum.HTML, "second");
+        String third = cache.buildKey(CodeGenTypeEnum.HTML, "third");
+        cache.put(first, CodeGenTypeEnum.HTML, List.of(payload), FinishReason.STOP);
+        cache.put(second, CodeGenTypeEnum.HTML, List.of(payload), FinishReason.STOP);
+        Files.setLastModifiedTime(cacheDir.resolve(first + ".json"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(cacheDir.resolve(second + ".json"), FileTime.fromMillis(2000));
+
+        cache.put(third, CodeGenTypeEnum.HTML, List.of(payload), FinishReason.STOP);
+
+        assertFalse(Files.exists(cacheDir.resolve(first + ".json")));
+        assertTrue(Files.exists(cacheDir.resolve(second + ".json")));
+        assertTrue(Files.exists(cacheDir.resolve(third + ".json")));
+    }
+}
@@ -0,0 +1,112 @@
+package com.jamin.codecube.core.generation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生成会话测试：重放窗口内外的续传、迟到的观看者、上游背压
+ */
+class GenerationSessionTest {
+
+    @Test
+    void resumeInsideReplayWindowContinuesFromLastEventId() {
+        GenerationSession session = startedSession(10, frames(8));
+        List<ServerSentEvent<String>> resumed = session.stream(5).collectList().block(Duration.ofSeconds(5));
+        Assertions.assertEquals(List.of("6", "7", "8"), resumed.stream().map(ServerSentEvent::data).toList());
+        Assertions.assertEquals(6, GenerationSession.parseSequence(resumed.get(0).id()));
+    }
+
+    @Test
+    void resumeOutsideReplayWindowSendsReset() {
+        GenerationSession session = startedSession(4, frames(10));
+        List<ServerSentEvent<String>> resumed = session.stream(2).collectList().block(Duration.ofSeconds(5));
+        Assertions.assertEquals(List.of(GenerationRegistry.RESET_EVENT, GenerationRegistry.DONE_EVENT),
+                resumed.stream().map(ServerSentEvent::event).toList());
+        Assertions.assertTrue(resumed.get(0).data().contains("\"oldestSequence\":7"));
+    }
+
+    @Test
+    void resumeAtWindowEdgeIsNotReset() {
+        GenerationSession session = startedSession(4, frames(10));
+        List<ServerSentEvent<String>> resumed = session.stream(6).collectList().block(Duration.ofSeconds(5));
+        Assertions.assertEquals(List.of("7", "8", "9", "10"), resumed.stream().map(ServerSentEvent::data).toList());
+    }
+
+    @Test
+    void lateWatcherGetsResetInsteadOfTruncatedOutput() {
+        GenerationSession session = startedSession(4, frames(10));
+        List<ServerSentEvent<String>> watched = session.stream(0).collectList().block(Duration.ofSeconds(5));
+        Assertions.assertEquals(List.of(GenerationRegistry.RESET_EVENT, GenerationRegistry.DONE_EVENT),
+                watched.stream().map(ServerSentEvent::event).toList());
+        Assertions.assertTrue(watched.get(0).data().contains("\"oldestSequence\":7"));
+    }
+
+    @Test
+    void earlyWatcherSeesWholeOutput() {
+        GenerationSession session = startedSession(20, frames(10));
+        List<ServerSentEvent<String>> watched = session.stream(0).collectList().block(Duration.ofSeconds(5));
+        Assertions.assertEquals(10, watched.size());
+        Assertions.assertEquals("1", watched.get(0).data());
+    }
+
+    @Test
+    void slowSubscriberThrottlesUpstream() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        // 上游稍后才开始产出，确保订阅者先连接
+        Flux<ServerSentEvent<String>> upstream = Mono.delay(Duration.ofMillis(100))
+                .thenMany(Flux.range(1, 1000))
+                .doOnNext(i -> produced.incrementAndGet())
+                .map(i -> ServerSentEvent.builder(String.valueOf(i)).build());
+        GenerationSession session = new GenerationSession("g1", 1L, 1L, "msg", 200);
+        session.start(upstream, frame -> {
+        }, () -> {
+        }, () -> {
+        });
+        AtomicInteger received = new AtomicInteger();
+        BaseSubscriber<ServerSentEvent<String>> slow = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<String> value) {
+                received.incrementAndGet();
+            }
+        };
+        session.stream(0).subscribe(slow);
+        Thread.sleep(500);
+        Assertions.assertEquals(1, received.get());
+        Assertions.assertTrue(produced.get() <= 65, "上游不应超出订阅者进度太多，实际产出 " + produced.get());
+
+        slow.request(Long.MAX_VALUE);
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((received.get() < 1000 || !session.isTerminated()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(1000, received.get());
+        Assertions.assertTrue(session.isTerminated());
+    }
+
+    private static GenerationSession startedSession(int replayLimit, Flux<ServerSentEvent<String>> frames) {
+        GenerationSession session = new GenerationSession("g1", 1L, 1L, "msg", replayLimit);
+        session.start(frames, frame -> {
+        }, () -> {
+        }, () -> {
+        });
+        return session;
+    }
+
+    private static Flux<ServerSentEvent<String>> frames(int count) {
+        return Flux.range(1, count).map(i -> ServerSentEvent.builder(String.valueOf(i)).build());
+    }
+}
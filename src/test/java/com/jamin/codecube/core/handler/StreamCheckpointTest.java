@@ -0,0 +1,78 @@
+package com.jamin.codecube.core.handler;
+
+import com.jamin.codecube.config.ChatHistoryCheckpointConfig;
+import com.jamin.codecube.constant.AppConstant;
+import com.jamin.codecube.model.entity.ChatHistoryOriginal;
+import com.jamin.codecube.service.ChatHistoryOriginalService;
+import com.jamin.codecube.service.ChatHistoryService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamCheckpointTest {
+
+    private final ChatHistoryService chatHistoryService = Mockito.mock(ChatHistoryService.class);
+
+    private final ChatHistoryOriginalService chatHistoryOriginalService = Mockito.mock(ChatHistoryOriginalService.class);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void checkpointAppendsToolCallsAndFinalisesDisplayRow() {
+        ChatHistoryCheckpointConfig config = new ChatHistoryCheckpointConfig();
+        config.setIntervalSeconds(3600);
+        config.setToolCallThreshold(1);
+        Mockito.when(chatHistoryService.addChatMessageAsync(Mockito.eq(1L), Mockito.anyString(), Mockito.anyString(), Mockito.eq(2L)))
+                .thenReturn(100L);
+        StreamCheckpoint checkpoint = new StreamCheckpoint(chatHistoryService, chatHistoryOriginalService, config, 1L, 2L);
+        List<ChatHistoryOriginal> originals = new ArrayList<>();
+        StringBuilder display = new StringBuilder("写入文件 a.vue");
+
+        // 未达到阈值时不写入
+        checkpoint.maybeCheckpoint(display, originals);
+        Mockito.verifyNoInteractions(chatHistoryService, chatHistoryOriginalService);
+
+        originals.add(ChatHistoryOriginal.builder().messageType("toolExecutionRequest").message("req1").build());
+        originals.add(ChatHistoryOriginal.builder().messageType("toolExecutionResult").message("res1").build());
+        checkpoint.onToolExecuted();
+        checkpoint.maybeCheckpoint(display, originals);
+        Mockito.verify(chatHistoryService).addChatMessageAsync(1L, display + AppConstant.GENERATION_INTERRUPTED_MARKER, "ai", 2L);
+
+        originals.add(ChatHistoryOriginal.builder().messageType("toolExecutionRequest").message("req2").build());
+        originals.add(ChatHistoryOriginal.builder().messageType("toolExecutionResult").message("res2").build());
+        display.append("\n写入文件 b.vue");
+        checkpoint.finish(display.toString(), "完成", originals);
+
+        // 工具调用记录只追加未写入的部分
+        ArgumentCaptor<List<ChatHistoryOriginal>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(chatHistoryOriginalService, Mockito.times(2)).addOriginalChatMessageBatchAsync(captor.capture());
+        assertEquals("req1", captor.getAllValues().get(0).get(0).getMessage());
+        assertEquals("req2", captor.getAllValues().get(1).get(0).getMessage());
+        assertEquals(2, captor.getAllValues().get(1).size());
+        Mockito.verify(chatHistoryOriginalService).addOriginalChatMessageAsync(1L, "完成", "ai", 2L);
+        // 展示记录只插入一次，结束时按 ID 覆盖为完整内容
+        Mockito.verify(chatHistoryService).updateChatMessageAsync(1L, 100L, display.toString());
+        Mockito.verify(chatHistoryService, Mockito.times(1))
+                .addChatMessageAsync(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    void finishIsAppliedOnlyOnce() {
+        ChatHistoryCheckpointConfig config = new ChatHistoryCheckpointConfig();
+        StreamCheckpoint checkpoint = new StreamCheckpoint(chatHistoryService, chatHistoryOriginalService, config, 1L, 2L);
+        List<ChatHistoryOriginal> originals = new ArrayList<>();
+
+        // 完成后紧跟着到达的取消信号不再覆盖记录
+        checkpoint.finish("完整内容", "完成", originals);
+        checkpoint.finish("完整内容" + AppConstant.GENERATION_CANCELLED_MARKER, "完成", originals);
+
+        Mockito.verify(chatHistoryService, Mockito.times(1))
+                .addChatMessageAsync(Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(), Mockito.anyLong());
+        Mockito.verify(chatHistoryService).addChatMessageAsync(1L, "完整内容", "ai", 2L);
+        Mockito.verify(chatHistoryOriginalService, Mockito.times(1)).addOriginalChatMessageAsync(1L, "完成", "ai", 2L);
+    }
+}
@@ -0,0 +1,73 @@
+package com.jamin.codecube.core.handler;
+
+import com.jamin.codecube.ai.memory.ChatMemoryHydrator;
+import com.jamin.codecube.ai.model.message.AiResponseMessage;
+import com.jamin.codecube.ai.model.message.StreamMessage;
+import com.jamin.codecube.model.entity.User;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.service.ChatHistoryOriginalService;
+import com.jamin.codecube.service.ChatHistoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * 生成结束时会话记忆版本戳的维护：正常结束推进，取消和出错失效
+ */
+class StreamHandlerExecutorTest {
+
+    private static final long APP_ID = 1L;
+
+    private final ChatMemoryHydrator chatMemoryHydrator = Mockito.mock(ChatMemoryHydrator.class);
+
+    private final ChatHistoryService chatHistoryService = Mockito.mock(ChatHistoryService.class);
+
+    private final ChatHistoryOriginalService chatHistoryOriginalService = Mockito.mock(ChatHistoryOriginalService.class);
+
+    private final StreamHandlerExecutor executor = new StreamHandlerExecutor();
+
+    private final User user = new User();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(executor, "chatMemoryHydrator", chatMemoryHydrator);
+        user.setId(2L);
+    }
+
+    @Test
+    void completionResyncsStamp() {
+        execute(Flux.just(message("<html></html>"))).blockLast(Duration.ofSeconds(5));
+
+        Mockito.verify(chatMemoryHydrator).resync(APP_ID);
+        Mockito.verify(chatMemoryHydrator, Mockito.never()).invalidate(APP_ID);
+    }
+
+    @Test
+    void errorInvalidatesStamp() {
+        Flux<StreamMessage> failing = Flux.concat(Flux.just(message("<html>")), Flux.error(new IllegalStateException("boom")));
+        execute(failing).onErrorResume(error -> Flux.empty()).blockLast(Duration.ofSeconds(5));
+
+        Mockito.verify(chatMemoryHydrator).invalidate(APP_ID);
+        Mockito.verify(chatMemoryHydrator, Mockito.never()).resync(APP_ID);
+    }
+
+    @Test
+    void cancelInvalidatesStamp() {
+        execute(Flux.<StreamMessage>never().startWith(message("<html>"))).take(1).blockLast(Duration.ofSeconds(5));
+
+        Mockito.verify(chatMemoryHydrator).invalidate(APP_ID);
+        Mockito.verify(chatMemoryHydrator, Mockito.never()).resync(APP_ID);
+    }
+
+    private Flux<String> execute(Flux<StreamMessage> origin) {
+        return executor.doExecute(origin, chatHistoryService, chatHistoryOriginalService, APP_ID, user, CodeGenTypeEnum.HTML);
+    }
+
+    private static StreamMessage message(String data) {
+        return new AiResponseMessage(data);
+    }
+}
@@ -0,0 +1,60 @@
+package com.jamin.codecube.core.handler;
+
+import com.jamin.codecube.ai.model.message.AiResponseMessage;
+import com.jamin.codecube.ai.model.message.StreamMessage;
+import com.jamin.codecube.ai.model.message.ToolRequestMessage;
+import com.jamin.codecube.config.StreamCoalesceConfig;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+class StreamMessageCoalescerTest {
+
+    private final StreamMessageCoalescer coalescer = new StreamMessageCoalescer();
+
+    private final StreamCoalesceConfig config = new StreamCoalesceConfig();
+
+    @BeforeEach
+    void setUp() {
+        config.setDefaultWindow(new StreamCoalesceConfig.Window(1000, 1024 * 1024));
+        ReflectionTestUtils.setField(coalescer, "streamCoalesceConfig", config);
+    }
+
+    @Test
+    void mergeTextAndFlushOnToolMessage() {
+        ToolRequestMessage toolRequestMessage = new ToolRequestMessage(ToolExecutionRequest.builder()
+                .id("call_1").name("writeFile").arguments("{}").build());
+        Flux<StreamMessage> source = Flux.concat(
+                textChunks("a", 100),
+                Flux.just(toolRequestMessage),
+                textChunks("b", 100));
+        List<StreamMessage> result = coalescer.coalesce(source, CodeGenTypeEnum.VUE_PROJECT).collectList().block();
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(3, result.size());
+        Assertions.assertEquals("a".repeat(100), ((AiResponseMessage) result.get(0)).getData());
+        Assertions.assertSame(toolRequestMessage, result.get(1));
+        Assertions.assertEquals("b".repeat(100), ((AiResponseMessage) result.get(2)).getData());
+    }
+
+    @Test
+    void flushWhenByteLimitReached() {
+        config.getTypes().put(CodeGenTypeEnum.HTML, new StreamCoalesceConfig.Window(1000, 10));
+        List<StreamMessage> result = coalescer.coalesce(textChunks("你", 20), CodeGenTypeEnum.HTML).collectList().block();
+        Assertions.assertNotNull(result);
+        // 每个汉字 3 字节，累积 4 个字（12 字节）后冲刷一次
+        Assertions.assertEquals(5, result.size());
+        String merged = result.stream().map(message -> ((AiResponseMessage) message).getData()).reduce("", String::concat);
+        Assertions.assertEquals("你".repeat(20), merged);
+    }
+
+    private Flux<StreamMessage> textChunks(String text, int count) {
+        return Flux.fromStream(IntStream.range(0, count).mapToObj(i -> new AiResponseMessage(text)));
+    }
+}
@@ -0,0 +1,81 @@
+package com.jamin.codecube.core.parse;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class StreamingCodeParserTest {
+
+    @Test
+    void feedBlocksAcrossChunks() {
+        String content = """
+                下面是生成的代码
+                ```html
+                <!DOCTYPE html>
+                <html><body><code>`inline`</code></body></html>
+                ```
+                样式：
+                ```css
+                body { margin: 0; }
+                ```
+                脚本：
+                ```javascript
+                console.log('hello');
+                ```
+                结束
+                """;
+        StreamingCodeParser parser = new StreamingCodeParser();
+        List<StreamingCodeParser.CodeBlock> blocks = new ArrayList<>();
+        // 按 3 个字符一段模拟流式分片，确保跨分片的围栏标记也能识别
+        for (int i = 0; i < content.length(); i += 3) {
+            blocks.addAll(parser.feed(content.substring(i, Math.min(content.length(), i + 3))));
+        }
+        Assertions.assertEquals(3, blocks.size());
+        Assertions.assertEquals("html", blocks.get(0).language());
+        Assertions.assertEquals("<!DOCTYPE html>\n<html><body><code>`inline`</code></body></html>", blocks.get(0).content());
+        Assertions.assertEquals("css", blocks.get(1).language());
+        Assertions.assertEquals("body { margin: 0; }", blocks.get(1).content());
+        Assertions.assertEquals("javascript", blocks.get(2).language());
+        Assertions.assertFalse(parser.inCodeBlock());
+    }
+
+    @Test
+    void unclosedBlockIsNotReturned() {
+        StreamingCodeParser parser = new StreamingCodeParser();
+        Assertions.assertTrue(parser.feed("```html\n<div>").isEmpty());
+        Assertions.assertTrue(parser.inCodeBlock());
+        Assertions.assertEquals(1, parser.feed("</div>\n```").size());
+    }
+
+    @Test
+    void inlineTripleBackticksAreNotFences() {
+        String content = """
+                把页面放进 ```html``` 代码块里，然后
+                ```html
+                <pre>```js</pre>
+                <script>const fence = '```';</script>
+                ```
+                说明结束
+                """;
+        StreamingCodeParser parser = new StreamingCodeParser();
+        List<StreamingCodeParser.CodeBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < content.length(); i += 2) {
+            blocks.addAll(parser.feed(content.substring(i, Math.min(content.length(), i + 2))));
+        }
+        Assertions.assertEquals(1, blocks.size());
+        Assertions.assertEquals("html", blocks.get(0).language());
+        Assertions.assertEquals("<pre>```js</pre>\n<script>const fence = '```';</script>", blocks.get(0).content());
+        Assertions.assertFalse(parser.inCodeBlock());
+    }
+
+    @Test
+    void indentedFenceIsRecognised() {
+        StreamingCodeParser parser = new StreamingCodeParser();
+        List<StreamingCodeParser.CodeBlock> blocks = parser.feed("说明\n  ```css\nbody {}\n  ```\n");
+        Assertions.assertEquals(1, blocks.size());
+        Assertions.assertEquals("css", blocks.get(0).language());
+        Assertions.assertEquals("body {}", blocks.get(0).content());
+    }
+}
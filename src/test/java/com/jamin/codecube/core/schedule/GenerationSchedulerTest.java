@@ -0,0 +1,178 @@
+package com.jamin.codecube.core.schedule;
+
+import com.jamin.codecube.config.GenerationSchedulerConfig;
+import com.jamin.codecube.exception.BusinessException;
+import com.jamin.codecube.model.entity.User;
+import com.jamin.codecube.model.enums.CodeGenTypeEnum;
+import com.jamin.codecube.monitor.StreamMetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+class GenerationSchedulerTest {
+
+    private final GenerationScheduler scheduler = new GenerationScheduler();
+
+    private final GenerationSchedulerConfig config = new GenerationSchedulerConfig();
+
+    /**
+     * 按放行顺序记录的任务名
+     */
+    private final List<String> started = new CopyOnWriteArrayList<>();
+
+    private final List<Sinks.Many<String>> running = new CopyOnWriteArrayList<>();
+
+    /**
+     * 执行各任务 work 的线程名
+     */
+    private final List<String> startedThreads = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        config.setMaxConcurrent(2);
+        config.setMaxRunningPerUser(2);
+        config.setMaxQueuedPerUser(10);
+        config.setStatusIntervalMillis(60_000);
+        StreamMetricsCollector metricsCollector = new StreamMetricsCollector();
+        ReflectionTestUtils.setField(metricsCollector, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "generationSchedulerConfig", config);
+        ReflectionTestUtils.setField(scheduler, "streamMetricsCollector", metricsCollector);
+        // 放行顺序的断言需要 work 同步执行
+        ReflectionTestUtils.setField(scheduler, "workScheduler", Schedulers.immediate());
+        scheduler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void lightUserOvertakesHeavyUserBacklog() {
+        User heavy = user(1L, null);
+        User light = user(2L, null);
+        List<GenerationQueueStatus> lightStatuses = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            submit(heavy, "heavy-" + i, status -> { });
+        }
+        submit(light, "light-0", lightStatuses::add);
+        Assertions.assertEquals(List.of("heavy-0", "heavy-1"), started);
+        Assertions.assertEquals(4, scheduler.getQueuedCount());
+        // 轻度用户的任务标签更小，排在重度用户积压任务之前
+        Assertions.assertEquals(GenerationQueueStatus.STATE_QUEUED, lightStatuses.getFirst().state());
+        Assertions.assertEquals(1, lightStatuses.getFirst().position());
+
+        completeFirstRunning();
+        Assertions.assertEquals("light-0", started.get(2));
+        Assertions.assertTrue(lightStatuses.getLast().admitted());
+    }
+
+    @Test
+    void vipUserGetsLargerShare() {
+        config.setMaxConcurrent(1);
+        User normal = user(1L, null);
+        User vip = user(2L, LocalDateTime.now().plusDays(30));
+        submit(user(3L, null), "blocker", status -> { });
+        for (int i = 0; i < 6; i++) {
+            submit(normal, "normal-" + i, status -> { });
+            submit(vip, "vip-" + i, status -> { });
+        }
+        for (int i = 0; i < 8; i++) {
+            completeFirstRunning();
+        }
+        // 权重 3:1，两个用户都有积压时会员获得 3/4 的放行机会
+        Assertions.assertEquals(3, countVip(started.subList(1, 5)));
+        Assertions.assertEquals(6, countVip(started.subList(1, 9)));
+    }
+
+    @Test
+    void perUserRunningLimitAndQueueCap() {
+        config.setMaxRunningPerUser(1);
+        config.setMaxQueuedPerUser(1);
+        User user = user(1L, null);
+        submit(user, "a", status -> { });
+        submit(user, "b", status -> { });
+        // 全局还有名额，但单用户运行数已满
+        Assertions.assertEquals(List.of("a"), started);
+        List<Throwable> errors = new ArrayList<>();
+        scheduler.schedule(user, CodeGenTypeEnum.HTML, () -> Flux.<String>never(), status -> { })
+                .subscribe(value -> { }, errors::add);
+        Assertions.assertInstanceOf(BusinessException.class, errors.getFirst());
+    }
+
+    @Test
+    void cancelledWhileQueuedLeavesQueue() {
+        User user = user(1L, null);
+        submit(user, "a", status -> { });
+        submit(user, "b", status -> { });
+        Disposable queued = submit(user, "c", status -> { });
+        Assertions.assertEquals(1, scheduler.getQueuedCount());
+        queued.dispose();
+        Assertions.assertEquals(0, scheduler.getQueuedCount());
+        completeFirstRunning();
+        Assertions.assertEquals(List.of("a", "b"), started);
+        Assertions.assertEquals(1, scheduler.getRunningCount());
+    }
+
+    @Test
+    void admittedWorkRunsOffTheReleasingThread() throws Exception {
+        ReflectionTestUtils.setField(scheduler, "workScheduler", Schedulers.boundedElastic());
+        config.setMaxConcurrent(1);
+        submit(user(1L, null), "a", status -> { });
+        submit(user(2L, null), "b", status -> { });
+        awaitStarted(1);
+        Assertions.assertEquals(1, scheduler.getQueuedCount());
+
+        // 在测试线程上结束 a，b 在这里被放行，但 work 不在测试线程上执行
+        completeFirstRunning();
+        awaitStarted(2);
+        Assertions.assertEquals(List.of("a", "b"), started);
+        Assertions.assertTrue(startedThreads.get(1).startsWith("boundedElastic-"), startedThreads.get(1));
+    }
+
+    private void awaitStarted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (started.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(count, started.size());
+    }
+
+    private Disposable submit(User user, String name, Consumer<GenerationQueueStatus> listener) {
+        return scheduler.schedule(user, CodeGenTypeEnum.HTML, () -> {
+            startedThreads.add(Thread.currentThread().getName());
+            started.add(name);
+            Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+            running.add(sink);
+            return sink.asFlux();
+        }, listener).subscribe();
+    }
+
+    private void completeFirstRunning() {
+        running.removeFirst().tryEmitComplete();
+    }
+
+    private static long countVip(List<String> names) {
+        return names.stream().filter(name -> name.startsWith("vip")).count();
+    }
+
+    private static User user(Long id, LocalDateTime vipExpireTime) {
+        User user = new User();
+        user.setId(id);
+        user.setVipExpireTime(vipExpireTime);
+        return user;
+    }
+}
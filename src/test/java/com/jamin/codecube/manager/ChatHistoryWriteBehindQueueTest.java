@@ -0,0 +1,88 @@
+package com.jamin.codecube.manager;
+
+import com.jamin.codecube.config.ChatHistoryWriteBehindConfig;
+import com.jamin.codecube.mapper.ChatHistoryMapper;
+import com.jamin.codecube.mapper.ChatHistoryOriginalMapper;
+import com.jamin.codecube.model.entity.ChatHistory;
+import com.jamin.codecube.model.entity.ChatHistoryOriginal;
+import com.jamin.codecube.monitor.ChatHistoryMetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+class ChatHistoryWriteBehindQueueTest {
+
+    private final ChatHistoryWriteBehindQueue queue = new ChatHistoryWriteBehindQueue();
+
+    private final ChatHistoryMapper chatHistoryMapper = Mockito.mock(ChatHistoryMapper.class);
+
+    private final ChatHistoryOriginalMapper chatHistoryOriginalMapper = Mockito.mock(ChatHistoryOriginalMapper.class);
+
+    @BeforeEach
+    void setUp() {
+        ChatHistoryWriteBehindConfig config = new ChatHistoryWriteBehindConfig();
+        // 写入线程不会在测试期间主动落库，由 flush 控制
+        config.setFlushIntervalMillis(60_000);
+        ChatHistoryMetricsCollector metricsCollector = new ChatHistoryMetricsCollector();
+        ReflectionTestUtils.setField(metricsCollector, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(queue, "writeBehindConfig", config);
+        ReflectionTestUtils.setField(queue, "chatHistoryMapper", chatHistoryMapper);
+        ReflectionTestUtils.setField(queue, "chatHistoryOriginalMapper", chatHistoryOriginalMapper);
+        ReflectionTestUtils.setField(queue, "chatHistoryMetricsCollector", metricsCollector);
+        queue.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWritesInEnqueueOrder() {
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(ChatHistory.builder().appId(1L).userId(1L).messageType("ai").message("m" + i).build());
+        }
+        queue.enqueueOriginal(List.of(
+                ChatHistoryOriginal.builder().appId(1L).userId(1L).messageType("toolExecutionRequest").message("req").build(),
+                ChatHistoryOriginal.builder().appId(1L).userId(1L).messageType("toolExecutionResult").message("res").build()));
+        Assertions.assertEquals(5, queue.size());
+
+        queue.flush();
+
+        Assertions.assertEquals(0, queue.size());
+        ArgumentCaptor<Collection<ChatHistory>> historyCaptor = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(chatHistoryMapper).insertBatch(historyCaptor.capture());
+        List<ChatHistory> histories = new ArrayList<>(historyCaptor.getValue());
+        Assertions.assertEquals(List.of("m0", "m1", "m2"), histories.stream().map(ChatHistory::getMessage).toList());
+        Assertions.assertTrue(histories.get(0).getId() < histories.get(1).getId());
+        Assertions.assertNotNull(histories.get(0).getCreateTime());
+
+        ArgumentCaptor<Collection<ChatHistoryOriginal>> originalCaptor = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(chatHistoryOriginalMapper).insertBatch(originalCaptor.capture());
+        List<ChatHistoryOriginal> originals = new ArrayList<>(originalCaptor.getValue());
+        Assertions.assertEquals("req", originals.get(0).getMessage());
+        Assertions.assertTrue(originals.get(0).getId() < originals.get(1).getId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fallBackToSingleInsertWhenBatchFails() {
+        Mockito.when(chatHistoryMapper.insertBatch(Mockito.any(Collection.class))).thenThrow(new RuntimeException("batch failed"));
+        queue.enqueue(ChatHistory.builder().appId(1L).userId(1L).messageType("user").message("a").build());
+        queue.enqueue(ChatHistory.builder().appId(1L).userId(1L).messageType("ai").message("b").build());
+
+        queue.flush();
+
+        Mockito.verify(chatHistoryMapper, Mockito.times(2)).insert(Mockito.any(ChatHistory.class));
+    }
+}
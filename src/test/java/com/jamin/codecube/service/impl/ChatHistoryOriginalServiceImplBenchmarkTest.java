@@ -0,0 +1,227 @@
+package com.jamin.codecube.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
+import com.jamin.codecube.mapper.ChatHistoryOriginalMapper;
+import com.jamin.codecube.model.entity.ChatHistoryOriginal;
+import com.jamin.codecube.model.enums.ChatHistoryMessageTypeEnum;
+import com.jamin.codecube.service.ChatHistoryOriginalService;
+import com.mybatisflex.core.logicdelete.LogicDeleteManager;
+import com.mybatisflex.core.query.QueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 加载对话记忆的窗口查询基准测试
+ * 在 10000 条历史记录的应用上对比旧的多次查询实现与单次窗口查询
+ *
+ * @author <a href="https://github.com/JaminLiu020">程序员小明</a>
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("local")
+class ChatHistoryOriginalServiceImplBenchmarkTest {
+
+    private static final int HISTORY_ROWS = 10_000;
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private static final int WARMUP_ROUNDS = 20;
+
+    private static final int MEASURE_ROUNDS = 200;
+
+    /**
+     * 一轮对话：用户消息、两次工具调用、AI 回复
+     */
+    private static final List<ChatHistoryMessageTypeEnum> ROUND_PATTERN = List.of(
+            ChatHistoryMessageTypeEnum.USER,
+            ChatHistoryMessageTypeEnum.TOOL_EXECUTION_REQUEST,
+            ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT,
+            ChatHistoryMessageTypeEnum.TOOL_EXECUTION_REQUEST,
+            ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT,
+            ChatHistoryMessageTypeEnum.AI);
+
+    @Autowired
+    private ChatHistoryOriginalService chatHistoryOriginalService;
+
+    @Autowired
+    private ChatHistoryOriginalMapper chatHistoryOriginalMapper;
+
+    private ChatHistoryOriginalServiceImpl serviceImpl;
+
+    private long appId;
+
+    @BeforeEach
+    void setUp() {
+        serviceImpl = AopTestUtils.getTargetObject(chatHistoryOriginalService);
+        appId = IdUtil.getSnowflakeNextId();
+        LocalDateTime now = LocalDateTime.now();
+        List<ChatHistoryOriginal> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < HISTORY_ROWS; i++) {
+            ChatHistoryMessageTypeEnum type = ROUND_PATTERN.get(i % ROUND_PATTERN.size());
+            batch.add(ChatHistoryOriginal.builder()
+                    .appId(appId)
+                    .userId(1L)
+                    .messageType(type.getValue())
+                    .message("benchmark message " + i)
+                    .createTime(now)
+                    .updateTime(now)
+                    .isDelete(0)
+                    .build());
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                chatHistoryOriginalMapper.insertBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            chatHistoryOriginalMapper.insertBatch(batch);
+        }
+        log.info("已为 appId: {} 写入 {} 条历史记录", appId, HISTORY_ROWS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        LogicDeleteManager.execWithoutLogicDelete(() -> chatHistoryOriginalMapper.deleteByQuery(
+                QueryWrapper.create().eq(ChatHistoryOriginal::getAppId, appId)));
+    }
+
+    /**
+     * 两种实现对每个边界位置返回的窗口一致
+     */
+    @Test
+    void windowQueryMatchesLegacyQuery() {
+        for (int maxCount = 1; maxCount <= ROUND_PATTERN.size() * 2; maxCount++) {
+            List<Long> legacyIds = queryHistoryWithEdgeCheck(appId, maxCount).stream()
+                    .map(ChatHistoryOriginal::getId).toList();
+            List<Long> windowIds = serviceImpl.queryHistoryWindow(appId, maxCount).stream()
+                    .map(ChatHistoryOriginal::getId).toList();
+            assertEquals(legacyIds, windowIds, "maxCount = " + maxCount);
+        }
+    }
+
+    @Test
+    void benchmarkWindowQueryAgainstLegacyQuery() {
+        // 覆盖边缘是 tool_result（需要补齐请求）和普通消息两种情况
+        for (int maxCount : List.of(59, 60)) {
+            long legacyNanos = measure(this::queryHistoryWithEdgeCheck, maxCount);
+            long windowNanos = measure(serviceImpl::queryHistoryWindow, maxCount);
+            log.info("maxCount = {}，旧实现平均 {} μs，窗口查询平均 {} μs", maxCount,
+                    legacyNanos / MEASURE_ROUNDS / 1000, windowNanos / MEASURE_ROUNDS / 1000);
+        }
+    }
+
+    /**
+     * 优化前的实现（count、边缘记录、列表最多 4 次查询），作为窗口查询的对照基线
+     */
+    private List<ChatHistoryOriginal> queryHistoryWithEdgeCheck(Long appId, int maxCount) {
+        // 1. 首先检查总记录数
+        QueryWrapper countQueryWrapper = QueryWrapper.create()
+                .eq(ChatHistoryOriginal::getAppId, appId);
+        long totalCount = chatHistoryOriginalService.count(countQueryWrapper);
+
+        // 2. 如果总记录数小于等于1，直接返回空列表（因为我们要跳过第1条记录）
+        if (totalCount <= 1) {
+            log.debug("总记录数 ({}) 小于等于1，没有足够的历史记录可加载", totalCount);
+            return Collections.emptyList();
+        }
+
+        // 3. 计算实际可查询的最大记录数（减去要跳过的第1条记录）
+        long availableCount = totalCount - 1;
+
+        // 4. 如果总记录数小于等于 maxCount+1，则不需要检查边缘记录
+        if (totalCount <= maxCount + 1) {
+            log.debug("总记录数 ({}) 小于等于 maxCount+1 ({}), 不需要检查边缘记录", totalCount, maxCount + 1);
+
+            // 直接查询所有可用记录（跳过最新的用户消息）
+            QueryWrapper queryWrapper = QueryWrapper.create()
+                    .eq(ChatHistoryOriginal::getAppId, appId)
+                    .orderBy(ChatHistoryOriginal::getId, false) // 使用ID倒序，确保顺序性
+                    .limit(1, availableCount);  // 查询从第2条开始的所有可用记录
+
+            return chatHistoryOriginalService.list(queryWrapper);
+        }
+
+        // 5. 如果总记录数大于 maxCount+1，则需要检查边缘记录
+        // 查询第 maxCount+1 条记录（边缘记录）
+        QueryWrapper edgeQueryWrapper = QueryWrapper.create()
+                .eq(ChatHistoryOriginal::getAppId, appId)
+                .orderBy(ChatHistoryOriginal::getId, false)
+                .limit(maxCount, 1);  // 查询第 maxCount+1 条记录
+
+        ChatHistoryOriginal edgeRecord = chatHistoryOriginalService.getOne(edgeQueryWrapper);
+
+        // 6. 如果边缘记录是 TOOL_EXECUTION_RESULT 类型，则需要额外查询其前一条 TOOL_EXECUTION_REQUEST 记录
+        boolean needExtraRequest = false;
+        if (edgeRecord != null) {
+            String edgeMessageType = edgeRecord.getMessageType();
+            ChatHistoryMessageTypeEnum edgeMessageTypeEnum = ChatHistoryMessageTypeEnum.getEnumByValue(edgeMessageType);
+            needExtraRequest = (edgeMessageTypeEnum == ChatHistoryMessageTypeEnum.TOOL_EXECUTION_RESULT);
+        }
+
+        // 7. 计算实际需要查询的记录数
+        long actualLimit = Math.min(needExtraRequest ? maxCount + 1 : maxCount, availableCount);
+
+        // 8. 查询历史记录
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistoryOriginal::getAppId, appId)
+                .orderBy(ChatHistoryOriginal::getId, false)
+                .limit(1, actualLimit);  // 查询从第2条开始的 actualLimit 条记录
+
+        List<ChatHistoryOriginal> originalHistoryList = chatHistoryOriginalService.list(queryWrapper);
+        if (CollUtil.isEmpty(originalHistoryList)) {
+            return Collections.emptyList();
+        }
+
+        // 9. 检查是否需要调整 maxCount
+        if (needExtraRequest && originalHistoryList.size() <= maxCount) {
+            // 如果需要额外的 TOOL_EXECUTION_REQUEST 但没有获取到足够的记录
+            log.warn("边缘记录是 TOOL_EXECUTION_RESULT 类型，但未获取到足够的记录包含 TOOL_EXECUTION_REQUEST，将 maxCount 减 1");
+            maxCount = Math.max(0, maxCount - 1);  // 确保 maxCount 不小于 0
+
+            // 如果 maxCount 变为 0，则直接返回空列表
+            if (maxCount == 0) {
+                log.info("调整后 maxCount 为 0，不加载任何历史记录");
+                return Collections.emptyList();
+            }
+
+            // 重新查询，使用调整后的 maxCount
+            actualLimit = Math.min(maxCount, availableCount);
+            queryWrapper = QueryWrapper.create()
+                    .eq(ChatHistoryOriginal::getAppId, appId)
+                    .orderBy(ChatHistoryOriginal::getId, false)
+                    .limit(1, actualLimit);  // 查询从第2条开始的 actualLimit 条记录
+
+            originalHistoryList = chatHistoryOriginalService.list(queryWrapper);
+            if (CollUtil.isEmpty(originalHistoryList)) {
+                return Collections.emptyList();
+            }
+        }
+
+        return originalHistoryList;
+    }
+
+    private long measure(BiFunction<Long, Integer, List<ChatHistoryOriginal>> query, int maxCount) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            query.apply(appId, maxCount);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            query.apply(appId, maxCount);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,47 @@
+package dev.langchain4j.model.openai;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Request prefix stability of the patched streaming model.
+ */
+class OpenAiStreamingChatModelTest {
+
+    @Test
+    void systemMessagesAlreadyFirstAreReturnedAsIs() {
+        List<ChatMessage> messages = List.of(SystemMessage.from("system"), UserMessage.from("u1"), AiMessage.from("a1"));
+
+        assertSame(messages, OpenAiStreamingChatModel.systemMessagesFirst(messages));
+    }
+
+    @Test
+    void systemMessagesMoveToFrontAndOtherOrderIsPreserved() {
+        SystemMessage system = SystemMessage.from("system");
+        SystemMessage reminder = SystemMessage.from("reminder");
+        UserMessage u1 = UserMessage.from("u1");
+        AiMessage a1 = AiMessage.from("a1");
+        UserMessage u2 = UserMessage.from("u2");
+        AiMessage a2 = AiMessage.from("a2");
+
+        // memory reloaded from the database may put the system message after earlier turns
+        List<ChatMessage> reordered = OpenAiStreamingChatModel.systemMessagesFirst(List.of(u1, a1, system, u2, reminder, a2));
+
+        assertEquals(List.of(system, reminder, u1, a1, u2, a2), reordered);
+    }
+
+    @Test
+    void withoutSystemMessagesNothingChanges() {
+        List<ChatMessage> messages = List.of(UserMessage.from("u1"), AiMessage.from("a1"));
+
+        assertSame(messages, OpenAiStreamingChatModel.systemMessagesFirst(messages));
+    }
+}
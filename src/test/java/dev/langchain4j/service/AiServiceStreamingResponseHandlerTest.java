@@ -0,0 +1,101 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.ChatResponseMetadata;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Tool loop of the streaming AI service: memory must stay well-formed when the stream is cancelled mid-loop.
+ */
+class AiServiceStreamingResponseHandlerTest {
+
+    interface Assistant {
+
+        TokenStream chat(String message);
+    }
+
+    public static class Tools {
+
+        final AtomicReference<TokenStream> stream = new AtomicReference<>();
+
+        final AtomicInteger executions = new AtomicInteger();
+
+        @Tool("writes the first file")
+        public String writeFirst() {
+            executions.incrementAndGet();
+            // the user leaves while the first tool runs
+            stream.get().cancel();
+            return "first written";
+        }
+
+        @Tool("writes the second file")
+        public String writeSecond() {
+            executions.incrementAndGet();
+            return "second written";
+        }
+    }
+
+    @Test
+    void cancelInsideToolLoopLeavesEveryToolCallAnswered() {
+        AtomicInteger modelCalls = new AtomicInteger();
+        StreamingChatModel model = new StreamingChatModel() {
+            @Override
+            public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                modelCalls.incrementAndGet();
+                AiMessage aiMessage = AiMessage.from(List.of(
+                        ToolExecutionRequest.builder().id("call_1").name("writeFirst").arguments("{}").build(),
+                        ToolExecutionRequest.builder().id("call_2").name("writeSecond").arguments("{}").build()));
+                handler.onCompleteResponse(ChatResponse.builder()
+                        .aiMessage(aiMessage)
+                        .metadata(ChatResponseMetadata.builder().tokenUsage(new TokenUsage(1, 1)).build())
+                        .build());
+            }
+        };
+        ChatMemory memory = MessageWindowChatMemory.withMaxMessages(20);
+        Tools tools = new Tools();
+        Assistant assistant = AiServices.builder(Assistant.class)
+                .streamingChatModel(model)
+                .chatMemory(memory)
+                .tools(tools)
+                .build();
+
+        TokenStream stream = assistant.chat("build a page")
+                .onPartialResponse(token -> {
+                })
+                .ignoreErrors();
+        tools.stream.set(stream);
+        stream.start();
+
+        assertEquals(1, modelCalls.get());
+        assertEquals(1, tools.executions.get());
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(4, messages.size());
+        assertInstanceOf(UserMessage.class, messages.get(0));
+        assertEquals(2, ((AiMessage) messages.get(1)).toolExecutionRequests().size());
+        ToolExecutionResultMessage first = (ToolExecutionResultMessage) messages.get(2);
+        assertEquals("call_1", first.id());
+        assertEquals("first written", first.text());
+        ToolExecutionResultMessage second = (ToolExecutionResultMessage) messages.get(3);
+        assertEquals("call_2", second.id());
+        assertEquals(AiServiceStreamingResponseHandler.CANCELLED_TOOL_RESULT, second.text());
+    }
+}